@@ -0,0 +1,24 @@
+#!/bin/bash
+
+# Create a binary patch from the tmc script of an earlier release to the one
+# built by "mvn package". The patch is uploaded as tmc-VERSION.patch and the
+# auto updater of that version downloads it instead of the whole binary.
+#
+# Usage: scripts/make_patch.sh [PREVIOUS_VERSION]
+
+set -euo pipefail
+
+previous=${1-$(git describe --tags --abbrev=0 HEAD^)}
+jar_file=$(ls -t target/tmc-cli-*.jar | head -1)
+old_tmc="target/tmc-$previous"
+# download from the same repository that the auto updater checks
+repository=$(sed -n 's/.*RELEASE_REPOSITORY = "\(.*\)";/\1/p' \
+	src/main/java/fi/helsinki/cs/tmc/cli/updater/AutoUpdater.java)
+
+if [ ! -f "$old_tmc" ]; then
+	curl -fsSL -o "$old_tmc" \
+		"https://github.com/$repository/releases/download/$previous/tmc"
+fi
+
+java -cp "$jar_file" fi.helsinki.cs.tmc.cli.updater.DeltaPatch \
+	"$old_tmc" tmc "tmc-$previous.patch"
@@ -0,0 +1,53 @@
+#!/bin/bash
+
+# Compare the startup time of the jar and the native executable.
+# Build both first with: mvn -P native package
+# Usage: scripts/startup_benchmark.sh [course-directory] [runs]
+# The info and exercises commands need a course directory to do real work.
+
+set -euo pipefail
+
+jar_file=$(ls -t target/tmc-cli-*.jar | head -1)
+native_bin=target/tmc-native
+course_dir=${1-.}
+runs=${2-20}
+
+if [ ! -x "$native_bin" ]; then
+	echo "Native binary $native_bin not found, build it with 'mvn -P native package'" >&2
+	exit 1
+fi
+
+jar_file=$(cd "$(dirname "$jar_file")" && pwd)/$(basename "$jar_file")
+native_bin=$(cd "$(dirname "$native_bin")" && pwd)/$(basename "$native_bin")
+
+# -d disables the auto-update check so that only the startup is measured
+commands=("help" "info" "exercises -n" "config -l")
+
+cd "$course_dir"
+
+if hash hyperfine 2>/dev/null; then
+	for command in "${commands[@]}"; do
+		hyperfine --warmup 3 --runs "$runs" \
+			-n "jar $command" "java -jar $jar_file -d $command" \
+			-n "native $command" "$native_bin -d $command"
+	done
+	exit
+fi
+
+# average wall clock time in milliseconds
+measure() {
+	local start end
+	start=$(date +%s%N)
+	for ((i = 0; i < runs; i++)); do
+		"$@" > /dev/null 2>&1 || true
+	done
+	end=$(date +%s%N)
+	echo $(( (end - start) / runs / 1000000 ))
+}
+
+printf "%-12s %10s %10s\n" "command" "jar (ms)" "native (ms)"
+for command in "${commands[@]}"; do
+	jar_time=$(measure java -jar "$jar_file" -d $command)
+	native_time=$(measure "$native_bin" -d $command)
+	printf "%-12s %10s %10s\n" "$command" "$jar_time" "$native_time"
+done
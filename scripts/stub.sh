@@ -67,7 +67,30 @@ tmc_find_java_binary() {
 
 	echo $JAVA_BIN
 }
-JAVA_BIN=$(tmc_find_java_binary)
+
+tmc_find_native_binary() {
+	tmc_debug "Find the native tmc binary"
+
+	# the native binary is used only if it's installed next to this script
+	local DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+	local NATIVE_BIN=${TMC_NATIVE_BINARY-"$DIR/tmc-native"}
+
+	if [[ ${TMC_NO_NATIVE-} == 1 ]]; then
+		return
+	fi
+
+	if [[ -x "$NATIVE_BIN" ]]; then
+		tmc_debug "Using native binary $NATIVE_BIN"
+		echo "$NATIVE_BIN"
+	fi
+}
+NATIVE_BIN=$(tmc_find_native_binary)
+
+# java isn't required if the native binary exists
+JAVA_BIN=
+if [ -z "$NATIVE_BIN" ]; then
+	JAVA_BIN=$(tmc_find_java_binary)
+fi
 
 #####
 tmc_debug "Find the place for running the autocomplete/alias file"
@@ -200,6 +223,8 @@ tmc_install_update() {
 	fi
 
 	rm tmc.orig &> /dev/null
+	# the native binary was built from the old version
+	rm -f tmc-native &> /dev/null
 	echo "Running the new tmc update script..." >&2
 	echo "" >&2
 
@@ -228,6 +253,7 @@ tmc_uninstall() {
 
 	rm "$AUTOCOMPLETE_FILE"
 	rm "$TMC_FILE"
+	rm -f "$(dirname "$TMC_FILE")/tmc-native"
 }
 
 tmc_main() {
@@ -256,6 +282,9 @@ tmc_main() {
 	#EMBED_UNIT_TESTS_SH
 
 	export COLUMNS=$(tput cols)
+	if [ -n "$NATIVE_BIN" ]; then
+		exec "$NATIVE_BIN" $TMC_FLAGS "$@"
+	fi
 	exec "$JAVA_BIN" -jar "$(tmc_get_binary)" $TMC_FLAGS "$@"
 
 	exit 0
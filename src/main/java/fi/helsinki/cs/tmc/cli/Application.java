@@ -2,8 +2,10 @@ package fi.helsinki.cs.tmc.cli;
 
 import fi.helsinki.cs.tmc.cli.analytics.AnalyticsFacade;
 import fi.helsinki.cs.tmc.cli.analytics.TimeTracker;
+import fi.helsinki.cs.tmc.cli.backend.CliHttpClient;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
 import fi.helsinki.cs.tmc.cli.backend.Settings;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
 import fi.helsinki.cs.tmc.cli.command.SubmitCommand;
 import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
@@ -12,7 +14,9 @@ import fi.helsinki.cs.tmc.cli.io.Io;
 import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
 import fi.helsinki.cs.tmc.cli.io.HelpGenerator;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.trace.Tracer;
 import fi.helsinki.cs.tmc.cli.updater.AutoUpdater;
+import fi.helsinki.cs.tmc.cli.updater.LatestRelease;
 import fi.helsinki.cs.tmc.cli.core.CommandFactory;
 
 
@@ -33,6 +37,9 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -40,6 +47,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * The application class for the program.
@@ -58,6 +67,9 @@ public class Application {
     private final GnuParser parser;
     private String commandName;
     private boolean noAutoUpdate;
+    private Path traceFile;
+    private AutoUpdater updater;
+    private FutureTask<LatestRelease> updateCheck;
 
     private TimeTracker timeTracker;
 
@@ -76,6 +88,12 @@ public class Application {
         options.addOption("h", "help", false, "Display help information");
         options.addOption("v", "version", false, "Give the version of the tmc-cli");
         options.addOption("u", "force-update", false, "Force the auto-update");
+        options.addOption(
+                OptionBuilder.withLongOpt("trace")
+                        .hasArg()
+                        .withArgName("FILE")
+                        .withDescription("Write a Chrome trace of the command into a file")
+                        .create());
         options.addOption("d", "no-update", false, "Disable temporarily the auto-update");
 
         Set<String> helpCategories = CommandFactory.getCommandCategories();
@@ -161,6 +179,10 @@ public class Application {
         boolean showVersion = line.hasOption("v");
         boolean forceUpdate = line.hasOption("u");
         this.noAutoUpdate = line.hasOption("d");
+        if (line.hasOption("trace")) {
+            this.traceFile = Paths.get(line.getOptionValue("trace"));
+            context.setTracer(Tracer.create());
+        }
 
         if (forceUpdate && this.noAutoUpdate) {
             io.errorln("You can't use --force-update and --no-update at same time.");
@@ -205,19 +227,32 @@ public class Application {
     public void run(String[] args) {
         context.setApp(this);
 
-        String[] commandArgs = parseArgs(args);
-        if (commandArgs == null) {
-            return;
-        }
+        try {
+            String[] commandArgs = parseArgs(args);
+            if (commandArgs == null) {
+                return;
+            }
 
-        if (!context.inTests() && !noAutoUpdate && versionCheck()) {
-            return;
-        }
+            if (!context.inTests() && !noAutoUpdate) {
+                startUpdateCheck();
+            }
 
-        runCommand(commandName, commandArgs);
+            runCommand(commandName, commandArgs);
 
+            if (traceFile != null && !context.getTracer().write(traceFile)) {
+                io.errorln("Failed to write the trace into " + traceFile);
+            }
+            finishUpdateCheck();
+        } finally {
+            // all the property changes are written at once, also after --force-update and
+            // a failed command
+            if (!context.commitProperties()) {
+                logger.warn("Failed to save the properties");
+            }
+        }
         if (!context.inTests()) {
             shutdownHandler.disable();
+            context.getMetrics().save(SettingsIo.getConfigDirectory(), LocalDate.now());
         }
     }
 
@@ -228,12 +263,20 @@ public class Application {
         EventSendBuffer eventSendBuffer = new EventSendBuffer(new EventStore());
         AnalyticsFacade analyticsFacade = new AnalyticsFacade(eventSendBuffer);
         Application app = new Application(new CliContext(null, core, new WorkDir(), settings, analyticsFacade));
-        app.run(args);
+        try {
+            app.run(args);
+        } finally {
+            app.io.flush();
+        }
+        CliHttpClient.shutdown();
         // Because of EventSendBuffer
         TmcRequestProcessor.instance.shutdown();
     }
 
-    private boolean versionCheck() {
+    /**
+     * Check if an hour has passed since the previous update check.
+     */
+    private boolean isUpdateCheckDue() {
         Map<String, String> properties = context.getProperties();
         String previousTimestamp = properties.get(previousUpdateDateKey);
         Date previous = null;
@@ -251,8 +294,59 @@ public class Application {
         }
 
         Date now = new Date();
-        return !(previous != null && previous.getTime() + defaultUpdateInterval > now.getTime())
-                && runAutoUpdate();
+        return previous == null || previous.getTime() + defaultUpdateInterval <= now.getTime();
+    }
+
+    /**
+     * Start looking for a new release in a background thread. The command doesn't wait for
+     * it, the result is shown in {@link #finishUpdateCheck()}.
+     */
+    private void startUpdateCheck() {
+        if (!isUpdateCheckDue()) {
+            return;
+        }
+        updater =
+                AutoUpdater.createUpdater(
+                        io, EnvironmentUtil.getVersion(), EnvironmentUtil.isWindows());
+        AutoUpdater checker = updater;
+        LatestRelease cached = LatestRelease.fromProperties(context.getProperties());
+        updateCheck = new FutureTask<>(() -> checker.checkLatestRelease(cached));
+
+        Thread thread = new Thread(updateCheck, "update-check");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Offer the update that the background check found. A check that is still running is
+     * abandoned, so a slow connection never delays the command. It's retried on the next run.
+     */
+    private void finishUpdateCheck() {
+        if (updateCheck == null) {
+            return;
+        }
+        if (!updateCheck.isDone()) {
+            logger.info("Update check didn't finish before the command");
+            updateCheck.cancel(true);
+            return;
+        }
+
+        LatestRelease release = null;
+        try {
+            release = updateCheck.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            logger.warn("Update check failed", ex);
+        }
+
+        Map<String, String> properties = context.getProperties();
+        properties.put(previousUpdateDateKey, Long.toString(new Date().getTime()));
+        if (release != null) {
+            release.saveTo(properties);
+        }
+
+        if (release != null) {
+            updater.offerUpdate(release.getJson());
+        }
     }
 
     public boolean runAutoUpdate() {
@@ -265,7 +359,6 @@ public class Application {
 
         long timestamp = now.getTime();
         properties.put(previousUpdateDateKey, Long.toString(timestamp));
-        context.saveProperties();
         return updated;
     }
 
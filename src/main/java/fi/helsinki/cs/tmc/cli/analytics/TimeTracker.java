@@ -1,6 +1,4 @@
 package fi.helsinki.cs.tmc.cli.analytics;
-import fi.helsinki.cs.tmc.cli.backend.Settings;
-import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
 
 import java.util.HashMap;
@@ -17,11 +15,10 @@ public class TimeTracker {
     public void restart() {
         long startTime = System.nanoTime();
         properties.put(PROPERTY_KEY, Long.toString(startTime));
-        SettingsIo.saveProperties(properties);
     }
 
     public boolean anHourHasPassedSinceLastSubmit() {
-        String submitProperty = SettingsIo.loadProperties().get(PROPERTY_KEY);
+        String submitProperty = properties.get(PROPERTY_KEY);
         if (submitProperty == null) {
             return false;
         }
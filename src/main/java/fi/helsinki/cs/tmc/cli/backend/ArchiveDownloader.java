@@ -0,0 +1,326 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.core.configuration.TmcSettings;
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import com.google.common.base.Optional;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Downloads zip archives, such as model solutions and old submissions, and extracts them
+ * under a root directory.
+ *
+ * <p>The archives are downloaded by a fixed number of threads, and a {@link HostRateLimiter}
+ * spaces out the requests to each host so that downloading a whole course doesn't flood the
+ * server. The checksum of every extracted archive is kept in {@link #MANIFEST_FILE} in the
+ * root directory. An archive whose checksum is known beforehand isn't downloaded again if it
+ * hasn't changed, and the others are compared by the SHA-256 of the downloaded zip.
+ */
+public class ArchiveDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveDownloader.class);
+
+    public static final String MANIFEST_FILE = ".tmc-archives.json";
+    public static final int DEFAULT_THREADS = 4;
+    public static final long DEFAULT_HOST_INTERVAL_MS = 100;
+
+    static final int MAX_ATTEMPTS = 3;
+    private static final long MAX_RETRY_AFTER_MS = 60 * 1000;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Type MANIFEST_TYPE = new TypeToken<Map<String, String>>() {}.getType();
+
+    private final CliHttpClient http;
+    private final String token;
+    private final HostRateLimiter limiter;
+    private final int threads;
+
+    public ArchiveDownloader(
+            CliHttpClient http, TmcSettings settings, HostRateLimiter limiter, int threads) {
+        this.http = http;
+        Optional<String> token = settings.getToken();
+        this.token = token != null && token.isPresent() ? token.get() : null;
+        this.limiter = limiter;
+        this.threads = threads;
+    }
+
+    /**
+     * Download the archives that have changed since they were last extracted.
+     */
+    public Summary download(Path root, List<Archive> archives) throws IOException {
+        return download(root, archives, ProgressObserver.NULL_OBSERVER);
+    }
+
+    /**
+     * Download the archives that have changed since they were last extracted. The index of
+     * each archive in the list is its task id in the observer, and the tasks of the archives
+     * that fail are never ended.
+     */
+    public Summary download(Path root, List<Archive> archives, ProgressObserver observer)
+            throws IOException {
+        Files.createDirectories(root);
+        Map<String, String> manifest = new ConcurrentHashMap<>(readManifest(root));
+        Summary summary = new Summary();
+        if (archives.isEmpty()) {
+            return summary;
+        }
+
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(archives.size(), threads));
+        try {
+            Map<Archive, Future<Boolean>> futures = new HashMap<>();
+            for (int i = 0; i < archives.size(); i++) {
+                Archive archive = archives.get(i);
+                long id = i;
+                futures.put(
+                        archive,
+                        executor.submit(() -> fetch(root, archive, manifest, observer, id)));
+            }
+            for (Archive archive : archives) {
+                try {
+                    if (futures.get(archive).get()) {
+                        summary.downloaded.add(archive.getName());
+                    } else {
+                        summary.unchanged.add(archive.getName());
+                    }
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to download " + archive.getUrl(), e.getCause());
+                    summary.failed.add(archive.getName());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            // keep the checksums of the archives that were extracted before a failure
+            writeManifest(root, manifest);
+        }
+        return summary;
+    }
+
+    /**
+     * Download and extract the archive if it has changed.
+     *
+     * @return false if the archive hadn't changed
+     */
+    private boolean fetch(
+            Path root,
+            Archive archive,
+            Map<String, String> manifest,
+            ProgressObserver observer,
+            long id)
+            throws IOException, InterruptedException {
+        String key = manifestKey(root, archive.getTarget());
+        Path target = archive.getTarget();
+        observer.start(id);
+        if (archive.getChecksum() != null
+                && archive.getChecksum().equals(manifest.get(key))
+                && Files.isDirectory(target)) {
+            observer.progress(id, archive.getName() + " is up to date");
+            observer.end(id);
+            return false;
+        }
+
+        observer.progress(id, 0.0, "Downloading " + archive.getName());
+        byte[] zip = get(archive.getUrl());
+        String checksum =
+                archive.getChecksum() != null ? archive.getChecksum() : "sha256:" + sha256(zip);
+        if (checksum.equals(manifest.get(key)) && Files.isDirectory(target)) {
+            observer.progress(id, archive.getName() + " is up to date");
+            observer.end(id);
+            return false;
+        }
+        observer.progress(id, 0.5, "Extracting " + archive.getName());
+        extract(zip, target);
+        manifest.put(key, checksum);
+        observer.progress(id, 1.0, "Downloaded " + archive.getName());
+        observer.end(id);
+        return true;
+    }
+
+    private byte[] get(URI url) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            limiter.acquire(url);
+            HttpGet request = new HttpGet(url);
+            if (token != null) {
+                request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            }
+            try {
+                return http.execute(
+                        request, response -> EntityUtils.toByteArray(response.getEntity()));
+            } catch (RetryAfterException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                logger.info("Server is busy, retrying {} after {} ms", url, e.getRetryAfter());
+                Thread.sleep(Math.min(e.getRetryAfter(), MAX_RETRY_AFTER_MS));
+            }
+        }
+    }
+
+    /**
+     * Extract the zip next to the target and replace the target with it, so a failed
+     * download never leaves a half-extracted directory behind.
+     */
+    static void extract(byte[] zip, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().normalize().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(".tmp-" + target.getFileName() + "-" + UUID.randomUUID());
+        try {
+            Files.createDirectory(temp);
+            try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    Path file = temp.resolve(entry.getName()).normalize();
+                    if (!file.startsWith(temp)) {
+                        throw new IOException("Invalid path in the archive: " + entry.getName());
+                    }
+                    if (entry.isDirectory()) {
+                        Files.createDirectories(file);
+                    } else {
+                        Files.createDirectories(file.getParent());
+                        Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+            FileUtils.deleteDirectory(target.toFile());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.deleteQuietly(temp.toFile());
+        }
+    }
+
+    private static String manifestKey(Path root, Path target) {
+        Path relative =
+                root.toAbsolutePath()
+                        .normalize()
+                        .relativize(target.toAbsolutePath().normalize());
+        return relative.toString().replace(target.getFileSystem().getSeparator(), "/");
+    }
+
+    private static Map<String, String> readManifest(Path root) {
+        Path file = root.resolve(MANIFEST_FILE);
+        if (!Files.exists(file)) {
+            return Collections.emptyMap();
+        }
+        try (Reader reader = Files.newBufferedReader(file, UTF8)) {
+            Map<String, String> manifest = new Gson().fromJson(reader, MANIFEST_TYPE);
+            return manifest != null ? manifest : Collections.<String, String>emptyMap();
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Ignoring the invalid archive manifest " + file, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static void writeManifest(Path root, Map<String, String> manifest) {
+        byte[] json = new Gson().toJson(new HashMap<>(manifest), MANIFEST_TYPE).getBytes(UTF8);
+        try {
+            LockedFiles.writeAtomically(root.resolve(MANIFEST_FILE), json);
+        } catch (IOException e) {
+            logger.warn("Could not write the archive manifest", e);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A zip to download and the directory where it's extracted.
+     */
+    public static class Archive {
+        private final String name;
+        private final URI url;
+        private final Path target;
+        private final String checksum;
+
+        /**
+         * @param checksum changes whenever the content of the archive changes, or null if
+         *     it's not known before the download
+         */
+        public Archive(String name, URI url, Path target, String checksum) {
+            this.name = name;
+            this.url = url;
+            this.target = target;
+            this.checksum = checksum;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public URI getUrl() {
+            return url;
+        }
+
+        public Path getTarget() {
+            return target;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+
+    /**
+     * Names of the archives by what happened to them.
+     */
+    public static class Summary {
+        private final List<String> downloaded = new ArrayList<>();
+        private final List<String> unchanged = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+
+        public List<String> getDownloaded() {
+            return downloaded;
+        }
+
+        public List<String> getUnchanged() {
+            return unchanged;
+        }
+
+        public List<String> getFailed() {
+            return failed;
+        }
+    }
+}
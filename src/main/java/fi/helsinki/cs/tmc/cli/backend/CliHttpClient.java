@@ -0,0 +1,206 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
+
+import org.apache.http.Header;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client shared by all the requests that tmc-cli makes by itself.
+ *
+ * <p>The connections are pooled and kept alive, so consecutive requests to the same host
+ * don't have to open a new TLS connection. The responses are compressed with gzip when the
+ * server supports it. tmc-core creates its own connections, so its requests don't go
+ * through this client.
+ */
+public class CliHttpClient implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CliHttpClient.class);
+
+    static final int CONNECT_TIMEOUT_MS = 10000;
+    static final int SOCKET_TIMEOUT_MS = 30000;
+    private static final int MAX_CONNECTIONS = 20;
+    private static final int MAX_CONNECTIONS_PER_HOST = 5;
+    private static final long IDLE_CONNECTION_TTL_S = 30;
+    // not in the HttpStatus of httpcore 4.4
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private static CliHttpClient instance;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final AtomicLong requestCount;
+    private final AtomicLong reusedCount;
+
+    /**
+     * Create a separate client. Use {@link #getInstance()} unless you need other timeouts.
+     */
+    public CliHttpClient(int connectTimeoutMs, int socketTimeoutMs) {
+        this.requestCount = new AtomicLong();
+        this.reusedCount = new AtomicLong();
+        this.connectionManager =
+                new PoolingHttpClientConnectionManager(IDLE_CONNECTION_TTL_S, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_HOST);
+
+        RequestConfig config =
+                RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setConnectionRequestTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs)
+                        .build();
+        this.client =
+                HttpClients.custom()
+                        .setConnectionManager(connectionManager)
+                        .setDefaultRequestConfig(config)
+                        .setUserAgent(
+                                "tmc-cli/"
+                                        + EnvironmentUtil.getVersion()
+                                        + " (https://github.com/tmc-cli/tmc-cli)")
+                        .addInterceptorLast(new ReuseCounter())
+                        .evictIdleConnections(IDLE_CONNECTION_TTL_S, TimeUnit.SECONDS)
+                        .build();
+    }
+
+    /**
+     * Get the client of this process. It's created on the first call.
+     */
+    public static synchronized CliHttpClient getInstance() {
+        if (instance == null) {
+            instance = new CliHttpClient(CONNECT_TIMEOUT_MS, SOCKET_TIMEOUT_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Close the client of this process if it has been created and log how many connections
+     * were reused.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Download the body of the URL.
+     *
+     * @throws HttpResponseException if the server didn't respond with 2xx status code
+     * @throws RetryAfterException if the server is overloaded and told when to try again
+     * @throws IOException if the connection fails
+     */
+    public byte[] getBytes(String url) throws IOException {
+        return execute(new HttpGet(url), response -> EntityUtils.toByteArray(response.getEntity()));
+    }
+
+    /**
+     * Send the request and handle the body of a successful response.
+     * The connection is released back into the pool when the handler returns.
+     */
+    public <T> T execute(HttpUriRequest request, BodyHandler<T> handler) throws IOException {
+        ResponseHandler<T> responseHandler =
+                response -> {
+                    StatusLine status = response.getStatusLine();
+                    HttpEntity entity = response.getEntity();
+                    if (status.getStatusCode() < 200 || status.getStatusCode() >= 300) {
+                        EntityUtils.consume(entity);
+                        long retryAfter = getRetryAfter(response);
+                        if (retryAfter >= 0
+                                && (status.getStatusCode() == SC_TOO_MANY_REQUESTS
+                                        || status.getStatusCode()
+                                                == HttpStatus.SC_SERVICE_UNAVAILABLE)) {
+                            throw new RetryAfterException(
+                                    status.getStatusCode(), status.getReasonPhrase(), retryAfter);
+                        }
+                        throw new HttpResponseException(
+                                status.getStatusCode(), status.getReasonPhrase());
+                    }
+                    return handler.handle(response);
+                };
+        return client.execute(request, responseHandler);
+    }
+
+    /**
+     * Get the delay that the Retry-After header of the response asks for.
+     *
+     * @return the delay in milliseconds or -1 if the response has no valid header
+     */
+    public static long getRetryAfter(HttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null) {
+            return -1;
+        }
+        return RetryAfterException.parseRetryAfter(
+                header.getValue(), System.currentTimeMillis());
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Get the number of requests that were sent through an already open connection.
+     */
+    public long getReusedConnectionCount() {
+        return reusedCount.get();
+    }
+
+    @Override
+    public void close() {
+        logger.debug(
+                "HTTP client made {} requests, {} of them over a reused connection",
+                requestCount.get(),
+                reusedCount.get());
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the HTTP client", e);
+        }
+    }
+
+    /**
+     * Reads the body of a successful response.
+     */
+    public interface BodyHandler<T> {
+        T handle(HttpResponse response) throws IOException;
+    }
+
+    private class ReuseCounter implements HttpResponseInterceptor {
+        @Override
+        public void process(HttpResponse response, HttpContext context) {
+            requestCount.incrementAndGet();
+            HttpConnection connection = HttpCoreContext.adapt(context).getConnection();
+            // the request count includes the current request, and the connection may already
+            // be closed if the response doesn't have a body
+            if (connection != null
+                    && connection.isOpen()
+                    && connection.getMetrics().getRequestCount() > 1) {
+                reusedCount.incrementAndGet();
+            }
+        }
+    }
+}
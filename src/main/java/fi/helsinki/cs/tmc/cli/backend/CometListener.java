@@ -0,0 +1,206 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listens to the submission notifications of the user on the comet server of the course.
+ *
+ * <p>The comet server speaks the long-polling transport of the Bayeux protocol: the client
+ * makes a handshake, subscribes to the channel of the user and then keeps a connect request
+ * open. The server answers the connect request when a message is published on the channel,
+ * or after the timeout given in the request when nothing happens. The listener is opened
+ * before the submission is sent, so the notification can't come before the subscription.
+ */
+public class CometListener implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CometListener.class);
+
+    // the server answers the connect request before the socket timeout of the http client
+    static final long CONNECT_TIMEOUT_MS = CliHttpClient.SOCKET_TIMEOUT_MS - 10000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final CliHttpClient http;
+    private final String cometUrl;
+    private final String channel;
+    private final List<String> announced;
+    private String clientId;
+    private int messageId;
+
+    private CometListener(CliHttpClient http, String cometUrl, String username) {
+        this.http = http;
+        this.cometUrl = cometUrl;
+        this.channel = getChannel(username);
+        this.announced = new ArrayList<>();
+    }
+
+    static String getChannel(String username) {
+        return "/broadcast/tmc/user/" + username + "/submission-result";
+    }
+
+    /**
+     * Make the handshake and subscribe to the submission results of the user.
+     *
+     * @param token the oauth token of the user or null
+     * @throws IOException if the comet server can't be used
+     */
+    public static CometListener open(
+            CliHttpClient http, String cometUrl, String username, String token)
+            throws IOException {
+        CometListener listener = new CometListener(http, cometUrl, username);
+        listener.handshake(username, token);
+        listener.subscribe();
+        return listener;
+    }
+
+    private void handshake(String username, String token) throws IOException {
+        JsonObject message = createMessage("/meta/handshake");
+        message.addProperty("version", "1.0");
+        JsonArray connectionTypes = new JsonArray();
+        connectionTypes.add("long-polling");
+        message.add("supportedConnectionTypes", connectionTypes);
+        JsonObject authentication = new JsonObject();
+        authentication.addProperty("username", username);
+        if (token != null) {
+            authentication.addProperty("token", token);
+        }
+        JsonObject ext = new JsonObject();
+        ext.add("authentication", authentication);
+        message.add("ext", ext);
+
+        JsonObject reply = getReply(send(message), "/meta/handshake");
+        JsonElement id = reply.get("clientId");
+        if (id == null || !id.isJsonPrimitive()) {
+            throw new IOException("The comet server didn't return a client id");
+        }
+        clientId = id.getAsString();
+    }
+
+    private void subscribe() throws IOException {
+        JsonObject message = createMessage("/meta/subscribe");
+        message.addProperty("subscription", channel);
+        getReply(send(message), "/meta/subscribe");
+    }
+
+    /**
+     * Wait until the server announces that the submission has been processed.
+     *
+     * @return false if there was no announcement in time
+     * @throws IOException if the connection to the comet server fails
+     */
+    public boolean awaitResult(URI submissionUrl, long timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        String url = submissionUrl.toString();
+        while (!announced.contains(url)) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            connect(Math.min(remaining, CONNECT_TIMEOUT_MS));
+        }
+        return true;
+    }
+
+    private void connect(long timeoutMs) throws IOException {
+        JsonObject message = createMessage("/meta/connect");
+        message.addProperty("connectionType", "long-polling");
+        JsonObject advice = new JsonObject();
+        advice.addProperty("timeout", timeoutMs);
+        message.add("advice", advice);
+
+        JsonArray messages = send(message);
+        getReply(messages, "/meta/connect");
+        for (JsonElement element : messages) {
+            JsonObject received = element.getAsJsonObject();
+            JsonElement data = received.get("data");
+            if (!channel.equals(getString(received, "channel"))
+                    || data == null
+                    || !data.isJsonObject()) {
+                continue;
+            }
+            String url = getString(data.getAsJsonObject(), "submission_url");
+            if (url != null) {
+                logger.debug("Comet server announced the result of {}", url);
+                announced.add(url);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (clientId == null) {
+            return;
+        }
+        try {
+            send(createMessage("/meta/disconnect"));
+        } catch (IOException e) {
+            logger.debug("Failed to disconnect from the comet server", e);
+        }
+        clientId = null;
+    }
+
+    private JsonObject createMessage(String metaChannel) {
+        JsonObject message = new JsonObject();
+        message.addProperty("channel", metaChannel);
+        message.addProperty("id", Integer.toString(++messageId));
+        if (clientId != null) {
+            message.addProperty("clientId", clientId);
+        }
+        return message;
+    }
+
+    private JsonArray send(JsonObject message) throws IOException {
+        JsonArray body = new JsonArray();
+        body.add(message);
+        HttpPost request = new HttpPost(cometUrl);
+        request.setEntity(new StringEntity(body.toString(), ContentType.APPLICATION_JSON));
+        String response =
+                http.execute(request, r -> EntityUtils.toString(r.getEntity(), UTF8));
+        try {
+            return new JsonParser().parse(response).getAsJsonArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Invalid response from the comet server", e);
+        }
+    }
+
+    private static JsonObject getReply(JsonArray messages, String metaChannel)
+            throws IOException {
+        for (JsonElement element : messages) {
+            if (!element.isJsonObject()) {
+                throw new IOException("Invalid response from the comet server");
+            }
+            JsonObject reply = element.getAsJsonObject();
+            if (!metaChannel.equals(getString(reply, "channel"))) {
+                continue;
+            }
+            JsonElement successful = reply.get("successful");
+            if (successful == null || !successful.getAsBoolean()) {
+                throw new IOException(
+                        "Comet request " + metaChannel + " failed: " + getString(reply, "error"));
+            }
+            return reply;
+        }
+        throw new IOException("The comet server didn't reply to " + metaChannel);
+    }
+
+    private static String getString(JsonObject object, String key) {
+        JsonElement value = object.get(key);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+}
@@ -5,6 +5,8 @@ import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 import fi.helsinki.cs.tmc.core.domain.Organization;
 
+import com.google.gson.JsonElement;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,6 +23,13 @@ public class CourseInfo {
     private List<String> localCompletedExercises;
     private HashMap<String, String> properties;
 
+    // the state that was last read from or written to the file, for merging the changes
+    private transient JsonElement savedState;
+
+    private static final String SUBMITTED_DIGEST_PREFIX = "submitted-digest.";
+    private static final String PENDING_SUBMISSION_PREFIX = "pending-submission.";
+    private static final String PENDING_DIGEST_PREFIX = "pending-digest.";
+
     public CourseInfo(Account account, Course course) {
         this.username = account.getUsername().orNull();
         this.serverAddress = account.getServerAddress();
@@ -160,7 +169,51 @@ public class CourseInfo {
         return this.properties.get(prop);
     }
 
+    /**
+     * Get the digest of the exercise files at the last submission that passed.
+     */
+    public String getSubmittedDigest(String exerciseName) {
+        return getPropertyString(SUBMITTED_DIGEST_PREFIX + exerciseName);
+    }
+
+    public void setSubmittedDigest(String exerciseName, String digest) {
+        setProperty(SUBMITTED_DIGEST_PREFIX + exerciseName, digest);
+    }
+
+    /**
+     * Get the URL of the submission that was sent without waiting for the result, or null
+     * if there is none.
+     */
+    public String getPendingSubmission(String exerciseName) {
+        return getPropertyString(PENDING_SUBMISSION_PREFIX + exerciseName);
+    }
+
+    /**
+     * Get the digest of the exercise files when the pending submission was sent.
+     */
+    public String getPendingDigest(String exerciseName) {
+        return getPropertyString(PENDING_DIGEST_PREFIX + exerciseName);
+    }
+
+    public void setPendingSubmission(String exerciseName, String submissionUrl, String digest) {
+        setProperty(PENDING_SUBMISSION_PREFIX + exerciseName, submissionUrl);
+        setProperty(PENDING_DIGEST_PREFIX + exerciseName, digest);
+    }
+
+    public void removePendingSubmission(String exerciseName) {
+        removeProperty(PENDING_SUBMISSION_PREFIX + exerciseName);
+        removeProperty(PENDING_DIGEST_PREFIX + exerciseName);
+    }
+
     public int getPropertyInt(String prop) {
         return Integer.parseInt(this.properties.get(prop));
     }
+
+    JsonElement getSavedState() {
+        return savedState;
+    }
+
+    void setSavedState(JsonElement savedState) {
+        this.savedState = savedState;
+    }
 }
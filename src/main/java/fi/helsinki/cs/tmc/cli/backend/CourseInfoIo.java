@@ -5,6 +5,8 @@ import fi.helsinki.cs.tmc.cli.command.OrganizationCommand;
 import fi.helsinki.cs.tmc.core.domain.Course;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
 import fi.helsinki.cs.tmc.core.domain.Organization;
 import fi.helsinki.cs.tmc.core.holders.TmcSettingsHolder;
 import org.slf4j.Logger;
@@ -18,6 +20,10 @@ import java.nio.file.Path;
 
 /**
  * Class for reading and writing to course config files (.tmc.json)
+ *
+ * <p>Many tmc commands may run in the same course directory at once, so the file is written
+ * while holding a lock on a sidecar lock file, merged with what's on the disk and replaced
+ * with an atomic rename.
  */
 public class CourseInfoIo {
 
@@ -28,43 +34,83 @@ public class CourseInfoIo {
     // Contains username, server and course name.
     public static final String COURSE_CONFIG = ".tmc.json";
 
+    // The course file is written while holding a lock on a file with this suffix next to it
+    public static final String LOCK_SUFFIX = ".lock";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Write the course info into the file. If the info was loaded from the file, the file is
+     * read again and only the changes made to the info since then are merged into it, so the
+     * changes made by other tmc processes in the meantime aren't lost.
+     */
     public static Boolean save(CourseInfo course, Path courseInfoFile) {
-        Gson gson = new Gson();
-        byte[] json = gson.toJson(course).getBytes();
+        JsonElement ours = new Gson().toJsonTree(course);
         try {
             Files.createDirectories(courseInfoFile.getParent());
-            Files.write(courseInfoFile, json);
         } catch (IOException e) {
             //TODO print to user
             logger.error("Could not create course file", e);
             return false;
         }
+        return LockedFiles.withLock(
+                getLockFile(courseInfoFile), () -> writeMerged(course, ours, courseInfoFile));
+    }
+
+    private static boolean writeMerged(CourseInfo course, JsonElement ours, Path file) {
+        Gson gson = new Gson();
+        JsonElement merged = ours;
+        if (course.getSavedState() != null && Files.exists(file)) {
+            CourseInfo current = load(file);
+            if (current != null) {
+                merged = JsonMerge.merge(course.getSavedState(), ours, gson.toJsonTree(current));
+            }
+        }
+        try {
+            LockedFiles.writeAtomically(file, gson.toJson(merged).getBytes(UTF8));
+        } catch (IOException e) {
+            //TODO print to user
+            logger.error("Could not create course file", e);
+            return false;
+        }
+        course.setSavedState(ours);
         return true;
     }
 
     public static CourseInfo load(Path courseInfoFile) {
-        Gson gson = new Gson();
         if (!Files.exists(courseInfoFile)) {
             //Return null if file is not found, this is normal behaviour
             return null;
         }
-        Reader reader;
-        try {
-            reader = Files.newBufferedReader(courseInfoFile, Charset.forName("UTF-8"));
-        } catch (IOException e) {
+        Gson gson = new Gson();
+        CourseInfo info;
+        try (Reader reader = Files.newBufferedReader(courseInfoFile, UTF8)) {
+            info = gson.fromJson(reader, CourseInfo.class);
+        } catch (IOException | JsonParseException e) {
             //TODO print to user
             logger.error("Course file located, but failed to read from it", e);
             return null;
         }
-        return gson.fromJson(reader, CourseInfo.class);
+        if (info != null) {
+            info.setSavedState(gson.toJsonTree(info));
+        }
+        return info;
+    }
+
+    /**
+     * Get the file that is locked while the course file is written.
+     */
+    public static Path getLockFile(Path courseInfoFile) {
+        return courseInfoFile.resolveSibling(courseInfoFile.getFileName() + LOCK_SUFFIX);
     }
 
-    public static void createNewCourse(Course course, Account account, Path parentDir) {
+    public static CourseInfo createNewCourse(Course course, Account account, Path parentDir) {
         Path configFile = parentDir.resolve(course.getName()).resolve(CourseInfoIo.COURSE_CONFIG);
 
         CourseInfo info = new CourseInfo(account, course);
         info.setExercises(course.getExercises());
         CourseInfoIo.save(info, configFile);
+        return info;
     }
 
     public static void deleteConfigDirectory(Course course, Path parentDir) {
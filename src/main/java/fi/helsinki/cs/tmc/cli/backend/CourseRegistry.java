@@ -0,0 +1,206 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Index of the course directories on this computer.
+ *
+ * <p>The commands that download or update a course register its directory, so the local
+ * courses can be listed without scanning the disk. The entries aren't removed when a course
+ * directory is deleted, so the entries whose course file is gone are dropped when the index
+ * is read.
+ */
+public class CourseRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(CourseRegistry.class);
+
+    // REGISTRY_FILE is located under CONFIG_DIR
+    public static final String REGISTRY_FILE = "courses.json";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Type ENTRY_LIST = new TypeToken<List<Entry>>() {}.getType();
+
+    // null if the config directory is unknown, then nothing is registered
+    private final Path configRoot;
+
+    public CourseRegistry(Path configRoot) {
+        this.configRoot = configRoot;
+    }
+
+    /**
+     * Open the registry in the config directory.
+     */
+    public static CourseRegistry open() {
+        return new CourseRegistry(SettingsIo.getConfigDirectory());
+    }
+
+    /**
+     * Add or refresh the entry of the course directory. The sync time of the entry is set
+     * to the current time.
+     */
+    public boolean register(CourseInfo info, Path courseDirectory) {
+        Entry entry = new Entry(courseDirectory, info, System.currentTimeMillis());
+        return update(
+                entries -> {
+                    entries.removeIf(old -> old.path.equals(entry.path));
+                    entries.add(entry);
+                    return true;
+                });
+    }
+
+    public boolean unregister(Path courseDirectory) {
+        String path = Entry.normalize(courseDirectory);
+        return update(entries -> entries.removeIf(old -> old.path.equals(path)));
+    }
+
+    /**
+     * Get the entries whose course file still exists. The other entries are removed from
+     * the registry.
+     */
+    public List<Entry> getEntries() {
+        List<Entry> entries = read();
+        List<Entry> valid = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.isValid()) {
+                valid.add(entry);
+            }
+        }
+        if (valid.size() != entries.size()) {
+            update(current -> current.removeIf(entry -> !entry.isValid()));
+        }
+        return valid;
+    }
+
+    /**
+     * Find the directories where the course has been downloaded from the server.
+     */
+    public List<Entry> findCourse(String courseName, String serverAddress) {
+        List<Entry> found = new ArrayList<>();
+        for (Entry entry : getEntries()) {
+            if (entry.course.equals(courseName)
+                    && Objects.equals(entry.serverAddress, serverAddress)) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Change the entries while holding the config lock.
+     *
+     * @param change changes the list and returns true if it needs to be written
+     */
+    private boolean update(Predicate<List<Entry>> change) {
+        if (configRoot == null) {
+            return false;
+        }
+        try {
+            Files.createDirectories(configRoot);
+        } catch (IOException e) {
+            logger.warn("Could not create the config directory", e);
+            return false;
+        }
+        return LockedFiles.withLock(
+                configRoot.resolve(SettingsIo.LOCK_FILE),
+                () -> {
+                    List<Entry> entries = read();
+                    if (!change.test(entries)) {
+                        return true;
+                    }
+                    byte[] json = new Gson().toJson(entries, ENTRY_LIST).getBytes(UTF8);
+                    try {
+                        LockedFiles.writeAtomically(configRoot.resolve(REGISTRY_FILE), json);
+                    } catch (IOException e) {
+                        logger.warn("Could not write the course registry", e);
+                        return false;
+                    }
+                    return true;
+                });
+    }
+
+    private List<Entry> read() {
+        List<Entry> entries = new ArrayList<>();
+        if (configRoot == null || !Files.exists(configRoot.resolve(REGISTRY_FILE))) {
+            return entries;
+        }
+        try (Reader reader = Files.newBufferedReader(configRoot.resolve(REGISTRY_FILE), UTF8)) {
+            List<Entry> stored = new Gson().fromJson(reader, ENTRY_LIST);
+            if (stored != null) {
+                for (Entry entry : stored) {
+                    if (entry != null && entry.path != null && entry.course != null) {
+                        entries.add(entry);
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            // the registry is only a cache, so it's rebuilt from scratch
+            logger.warn("Could not read the course registry", e);
+        }
+        return entries;
+    }
+
+    public static class Entry {
+
+        private String path;
+        private String course;
+        private String username;
+        private String serverAddress;
+        private long lastSync;
+
+        Entry(Path directory, CourseInfo info, long lastSync) {
+            this.path = normalize(directory);
+            this.course = info.getCourseName();
+            this.username = info.getUsername();
+            this.serverAddress = info.getServerAddress();
+            this.lastSync = lastSync;
+        }
+
+        private static String normalize(Path directory) {
+            return directory.toAbsolutePath().normalize().toString();
+        }
+
+        private boolean isValid() {
+            return Files.exists(getPath().resolve(CourseInfoIo.COURSE_CONFIG));
+        }
+
+        public Path getPath() {
+            return Paths.get(path);
+        }
+
+        public String getCourseName() {
+            return course;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getServerAddress() {
+            return serverAddress;
+        }
+
+        /**
+         * Get the time when the course was last downloaded or updated, in milliseconds since
+         * epoch.
+         */
+        public long getLastSync() {
+            return lastSync;
+        }
+    }
+}
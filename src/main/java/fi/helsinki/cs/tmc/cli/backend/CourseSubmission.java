@@ -0,0 +1,42 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+/**
+ * A submission in the list of all the submissions of a course. Only the course staff can
+ * list the submissions of the other users.
+ */
+public class CourseSubmission {
+
+    private int id;
+    private int userId;
+    private String exerciseName;
+    private String submittedZipUrl;
+
+    public CourseSubmission() {
+    }
+
+    public CourseSubmission(int id, int userId, String exerciseName, String submittedZipUrl) {
+        this.id = id;
+        this.userId = userId;
+        this.exerciseName = exerciseName;
+        this.submittedZipUrl = submittedZipUrl;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getExerciseName() {
+        return exerciseName;
+    }
+
+    /**
+     * Get the URL of the submitted zip, or null if the server didn't tell it.
+     */
+    public String getSubmittedZipUrl() {
+        return submittedZipUrl;
+    }
+}
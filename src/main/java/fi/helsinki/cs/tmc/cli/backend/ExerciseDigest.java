@@ -0,0 +1,118 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SHA-256 digest of the files in an exercise directory.
+ *
+ * <p>The digest covers the relative paths and the contents of the {@link StudentFiles}, so it
+ * changes when a file is edited, added, removed or renamed. The other files are ignored, since
+ * they aren't submitted and the build output changes without the student changing the
+ * exercise.
+ */
+public class ExerciseDigest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExerciseDigest.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private ExerciseDigest() {}
+
+    /**
+     * Compute the digest of one exercise directory.
+     *
+     * @return hex encoded digest or null if the directory doesn't exist
+     */
+    public static String compute(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Path> files = StudentFiles.list(directory);
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        for (Path file : files) {
+            // the separator is the same on all platforms
+            String name = file.toString().replace('\\', '/');
+            digest.update(name.getBytes(UTF8));
+            digest.update((byte) 0);
+            digest.update(Long.toString(Files.size(directory.resolve(file))).getBytes(UTF8));
+            digest.update((byte) 0);
+            try (InputStream in = Files.newInputStream(directory.resolve(file))) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Compute the digests of many exercise directories in parallel.
+     *
+     * @return digests by the keys of the directories, null if a directory couldn't be read
+     */
+    public static <K> Map<K, String> computeAll(Map<K, Path> directories) {
+        Map<K, String> digests = new LinkedHashMap<>();
+        if (directories.isEmpty()) {
+            return digests;
+        }
+        int threads =
+                Math.min(directories.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<K, Future<String>> futures = new LinkedHashMap<>();
+            for (Map.Entry<K, Path> entry : directories.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> compute(entry.getValue())));
+            }
+            for (Map.Entry<K, Future<String>> entry : futures.entrySet()) {
+                digests.put(entry.getKey(), getQuietly(entry.getValue()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return digests;
+    }
+
+    private static String getQuietly(Future<String> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            logger.warn("Failed to compute the digest of an exercise", ex.getCause());
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.core.exceptions.FailedHttpResponseException;
+import fi.helsinki.cs.tmc.core.exceptions.ObsoleteClientException;
+import fi.helsinki.cs.tmc.core.exceptions.ShowToUserException;
+
+import org.apache.oltu.oauth2.common.exception.OAuthProblemException;
+import org.apache.oltu.oauth2.common.exception.OAuthSystemException;
+
+import java.net.UnknownHostException;
+
+/**
+ * Reasons why an operation in tmc-core can fail.
+ */
+public enum FailureCategory {
+    AUTHENTICATION("authentication"),
+    INVALID_ARGUMENTS("invalid_arguments"),
+    HTTP_FAILURE("http_failure"),
+    UNKNOWN_HOST("unknown_host"),
+    OBSOLETE_CLIENT("obsolete_client"),
+    OAUTH_SYSTEM("oauth_system"),
+    NO_CONNECTION("no_connection"),
+    SHOW_TO_USER("show_to_user"),
+    OTHER("other");
+
+    private final String label;
+
+    FailureCategory(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Short name of the category used in the metrics.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Find out the category of an exception thrown by tmc-core.
+     */
+    public static FailureCategory of(Exception exception) {
+        Throwable cause = exception.getCause();
+
+        if (cause instanceof OAuthProblemException) {
+            return AUTHENTICATION;
+        }
+        if (exception instanceof IllegalArgumentException) {
+            return INVALID_ARGUMENTS;
+        }
+        if (cause instanceof FailedHttpResponseException) {
+            return HTTP_FAILURE;
+        }
+        if (exception instanceof UnknownHostException) {
+            return UNKNOWN_HOST;
+        }
+        if (cause instanceof ObsoleteClientException) {
+            return OBSOLETE_CLIENT;
+        }
+        if (cause instanceof OAuthSystemException) {
+            return OAUTH_SYSTEM;
+        }
+        if (cause != null && cause.getCause() instanceof UnknownHostException) {
+            return NO_CONNECTION;
+        }
+        if (cause instanceof ShowToUserException) {
+            return SHOW_TO_USER;
+        }
+        return OTHER;
+    }
+}
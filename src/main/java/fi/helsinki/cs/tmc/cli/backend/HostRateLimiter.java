@@ -0,0 +1,49 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spaces out the requests to each host.
+ *
+ * <p>A thread that wants to send a request reserves the next free slot of the host and sleeps
+ * until it, so the requests to one host start at least the interval apart however many
+ * threads are downloading. Requests to different hosts don't wait for each other.
+ */
+public class HostRateLimiter {
+
+    private final long intervalMs;
+    // the earliest time when the next request to the host may start
+    private final Map<String, Long> nextSlots;
+
+    public HostRateLimiter(long intervalMs) {
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("The interval can't be negative");
+        }
+        this.intervalMs = intervalMs;
+        this.nextSlots = new HashMap<>();
+    }
+
+    /**
+     * Wait until a request to the host of the URL may be sent.
+     */
+    public void acquire(URI url) throws InterruptedException {
+        long delay = reserve(String.valueOf(url.getHost()), System.currentTimeMillis());
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Reserve the next slot of the host.
+     *
+     * @return how long to wait for the slot in milliseconds
+     */
+    synchronized long reserve(String host, long now) {
+        Long next = nextSlots.get(host);
+        long slot = next == null ? now : Math.max(next, now);
+        nextSlots.put(host, slot + intervalMs);
+        return slot - now;
+    }
+}
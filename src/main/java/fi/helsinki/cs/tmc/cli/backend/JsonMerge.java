@@ -0,0 +1,171 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Three-way merge of json documents.
+ *
+ * <p>Base is the document both sides started from, ours has the changes of this process and
+ * theirs is what other processes have written since. Whatever only one side changed is taken
+ * from that side. Objects are merged key by key, arrays of objects with a name (such as the
+ * exercises) are merged element by element and arrays of plain values (such as the exercise
+ * names) are merged as sets. When both sides change the same value, ours wins.
+ */
+class JsonMerge {
+
+    private JsonMerge() {}
+
+    static JsonElement merge(JsonElement base, JsonElement ours, JsonElement theirs) {
+        base = orNull(base);
+        ours = orNull(ours);
+        theirs = orNull(theirs);
+
+        if (ours.equals(base)) {
+            return theirs;
+        }
+        if (theirs.equals(base) || ours.equals(theirs)) {
+            return ours;
+        }
+        if (ours.isJsonObject() && theirs.isJsonObject() && !base.isJsonPrimitive()) {
+            return mergeObjects(asObject(base), ours.getAsJsonObject(), theirs.getAsJsonObject());
+        }
+        if (ours.isJsonArray() && theirs.isJsonArray() && !base.isJsonPrimitive()) {
+            List<JsonElement> baseList = asList(base);
+            List<JsonElement> ourList = asList(ours);
+            List<JsonElement> theirList = asList(theirs);
+            if (allNamed(baseList) && allNamed(ourList) && allNamed(theirList)) {
+                return mergeNamed(baseList, ourList, theirList);
+            }
+            if (allPrimitive(baseList) && allPrimitive(ourList) && allPrimitive(theirList)) {
+                return mergeSets(baseList, ourList, theirList);
+            }
+        }
+        return ours;
+    }
+
+    private static JsonObject mergeObjects(JsonObject base, JsonObject ours, JsonObject theirs) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Map.Entry<String, JsonElement> entry : theirs.entrySet()) {
+            keys.add(entry.getKey());
+        }
+        for (Map.Entry<String, JsonElement> entry : ours.entrySet()) {
+            keys.add(entry.getKey());
+        }
+
+        JsonObject merged = new JsonObject();
+        for (String key : keys) {
+            JsonElement value = merge(base.get(key), ours.get(key), theirs.get(key));
+            if (!value.isJsonNull()) {
+                merged.add(key, value);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Merge the arrays by the names of the elements. The elements keep the order of theirs
+     * and the elements only we added go to the end.
+     */
+    private static JsonArray mergeNamed(
+            List<JsonElement> base, List<JsonElement> ours, List<JsonElement> theirs) {
+        Map<String, JsonElement> baseByName = byName(base);
+        Map<String, JsonElement> ourByName = byName(ours);
+        Map<String, JsonElement> theirByName = byName(theirs);
+
+        JsonArray merged = new JsonArray();
+        for (Map.Entry<String, JsonElement> entry : theirByName.entrySet()) {
+            String name = entry.getKey();
+            if (baseByName.containsKey(name) && !ourByName.containsKey(name)) {
+                // we removed it
+                continue;
+            }
+            merged.add(merge(baseByName.get(name), ourByName.get(name), entry.getValue()));
+        }
+        for (Map.Entry<String, JsonElement> entry : ourByName.entrySet()) {
+            String name = entry.getKey();
+            if (!baseByName.containsKey(name) && !theirByName.containsKey(name)) {
+                merged.add(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static JsonArray mergeSets(
+            List<JsonElement> base, List<JsonElement> ours, List<JsonElement> theirs) {
+        Set<JsonElement> merged = new LinkedHashSet<>(theirs);
+        for (JsonElement element : base) {
+            if (!ours.contains(element)) {
+                merged.remove(element);
+            }
+        }
+        for (JsonElement element : ours) {
+            if (!base.contains(element)) {
+                merged.add(element);
+            }
+        }
+
+        JsonArray array = new JsonArray();
+        for (JsonElement element : merged) {
+            array.add(element);
+        }
+        return array;
+    }
+
+    private static JsonElement orNull(JsonElement element) {
+        return element != null ? element : JsonNull.INSTANCE;
+    }
+
+    private static JsonObject asObject(JsonElement element) {
+        return element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
+    }
+
+    private static List<JsonElement> asList(JsonElement element) {
+        List<JsonElement> list = new ArrayList<>();
+        if (element.isJsonArray()) {
+            for (JsonElement child : element.getAsJsonArray()) {
+                list.add(child);
+            }
+        }
+        return list;
+    }
+
+    private static boolean allNamed(List<JsonElement> elements) {
+        for (JsonElement element : elements) {
+            if (!element.isJsonObject()) {
+                return false;
+            }
+            JsonElement name = element.getAsJsonObject().get("name");
+            if (name == null || !name.isJsonPrimitive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allPrimitive(List<JsonElement> elements) {
+        for (JsonElement element : elements) {
+            if (!element.isJsonPrimitive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, JsonElement> byName(List<JsonElement> elements) {
+        Map<String, JsonElement> map = new LinkedHashMap<>();
+        for (JsonElement element : elements) {
+            map.put(element.getAsJsonObject().get("name").getAsString(), element);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,85 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Locking and atomic writes for the files that many tmc processes may write at once.
+ */
+public class LockedFiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(LockedFiles.class);
+
+    // the file locks are held by the whole JVM, so the threads take turns with these locks
+    private static final ConcurrentMap<Path, ReentrantLock> threadLocks =
+            new ConcurrentHashMap<>();
+
+    private LockedFiles() {}
+
+    /**
+     * Run the action while holding a lock on the lock file. The lock is held both against
+     * the other threads and the other processes, and a thread that already holds it can
+     * take it again.
+     *
+     * @return the result of the action or false if the lock couldn't be taken
+     */
+    public static boolean withLock(Path lockFile, Supplier<Boolean> action) {
+        ReentrantLock threadLock =
+                threadLocks.computeIfAbsent(
+                        lockFile.toAbsolutePath().normalize(), path -> new ReentrantLock());
+        threadLock.lock();
+        try {
+            if (threadLock.getHoldCount() > 1) {
+                return action.get();
+            }
+            try (FileChannel channel =
+                            FileChannel.open(
+                                    lockFile,
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.WRITE);
+                    FileLock lock = channel.lock()) {
+                return action.get();
+            } catch (IOException e) {
+                logger.error("Could not lock " + lockFile, e);
+                return false;
+            }
+        } finally {
+            threadLock.unlock();
+        }
+    }
+
+    /**
+     * Write the file into a temporary file next to it and rename it over the old one, so
+     * the readers never see a half written file.
+     */
+    public static void writeAtomically(Path file, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(
+                        temp,
+                        file,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import java.util.Random;
+
+/**
+ * The delays between the requests when a submission result is polled.
+ *
+ * <p>The delay doubles after each request until it reaches the maximum. Each delay is
+ * randomly shortened by up to a half, so the students who submitted at the same moment of a
+ * deadline rush don't keep polling at the same moments.
+ */
+public class PollSchedule {
+
+    public static final long DEFAULT_INITIAL_DELAY_MS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MS = 16000;
+
+    public static final PollSchedule DEFAULT =
+            new PollSchedule(DEFAULT_INITIAL_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+
+    public PollSchedule(long initialDelayMs, long maxDelayMs) {
+        if (initialDelayMs <= 0 || maxDelayMs < initialDelayMs) {
+            throw new IllegalArgumentException(
+                    "The maximum delay must be at least the initial delay");
+        }
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Parse the schedule from the property value "INITIAL,MAX" where the delays are in
+     * seconds, for example "1,16".
+     *
+     * @throws IllegalArgumentException if the value isn't valid
+     */
+    public static PollSchedule parse(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException(
+                    "Please write the initial and maximum delay in seconds, for example 1,16");
+        }
+        try {
+            double initial = Double.parseDouble(parts[0].trim());
+            double max = Double.parseDouble(parts[1].trim());
+            return new PollSchedule((long) (initial * 1000), (long) (max * 1000));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Please write the initial and maximum delay in seconds, for example 1,16");
+        }
+    }
+
+    /**
+     * Get the schedule of the property value, or the default schedule if the value isn't set
+     * or is invalid.
+     */
+    public static PollSchedule parseOrDefault(String value) {
+        if (value == null) {
+            return DEFAULT;
+        }
+        try {
+            return parse(value);
+        } catch (IllegalArgumentException e) {
+            return DEFAULT;
+        }
+    }
+
+    public long getInitialDelay() {
+        return initialDelayMs;
+    }
+
+    public long getMaxDelay() {
+        return maxDelayMs;
+    }
+
+    /**
+     * Get the delay before the next request without the jitter.
+     *
+     * @param attempt the number of requests made so far, starting from 1
+     */
+    public long getBaseDelay(int attempt) {
+        long delay = initialDelayMs;
+        for (int i = 1; i < attempt && delay < maxDelayMs; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxDelayMs);
+    }
+
+    /**
+     * Get the delay before the next request. It's between a half of the base delay and the
+     * base delay.
+     */
+    public long getDelay(int attempt, Random random) {
+        long base = getBaseDelay(attempt);
+        long half = base / 2;
+        return base - half + (long) (random.nextDouble() * half);
+    }
+}
@@ -0,0 +1,89 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The properties of tmc-cli, loaded once per process.
+ *
+ * <p>The commands change the map returned by {@link #getProperties()} freely. The changes
+ * are found by comparing the map to the values that were loaded, and {@link #commit()}
+ * merges only the changed keys into the properties file, so the changes that other tmc
+ * processes made to other keys in the meantime are kept.
+ */
+public class PropertyStore {
+
+    private final Path configRoot;
+    private final HashMap<String, String> properties;
+    private HashMap<String, String> committed;
+
+    /**
+     * Create the store of the properties loaded from the config directory.
+     */
+    public static PropertyStore load() {
+        return new PropertyStore(SettingsIo.getConfigDirectory(), SettingsIo.loadProperties());
+    }
+
+    public PropertyStore(Path configRoot, HashMap<String, String> loaded) {
+        this.configRoot = configRoot;
+        this.properties = loaded != null ? loaded : new HashMap<>();
+        this.committed = new HashMap<>(this.properties);
+    }
+
+    /**
+     * Get the mutable map of the properties.
+     */
+    public HashMap<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Get the keys that have been added or changed since the properties were loaded or
+     * committed, with their new values.
+     */
+    public Map<String, String> getChangedProperties() {
+        Map<String, String> changed = new HashMap<>();
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (!Objects.equals(committed.get(entry.getKey()), entry.getValue())
+                    || !committed.containsKey(entry.getKey())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Get the keys that have been removed since the properties were loaded or committed.
+     */
+    public Set<String> getRemovedProperties() {
+        Set<String> removed = new HashSet<>(committed.keySet());
+        removed.removeAll(properties.keySet());
+        return removed;
+    }
+
+    public boolean isDirty() {
+        return !getChangedProperties().isEmpty() || !getRemovedProperties().isEmpty();
+    }
+
+    /**
+     * Write the changed properties into the properties file.
+     *
+     * @return true if there was nothing to write or the write succeeded
+     */
+    public boolean commit() {
+        Map<String, String> changed = getChangedProperties();
+        Set<String> removed = getRemovedProperties();
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return true;
+        }
+        if (!SettingsIo.updatePropertiesIn(configRoot, changed, removed)) {
+            return false;
+        }
+        committed = new HashMap<>(properties);
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Random;
+
+/**
+ * Polls the result of a submission until the server has processed it.
+ *
+ * <p>The delays between the requests come from a {@link PollSchedule}, so a long queue in
+ * the sandbox doesn't mean a request every second from every student. When the server tells
+ * how long to wait with a Retry-After header, the poller waits at least that long.
+ */
+public class ResultPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultPoller.class);
+
+    public static final long TIMEOUT_MS = 10 * 60 * 1000;
+
+    private final SubmissionClient client;
+    private final PollSchedule schedule;
+    private final long timeoutMs;
+    private final Random random;
+
+    public ResultPoller(SubmissionClient client) {
+        this(client, PollSchedule.DEFAULT, TIMEOUT_MS);
+    }
+
+    public ResultPoller(SubmissionClient client, PollSchedule schedule, long timeoutMs) {
+        this.client = client;
+        this.schedule = schedule;
+        this.timeoutMs = timeoutMs;
+        this.random = new Random();
+    }
+
+    /**
+     * Wait until the submission has been processed.
+     *
+     * @throws IOException if fetching the result fails or the result isn't ready in time
+     */
+    public SubmissionResult waitForResult(URI submissionUrl)
+            throws IOException, InterruptedException {
+        return waitForResult(submissionUrl, null);
+    }
+
+    /**
+     * Wait until the submission has been processed.
+     *
+     * @param listener gets the status after each request while the submission is processed,
+     *     may be null
+     * @throws IOException if fetching the result fails or the result isn't ready in time
+     */
+    public SubmissionResult waitForResult(URI submissionUrl, Listener listener)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        int requests = 0;
+        while (true) {
+            long retryAfter;
+            requests++;
+            try {
+                SubmissionStatus status = client.fetchStatus(submissionUrl);
+                if (!status.isProcessing()) {
+                    logger.info("Got the submission result after {} requests", requests);
+                    return status.getResult();
+                }
+                if (listener != null) {
+                    listener.processing(status);
+                }
+                retryAfter = status.getRetryAfter();
+            } catch (RetryAfterException e) {
+                logger.info("Server is busy, retrying after {} ms", e.getRetryAfter());
+                retryAfter = e.getRetryAfter();
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("The submission wasn't processed in time");
+            }
+            long delay = Math.max(schedule.getDelay(requests, random), retryAfter);
+            Thread.sleep(Math.min(delay, remaining));
+        }
+    }
+
+    /**
+     * Follows the progress of the submission in the queue.
+     */
+    public interface Listener {
+        void processing(SubmissionStatus status);
+    }
+}
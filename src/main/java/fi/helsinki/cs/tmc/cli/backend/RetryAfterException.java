@@ -0,0 +1,41 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.Date;
+
+/**
+ * The server is overloaded and told how long to wait before the next request.
+ */
+public class RetryAfterException extends HttpResponseException {
+
+    private final long retryAfterMs;
+
+    public RetryAfterException(int statusCode, String reasonPhrase, long retryAfterMs) {
+        super(statusCode, reasonPhrase);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfter() {
+        return retryAfterMs;
+    }
+
+    /**
+     * Parse the value of a Retry-After header, which is either the number of seconds or a
+     * date.
+     *
+     * @return the delay in milliseconds or -1 if the value isn't valid
+     */
+    public static long parseRetryAfter(String value, long now) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value.trim());
+            return date != null ? Math.max(0, date.getTime() - now) : -1;
+        }
+    }
+}
@@ -14,11 +14,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Reads and writes to config files on the system.
+ *
+ * <p>Many tmc processes may use the same config files at once, so the files are written
+ * while holding a lock on {@link #LOCK_FILE} and replaced with an atomic rename. The
+ * update methods read the file again under the lock and merge the changes into it, so
+ * concurrent processes don't lose each other's changes.
  */
 public class SettingsIo {
 
@@ -38,6 +45,11 @@ public class SettingsIo {
     // was last updated. Is located under CONFIG_DIR
     public static final String PROPERTIES_CONFIG = "properties.json";
 
+    // LOCK_FILE is locked by the process that writes into the config files
+    public static final String LOCK_FILE = "config.lock";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     public static AccountList loadAccountList() {
         return loadAccountList(getConfigDirectory());
     }
@@ -56,7 +68,36 @@ public class SettingsIo {
 
     public static boolean saveAccountList(AccountList list, Path configRoot) {
         Path file = getAccountsFile(configRoot);
-        return saveHolderToJson(list, file);
+        if (file == null) {
+            return false;
+        }
+        return withLock(configRoot, () -> saveHolderToJson(list, file));
+    }
+
+    /**
+     * Change the account list on the disk. The list is read and written while holding the
+     * config lock, so changes made by other processes in between aren't lost.
+     *
+     * @return false if the list couldn't be read or written
+     */
+    public static boolean updateAccountList(Path configRoot, Consumer<AccountList> update) {
+        Path file = getAccountsFile(configRoot);
+        if (file == null) {
+            return false;
+        }
+        return withLock(
+                configRoot,
+                () -> {
+                    AccountList list = new AccountList();
+                    if (Files.exists(file)) {
+                        list = getHolderFromJson(file);
+                        if (list == null) {
+                            return false;
+                        }
+                    }
+                    update.accept(list);
+                    return saveHolderToJson(list, file);
+                });
     }
 
     public static boolean delete() {
@@ -71,20 +112,26 @@ public class SettingsIo {
     }
 
     public static void saveCurrentSettingsToAccountList(Settings settings) {
-        AccountList list = loadAccountList();
-        Set<Account> deletables = new HashSet<>();
-        list.forEach(account -> {
-            if (account.getUsername().equals(settings.getAccount().getUsername())) {
-                if (!account.getUsername().isPresent()) {
-                    logger.error("Savable account doesn't exist");
-                    return;
-                }
-                deletables.add(account);
-            }
-        });
-        deletables.stream().forEach(d -> list.deleteAccount(d.getUsername().get()));
-        list.addAccount(settings.getAccount());
-        saveAccountList(list);
+        saveCurrentSettingsToAccountList(settings, getConfigDirectory());
+    }
+
+    public static void saveCurrentSettingsToAccountList(Settings settings, Path configRoot) {
+        updateAccountList(
+                configRoot,
+                list -> {
+                    Set<Account> deletables = new HashSet<>();
+                    list.forEach(account -> {
+                        if (account.getUsername().equals(settings.getAccount().getUsername())) {
+                            if (!account.getUsername().isPresent()) {
+                                logger.error("Savable account doesn't exist");
+                                return;
+                            }
+                            deletables.add(account);
+                        }
+                    });
+                    deletables.stream().forEach(d -> list.deleteAccount(d.getUsername().get()));
+                    list.addAccount(settings.getAccount());
+                });
     }
 
     public static HashMap<String, String> loadProperties() {
@@ -107,7 +154,45 @@ public class SettingsIo {
 
     public static boolean savePropertiesTo(HashMap<String, String> properties, Path path) {
         Path file = getPropertiesFile(path);
-        return savePropertiesToJson(properties, file);
+        if (file == null) {
+            return false;
+        }
+        return withLock(path, () -> savePropertiesToJson(properties, file));
+    }
+
+    /**
+     * Merge changed properties into the properties file. The other keys keep the values
+     * that are on the disk when the file is written, even if another process has changed
+     * them after this process loaded the file.
+     *
+     * @param changed the new values of the changed keys
+     * @param removed the keys to remove
+     */
+    public static boolean updateProperties(Map<String, String> changed, Set<String> removed) {
+        return updatePropertiesIn(getConfigDirectory(), changed, removed);
+    }
+
+    public static boolean updatePropertiesIn(
+            Path path, Map<String, String> changed, Set<String> removed) {
+        Path file = getPropertiesFile(path);
+        if (file == null) {
+            return false;
+        }
+        return withLock(
+                path,
+                () -> {
+                    HashMap<String, String> properties = new HashMap<>();
+                    if (Files.exists(file)) {
+                        HashMap<String, String> current = getPropertiesFromJson(file);
+                        if (current == null) {
+                            return false;
+                        }
+                        properties.putAll(current);
+                    }
+                    properties.putAll(changed);
+                    properties.keySet().removeAll(removed);
+                    return savePropertiesToJson(properties, file);
+                });
     }
 
     /**
@@ -170,24 +255,26 @@ public class SettingsIo {
         return true;
     }
 
+    private static boolean withLock(Path configRoot, Supplier<Boolean> action) {
+        return LockedFiles.withLock(configRoot.resolve(LOCK_FILE), action);
+    }
+
     private static AccountList getHolderFromJson(Path file) {
         Gson gson = new Gson();
-        Reader reader;
-        try {
-            reader = Files.newBufferedReader(file, Charset.forName("UTF-8"));
+        try (Reader reader = Files.newBufferedReader(file, UTF8)) {
+            return gson.fromJson(reader, AccountList.class);
         } catch (IOException e) {
             //TODO print error to user
             logger.error("Accounts file located, but failed to read from it", e);
             return null;
         }
-        return gson.fromJson(reader, AccountList.class);
     }
 
     private static boolean saveHolderToJson(AccountList holder, Path file) {
         Gson gson = new Gson();
-        byte[] json = gson.toJson(holder).getBytes();
+        byte[] json = gson.toJson(holder).getBytes(UTF8);
         try {
-            Files.write(file, json);
+            LockedFiles.writeAtomically(file, json);
         } catch (IOException e) {
             //TODO print error to user
             logger.error("Could not write account to accounts file", e);
@@ -198,24 +285,22 @@ public class SettingsIo {
 
     private static HashMap<String, String> getPropertiesFromJson(Path file) {
         Gson gson = new Gson();
-        Reader reader;
-        try {
-            reader = Files.newBufferedReader(file, Charset.forName("UTF-8"));
+        try (Reader reader = Files.newBufferedReader(file, UTF8)) {
+            @SuppressWarnings("unchecked")
+            HashMap<String, String> map = gson.fromJson(reader, HashMap.class);
+            return map;
         } catch (IOException e) {
             //TODO print error to user
             logger.error("Properties file located, but failed to read from it", e);
             return null;
         }
-        @SuppressWarnings("unchecked")
-        HashMap<String, String> map = gson.fromJson(reader, HashMap.class);
-        return map;
     }
 
     private static boolean savePropertiesToJson(HashMap<String, String> properties, Path file) {
         Gson gson = new Gson();
-        byte[] json = gson.toJson(properties).getBytes();
+        byte[] json = gson.toJson(properties).getBytes(UTF8);
         try {
-            Files.write(file, json);
+            LockedFiles.writeAtomically(file, json);
         } catch (IOException e) {
             //TODO print error to user
             logger.error("Could not write properties to file", e);
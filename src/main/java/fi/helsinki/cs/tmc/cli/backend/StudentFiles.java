@@ -0,0 +1,69 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.langs.domain.NoLanguagePluginFoundException;
+import fi.helsinki.cs.tmc.langs.io.StudentFilePolicy;
+import fi.helsinki.cs.tmc.langs.util.ProjectTypeHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The files of an exercise that the student has written.
+ *
+ * <p>The student file policy of the tmc-langs plugin of the exercise decides which files they
+ * are, so they are the same files that tmc-langs packages into a submission. The tests, the
+ * libraries and the build output aren't student files. When no plugin recognizes the
+ * exercise, every file outside the hidden directories is a student file.
+ */
+public class StudentFiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentFiles.class);
+
+    private StudentFiles() {}
+
+    /**
+     * List the student files of the exercise.
+     *
+     * @return the paths of the files relative to the exercise directory, sorted
+     */
+    public static List<Path> list(Path directory) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        StudentFilePolicy policy = getPolicy(root);
+        try (Stream<Path> stream = Files.walk(root)) {
+            return stream.filter(Files::isRegularFile)
+                    .filter(
+                            file ->
+                                    policy != null
+                                            ? policy.isStudentFile(file, root)
+                                            : !isHidden(root.relativize(file)))
+                    .map(root::relativize)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static StudentFilePolicy getPolicy(Path root) {
+        try {
+            return ProjectTypeHandler.getLanguagePlugin(root).getStudentFilePolicy(root);
+        } catch (NoLanguagePluginFoundException e) {
+            logger.info("No language plugin for " + root + ", using all the files", e);
+            return null;
+        }
+    }
+
+    private static boolean isHidden(Path relativePath) {
+        for (Path name : relativePath) {
+            if (name.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,191 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * A zip of an exercise made of deflated entries that are already on disk.
+ *
+ * <p>The length of the zip is known before it's written, so the zip can be streamed into the
+ * body of the upload without building it in memory first. The entries are written as they
+ * are, so {@link java.util.zip.ZipOutputStream}, which always compresses the data itself,
+ * can't be used. Zip64 isn't supported, which limits the zip to 65535 entries and 4 GB.
+ */
+public class SubmissionArchive {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_LENGTH = 22;
+    private static final int VERSION = 20;
+    private static final int DEFLATED = 8;
+    // the names are encoded in UTF-8
+    private static final int FLAGS = 0x0800;
+    private static final long MAX_ENTRIES = 0xffff;
+    private static final long MAX_LENGTH = 0xffffffffL;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<Entry> entries;
+    private final int reusedCount;
+    private final long length;
+
+    SubmissionArchive(List<Entry> entries, int reusedCount) throws IOException {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IOException("The exercise has too many files to submit");
+        }
+        this.entries = new ArrayList<>(entries);
+        this.reusedCount = reusedCount;
+        long total = END_LENGTH;
+        for (Entry entry : entries) {
+            total += LOCAL_HEADER_LENGTH + CENTRAL_HEADER_LENGTH + 2L * entry.name.length;
+            total += entry.compressedSize;
+        }
+        if (total > MAX_LENGTH) {
+            throw new IOException("The exercise is too large to submit");
+        }
+        this.length = total;
+    }
+
+    /**
+     * Get the length of the zip in bytes.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of entries whose compressed data was taken from the cache.
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * Write the zip. This can be called again, for example when the upload is retried.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        long offset = 0;
+        List<Long> offsets = new ArrayList<>();
+        for (Entry entry : entries) {
+            offsets.add(offset);
+            ByteArrayOutputStream header = new ByteArrayOutputStream(LOCAL_HEADER_LENGTH);
+            writeInt(header, LOCAL_HEADER);
+            writeShort(header, VERSION);
+            writeEntryFields(header, entry);
+            writeShort(header, 0);
+            header.write(entry.name);
+            header.writeTo(out);
+            long copied = Files.copy(entry.data, out);
+            if (copied != entry.compressedSize) {
+                throw new IOException("The cached data of " + entry.getName() + " has changed");
+            }
+            offset += header.size() + copied;
+        }
+
+        ByteArrayOutputStream central = new ByteArrayOutputStream();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            writeInt(central, CENTRAL_HEADER);
+            writeShort(central, VERSION);
+            writeShort(central, VERSION);
+            writeEntryFields(central, entry);
+            // extra field, comment, disk number, internal and external attributes
+            writeShort(central, 0);
+            writeShort(central, 0);
+            writeShort(central, 0);
+            writeShort(central, 0);
+            writeInt(central, 0);
+            writeInt(central, offsets.get(i));
+            central.write(entry.name);
+        }
+        writeInt(central, END_OF_CENTRAL_DIRECTORY);
+        writeShort(central, 0);
+        writeShort(central, 0);
+        writeShort(central, entries.size());
+        writeShort(central, entries.size());
+        writeInt(central, central.size() - 12);
+        writeInt(central, offset);
+        writeShort(central, 0);
+        central.writeTo(out);
+    }
+
+    /**
+     * Write the fields from the flags to the name length, which are the same in the local
+     * and the central header.
+     */
+    private static void writeEntryFields(OutputStream out, Entry entry) throws IOException {
+        writeShort(out, FLAGS);
+        writeShort(out, DEFLATED);
+        writeInt(out, entry.dosTime);
+        writeInt(out, entry.crc);
+        writeInt(out, entry.compressedSize);
+        writeInt(out, entry.size);
+        writeShort(out, entry.name.length);
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private static void writeInt(OutputStream out, long value) throws IOException {
+        writeShort(out, (int) (value & 0xffff));
+        writeShort(out, (int) ((value >>> 16) & 0xffff));
+    }
+
+    /**
+     * Convert the time to the MS-DOS date and time of the zip headers.
+     */
+    static long toDosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+                | ((long) (calendar.get(Calendar.MONTH) + 1) << 21)
+                | ((long) calendar.get(Calendar.DAY_OF_MONTH) << 16)
+                | ((long) calendar.get(Calendar.HOUR_OF_DAY) << 11)
+                | ((long) calendar.get(Calendar.MINUTE) << 5)
+                | ((long) calendar.get(Calendar.SECOND) >> 1);
+    }
+
+    /**
+     * A file in the zip and the file that has its deflated data.
+     */
+    static class Entry {
+        private final byte[] name;
+        private final long dosTime;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final Path data;
+
+        Entry(String name, long modified, long crc, long size, long compressedSize, Path data) {
+            this.name = name.getBytes(UTF8);
+            this.dosTime = toDosTime(modified);
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.data = data;
+        }
+
+        String getName() {
+            return new String(name, UTF8);
+        }
+    }
+}
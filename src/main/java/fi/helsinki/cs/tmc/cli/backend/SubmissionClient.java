@@ -0,0 +1,359 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.core.configuration.TmcSettings;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+import fi.helsinki.cs.tmc.core.domain.submission.ValidationErrorImpl;
+import fi.helsinki.cs.tmc.core.domain.submission.ValidationResultImpl;
+import fi.helsinki.cs.tmc.langs.abstraction.Strategy;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationError;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends submissions to the server and fetches their results with the HTTP client of tmc-cli.
+ *
+ * <p>tmc-core returns from the submit only after it has polled the result until the server
+ * has processed the submission, so the submission URL is never visible to tmc-cli. This
+ * client does the upload and the fetching separately, so the waiting can be done by
+ * {@link CometListener} and {@link ResultPoller}.
+ */
+public class SubmissionClient {
+
+    static final String FILE_FIELD = "submission[file]";
+    private static final int API_VERSION = 8;
+    private static final Type SUBMISSION_LIST =
+            new TypeToken<List<CourseSubmission>>() {}.getType();
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final CliHttpClient http;
+    private final String token;
+    private final String clientName;
+    private final String clientVersion;
+    private final Gson gson;
+
+    public SubmissionClient(CliHttpClient http, TmcSettings settings) {
+        this.http = http;
+        Optional<String> token = settings.getToken();
+        this.token = token != null && token.isPresent() ? token.get() : null;
+        this.clientName = settings.clientName();
+        this.clientVersion = settings.clientVersion();
+        this.gson = createGson();
+    }
+
+    /**
+     * Upload the zipped exercise.
+     *
+     * @return the URL where the result of the submission can be fetched
+     * @throws IOException if the upload fails or the server doesn't return the URL
+     */
+    public URI submit(Exercise exercise, byte[] zip) throws IOException {
+        return submit(exercise, new MultipartEntity(zip.length, out -> out.write(zip)));
+    }
+
+    /**
+     * Upload the packaged exercise. The zip is streamed into the request, so it's never
+     * held in memory as a whole.
+     *
+     * @return the URL where the result of the submission can be fetched
+     * @throws IOException if the upload fails or the server doesn't return the URL
+     */
+    public URI submit(Exercise exercise, SubmissionArchive archive) throws IOException {
+        return submit(exercise, new MultipartEntity(archive.getLength(), archive::writeTo));
+    }
+
+    private URI submit(Exercise exercise, MultipartEntity entity) throws IOException {
+        if (exercise.getReturnUrl() == null) {
+            throw new IOException("The exercise " + exercise.getName() + " can't be submitted");
+        }
+        HttpPost request = new HttpPost(addClientParameters(exercise.getReturnUrl()));
+        request.setEntity(entity);
+        String body = send(request);
+
+        try {
+            JsonElement url = new JsonParser().parse(body).getAsJsonObject().get("submission_url");
+            if (url == null || !url.isJsonPrimitive()) {
+                throw new IOException("The server didn't return the submission URL");
+            }
+            return new URI(url.getAsString());
+        } catch (JsonParseException | IllegalStateException | URISyntaxException e) {
+            throw new IOException("Invalid response to the submission", e);
+        }
+    }
+
+    /**
+     * Fetch the current state of the submission. The status of the result is
+     * {@link SubmissionResult.Status#PROCESSING} until the server has run the tests.
+     */
+    public SubmissionResult fetchResult(URI submissionUrl) throws IOException {
+        return fetchStatus(submissionUrl).getResult();
+    }
+
+    /**
+     * Fetch the current state of the submission with its place in the queue.
+     *
+     * @throws RetryAfterException if the server is overloaded
+     */
+    public SubmissionStatus fetchStatus(URI submissionUrl) throws IOException {
+        HttpGet request = new HttpGet(addClientParameters(submissionUrl));
+        authorize(request);
+        return http.execute(
+                request,
+                response ->
+                        parseStatus(
+                                EntityUtils.toString(response.getEntity(), UTF8),
+                                CliHttpClient.getRetryAfter(response)));
+    }
+
+    /**
+     * List all the submissions of the course. The server allows this only for the course
+     * staff.
+     *
+     * @throws HttpResponseException with status 403 if the user isn't in the course staff
+     */
+    public List<CourseSubmission> listCourseSubmissions(String serverAddress, int courseId)
+            throws IOException {
+        String base = serverAddress.replaceAll("/+$", "");
+        URI url;
+        try {
+            url = new URI(base + "/api/v" + API_VERSION + "/courses/" + courseId + "/submissions");
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid server address " + serverAddress, e);
+        }
+        String body = send(new HttpGet(url));
+        try {
+            List<CourseSubmission> submissions = gson.fromJson(body, SUBMISSION_LIST);
+            return submissions != null ? submissions : new ArrayList<CourseSubmission>();
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid list of submissions", e);
+        }
+    }
+
+    /**
+     * Get the URL where the zip of the submission can be downloaded.
+     */
+    public static URI getSubmissionZipUrl(String serverAddress, CourseSubmission submission) {
+        if (submission.getSubmittedZipUrl() != null) {
+            return URI.create(submission.getSubmittedZipUrl());
+        }
+        return URI.create(
+                serverAddress.replaceAll("/+$", "")
+                        + "/api/v" + API_VERSION + "/core/submissions/" + submission.getId()
+                        + "/download");
+    }
+
+    SubmissionResult parseResult(String json) throws IOException {
+        return parseStatus(json, -1).getResult();
+    }
+
+    private SubmissionStatus parseStatus(String json, long retryAfterMs) throws IOException {
+        SubmissionResult result;
+        JsonObject object;
+        try {
+            object = new JsonParser().parse(json).getAsJsonObject();
+            result = gson.fromJson(object, SubmissionResult.class);
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Invalid submission result", e);
+        }
+        if (result == null || result.getStatus() == null) {
+            throw new IOException("Invalid submission result");
+        }
+        JsonElement sandboxStatus = object.get("sandbox_status");
+        return new SubmissionStatus(
+                result,
+                sandboxStatus != null && sandboxStatus.isJsonPrimitive()
+                        ? sandboxStatus.getAsString()
+                        : null,
+                getInt(object, "submissions_before_this"),
+                getInt(object, "total_unprocessed"),
+                retryAfterMs);
+    }
+
+    private static int getInt(JsonObject object, String key) {
+        JsonElement value = object.get(key);
+        if (value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isNumber()) {
+            return -1;
+        }
+        return value.getAsInt();
+    }
+
+    private String send(HttpUriRequest request) throws IOException {
+        authorize(request);
+        return http.execute(request, response -> EntityUtils.toString(response.getEntity(), UTF8));
+    }
+
+    private void authorize(HttpUriRequest request) {
+        if (token != null) {
+            request.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+    }
+
+    private URI addClientParameters(URI url) throws IOException {
+        try {
+            return new URIBuilder(url)
+                    .setParameter("client", clientName)
+                    .setParameter("client_version", clientVersion)
+                    .build();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL " + url, e);
+        }
+    }
+
+    private interface ZipWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Form data with the zip as its only field. The length of the zip is known beforehand,
+     * so the request has a Content-Length and the zip can be written straight to the socket.
+     */
+    private static class MultipartEntity extends AbstractHttpEntity {
+        private final byte[] header;
+        private final byte[] trailer;
+        private final long zipLength;
+        private final ZipWriter zip;
+
+        MultipartEntity(long zipLength, ZipWriter zip) {
+            String boundary = "----tmc-cli-" + UUID.randomUUID();
+            this.header =
+                    ("--" + boundary + "\r\n"
+                                    + "Content-Disposition: form-data; name=\"" + FILE_FIELD
+                                    + "\"; filename=\"submission.zip\"\r\n"
+                                    + "Content-Type: application/zip\r\n\r\n")
+                            .getBytes(UTF8);
+            this.trailer = ("\r\n--" + boundary + "--\r\n").getBytes(UTF8);
+            this.zipLength = zipLength;
+            this.zip = zip;
+            setContentType("multipart/form-data; boundary=" + boundary);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return header.length + zipLength + trailer.length;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeTo(body);
+            return new ByteArrayInputStream(body.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(header);
+            zip.writeTo(out);
+            out.write(trailer);
+            out.flush();
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    /**
+     * The result json is parsed the same way as in tmc-core. The statuses are in lower case
+     * and the test results of tmc-langs have immutable lists.
+     */
+    private static Gson createGson() {
+        Gson plain = new Gson();
+        JsonDeserializer<SubmissionResult.Status> status =
+                (json, type, context) -> {
+                    try {
+                        return SubmissionResult.Status.valueOf(
+                                json.getAsString().toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        return SubmissionResult.Status.ERROR;
+                    }
+                };
+        JsonDeserializer<ImmutableList<?>> immutableList =
+                (json, type, context) -> {
+                    Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+                    Type listType = TypeToken.getParameterized(List.class, element).getType();
+                    List<?> list = context.deserialize(json, listType);
+                    List<Object> present = new ArrayList<>();
+                    for (Object item : list) {
+                        if (item != null) {
+                            present.add(item);
+                        }
+                    }
+                    return ImmutableList.copyOf(present);
+                };
+        JsonDeserializer<ValidationResult> validations =
+                (json, type, context) -> {
+                    JsonObject object = json.getAsJsonObject();
+                    ValidationResultImpl result = new ValidationResultImpl();
+                    if (object.has("strategy")) {
+                        result.setStrategy(
+                                Strategy.valueOf(
+                                        object.get("strategy")
+                                                .getAsString()
+                                                .toUpperCase(Locale.ROOT)));
+                    }
+                    Map<File, List<ValidationError>> errors = new HashMap<>();
+                    if (object.has("validationErrors")) {
+                        for (Map.Entry<String, JsonElement> file :
+                                object.getAsJsonObject("validationErrors").entrySet()) {
+                            List<ValidationError> fileErrors = new ArrayList<>();
+                            for (JsonElement error : file.getValue().getAsJsonArray()) {
+                                fileErrors.add(plain.fromJson(error, ValidationErrorImpl.class));
+                            }
+                            errors.put(new File(file.getKey()), fileErrors);
+                        }
+                    }
+                    result.setValidationErrors(errors);
+                    return result;
+                };
+        return new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .registerTypeAdapter(SubmissionResult.Status.class, status)
+                .registerTypeHierarchyAdapter(ImmutableList.class, immutableList)
+                .registerTypeAdapter(ValidationResult.class, validations)
+                .create();
+    }
+}
@@ -0,0 +1,403 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Packages exercises into submission zips and keeps the deflated files between submissions.
+ *
+ * <p>Every exercise has its own directory in the cache with an index of the packaged files
+ * and their deflated data, which is stored by the SHA-256 of the file. A file whose size and
+ * modification time haven't changed since the last submission isn't read at all. A file that
+ * was only touched is read to compute its hash, but isn't compressed again. Only the changed
+ * files are compressed, and they're compressed in parallel.
+ *
+ * <p>A file modified within {@link #RACY_MS} of the previous packaging may have been edited
+ * again without its modification time changing, so it's always hashed.
+ *
+ * <p>An exercise is packaged under the lock of its cache directory, so the processes that
+ * submit the same exercise take turns. The deflated data that no index needs is removed, but
+ * the indices of the packagings of the last {@link #LIVE_MS} are kept alive in the new index,
+ * so an upload that another process is still streaming from an older archive doesn't lose its
+ * data.
+ */
+public class SubmissionPackager {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionPackager.class);
+
+    public static final String DIRECTORY = "submission-cache";
+    static final String INDEX_FILE = "index.json";
+    static final String BLOB_DIRECTORY = "blobs";
+    static final long RACY_MS = 2000;
+    // longer than an upload of an archive takes, retries included
+    static final long LIVE_MS = 60 * 60 * 1000;
+
+    private static final String LOCK_FILE = "lock";
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final String TEMP_PREFIX = ".tmp-";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Path root;
+    private final int threads;
+    private final long liveMs;
+
+    public SubmissionPackager(Path root) {
+        this(root, THREADS, LIVE_MS);
+    }
+
+    SubmissionPackager(Path root, int threads, long liveMs) {
+        this.root = root;
+        this.threads = Math.max(1, threads);
+        this.liveMs = liveMs;
+    }
+
+    /**
+     * Open the cache in the config directory.
+     */
+    public static SubmissionPackager open() {
+        return new SubmissionPackager(SettingsIo.getConfigDirectory().resolve(DIRECTORY));
+    }
+
+    /**
+     * Package the {@link StudentFiles} of the exercise, the same files that tmc-langs would
+     * package. The names in the zip start with the name of the exercise directory, like in the
+     * zips made by tmc-langs.
+     */
+    public SubmissionArchive pack(Path exerciseDirectory) throws IOException {
+        Path directory = exerciseDirectory.toAbsolutePath().normalize();
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Could not find the exercise directory " + directory);
+        }
+        Path cache = root.resolve(sha256(directory.toString().getBytes(UTF8)));
+        Path blobs = cache.resolve(BLOB_DIRECTORY);
+        Files.createDirectories(blobs);
+
+        SubmissionArchive[] archive = new SubmissionArchive[1];
+        IOException[] error = new IOException[1];
+        boolean locked =
+                LockedFiles.withLock(
+                        cache.resolve(LOCK_FILE),
+                        () -> {
+                            try {
+                                archive[0] = pack(directory, cache, blobs);
+                                return true;
+                            } catch (IOException e) {
+                                error[0] = e;
+                                return false;
+                            }
+                        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+        if (!locked) {
+            throw new IOException("Could not lock the submission cache of " + directory);
+        }
+        return archive[0];
+    }
+
+    private SubmissionArchive pack(Path directory, Path cache, Path blobs) throws IOException {
+        Index previous = readIndex(cache);
+        Map<String, IndexEntry> known = new HashMap<>();
+        for (IndexEntry entry : previous.entries) {
+            known.put(entry.name, entry);
+        }
+
+        List<Path> files = StudentFiles.list(directory);
+
+        long started = System.currentTimeMillis();
+        String prefix = directory.getFileName() + "/";
+        List<Packed> packed = new ArrayList<>();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(files.size(), threads)));
+        try {
+            List<Future<Packed>> futures = new ArrayList<>();
+            for (Path relative : files) {
+                Path file = directory.resolve(relative);
+                // the separator is the same on all platforms
+                String name = prefix + relative.toString().replace('\\', '/');
+                IndexEntry old = known.get(name);
+                long indexedAt = previous.indexedAt;
+                futures.add(executor.submit(() -> packFile(file, name, old, indexedAt, blobs)));
+            }
+            for (Future<Packed> future : futures) {
+                packed.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Packaging the exercise was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Index index = new Index();
+        index.indexedAt = started;
+        index.live = keepAlive(previous, started);
+        List<SubmissionArchive.Entry> entries = new ArrayList<>();
+        int reused = 0;
+        for (Packed file : packed) {
+            index.entries.add(file.entry);
+            entries.add(file.entry.toArchiveEntry(blobs));
+            if (file.reused) {
+                reused++;
+            }
+        }
+        writeIndex(cache, index);
+        prune(blobs, index);
+        return new SubmissionArchive(entries, reused);
+    }
+
+    private static Packed packFile(
+            Path file, String name, IndexEntry old, long indexedAt, Path blobs)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (old != null
+                && old.size == size
+                && old.modified == modified
+                && modified + RACY_MS < indexedAt
+                && hasBlob(blobs, old)) {
+            return new Packed(old, true);
+        }
+
+        IndexEntry entry = new IndexEntry();
+        entry.name = name;
+        entry.modified = modified;
+        MessageDigest digest = newDigest();
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+                // the size in the zip has to match the data even if the file was just written
+                entry.size += read;
+            }
+        }
+        entry.hash = hex(digest.digest());
+        entry.crc = crc.getValue();
+
+        Path blob = blobs.resolve(entry.hash);
+        if (Files.exists(blob)) {
+            entry.compressedSize = Files.size(blob);
+            return new Packed(entry, true);
+        }
+        entry.compressedSize = deflate(file, blob, entry.crc);
+        return new Packed(entry, false);
+    }
+
+    /**
+     * Deflate the file into the blob.
+     *
+     * @param crc of the file when it was hashed, which has to match the compressed data
+     * @return the size of the blob
+     */
+    private static long deflate(Path file, Path blob, long crc) throws IOException {
+        Path temp = Files.createTempFile(blob.getParent(), TEMP_PREFIX, "");
+        try {
+            CRC32 check = new CRC32();
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try (InputStream in = Files.newInputStream(file);
+                    OutputStream out = new DeflaterOutputStream(
+                            Files.newOutputStream(temp), deflater, 64 * 1024)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    check.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                deflater.end();
+            }
+            if (check.getValue() != crc) {
+                throw new IOException(file + " was changed while it was being packaged");
+            }
+            try {
+                Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return Files.size(blob);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static boolean hasBlob(Path blobs, IndexEntry entry) {
+        try {
+            return entry.hash != null
+                    && Files.size(blobs.resolve(entry.hash)) == entry.compressedSize;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the packagings whose archives may still be uploading, the previous one included.
+     */
+    private List<LiveIndex> keepAlive(Index previous, long now) {
+        List<LiveIndex> live = new ArrayList<>();
+        if (previous.live != null) {
+            for (LiveIndex index : previous.live) {
+                if (index.indexedAt + liveMs > now) {
+                    live.add(index);
+                }
+            }
+        }
+        if (!previous.entries.isEmpty() && previous.indexedAt + liveMs > now) {
+            LiveIndex index = new LiveIndex();
+            index.indexedAt = previous.indexedAt;
+            for (IndexEntry entry : previous.entries) {
+                index.hashes.add(entry.hash);
+            }
+            live.add(index);
+        }
+        return live;
+    }
+
+    /**
+     * Remove the deflated data that neither the index nor the live indices in it need.
+     */
+    private static void prune(Path blobs, Index index) {
+        Set<String> used = new HashSet<>();
+        for (IndexEntry entry : index.entries) {
+            used.add(entry.hash);
+        }
+        for (LiveIndex live : index.live) {
+            used.addAll(live.hashes);
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(blobs)) {
+            for (Path blob : stream) {
+                String name = blob.getFileName().toString();
+                if (!used.contains(name) && !name.startsWith(TEMP_PREFIX)) {
+                    Files.deleteIfExists(blob);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean the submission cache", e);
+        }
+    }
+
+    private static Index readIndex(Path cache) {
+        Path file = cache.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return new Index();
+        }
+        try (Reader reader = Files.newBufferedReader(file, UTF8)) {
+            Index index = new Gson().fromJson(reader, Index.class);
+            if (index != null && index.entries != null) {
+                return index;
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Ignoring the invalid submission cache index " + file, e);
+        }
+        return new Index();
+    }
+
+    private static void writeIndex(Path cache, Index index) {
+        try {
+            LockedFiles.writeAtomically(
+                    cache.resolve(INDEX_FILE), new Gson().toJson(index).getBytes(UTF8));
+        } catch (IOException e) {
+            logger.warn("Could not write the submission cache index", e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        return hex(newDigest().digest(data));
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static class Packed {
+        private final IndexEntry entry;
+        private final boolean reused;
+
+        Packed(IndexEntry entry, boolean reused) {
+            this.entry = entry;
+            this.reused = reused;
+        }
+    }
+
+    /**
+     * The files of the exercise at the time when it was last packaged.
+     */
+    static class Index {
+        private long indexedAt;
+        private List<IndexEntry> entries = new ArrayList<>();
+        private List<LiveIndex> live = new ArrayList<>();
+    }
+
+    /**
+     * The data used by an earlier packaging whose archive may still be uploading.
+     */
+    static class LiveIndex {
+        private long indexedAt;
+        private List<String> hashes = new ArrayList<>();
+    }
+
+    static class IndexEntry {
+        private String name;
+        private long size;
+        private long modified;
+        private String hash;
+        private long crc;
+        private long compressedSize;
+
+        SubmissionArchive.Entry toArchiveEntry(Path blobs) {
+            return new SubmissionArchive.Entry(
+                    name, modified, crc, size, compressedSize, blobs.resolve(hash));
+        }
+    }
+}
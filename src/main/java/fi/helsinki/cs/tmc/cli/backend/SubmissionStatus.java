@@ -0,0 +1,66 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+
+/**
+ * The result of a submission and, while the submission is being processed, its place in
+ * the queue of the sandbox.
+ */
+public class SubmissionStatus {
+
+    private final SubmissionResult result;
+    private final String sandboxStatus;
+    private final int submissionsBeforeThis;
+    private final int totalUnprocessed;
+    private final long retryAfterMs;
+
+    public SubmissionStatus(
+            SubmissionResult result,
+            String sandboxStatus,
+            int submissionsBeforeThis,
+            int totalUnprocessed,
+            long retryAfterMs) {
+        this.result = result;
+        this.sandboxStatus = sandboxStatus;
+        this.submissionsBeforeThis = submissionsBeforeThis;
+        this.totalUnprocessed = totalUnprocessed;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public SubmissionResult getResult() {
+        return result;
+    }
+
+    public boolean isProcessing() {
+        return result.getStatus() == SubmissionResult.Status.PROCESSING;
+    }
+
+    /**
+     * Get the state of the submission in the sandbox, such as "created" or
+     * "processing_on_sandbox", or null if the server didn't tell it.
+     */
+    public String getSandboxStatus() {
+        return sandboxStatus;
+    }
+
+    /**
+     * Get the number of submissions ahead of this one in the queue, or -1 if unknown.
+     */
+    public int getSubmissionsBeforeThis() {
+        return submissionsBeforeThis;
+    }
+
+    /**
+     * Get the number of submissions in the queue, or -1 if unknown.
+     */
+    public int getTotalUnprocessed() {
+        return totalUnprocessed;
+    }
+
+    /**
+     * Get the delay the server asked to wait before the next request, or -1 if it didn't.
+     */
+    public long getRetryAfter() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,317 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of downloaded exercise templates.
+ *
+ * <p>Each freshly downloaded exercise is copied into the store under a key made of the
+ * exercise checksum and zip URL. When the same exercise is downloaded into another directory,
+ * it's copied from the store and tmc-core doesn't have to download the zip again. The
+ * modification time of an entry is its last use, and the least recently used entries are
+ * removed when the store grows over its size limit.
+ *
+ * <p>The entries are copied, not hard linked, because students edit the exercise files in
+ * place. On Linux the copy is made with {@code cp --reflink=auto}, which shares the blocks
+ * on copy-on-write file systems such as btrfs and XFS.
+ */
+public class TemplateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateStore.class);
+
+    public static final String DIRECTORY = "template-store";
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final String TEMP_PREFIX = ".tmp-";
+
+    private final Path root;
+    private final boolean useReflink;
+
+    public TemplateStore(Path root) {
+        this(root, !EnvironmentUtil.isWindows() && isLinux());
+    }
+
+    TemplateStore(Path root, boolean useReflink) {
+        this.root = root;
+        this.useReflink = useReflink;
+    }
+
+    /**
+     * Open the store in the config directory.
+     */
+    public static TemplateStore open() {
+        return new TemplateStore(SettingsIo.getConfigDirectory().resolve(DIRECTORY));
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Get the directory into which tmc-core extracts the exercise.
+     */
+    public static Path getExerciseDirectory(Path projectDirectory, Exercise exercise) {
+        return projectDirectory.resolve(exercise.getCourseName()).resolve(exercise.getName());
+    }
+
+    /**
+     * Get the key of the exercise template.
+     *
+     * @return the key or null if the exercise can't be stored
+     */
+    static String keyOf(Exercise exercise) {
+        if (exercise.getChecksum() == null
+                || exercise.getZipUrl() == null
+                || exercise.getCourseName() == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String content = exercise.getChecksum() + "\n" + exercise.getZipUrl();
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(content.getBytes(Charset.forName("UTF-8")))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            logger.warn("SHA-256 is not available", ex);
+            return null;
+        }
+    }
+
+    public boolean contains(Exercise exercise) {
+        String key = keyOf(exercise);
+        return key != null && Files.isDirectory(root.resolve(key));
+    }
+
+    /**
+     * Create the exercise directory from the stored template.
+     *
+     * @param target directory that doesn't exist yet
+     * @return true if the exercise was in the store and it was copied into target
+     */
+    public boolean materialize(Exercise exercise, Path target) {
+        String key = keyOf(exercise);
+        if (key == null || Files.exists(target)) {
+            return false;
+        }
+        Path entry = root.resolve(key);
+        if (!Files.isDirectory(entry)) {
+            return false;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            copyTree(entry, target);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            logger.info("Copied {} from the template store", exercise.getName());
+            return true;
+        } catch (IOException ex) {
+            logger.warn("Failed to copy {} from the template store", exercise.getName(), ex);
+            FileUtils.deleteQuietly(target.toFile());
+            return false;
+        }
+    }
+
+    /**
+     * Copy a freshly downloaded exercise into the store.
+     *
+     * @param source the exercise directory before the student has changed anything
+     */
+    public void put(Exercise exercise, Path source) {
+        String key = keyOf(exercise);
+        if (key == null || !Files.isDirectory(source)) {
+            return;
+        }
+        Path entry = root.resolve(key);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+        Path temp = root.resolve(TEMP_PREFIX + UUID.randomUUID());
+        try {
+            Files.createDirectories(root);
+            copyTree(source, temp);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, entry);
+            }
+        } catch (FileAlreadyExistsException ex) {
+            // another tmc process stored the same template first
+            logger.info("Template of {} was stored concurrently", exercise.getName());
+        } catch (IOException ex) {
+            logger.warn("Failed to store {} in the template store", exercise.getName(), ex);
+        } finally {
+            FileUtils.deleteQuietly(temp.toFile());
+        }
+    }
+
+    /**
+     * Get all the entries, least recently used first.
+     */
+    public List<Entry> getEntries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (Path path : stream) {
+                if (!Files.isDirectory(path)) {
+                    continue;
+                }
+                if (path.getFileName().toString().startsWith(TEMP_PREFIX)) {
+                    // left behind by a process that was killed while storing
+                    if (isStale(path)) {
+                        FileUtils.deleteQuietly(path.toFile());
+                    }
+                    continue;
+                }
+                entries.add(
+                        new Entry(
+                                path,
+                                sizeOf(path),
+                                Files.getLastModifiedTime(path).toMillis()));
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::getLastUsed));
+        return entries;
+    }
+
+    /**
+     * Remove the least recently used entries until the store is at most maxBytes large.
+     *
+     * @return the removed entries
+     */
+    public List<Entry> trim(long maxBytes) throws IOException {
+        List<Entry> entries = getEntries();
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.getSize();
+        }
+        List<Entry> removed = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            FileUtils.deleteDirectory(entry.getPath().toFile());
+            total -= entry.getSize();
+            removed.add(entry);
+        }
+        return removed;
+    }
+
+    private void copyTree(Path source, Path target) throws IOException {
+        if (useReflink && copyWithReflink(source, target)) {
+            return;
+        }
+        FileUtils.deleteQuietly(target.toFile());
+        FileUtils.copyDirectory(source.toFile(), target.toFile());
+    }
+
+    private static boolean copyWithReflink(Path source, Path target) {
+        ProcessBuilder builder =
+                new ProcessBuilder(
+                        "cp",
+                        "-R",
+                        "--reflink=auto",
+                        source.toAbsolutePath().toString(),
+                        target.toAbsolutePath().toString());
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(nullFile()));
+        try {
+            Process process = builder.start();
+            if (!process.waitFor(5, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException ex) {
+            logger.info("cp is not available, copying the files in Java", ex);
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static File nullFile() {
+        return new File(EnvironmentUtil.isWindows() ? "NUL" : "/dev/null");
+    }
+
+    private static boolean isLinux() {
+        return System.getProperty("os.name", "").toLowerCase().contains("linux");
+    }
+
+    private static boolean isStale(Path path) throws IOException {
+        long age = System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis();
+        return age > TimeUnit.HOURS.toMillis(1);
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(
+                            file -> {
+                                try {
+                                    return Files.size(file);
+                                } catch (IOException ex) {
+                                    return 0;
+                                }
+                            })
+                    .sum();
+        }
+    }
+
+    /**
+     * Stored exercise template.
+     */
+    public static class Entry {
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        Entry(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Get the time when the template was last stored or copied, in milliseconds.
+         */
+        public long getLastUsed() {
+            return lastUsed;
+        }
+    }
+}
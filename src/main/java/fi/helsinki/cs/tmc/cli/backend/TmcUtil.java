@@ -1,41 +1,75 @@
 package fi.helsinki.cs.tmc.cli.backend;
 
+import fi.helsinki.cs.tmc.cli.Application;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.metrics.Metrics;
+import fi.helsinki.cs.tmc.cli.runner.JavaProject;
+import fi.helsinki.cs.tmc.cli.runner.RunnerPool;
+import fi.helsinki.cs.tmc.cli.runner.Warmup;
+import fi.helsinki.cs.tmc.cli.trace.Span;
+import fi.helsinki.cs.tmc.cli.trace.Tracer;
+import fi.helsinki.cs.tmc.cli.trace.TracingProgressObserver;
 
 import fi.helsinki.cs.tmc.core.TmcCore;
-import fi.helsinki.cs.tmc.core.commands.GetUpdatableExercises.UpdateResult;
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 import fi.helsinki.cs.tmc.core.domain.Organization;
 import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
 import fi.helsinki.cs.tmc.core.domain.submission.FeedbackAnswer;
 import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
-import fi.helsinki.cs.tmc.core.exceptions.FailedHttpResponseException;
-import fi.helsinki.cs.tmc.core.exceptions.ObsoleteClientException;
-import fi.helsinki.cs.tmc.core.exceptions.ShowToUserException;
 import fi.helsinki.cs.tmc.core.holders.TmcSettingsHolder;
 import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 
 import org.apache.commons.compress.archivers.sevenz.CLI;
-import org.apache.oltu.oauth2.common.exception.OAuthProblemException;
-import org.apache.oltu.oauth2.common.exception.OAuthSystemException;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 public class TmcUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(TmcUtil.class);
 
+    /**
+     * The property that chooses how the submission results are waited for. The default is
+     * to let tmc-core submit and poll the result.
+     */
+    public static final String SUBMISSION_RESULTS = "submission-results";
+    public static final String RESULTS_CORE = "core";
+    public static final String RESULTS_POLL = "poll";
+    public static final String RESULTS_PUSH = "push";
+
+    /**
+     * The property for the delays of polling the submission results, see
+     * {@link PollSchedule#parse(String)}.
+     */
+    public static final String SUBMISSION_POLL_INTERVAL = "submission-poll-interval";
+
+    /**
+     * The property for the number of warm JVMs that run the tests of Java exercises, see
+     * {@link RunnerPool}. The tests are run with tmc-langs when it's not set.
+     */
+    public static final String WARM_TEST_RUNNERS = "warm-test-runners";
+
+    /**
+     * The property that makes 'tmc download' and 'tmc update' warm up the new exercises in
+     * the background, see {@link Warmup}.
+     */
+    public static final String WARMUP_AFTER_DOWNLOAD = "warmup-after-download";
+
     /**
      * Check if we have internet connection.
      * This is done with making dns lookup
@@ -61,10 +95,9 @@ public class TmcUtil {
     public static boolean tryToLogin(CliContext ctx, Account account, String password) {
         TmcCore core = ctx.getTmcCore();
         ctx.useAccount(account);
-        Callable<Void> callable = core.authenticate(ProgressObserver.NULL_OBSERVER, password);
 
         try {
-            callable.call();
+            call(ctx, "authenticate", observer -> core.authenticate(observer, password));
             return true;
         } catch (Exception e) {
             if (isAuthenticationError(e)) {
@@ -77,9 +110,9 @@ public class TmcUtil {
     }
 
     public static List<Course> listCourses(CliContext ctx) {
-        Callable<List<Course>> callable = ctx.getTmcCore().listCourses(ProgressObserver.NULL_OBSERVER);
+        TmcCore core = ctx.getTmcCore();
         try {
-            return callable.call();
+            return call(ctx, "listCourses", core::listCourses);
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
             TmcUtil.logger.warn("Failed to get courses to list the exercises", e);
@@ -88,11 +121,10 @@ public class TmcUtil {
     }
 
     public static List<Organization> getOrganizationsFromServer(CliContext ctx) {
-        Callable<List<Organization>> callable;
-        callable = ctx.getTmcCore().getOrganizations(ProgressObserver.NULL_OBSERVER);
+        TmcCore core = ctx.getTmcCore();
 
         try {
-            return callable.call();
+            return call(ctx, "getOrganizations", core::getOrganizations);
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
             TmcUtil.logger.error("Failed to get organizations from server", e);
@@ -100,10 +132,16 @@ public class TmcUtil {
         return new ArrayList();
     }
 
-    private static Course getDetails(CliContext ctx, Course course) {
+    /**
+     * Fetch the full details of the course, including the exercise checksums.
+     *
+     * @return the course or null if the request failed
+     */
+    public static Course getCourseDetails(CliContext ctx, Course course) {
         try {
             TmcCore core = ctx.getTmcCore();
-            return core.getCourseDetails(ProgressObserver.NULL_OBSERVER, course).call();
+            return call(
+                    ctx, "getCourseDetails", observer -> core.getCourseDetails(observer, course));
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
             logger.warn("Failed to get course details to list the exercises", e);
@@ -117,37 +155,184 @@ public class TmcUtil {
 
         for (Course item : courses) {
             if (item.getName().equals(name)) {
-                return TmcUtil.getDetails(ctx, item);
+                return TmcUtil.getCourseDetails(ctx, item);
             }
         }
         return null;
     }
 
+    /**
+     * Download or update the exercises. Exercises that aren't on the disk yet are copied from
+     * the template store if they are there, and only the rest are downloaded.
+     *
+     * @return the downloaded exercises or null if the download failed
+     */
     public static List<Exercise> downloadExercises(
             CliContext ctx, List<Exercise> exercises, ProgressObserver progobs) {
-        try {
-            TmcCore core = ctx.getTmcCore();
-            return core.downloadOrUpdateExercises(progobs, exercises).call();
-        } catch (Exception e) {
-            TmcUtil.handleTmcExceptions(ctx, e);
-            logger.warn("Failed to download exercises", e);
+        TemplateStore store = ctx.getTemplateStore();
+        // same directory as in Settings.getTmcProjectDirectory(), where tmc-core extracts them
+        Path projectDirectory = ctx.getWorkDir().getTmcDirectory();
+        List<Exercise> fromStore = new ArrayList<>();
+        List<Exercise> toDownload = new ArrayList<>();
+        List<Exercise> fresh = new ArrayList<>();
+        try (Span span = ctx.getTracer().start("cli", "templateStore.materialize")) {
+            for (Exercise exercise : exercises) {
+                Path target = exerciseDirectory(projectDirectory, exercise);
+                if (target != null && store.materialize(exercise, target)) {
+                    fromStore.add(exercise);
+                    continue;
+                }
+                toDownload.add(exercise);
+                if (target != null && !Files.exists(target)) {
+                    fresh.add(exercise);
+                }
+            }
+            span.setAttribute("hits", fromStore.size());
+            span.setAttribute("misses", toDownload.size());
+        }
+
+        List<Exercise> downloaded;
+        if (toDownload.isEmpty()) {
+            downloaded = new ArrayList<>();
+        } else {
+            try {
+                TmcCore core = ctx.getTmcCore();
+                downloaded =
+                        call(
+                                ctx,
+                                "downloadOrUpdateExercises",
+                                progobs,
+                                observer -> core.downloadOrUpdateExercises(observer, toDownload));
+            } catch (Exception e) {
+                TmcUtil.handleTmcExceptions(ctx, e);
+                logger.warn("Failed to download exercises", e);
+                return null;
+            }
+        }
+
+        storeTemplates(ctx, projectDirectory, downloaded, fresh);
+        List<Exercise> result = new ArrayList<>(fromStore);
+        result.addAll(downloaded);
+        return result;
+    }
+
+    private static Path exerciseDirectory(Path projectDirectory, Exercise exercise) {
+        if (projectDirectory == null || exercise.getCourseName() == null) {
             return null;
         }
+        return TemplateStore.getExerciseDirectory(projectDirectory, exercise);
+    }
+
+    /**
+     * Put the exercises that were downloaded into new directories into the template store.
+     * Updated exercises may already contain the student's changes, so they aren't stored.
+     */
+    private static void storeTemplates(
+            CliContext ctx,
+            Path projectDirectory,
+            List<Exercise> downloaded,
+            List<Exercise> fresh) {
+        TemplateStore store = ctx.getTemplateStore();
+        boolean stored = false;
+        try (Span span = ctx.getTracer().start("cli", "templateStore.put")) {
+            for (Exercise exercise : downloaded) {
+                if (fresh.contains(exercise) && !store.contains(exercise)) {
+                    store.put(exercise, exerciseDirectory(projectDirectory, exercise));
+                    stored = true;
+                }
+            }
+            if (stored) {
+                store.trim(TemplateStore.DEFAULT_MAX_BYTES);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to trim the template store", e);
+        }
     }
 
     public static List<Exercise> downloadAllExercises(
             CliContext ctx, Course course, ProgressObserver progobs) {
         if (!course.isExercisesLoaded()) {
-            course = getDetails(ctx, course);
+            course = getCourseDetails(ctx, course);
         }
         List<Exercise> exercises = course.getExercises();
         return downloadExercises(ctx, exercises, progobs);
     }
 
+    /**
+     * List all the submissions of the course. Only the course staff is allowed to do this.
+     *
+     * @return the submissions or null if they couldn't be listed
+     */
+    public static List<CourseSubmission> listCourseSubmissions(CliContext ctx, Course course) {
+        SubmissionClient client =
+                new SubmissionClient(CliHttpClient.getInstance(), ctx.getSettings());
+        try (Span span = ctx.getTracer().start("cli", "download.listSubmissions")) {
+            return client.listCourseSubmissions(
+                    ctx.getSettings().getServerAddress(), course.getId());
+        } catch (HttpResponseException e) {
+            logger.warn("Failed to list the submissions", e);
+            if (e.getStatusCode() == HttpStatus.SC_FORBIDDEN) {
+                ctx.getIo().errorln("Only the course staff can download the submissions.");
+            } else {
+                ctx.getIo().errorln("Failed to list the submissions: " + e.getMessage());
+            }
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to list the submissions", e);
+            ctx.getIo().errorln("Failed to list the submissions: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Download the archives that have changed into the root directory, see
+     * {@link ArchiveDownloader}.
+     *
+     * @return the summary or null if the root directory couldn't be used
+     */
+    public static ArchiveDownloader.Summary downloadArchives(
+            CliContext ctx,
+            Path root,
+            List<ArchiveDownloader.Archive> archives,
+            ProgressObserver progobs) {
+        ArchiveDownloader downloader =
+                new ArchiveDownloader(
+                        CliHttpClient.getInstance(),
+                        ctx.getSettings(),
+                        new HostRateLimiter(ArchiveDownloader.DEFAULT_HOST_INTERVAL_MS),
+                        ArchiveDownloader.DEFAULT_THREADS);
+        try (Span span = ctx.getTracer().start("cli", "download.archives")) {
+            span.setAttribute("archives", archives.size());
+            ArchiveDownloader.Summary summary = downloader.download(root, archives, progobs);
+            span.setAttribute("downloaded", summary.getDownloaded().size());
+            return summary;
+        } catch (IOException e) {
+            logger.warn("Failed to download the archives", e);
+            ctx.getIo().errorln("Failed to download into " + root + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     public static SubmissionResult submitExercise(CliContext ctx, Exercise exercise) {
+        return submitExercise(ctx, exercise, null);
+    }
+
+    /**
+     * Submit the exercise and wait for the result. The "submission-results" property chooses
+     * whether tmc-core does the waiting or tmc-cli itself, see {@link #SUBMISSION_RESULTS}.
+     *
+     * @param progress gets the place of the submission in the queue when tmc-cli polls the
+     *     result, may be null
+     */
+    public static SubmissionResult submitExercise(
+            CliContext ctx, Exercise exercise, ResultPoller.Listener progress) {
+        String mode = ctx.getProperties().get(SUBMISSION_RESULTS);
+        if (RESULTS_PUSH.equals(mode) || RESULTS_POLL.equals(mode)) {
+            return submitWithCli(ctx, exercise, RESULTS_PUSH.equals(mode), progress);
+        }
         try {
             TmcCore core = ctx.getTmcCore();
-            return core.submit(ProgressObserver.NULL_OBSERVER, exercise).call();
+            return call(ctx, "submit", observer -> core.submit(observer, exercise));
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
             logger.warn("Failed to submit the exercise", e);
@@ -155,21 +340,185 @@ public class TmcUtil {
         }
     }
 
-    public static UpdateResult getUpdatableExercises(CliContext ctx, Course course) {
+    /**
+     * Upload the exercise without waiting for the result.
+     *
+     * @return the URL of the submission or null if the upload failed
+     */
+    public static URI sendSubmission(CliContext ctx, Exercise exercise) {
+        SubmissionClient client =
+                new SubmissionClient(CliHttpClient.getInstance(), ctx.getSettings());
         try {
-            TmcCore core = ctx.getTmcCore();
-            return core.getExerciseUpdates(ProgressObserver.NULL_OBSERVER, course).call();
+            return uploadSubmission(ctx, client, exercise);
         } catch (Exception e) {
-            TmcUtil.handleTmcExceptions(ctx, e);
-            logger.warn("Failed to get exercise updates.", e);
+            logger.warn("Failed to submit the exercise", e);
+            ctx.getIo().errorln(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fetch the current state of a submission that was sent earlier.
+     *
+     * @return the status or null if it couldn't be fetched
+     */
+    public static SubmissionStatus fetchSubmissionStatus(CliContext ctx, URI submissionUrl) {
+        SubmissionClient client =
+                new SubmissionClient(CliHttpClient.getInstance(), ctx.getSettings());
+        try {
+            return client.fetchStatus(submissionUrl);
+        } catch (IOException e) {
+            logger.warn("Failed to fetch the submission result", e);
+            ctx.getIo().errorln(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Poll the result of a submission that was sent earlier until it has been processed.
+     *
+     * @return the result or null if it couldn't be fetched
+     */
+    public static SubmissionResult waitForSubmissionResult(
+            CliContext ctx, URI submissionUrl, ResultPoller.Listener progress) {
+        SubmissionClient client =
+                new SubmissionClient(CliHttpClient.getInstance(), ctx.getSettings());
+        try (Span span = ctx.getTracer().start("cli", "submit.waitForResult")) {
+            return createPoller(ctx, client).waitForResult(submissionUrl, progress);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to fetch the submission result", e);
+            ctx.getIo().errorln(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Upload the exercise with the http client of tmc-cli and wait for the result. With push
+     * the result is announced on the comet server of the course, and the result is polled
+     * if the course has no comet server or the connection to it fails.
+     */
+    private static SubmissionResult submitWithCli(
+            CliContext ctx, Exercise exercise, boolean push, ResultPoller.Listener progress) {
+        Tracer tracer = ctx.getTracer();
+        CliHttpClient http = CliHttpClient.getInstance();
+        SubmissionClient client = new SubmissionClient(http, ctx.getSettings());
+        CometListener listener = null;
+        try {
+            if (push) {
+                listener = openCometListener(ctx, http);
+            }
+            URI submissionUrl = uploadSubmission(ctx, client, exercise);
+            try (Span span = tracer.start("cli", "submit.waitForResult")) {
+                span.setAttribute("push", listener != null);
+                if (listener != null) {
+                    SubmissionResult result =
+                            awaitPushedResult(client, listener, submissionUrl, progress);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return createPoller(ctx, client).waitForResult(submissionUrl, progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
+        } catch (Exception e) {
+            logger.warn("Failed to submit the exercise", e);
+            ctx.getIo().errorln(e.getMessage());
+            return null;
+        } finally {
+            if (listener != null) {
+                listener.close();
+            }
+        }
+    }
+
+    private static URI uploadSubmission(
+            CliContext ctx, SubmissionClient client, Exercise exercise) throws Exception {
+        Tracer tracer = ctx.getTracer();
+        SubmissionArchive archive;
+        try (Span span = tracer.start("cli", "submit.package")) {
+            Path directory =
+                    exerciseDirectory(ctx.getSettings().getTmcProjectDirectory(), exercise);
+            if (directory == null) {
+                throw new IOException("Could not find the exercise " + exercise.getName());
+            }
+            archive = ctx.getSubmissionPackager().pack(directory);
+            span.setAttribute("bytes", archive.getLength());
+            span.setAttribute("files", archive.getEntryCount());
+            span.setAttribute("reused", archive.getReusedCount());
+        }
+        try (Span span = tracer.start("cli", "submit.upload")) {
+            return client.submit(exercise, archive);
+        }
+    }
+
+    private static ResultPoller createPoller(CliContext ctx, SubmissionClient client) {
+        PollSchedule schedule =
+                PollSchedule.parseOrDefault(ctx.getProperties().get(SUBMISSION_POLL_INTERVAL));
+        return new ResultPoller(client, schedule, ResultPoller.TIMEOUT_MS);
+    }
+
+    private static CometListener openCometListener(CliContext ctx, CliHttpClient http) {
+        CourseInfo info = ctx.getCourseInfo();
+        String cometUrl = info != null ? info.getCourse().getCometUrl() : null;
+        if (cometUrl == null || cometUrl.isEmpty()) {
+            logger.info("The course has no comet server, polling the result");
+            return null;
+        }
+        String token = ctx.getSettings().getToken().orNull();
+        try {
+            return CometListener.open(http, cometUrl, info.getUsername(), token);
+        } catch (IOException e) {
+            logger.warn("Could not connect to the comet server, polling the result", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the result after the comet server has announced it.
+     *
+     * @return null if the announcement didn't come, then the result is polled instead
+     */
+    private static SubmissionResult awaitPushedResult(
+            SubmissionClient client,
+            CometListener listener,
+            URI submissionUrl,
+            ResultPoller.Listener progress)
+            throws IOException {
+        // the submission may have been processed before the first connect request
+        SubmissionStatus status = client.fetchStatus(submissionUrl);
+        if (!status.isProcessing()) {
+            return status.getResult();
+        }
+        if (progress != null) {
+            progress.processing(status);
+        }
+        SubmissionResult result;
+        boolean announced;
+        try {
+            announced = listener.awaitResult(submissionUrl, ResultPoller.TIMEOUT_MS);
+        } catch (IOException e) {
+            logger.warn("Lost the connection to the comet server, polling the result", e);
+            return null;
+        }
+        if (announced) {
+            result = client.fetchResult(submissionUrl);
+            if (result.getStatus() != SubmissionResult.Status.PROCESSING) {
+                return result;
+            }
         }
+        return null;
     }
 
     public static URI sendPaste(CliContext ctx, Exercise exercise, String message) {
         try {
             TmcCore core = ctx.getTmcCore();
-            return core.pasteWithComment(ProgressObserver.NULL_OBSERVER, exercise, message).call();
+            return call(
+                    ctx, "paste", observer -> core.pasteWithComment(observer, exercise, message));
 
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
@@ -179,9 +528,13 @@ public class TmcUtil {
     }
 
     public static RunResult runLocalTests(CliContext ctx, Exercise exercise) {
+        RunResult warm = runInWarmRunner(ctx, exercise);
+        if (warm != null) {
+            return warm;
+        }
         try {
             TmcCore core = ctx.getTmcCore();
-            return core.runTests(ProgressObserver.NULL_OBSERVER, exercise).call();
+            return call(ctx, "runTests", observer -> core.runTests(observer, exercise));
 
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
@@ -190,10 +543,97 @@ public class TmcUtil {
         }
     }
 
+    /**
+     * Run the tests of a Java exercise in a warm runner if the runners are enabled.
+     *
+     * @return the result or null if the tests have to be run with tmc-langs
+     */
+    private static RunResult runInWarmRunner(CliContext ctx, Exercise exercise) {
+        RunnerPool pool = RunnerPool.open(getWarmRunnerCount(ctx));
+        if (pool == null) {
+            return null;
+        }
+        Path directory = exerciseDirectory(ctx.getSettings().getTmcProjectDirectory(), exercise);
+        if (directory == null) {
+            return null;
+        }
+        try (Span span = ctx.getTracer().start("cli", "runTests.warm")) {
+            JavaProject project = JavaProject.detect(directory);
+            span.setAttribute("supported", project != null);
+            if (project == null) {
+                return null;
+            }
+            RunResult result = pool.run(project, RunnerPool.DEFAULT_TIMEOUT_MS);
+            span.setAttribute("used", result != null);
+            return result;
+        } catch (IOException e) {
+            logger.warn("The warm runner failed, running the tests with tmc-langs", e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the number of warm runners from the properties.
+     *
+     * @return the number or 0 if the runners are disabled
+     */
+    public static int getWarmRunnerCount(CliContext ctx) {
+        String value = ctx.getProperties().get(WARM_TEST_RUNNERS);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.min(Math.max(Integer.parseInt(value.trim()), 0), RunnerPool.MAX_SIZE);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value of " + WARM_TEST_RUNNERS + ": " + value);
+            return 0;
+        }
+    }
+
+    /**
+     * Resolve the dependencies of the Java exercises and, when the warm runners are enabled,
+     * compile the exercises for them.
+     *
+     * @return what was done or null if the warmup failed
+     */
+    public static Warmup.Summary warmUpExercises(CliContext ctx, List<Path> directories) {
+        RunnerPool pool = RunnerPool.open(getWarmRunnerCount(ctx));
+        try (Span span = ctx.getTracer().start("cli", "warmup")) {
+            span.setAttribute("exercises", directories.size());
+            Warmup.Summary summary =
+                    new Warmup(Warmup.getDefaultThreads(), pool != null).run(directories);
+            span.setAttribute("dependencySets", summary.getDependencySetCount());
+            span.setAttribute("compiled", summary.getCompiledCount());
+            return summary;
+        } catch (IOException e) {
+            logger.error("Failed to warm up the exercises", e);
+            return null;
+        }
+    }
+
+    /**
+     * Run 'tmc warmup' on the exercises of the course in a background process.
+     *
+     * @return false if the process couldn't be started
+     */
+    public static boolean startWarmUp(Path courseDirectory, List<String> exercises) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add(Application.class.getName());
+        arguments.add("--no-update");
+        arguments.add("warmup");
+        arguments.addAll(exercises);
+        try {
+            return Warmup.startInBackground(courseDirectory, arguments);
+        } catch (IOException e) {
+            logger.warn("Could not start the warmup", e);
+            return false;
+        }
+    }
+
     public static ValidationResult runCheckStyle(CliContext ctx, Exercise exercise) {
         try {
             TmcCore core = ctx.getTmcCore();
-            return core.runCheckStyle(ProgressObserver.NULL_OBSERVER, exercise).call();
+            return call(ctx, "runCheckStyle", observer -> core.runCheckStyle(observer, exercise));
         } catch (Exception e) {
             logger.error("Failed to run checkstyle", e);
             return null;
@@ -204,7 +644,11 @@ public class TmcUtil {
         Course course = ctx.getCourseInfo().getCourse();
         try {
             TmcCore tmcCore = ctx.getTmcCore();
-            Course updatedCourse = tmcCore.getCourseDetails(ProgressObserver.NULL_OBSERVER, course).call();
+            Course updatedCourse =
+                    call(
+                            ctx,
+                            "getCourseDetails",
+                            observer -> tmcCore.getCourseDetails(observer, course));
             return updatedCourse.getExercises();
         } catch (Exception e) {
             logger.error("Failed to fetch exercises for course " + course.getName());
@@ -216,7 +660,10 @@ public class TmcUtil {
             CliContext ctx, List<FeedbackAnswer> answers, URI feedbackUri) {
         try {
             TmcCore core = ctx.getTmcCore();
-            return core.sendFeedback(ProgressObserver.NULL_OBSERVER, answers, feedbackUri).call();
+            return call(
+                    ctx,
+                    "sendFeedback",
+                    observer -> core.sendFeedback(observer, answers, feedbackUri));
 
         } catch (Exception e) {
             TmcUtil.handleTmcExceptions(ctx, e);
@@ -225,62 +672,98 @@ public class TmcUtil {
         }
     }
 
-    private static void handleTmcExceptions(CliContext ctx, Exception exception) {
-        Io io = ctx.getIo();
-        Throwable cause = exception.getCause();
-
-        if (isAuthenticationError(exception)) {
-            io.errorln("Your username or password is not valid anymore.");
-            return;
-        }
-
-        if (exception instanceof IllegalArgumentException) {
-            logger.error("Invalid arguments", exception);
-            io.errorln("Please give server, username and password in valid forms.");
-            return;
-        }
-
-        if (cause instanceof FailedHttpResponseException) {
-            logger.error("Unable to connect to server", exception);
-            io.errorln("Unable to connect to server.");
-            return;
-        }
-
-        if (exception instanceof UnknownHostException) {
-            logger.error("Unknown host", exception);
-            io.errorln("Unknwon host, check the server address.");
-            return;
-        }
-
-        if (cause instanceof ObsoleteClientException) {
-            logger.error("Outdated tmc client");
-            io.errorln("Your tmc-cli is outdated. Please update it.");
-            ctx.getApp().runAutoUpdate();
-            return;
-        }
+    private static <T> T call(
+            CliContext ctx, String operation, Function<ProgressObserver, Callable<T>> command)
+            throws Exception {
+        return call(ctx, operation, ProgressObserver.NULL_OBSERVER, command);
+    }
 
-        if (cause instanceof OAuthSystemException) {
-            io.errorln("There was a problem with authentication.\nPlease try logging in again.");
-            return;
+    /**
+     * Run the tmc-core operation inside a trace span and record its duration and outcome
+     * in the metrics.
+     *
+     * @param observer observer that gets the progress updates of the operation
+     * @param command creates the tmc-core callable with the given observer
+     */
+    private static <T> T call(
+            CliContext ctx,
+            String operation,
+            ProgressObserver observer,
+            Function<ProgressObserver, Callable<T>> command)
+            throws Exception {
+        Metrics metrics = ctx.getMetrics();
+        Tracer tracer = ctx.getTracer();
+        String name = Metrics.CORE_PREFIX + operation;
+        long start = System.nanoTime();
+        T result;
+        try (Span span = tracer.start("core", name)) {
+            if (!tracer.isEnabled()) {
+                result = command.apply(observer).call();
+            } else {
+                try (TracingProgressObserver tracing = tracer.observe("core", observer)) {
+                    result = command.apply(tracing).call();
+                }
+            }
+        } catch (Exception e) {
+            metrics.record(name, start, FailureCategory.of(e).getLabel());
+            throw e;
         }
+        metrics.record(name, start, null);
+        return result;
+    }
 
-        if (cause != null && cause.getCause() instanceof UnknownHostException) {
-            logger.error("No internet connection");
-            io.errorln("You have no internet connection.");
-            return;
-        }
+    private static void handleTmcExceptions(CliContext ctx, Exception exception) {
+        Io io = ctx.getIo();
+        Throwable cause = exception.getCause();
 
-        if (cause instanceof ShowToUserException) {
-            logger.error(exception.getMessage());
-            io.errorln(cause.getMessage());
-            return;
+        switch (FailureCategory.of(exception)) {
+            case AUTHENTICATION:
+                io.errorln("Your username or password is not valid anymore.");
+                return;
+
+            case INVALID_ARGUMENTS:
+                logger.error("Invalid arguments", exception);
+                io.errorln("Please give server, username and password in valid forms.");
+                return;
+
+            case HTTP_FAILURE:
+                logger.error("Unable to connect to server", exception);
+                io.errorln("Unable to connect to server.");
+                return;
+
+            case UNKNOWN_HOST:
+                logger.error("Unknown host", exception);
+                io.errorln("Unknwon host, check the server address.");
+                return;
+
+            case OBSOLETE_CLIENT:
+                logger.error("Outdated tmc client");
+                io.errorln("Your tmc-cli is outdated. Please update it.");
+                ctx.getApp().runAutoUpdate();
+                return;
+
+            case OAUTH_SYSTEM:
+                io.errorln(
+                        "There was a problem with authentication.\nPlease try logging in again.");
+                return;
+
+            case NO_CONNECTION:
+                logger.error("No internet connection");
+                io.errorln("You have no internet connection.");
+                return;
+
+            case SHOW_TO_USER:
+                logger.error(exception.getMessage());
+                io.errorln(cause.getMessage());
+                return;
+
+            default:
+                logger.error("Command failed in tmc-core", exception);
+                io.errorln("Command failed, check tmc-cli.log file for more info");
         }
-
-        logger.error("Command failed in tmc-core", exception);
-        io.errorln("Command failed, check tmc-cli.log file for more info");
     }
 
     private static boolean isAuthenticationError(Exception exception) {
-        return exception.getCause() instanceof OAuthProblemException;
+        return FailureCategory.of(exception) == FailureCategory.AUTHENTICATION;
     }
 }
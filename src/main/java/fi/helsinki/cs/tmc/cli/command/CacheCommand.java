@@ -0,0 +1,116 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import fi.helsinki.cs.tmc.cli.backend.TemplateStore;
+import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.core.Command;
+import fi.helsinki.cs.tmc.cli.io.Io;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+@Command(name = "cache", desc = "Show or clean up the store of downloaded exercises")
+public class CacheCommand extends AbstractCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheCommand.class);
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private Io io;
+
+    @Override
+    public String[] getUsages() {
+        return new String[] {"", "gc [--max-size MB]"};
+    }
+
+    @Override
+    public void getOptions(Options options) {
+        options.addOption(
+                OptionBuilder.withLongOpt("max-size")
+                        .hasArg()
+                        .withArgName("MB")
+                        .withDescription(
+                                "Remove least recently used exercises until the store is at most"
+                                        + " this large, 0 empties it (default "
+                                        + TemplateStore.DEFAULT_MAX_BYTES / MEGABYTE
+                                        + ")")
+                        .create());
+    }
+
+    @Override
+    public void run(CliContext context, CommandLine args) {
+        this.io = context.getIo();
+        TemplateStore store = context.getTemplateStore();
+        String[] stringArgs = args.getArgs();
+
+        if (stringArgs.length == 0) {
+            printSummary(store);
+            return;
+        }
+        if (stringArgs.length > 1 || !stringArgs[0].equals("gc")) {
+            io.errorln("Unknown cache command " + String.join(" ", stringArgs));
+            printUsage(context);
+            return;
+        }
+
+        long maxBytes = TemplateStore.DEFAULT_MAX_BYTES;
+        if (args.hasOption("max-size")) {
+            try {
+                maxBytes = Long.parseLong(args.getOptionValue("max-size")) * MEGABYTE;
+            } catch (NumberFormatException ex) {
+                maxBytes = -1;
+            }
+            if (maxBytes < 0) {
+                io.errorln("The maximum size must be a positive number of megabytes.");
+                return;
+            }
+        }
+        collectGarbage(store, maxBytes);
+    }
+
+    private void printSummary(TemplateStore store) {
+        List<TemplateStore.Entry> entries;
+        try {
+            entries = store.getEntries();
+        } catch (IOException ex) {
+            logger.warn("Failed to read the template store", ex);
+            io.errorln("Failed to read the template store at " + store.getRoot());
+            return;
+        }
+        io.println("Exercise store: " + store.getRoot());
+        io.println(
+                "  " + entries.size() + " exercises, " + formatSize(totalSize(entries))
+                        + " of " + formatSize(TemplateStore.DEFAULT_MAX_BYTES));
+    }
+
+    private void collectGarbage(TemplateStore store, long maxBytes) {
+        try {
+            List<TemplateStore.Entry> removed = store.trim(maxBytes);
+            List<TemplateStore.Entry> left = store.getEntries();
+            io.println(
+                    "Removed " + removed.size() + " exercises (" + formatSize(totalSize(removed))
+                            + "), " + left.size() + " exercises (" + formatSize(totalSize(left))
+                            + ") left.");
+        } catch (IOException ex) {
+            logger.warn("Failed to clean up the template store", ex);
+            io.errorln("Failed to clean up the template store at " + store.getRoot());
+        }
+    }
+
+    private static long totalSize(List<TemplateStore.Entry> entries) {
+        long total = 0;
+        for (TemplateStore.Entry entry : entries) {
+            total += entry.getSize();
+        }
+        return total;
+    }
+
+    private static String formatSize(long bytes) {
+        return String.format("%.1f MB", (double) bytes / MEGABYTE);
+    }
+}
@@ -1,12 +1,15 @@
 package fi.helsinki.cs.tmc.cli.command;
 
 import com.google.common.base.Optional;
+import fi.helsinki.cs.tmc.cli.backend.PollSchedule;
 import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
 import fi.helsinki.cs.tmc.cli.core.Command;
 import fi.helsinki.cs.tmc.cli.core.CommandFactory;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.runner.RunnerPool;
 
 import fi.helsinki.cs.tmc.cli.utils.BadValueTypeException;
 import fi.helsinki.cs.tmc.cli.utils.PropertyFunctions;
@@ -31,6 +34,10 @@ public class ConfigCommand extends AbstractCommand {
     private static final String progressBarLeftKey = "progressbar-left";
     private static final String progressBarRightKey = "progressbar-right";
     private static final String sendDiagnosticsKey = "send-diagnostics";
+    private static final Set<String> SUBMISSION_RESULT_MODES =
+            new HashSet<>(
+                    Arrays.asList(
+                            TmcUtil.RESULTS_CORE, TmcUtil.RESULTS_POLL, TmcUtil.RESULTS_PUSH));
 
     private HashMap<String, String> properties;
     private boolean quiet;
@@ -125,6 +132,70 @@ public class ConfigCommand extends AbstractCommand {
                 addBarColorToProperties(progressBarRightKey, value);
             }
         });
+        ALLOWED_KEYS.put(TmcUtil.SUBMISSION_RESULTS, new PropertyFunctions() {
+            @Override
+            public String getter() {
+                return context.getProperties().get(TmcUtil.SUBMISSION_RESULTS);
+            }
+
+            @Override
+            public void setter(String value) throws BadValueTypeException {
+                if (!SUBMISSION_RESULT_MODES.contains(value)) {
+                    throw new BadValueTypeException(
+                            "Please write either core, poll or push");
+                }
+                properties.put(TmcUtil.SUBMISSION_RESULTS, value);
+            }
+        });
+        ALLOWED_KEYS.put(TmcUtil.SUBMISSION_POLL_INTERVAL, new PropertyFunctions() {
+            @Override
+            public String getter() {
+                return context.getProperties().get(TmcUtil.SUBMISSION_POLL_INTERVAL);
+            }
+
+            @Override
+            public void setter(String value) throws BadValueTypeException {
+                try {
+                    PollSchedule.parse(value);
+                } catch (IllegalArgumentException e) {
+                    throw new BadValueTypeException(e.getMessage());
+                }
+                properties.put(TmcUtil.SUBMISSION_POLL_INTERVAL, value);
+            }
+        });
+        ALLOWED_KEYS.put(TmcUtil.WARM_TEST_RUNNERS, new PropertyFunctions() {
+            @Override
+            public String getter() {
+                return context.getProperties().get(TmcUtil.WARM_TEST_RUNNERS);
+            }
+
+            @Override
+            public void setter(String value) throws BadValueTypeException {
+                int count;
+                try {
+                    count = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    count = -1;
+                }
+                if (count < 0 || count > RunnerPool.MAX_SIZE) {
+                    throw new BadValueTypeException(
+                            "Please write a number from 0 to " + RunnerPool.MAX_SIZE);
+                }
+                properties.put(TmcUtil.WARM_TEST_RUNNERS, Integer.toString(count));
+            }
+        });
+        ALLOWED_KEYS.put(TmcUtil.WARMUP_AFTER_DOWNLOAD, new PropertyFunctions() {
+            @Override
+            public String getter() {
+                return context.getProperties().get(TmcUtil.WARMUP_AFTER_DOWNLOAD);
+            }
+
+            @Override
+            public void setter(String value) throws BadValueTypeException {
+                boolean warmup = getBooleanSendValue(value);
+                properties.put(TmcUtil.WARMUP_AFTER_DOWNLOAD, Boolean.toString(warmup));
+            }
+        });
     }
 
     private boolean getBooleanSendValue(String value) throws BadValueTypeException {
@@ -209,7 +280,6 @@ public class ConfigCommand extends AbstractCommand {
         } else {
             setProperties(arguments);
         }
-        context.saveProperties();
     }
 
     private void printAllProperties() {
@@ -339,7 +409,6 @@ public class ConfigCommand extends AbstractCommand {
             throw new BadValueTypeException("Color " + color + " not supported.");
         }
         properties.put(key, color);
-        SettingsIo.saveProperties(properties);
     }
 
     private boolean normalizeServerAddress() {
@@ -1,6 +1,12 @@
 package fi.helsinki.cs.tmc.cli.command;
 
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.ArchiveDownloader;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
+import fi.helsinki.cs.tmc.cli.backend.CourseSubmission;
+import fi.helsinki.cs.tmc.cli.backend.SubmissionClient;
 import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
@@ -9,27 +15,36 @@ import fi.helsinki.cs.tmc.cli.io.CliProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.Color;
 import fi.helsinki.cs.tmc.cli.io.ColorUtil;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.io.MultiProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.cli.shared.CourseFinder;
+import fi.helsinki.cs.tmc.cli.trace.Span;
 
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Command(name = "download", desc = "Download exercises for a specific course")
 public class DownloadExercisesCommand extends AbstractCommand {
 
+    static final String SOLUTIONS_DIRECTORY = "solutions";
+    static final String SUBMISSIONS_DIRECTORY = "submissions";
+
     private CliContext ctx;
     private boolean showAll;
 
     @Override
     public String[] getUsages() {
-        return new String[] {"[-a] COURSE"};
+        return new String[] {"[-a] COURSE", "--solutions|--submissions COURSE"};
     }
 
     @Override
@@ -39,9 +54,16 @@ public class DownloadExercisesCommand extends AbstractCommand {
                 "all",
                 false,
                 "Download all available exercises, including previously completed");
-
-        // Download old submissions. Not implemented in tmc-core yet
-        //options.addOption("c", "completed", false, "Download previously completed exercises");
+        options.addOption(
+                OptionBuilder.withLongOpt("solutions")
+                        .withDescription("Download the model solutions of the course")
+                        .create());
+        options.addOption(
+                OptionBuilder.withLongOpt("submissions")
+                        .withDescription(
+                                "Download the latest submission of every student, for the"
+                                        + " course staff")
+                        .create());
     }
 
     @Override
@@ -71,16 +93,30 @@ public class DownloadExercisesCommand extends AbstractCommand {
 
         String courseName = stringArgs[0];
         CourseFinder finder = new CourseFinder(ctx);
-        if (!finder.search(courseName)) {
-            return;
+        try (Span span = ctx.getTracer().start("cli", "download.findCourse")) {
+            span.setAttribute("course", courseName);
+            if (!finder.search(courseName)) {
+                return;
+            }
         }
         Course course = finder.getCourse();
+        printExistingCopies(course, finder.getAccount());
+
+        if (args.hasOption("solutions") || args.hasOption("submissions")) {
+            ctx.useAccount(finder.getAccount());
+            Path root = workDir.getWorkingDirectory().resolve(course.getName());
+            if (args.hasOption("solutions")) {
+                downloadSolutions(course, root.resolve(SOLUTIONS_DIRECTORY));
+            }
+            if (args.hasOption("submissions")) {
+                downloadSubmissions(course, root.resolve(SUBMISSIONS_DIRECTORY));
+            }
+            return;
+        }
 
         this.ctx.getAnalyticsFacade().saveAnalytics(course, "download_exercises");
 
         List<Exercise> filtered = getFilteredExercises(course);
-        // todo: If -c switch, use core.downloadCompletedExercises() to download user's old
-        //       submissions. Not yet implemented in tmc-core.
 
         Color color1 = ctx.getColorProperty("progressbar-left", ctx.getApp());
         Color color2 = ctx.getColorProperty("progressbar-right", ctx.getApp());
@@ -91,15 +127,134 @@ public class DownloadExercisesCommand extends AbstractCommand {
             io.errorln("Failed to download exercises. Make sure you are properly logged in.");
             return;
         }
-        CourseInfoIo.createNewCourse(course, finder.getAccount(), workDir.getWorkingDirectory());
-        List<Exercise> exercises = TmcUtil.downloadExercises(ctx, filtered, progobs);
+        CourseInfo info =
+                CourseInfoIo.createNewCourse(
+                        course, finder.getAccount(), workDir.getWorkingDirectory());
+        List<Exercise> exercises;
+        try (Span span = ctx.getTracer().start("cli", "download.exercises")) {
+            span.setAttribute("requested", filtered.size());
+            exercises = TmcUtil.downloadExercises(ctx, filtered, progobs);
+            if (exercises != null) {
+                span.setAttribute("downloaded", exercises.size());
+            }
+        }
         if (exercises == null) {
             io.errorln("Failed to download exercises");
             CourseInfoIo.deleteConfigDirectory(course, workDir.getWorkingDirectory());
             return;
         }
 
+        ctx.getCourseRegistry()
+                .register(info, workDir.getWorkingDirectory().resolve(course.getName()));
         printStatistics(course, filtered.size(), exercises.size());
+        WarmupCommand.warmUpAfterDownload(
+                ctx, workDir.getWorkingDirectory().resolve(course.getName()), exercises);
+    }
+
+    private void downloadSolutions(Course course, Path root) {
+        Io io = ctx.getIo();
+        List<ArchiveDownloader.Archive> archives = new ArrayList<>();
+        for (Exercise exercise : course.getExercises()) {
+            if (exercise.getSolutionDownloadUrl() == null) {
+                continue;
+            }
+            // the solution changes only when the exercise does
+            archives.add(
+                    new ArchiveDownloader.Archive(
+                            exercise.getName(),
+                            exercise.getSolutionDownloadUrl(),
+                            root.resolve(exercise.getName()),
+                            exercise.getChecksum()));
+        }
+        if (archives.isEmpty()) {
+            io.println("The '" + course.getName() + "' course has no model solutions available.");
+            return;
+        }
+        printSummary("solutions", root, downloadArchives(root, archives));
+    }
+
+    private void downloadSubmissions(Course course, Path root) {
+        List<CourseSubmission> submissions = TmcUtil.listCourseSubmissions(ctx, course);
+        if (submissions == null) {
+            return;
+        }
+        // the latest submission of each student to each exercise has the largest id
+        Map<String, CourseSubmission> latest = new LinkedHashMap<>();
+        for (CourseSubmission submission : submissions) {
+            String key = submission.getExerciseName() + "/" + submission.getUserId();
+            CourseSubmission previous = latest.get(key);
+            if (previous == null || previous.getId() < submission.getId()) {
+                latest.put(key, submission);
+            }
+        }
+        if (latest.isEmpty()) {
+            ctx.getIo().println("The '" + course.getName() + "' course has no submissions.");
+            return;
+        }
+
+        String serverAddress = ctx.getSettings().getServerAddress();
+        List<ArchiveDownloader.Archive> archives = new ArrayList<>();
+        for (Map.Entry<String, CourseSubmission> entry : latest.entrySet()) {
+            CourseSubmission submission = entry.getValue();
+            archives.add(
+                    new ArchiveDownloader.Archive(
+                            entry.getKey(),
+                            SubmissionClient.getSubmissionZipUrl(serverAddress, submission),
+                            root.resolve(submission.getExerciseName())
+                                    .resolve(String.valueOf(submission.getUserId())),
+                            "submission-" + submission.getId()));
+        }
+        printSummary("submissions", root, downloadArchives(root, archives));
+    }
+
+    private ArchiveDownloader.Summary downloadArchives(
+            Path root, List<ArchiveDownloader.Archive> archives) {
+        Color color1 = ctx.getColorProperty("progressbar-left", ctx.getApp());
+        Color color2 = ctx.getColorProperty("progressbar-right", ctx.getApp());
+        // closed before the summary so that it's printed below the progress bars
+        try (MultiProgressObserver progobs =
+                new MultiProgressObserver(ctx.getIo(), color1, color2)) {
+            return TmcUtil.downloadArchives(ctx, root, archives, progobs);
+        }
+    }
+
+    private void printSummary(String what, Path root, ArchiveDownloader.Summary summary) {
+        if (summary == null) {
+            return;
+        }
+        Io io = ctx.getIo();
+        io.println(
+                "Downloaded "
+                        + summary.getDownloaded().size()
+                        + " "
+                        + what
+                        + " into "
+                        + root
+                        + ", "
+                        + summary.getUnchanged().size()
+                        + " were unchanged.");
+        if (!summary.getFailed().isEmpty()) {
+            io.println(
+                    ColorUtil.colorString(
+                            "Failed to download " + String.join(", ", summary.getFailed()),
+                            Color.RED));
+        }
+    }
+
+    private void printExistingCopies(Course course, Account account) {
+        Path target = ctx.getWorkDir().getWorkingDirectory().resolve(course.getName());
+        for (CourseRegistry.Entry entry :
+                ctx.getCourseRegistry()
+                        .findCourse(course.getName(), account.getServerAddress())) {
+            if (!entry.getPath().equals(target.toAbsolutePath().normalize())) {
+                ctx.getIo()
+                        .println(
+                                "The course '"
+                                        + course.getName()
+                                        + "' has already been downloaded into "
+                                        + entry.getPath());
+            }
+        }
     }
 
     private List<Exercise> getFilteredExercises(Course course) {
@@ -9,6 +9,8 @@ import fi.helsinki.cs.tmc.cli.io.ColorUtil;
 import fi.helsinki.cs.tmc.cli.io.Io;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.cli.shared.CourseFinder;
+import fi.helsinki.cs.tmc.cli.shared.JsonResultWriter;
+import fi.helsinki.cs.tmc.cli.shared.OutputFormat;
 
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
@@ -31,16 +33,18 @@ public class InfoCommand extends AbstractCommand {
     private boolean useWorkingDirectory;
     private boolean fetchFromInternet;
     private boolean showAll;
+    private JsonResultWriter jsonWriter;
 
     @Override
     public String[] getUsages() {
-        return new String[] {"[-a] [-i] COURSE-OR-EXERSICE"};
+        return new String[] {"[-a] [-i] [--format FORMAT] COURSE-OR-EXERSICE"};
     }
 
     @Override
     public void getOptions(Options options) {
         options.addOption("a", "all", false, "Show all information for a specific course");
         options.addOption("i", "internet", false, "Get the information from the server");
+        OutputFormat.addOption(options);
     }
 
     @Override
@@ -53,6 +57,13 @@ public class InfoCommand extends AbstractCommand {
         useWorkingDirectory = (stringArgs.length == 0);
         fetchFromInternet = args.hasOption("i");
         showAll = args.hasOption("a");
+        OutputFormat format = OutputFormat.parse(io, args);
+        if (format == null) {
+            return;
+        }
+        if (format == OutputFormat.JSON) {
+            jsonWriter = new JsonResultWriter(io, "info");
+        }
 
         if (fetchFromInternet) {
             if (useWorkingDirectory) {
@@ -135,6 +146,15 @@ public class InfoCommand extends AbstractCommand {
     }
 
     private void printCourse(Course course) {
+        if (jsonWriter != null) {
+            jsonWriter.writeCourse(course);
+            if (course.getExercises() != null) {
+                for (Exercise exercise : course.getExercises()) {
+                    jsonWriter.writeExercise(course.getName(), exercise);
+                }
+            }
+            return;
+        }
         printCourseShort(course);
         if (showAll) {
             printCourseDetails(course);
@@ -177,6 +197,10 @@ public class InfoCommand extends AbstractCommand {
     }
 
     private void printExercise(Exercise exercise) {
+        if (jsonWriter != null) {
+            jsonWriter.writeExercise(courseName, exercise);
+            return;
+        }
         if (showAll) {
             printExerciseFull(exercise);
         } else {
@@ -2,6 +2,7 @@ package fi.helsinki.cs.tmc.cli.command;
 
 import fi.helsinki.cs.tmc.cli.backend.Account;
 import fi.helsinki.cs.tmc.cli.backend.AccountList;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
 import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
 import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
@@ -16,6 +17,9 @@ import fi.helsinki.cs.tmc.core.domain.Course;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 /**
@@ -28,13 +32,19 @@ public class ListCoursesCommand extends AbstractCommand {
     private Io io;
 
     @Override
-    public void getOptions(Options options) {}
+    public void getOptions(Options options) {
+        options.addOption("l", "local", false, "List the courses downloaded on this computer");
+    }
 
     @Override
     public void run(CliContext context, CommandLine args) {
         this.ctx = context;
         this.io = ctx.getIo();
 
+        if (args.hasOption("l")) {
+            printLocalCourses();
+            return;
+        }
 
         if (!this.ctx.checkIsLoggedIn(false, true)) {
             return;
@@ -82,4 +92,26 @@ public class ListCoursesCommand extends AbstractCommand {
         }
         io.println("\nFound " + courses.size() + " courses from the server.");
     }
+
+    private void printLocalCourses() {
+        List<CourseRegistry.Entry> entries = ctx.getCourseRegistry().getEntries();
+        if (entries.isEmpty()) {
+            io.errorln("No courses have been downloaded on this computer.");
+            return;
+        }
+        DateTimeFormatter formatter =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+        for (CourseRegistry.Entry entry : entries) {
+            io.println(entry.getCourseName());
+            io.println("  " + entry.getPath());
+            io.println(
+                    "  "
+                            + entry.getUsername()
+                            + " at "
+                            + entry.getServerAddress()
+                            + ", last synced "
+                            + formatter.format(Instant.ofEpochMilli(entry.getLastSync())));
+        }
+        io.println("\nFound " + entries.size() + " courses on this computer.");
+    }
 }
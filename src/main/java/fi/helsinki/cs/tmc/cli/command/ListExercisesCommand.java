@@ -10,6 +10,8 @@ import fi.helsinki.cs.tmc.cli.io.ColorUtil;
 import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
 import fi.helsinki.cs.tmc.cli.io.ExternalsUtil;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.shared.JsonResultWriter;
+import fi.helsinki.cs.tmc.cli.shared.OutputFormat;
 
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
@@ -27,13 +29,14 @@ public class ListExercisesCommand extends AbstractCommand {
 
     @Override
     public String[] getUsages() {
-        return new String[] {"[-n] [-i] COURSE"};
+        return new String[] {"[-n] [-i] [--format FORMAT] COURSE"};
     }
 
     @Override
     public void getOptions(Options options) {
         options.addOption("n", "no-pager", false, "Don't use a pager to list the exercises");
         options.addOption("i", "internet", false, "Get the list of exercises from the server");
+        OutputFormat.addOption(options);
     }
 
     @Override
@@ -41,6 +44,11 @@ public class ListExercisesCommand extends AbstractCommand {
         this.ctx = context;
         this.io = ctx.getIo();
 
+        OutputFormat format = OutputFormat.parse(io, args);
+        if (format == null) {
+            return;
+        }
+
         if (!ctx.checkIsLoggedIn(false, true)) {
             return;
         }
@@ -55,6 +63,13 @@ public class ListExercisesCommand extends AbstractCommand {
             return;
         }
         this.ctx.getAnalyticsFacade().saveAnalytics(courseName, "list_exercises");
+        if (format == OutputFormat.JSON) {
+            JsonResultWriter writer = new JsonResultWriter(io, "exercises");
+            for (Exercise exercise : exercises) {
+                writer.writeExercise(courseName, exercise);
+            }
+            return;
+        }
         printExercises(courseName, exercises, !args.hasOption("n") && !EnvironmentUtil.isWindows());
     }
 
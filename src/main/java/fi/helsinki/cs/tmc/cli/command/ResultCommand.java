@@ -0,0 +1,146 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.SubmissionStatus;
+import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
+import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.core.Command;
+import fi.helsinki.cs.tmc.cli.io.Color;
+import fi.helsinki.cs.tmc.cli.io.ColorUtil;
+import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.shared.ResultPrinter;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the results of the submissions that were sent with 'tmc submit --no-wait'.
+ */
+@Command(name = "result", desc = "Show the results of submissions sent with --no-wait")
+public class ResultCommand extends AbstractCommand {
+
+    private CliContext ctx;
+    private Io io;
+    private boolean wait;
+
+    @Override
+    public String[] getUsages() {
+        return new String[] {"tmc result [-a] [-d] [--wait] [EXERCISES...]"};
+    }
+
+    @Override
+    public void getOptions(Options options) {
+        options.addOption("a", "all", false, "Show all test results");
+        options.addOption("d", "details", false, "Show detailed error message");
+        options.addOption(
+                OptionBuilder.withLongOpt("wait")
+                        .withDescription("Wait until the submissions have been processed")
+                        .create());
+    }
+
+    @Override
+    public void run(CliContext context, CommandLine args) {
+        this.ctx = context;
+        this.io = context.getIo();
+        this.wait = args.hasOption("wait");
+        WorkDir workDir = ctx.getWorkDir();
+
+        if (!ctx.checkIsLoggedIn(false, true)) {
+            return;
+        }
+
+        for (String exercise : args.getArgs()) {
+            if (!workDir.addPath(exercise)) {
+                io.errorln("Error: " + exercise + " is not a valid exercise.");
+                return;
+            }
+        }
+        if (workDir.getConfigFile() == null) {
+            io.errorln("You have to be in a course directory to see the results.");
+            return;
+        }
+        CourseInfo info = ctx.getCourseInfo();
+        if (info == null) {
+            return;
+        }
+
+        List<Exercise> pending = new ArrayList<>();
+        for (Exercise exercise : workDir.getExercises()) {
+            if (info.getPendingSubmission(exercise.getName()) != null) {
+                pending.add(exercise);
+            }
+        }
+        if (pending.isEmpty()) {
+            io.println("No submissions are waiting for results.");
+            return;
+        }
+
+        Color color1 = ctx.getColorProperty("testresults-left", ctx.getApp());
+        Color color2 = ctx.getColorProperty("testresults-right", ctx.getApp());
+        ResultPrinter resultPrinter =
+                new ResultPrinter(
+                        io, args.hasOption("d"), args.hasOption("a"), color1, color2);
+        boolean isOnlyExercise = pending.size() == 1;
+        boolean changed = false;
+        for (Exercise exercise : pending) {
+            io.println(ColorUtil.colorString("Result of " + exercise.getName(), Color.YELLOW));
+            SubmissionResult result = fetchResult(info, exercise, resultPrinter);
+            if (result == null) {
+                io.println();
+                continue;
+            }
+            resultPrinter.printSubmissionResult(result, isOnlyExercise);
+            exercise.setAttempted(true);
+            if (result.getStatus() == SubmissionResult.Status.OK) {
+                exercise.setCompleted(true);
+                info.setSubmittedDigest(
+                        exercise.getName(), info.getPendingDigest(exercise.getName()));
+            }
+            info.removePendingSubmission(exercise.getName());
+            changed = true;
+            io.println();
+        }
+        if (!isOnlyExercise) {
+            resultPrinter.printTotalExerciseResults();
+        }
+        if (changed) {
+            CourseInfoIo.save(info, workDir.getConfigFile());
+        }
+    }
+
+    /**
+     * Get the result of the submission, or print its place in the queue if it's still being
+     * processed and we aren't waiting for it.
+     *
+     * @return the result or null if there is no result yet
+     */
+    private SubmissionResult fetchResult(
+            CourseInfo info, Exercise exercise, ResultPrinter resultPrinter) {
+        URI submissionUrl = URI.create(info.getPendingSubmission(exercise.getName()));
+        if (wait) {
+            return TmcUtil.waitForSubmissionResult(
+                    ctx, submissionUrl, resultPrinter::printQueueStatus);
+        }
+        SubmissionStatus status = TmcUtil.fetchSubmissionStatus(ctx, submissionUrl);
+        if (status == null) {
+            return null;
+        }
+        if (status.isProcessing()) {
+            resultPrinter.printQueueStatus(status);
+            io.println("Use 'tmc result --wait' to wait for the result.");
+            return null;
+        }
+        return status.getResult();
+    }
+}
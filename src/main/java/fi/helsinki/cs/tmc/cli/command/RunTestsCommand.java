@@ -9,34 +9,47 @@ import fi.helsinki.cs.tmc.cli.core.Command;
 import fi.helsinki.cs.tmc.cli.io.Color;
 import fi.helsinki.cs.tmc.cli.io.ColorUtil;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.io.MultiProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.shared.JsonResultWriter;
+import fi.helsinki.cs.tmc.cli.shared.OutputFormat;
 import fi.helsinki.cs.tmc.cli.shared.ResultPrinter;
+import fi.helsinki.cs.tmc.cli.shared.Workspace;
+import fi.helsinki.cs.tmc.cli.trace.Span;
 
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 
+import java.io.IOException;
 import java.util.List;
 
 @Command(name = "test", desc = "Run local exercise tests")
 public class RunTestsCommand extends AbstractCommand {
     private boolean showPassed;
     private boolean showDetails;
+    private OutputFormat format;
 
     @Override
     public void getOptions(Options options) {
         options.addOption("a", "all", false, "Show all test results");
         options.addOption("d", "details", false, "Show detailed error message");
+        options.addOption(
+                OptionBuilder.withLongOpt("recursive")
+                        .withDescription("Test all the courses under the current directory")
+                        .create());
+        OutputFormat.addOption(options);
     }
 
     @Override
     public void run(CliContext context, CommandLine args) {
         Io io = context.getIo();
 
-        String[] paths = parseArgs(args);
+        String[] paths = parseArgs(io, args);
         if (paths == null) {
             return;
         }
@@ -45,6 +58,15 @@ public class RunTestsCommand extends AbstractCommand {
             return;
         }
 
+        if (args.hasOption("recursive")) {
+            if (paths.length > 0 || format == OutputFormat.JSON) {
+                io.errorln("The --recursive option can't be used with exercises or --format");
+                return;
+            }
+            testWorkspace(context);
+            return;
+        }
+
         WorkDir workDir = context.getWorkDir();
         for (String path : paths) {
             if (!workDir.addPath(path)) {
@@ -66,6 +88,12 @@ public class RunTestsCommand extends AbstractCommand {
         ResultPrinter resultPrinter =
                 new ResultPrinter(io, showDetails, showPassed, passedColor, failedColor);
 
+        if (format == OutputFormat.JSON) {
+            runTestsWithJsonOutput(context, exercises, info);
+            CourseInfoIo.save(info, workDir.getConfigFile());
+            return;
+        }
+
         boolean isOnlyExercise = (exercises.size() == 1);
 
         for (Exercise exercise : exercises) {
@@ -73,14 +101,22 @@ public class RunTestsCommand extends AbstractCommand {
 
             io.println(ColorUtil.colorString("Testing: " + exercise.getName(), Color.YELLOW));
 
-            RunResult runResult = TmcUtil.runLocalTests(context, exercise);
+            RunResult runResult;
+            ValidationResult valResult = null;
+            try (Span span = context.getTracer().start("cli", "test.exercise")) {
+                span.setAttribute("exercise", exercise.getName());
+                runResult = TmcUtil.runLocalTests(context, exercise);
+                if (runResult != null) {
+                    span.setAttribute("status", runResult.status);
+                    valResult = TmcUtil.runCheckStyle(context, exercise);
+                }
+            }
             if (runResult == null) {
                 io.errorln("Failed to run test");
                 resultPrinter.addFailedExercise();
                 continue;
             }
 
-            ValidationResult valResult = TmcUtil.runCheckStyle(context, exercise);
             boolean testsPassed =
                     resultPrinter.printLocalTestResult(runResult, valResult, isOnlyExercise);
 
@@ -94,9 +130,99 @@ public class RunTestsCommand extends AbstractCommand {
         }
     }
 
-    private String[] parseArgs(CommandLine args) {
+    private void runTestsWithJsonOutput(
+            CliContext context, List<Exercise> exercises, CourseInfo info) {
+        JsonResultWriter writer = new JsonResultWriter(context.getIo(), "test");
+
+        for (Exercise exercise : exercises) {
+            context.getAnalyticsFacade().saveAnalytics(exercise, "test");
+
+            long start = System.nanoTime();
+            RunResult runResult;
+            ValidationResult valResult = null;
+            try (Span span = context.getTracer().start("cli", "test.exercise")) {
+                span.setAttribute("exercise", exercise.getName());
+                runResult = TmcUtil.runLocalTests(context, exercise);
+                if (runResult != null) {
+                    span.setAttribute("status", runResult.status);
+                    valResult = TmcUtil.runCheckStyle(context, exercise);
+                }
+            }
+            if (runResult == null) {
+                writer.writeError(exercise.getName(), "Failed to run test");
+                continue;
+            }
+            long timeMillis = (System.nanoTime() - start) / 1000000;
+
+            boolean testsPassed =
+                    writer.writeLocalTestResult(
+                            exercise.getName(), runResult, valResult, timeMillis);
+            updateCourseInfo(info, exercise, testsPassed);
+        }
+        writer.writeSummary();
+    }
+
+    private void testWorkspace(CliContext context) {
+        Workspace workspace = Workspace.scan(context);
+        if (workspace.getCourseDirectories().isEmpty()) {
+            context.getIo().errorln("No courses found under " + workspace.getRoot());
+            return;
+        }
+        Color color1 = context.getColorProperty("progressbar-left", context.getApp());
+        Color color2 = context.getColorProperty("progressbar-right", context.getApp());
+        List<Workspace.Result<String>> results;
+        try (MultiProgressObserver progobs =
+                new MultiProgressObserver(context.getIo(), color1, color2)) {
+            // tmc-langs builds the exercises with mvn, which mustn't run in parallel
+            results =
+                    workspace.run(
+                            context,
+                            courseContext -> testCourse(courseContext),
+                            progobs,
+                            Workspace.ONE_AT_A_TIME);
+        }
+        workspace.printResults(context.getIo(), results, message -> message);
+    }
+
+    private String testCourse(CliContext courseContext) throws IOException {
+        CourseInfo info = courseContext.getCourseInfo();
+        if (info == null) {
+            throw new IOException("Invalid course file");
+        }
+        List<Exercise> exercises = courseContext.getWorkDir().getExercises();
+        int passed = 0;
+        int notRun = 0;
+        for (Exercise exercise : exercises) {
+            RunResult runResult = TmcUtil.runLocalTests(courseContext, exercise);
+            if (runResult == null) {
+                notRun++;
+                continue;
+            }
+            ValidationResult valResult = TmcUtil.runCheckStyle(courseContext, exercise);
+            boolean testsPassed =
+                    runResult.status == RunResult.Status.PASSED
+                            && ResultPrinter.validationsPassed(valResult);
+            if (testsPassed) {
+                passed++;
+            }
+            updateCourseInfo(info, exercise, testsPassed);
+        }
+        CourseInfoIo.save(info, courseContext.getWorkDir().getConfigFile());
+
+        String summary = passed + "/" + exercises.size() + " exercises passed";
+        if (notRun > 0) {
+            summary += ", failed to run the tests of " + notRun;
+        }
+        return summary;
+    }
+
+    private String[] parseArgs(Io io, CommandLine args) {
         this.showPassed = args.hasOption("a");
         this.showDetails = args.hasOption("d");
+        this.format = OutputFormat.parse(io, args);
+        if (format == null) {
+            return null;
+        }
         return args.getArgs();
     }
 
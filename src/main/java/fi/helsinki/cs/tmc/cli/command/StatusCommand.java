@@ -0,0 +1,157 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.core.Command;
+import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.shared.ExerciseUpdater;
+import fi.helsinki.cs.tmc.cli.shared.Workspace;
+
+import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+import java.io.IOException;
+import java.util.List;
+
+@Command(name = "status", desc = "Show the progress and updates of the course")
+public class StatusCommand extends AbstractCommand {
+
+    private CliContext ctx;
+    private Io io;
+
+    @Override
+    public String[] getUsages() {
+        return new String[] {"[--recursive]"};
+    }
+
+    @Override
+    public void getOptions(Options options) {
+        options.addOption(
+                OptionBuilder.withLongOpt("recursive")
+                        .withDescription(
+                                "Show the status of all the courses under the current directory")
+                        .create());
+    }
+
+    @Override
+    public void run(CliContext context, CommandLine args) {
+        this.ctx = context;
+        this.io = ctx.getIo();
+
+        if (args.getArgs().length > 0) {
+            io.errorln("Use in the course directory");
+            printUsage(ctx);
+            return;
+        }
+
+        if (!ctx.checkIsLoggedIn(false, true)) {
+            return;
+        }
+
+        if (args.hasOption("recursive")) {
+            Workspace workspace = Workspace.scan(ctx);
+            if (workspace.getCourseDirectories().isEmpty()) {
+                io.errorln("No courses found under " + workspace.getRoot());
+                return;
+            }
+            List<Workspace.Result<CourseStatus>> results =
+                    workspace.run(ctx, courseContext -> getStatus(courseContext));
+            workspace.printResults(io, results, CourseStatus::toString);
+            return;
+        }
+
+        if (ctx.getWorkDir().getCourseDirectory() == null) {
+            io.errorln("Not a course directory");
+            return;
+        }
+        try {
+            getStatus(ctx).print(io);
+        } catch (IOException e) {
+            io.errorln(e.getMessage());
+        }
+    }
+
+    private CourseStatus getStatus(CliContext courseContext) throws IOException {
+        CourseInfo info = courseContext.getCourseInfo();
+        if (info == null) {
+            throw new IOException("Invalid course file");
+        }
+        CourseStatus status = new CourseStatus(info.getCourseName());
+        status.passedLocally = info.getLocalCompletedExercises().size();
+
+        ExerciseUpdater exerciseUpdater = new ExerciseUpdater(courseContext, info.getCourse());
+        Course serverCourse = exerciseUpdater.fetchCourse();
+        List<Exercise> exercises =
+                serverCourse != null ? serverCourse.getExercises() : info.getExercises();
+        for (Exercise exercise : exercises) {
+            if (exercise.isLocked()) {
+                continue;
+            }
+            status.total++;
+            if (exercise.isCompleted()) {
+                status.completed++;
+            }
+        }
+        if (serverCourse != null) {
+            status.updatesChecked = true;
+            exerciseUpdater.updatesAvailable();
+            status.newExercises = exerciseUpdater.getNewExercises().size();
+            status.modifiedExercises = exerciseUpdater.getUpdatedExercises().size();
+        }
+        return status;
+    }
+
+    static class CourseStatus {
+
+        private final String courseName;
+        private int completed;
+        private int total;
+        private int passedLocally;
+        private boolean updatesChecked;
+        private int newExercises;
+        private int modifiedExercises;
+
+        CourseStatus(String courseName) {
+            this.courseName = courseName;
+        }
+
+        private boolean hasUpdates() {
+            return newExercises > 0 || modifiedExercises > 0;
+        }
+
+        void print(Io io) {
+            io.println("Course: " + courseName);
+            io.println("Completed: " + completed + "/" + total + " exercises");
+            io.println("Passed locally: " + passedLocally + " exercises");
+            if (!updatesChecked) {
+                io.println("Could not check for updates");
+            } else if (hasUpdates()) {
+                io.println(
+                        newExercises + " new and " + modifiedExercises
+                                + " modified exercises available, use 'tmc update' to"
+                                + " download them");
+            } else {
+                io.println("All exercises are up-to-date");
+            }
+        }
+
+        @Override
+        public String toString() {
+            String updates;
+            if (!updatesChecked) {
+                updates = "could not check for updates";
+            } else if (hasUpdates()) {
+                updates = newExercises + " new, " + modifiedExercises + " modified";
+            } else {
+                updates = "up-to-date";
+            }
+            return courseName + " " + completed + "/" + total + " completed, "
+                    + passedLocally + " passed locally, " + updates;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package fi.helsinki.cs.tmc.cli.command;
 import com.google.common.base.Optional;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.ExerciseDigest;
 import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
@@ -13,7 +14,11 @@ import fi.helsinki.cs.tmc.cli.io.Io;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.cli.shared.ExerciseUpdater;
 import fi.helsinki.cs.tmc.cli.shared.FeedbackHandler;
+import fi.helsinki.cs.tmc.cli.shared.JsonResultWriter;
+import fi.helsinki.cs.tmc.cli.shared.OutputFormat;
 import fi.helsinki.cs.tmc.cli.shared.ResultPrinter;
+import fi.helsinki.cs.tmc.cli.trace.Span;
+import fi.helsinki.cs.tmc.cli.trace.Tracer;
 
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
@@ -23,6 +28,7 @@ import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
 
 import fi.helsinki.cs.tmc.core.holders.TmcSettingsHolder;
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +37,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Command(name = "submit", desc = "Submit exercises")
 public class SubmitCommand extends AbstractCommand {
@@ -43,6 +51,9 @@ public class SubmitCommand extends AbstractCommand {
     private boolean showAll;
     private boolean showDetails;
     private boolean filterUncompleted;
+    private boolean force;
+    private boolean noWait;
+    private OutputFormat format;
     private static int API_VERSION = 8;
     private Path courseInfoFile;
 
@@ -52,6 +63,18 @@ public class SubmitCommand extends AbstractCommand {
         options.addOption("d", "details", false, "Show detailed error message");
         options.addOption(
                 "c", "completed", false, "Filter out exercises that haven't been locally tested");
+        options.addOption(
+                OptionBuilder.withLongOpt("force")
+                        .withDescription(
+                                "Submit also the exercises that haven't changed since they were"
+                                        + " completed")
+                        .create());
+        options.addOption(
+                OptionBuilder.withLongOpt("no-wait")
+                        .withDescription(
+                                "Don't wait for the results, see them later with 'tmc result'")
+                        .create());
+        OutputFormat.addOption(options);
     }
 
     @Override
@@ -64,19 +87,23 @@ public class SubmitCommand extends AbstractCommand {
         if (exercisesFromArgs == null) {
             return;
         }
+        JsonResultWriter jsonWriter = null;
+        if (format == OutputFormat.JSON) {
+            jsonWriter = new JsonResultWriter(io, "submit");
+        }
 
         if (!ctx.checkIsLoggedIn(false, true)) {
             return;
         }
 
         if (exercisesFromArgs.length == 0 && workDir.getExercises().size() != 1) {
-            io.println("Please give exercise to submit as argument");
+            fail(jsonWriter, "Please give exercise to submit as argument");
             return;
         }
 
         for (String exercise : exercisesFromArgs) {
             if (!workDir.addPath(exercise)) {
-                io.println("Error: " + exercise + " is not a valid exercise.");
+                fail(jsonWriter, "Error: " + exercise + " is not a valid exercise.");
                 return;
             }
         }
@@ -90,7 +117,7 @@ public class SubmitCommand extends AbstractCommand {
         courseInfoFile = workDir.getConfigFile();
 
         if (apiUrlIsOutdated(currentCourse)) {
-            updateCourseAndExercises();
+            updateCourseAndExercises(jsonWriter);
         }
 
         List<Exercise> exercises;
@@ -103,10 +130,10 @@ public class SubmitCommand extends AbstractCommand {
 
         if (exercises.isEmpty()) {
             if (filterUncompleted && workDir.getCourseDirectory() != null) {
-                io.println("No locally tested exercises.");
+                fail(jsonWriter, "No locally tested exercises.");
                 return;
             }
-            io.println("No exercises specified.");
+            fail(jsonWriter, "No exercises specified.");
             return;
         }
 
@@ -116,22 +143,69 @@ public class SubmitCommand extends AbstractCommand {
         ResultPrinter resultPrinter =
                 new ResultPrinter(io, this.showDetails, this.showAll, color1, color2);
 
-        boolean isOnlyExercise = (exercises.size() == 1);
-        List<Exercise> submitExercises = exercises;
+        Tracer tracer = ctx.getTracer();
+        Map<String, String> digests;
+        try (Span span = tracer.start("cli", "submit.digest")) {
+            span.setAttribute("exercises", exercises.size());
+            digests = computeDigests(workDir, exercises);
+        }
+        List<Exercise> submitExercises = skipUnchanged(info, exercises, digests, jsonWriter);
+        if (submitExercises.isEmpty()) {
+            if (jsonWriter != null) {
+                jsonWriter.writeSummary();
+            }
+            return;
+        }
+
+        boolean isOnlyExercise = (submitExercises.size() == 1);
         List<List<FeedbackQuestion>> feedbackLists = new ArrayList<>();
         List<String> exercisesWithFeedback = new ArrayList<>();
         List<URI> feedbackUris = new ArrayList<>();
 
         for (Exercise exercise : submitExercises) {
             this.ctx.getAnalyticsFacade().saveAnalytics(exercise, "submit");
-            io.println(ColorUtil.colorString("Submitting: " + exercise.getName(), Color.YELLOW));
+            if (jsonWriter == null) {
+                io.println(
+                        ColorUtil.colorString("Submitting: " + exercise.getName(), Color.YELLOW));
+            }
             if (exercise.hasDeadlinePassed()) {
                 logger.warn("Tried to submit exercise " + exercise.getName() + " after deadline.");
-                io.errorln("Deadline has passed for this exercise at " + exercise.getDeadline());
+                String message =
+                        "Deadline has passed for this exercise at " + exercise.getDeadline();
+                if (jsonWriter != null) {
+                    jsonWriter.writeError(exercise.getName(), message);
+                    jsonWriter.writeSummary();
+                } else {
+                    io.errorln(message);
+                }
                 return;
             }
-            SubmissionResult result = TmcUtil.submitExercise(ctx, exercise);
+            if (noWait) {
+                if (!sendWithoutWaiting(info, exercise, digests, jsonWriter)) {
+                    CourseInfoIo.save(info, courseInfoFile);
+                    return;
+                }
+                continue;
+            }
+            long start = System.nanoTime();
+            SubmissionResult result;
+            try (Span span = tracer.start("cli", "submit.exercise")) {
+                span.setAttribute("exercise", exercise.getName());
+                result =
+                        TmcUtil.submitExercise(
+                                ctx,
+                                exercise,
+                                jsonWriter == null ? resultPrinter::printQueueStatus : null);
+                if (result != null) {
+                    span.setAttribute("status", result.getStatus());
+                }
+            }
             if (result == null) {
+                if (jsonWriter != null) {
+                    jsonWriter.writeError(exercise.getName(), "Submission failed.");
+                    jsonWriter.writeSummary();
+                    return;
+                }
                 io.errorln("Submission failed.");
                 if (!isOnlyExercise) {
                     io.errorln("Try to submit exercises one by one.");
@@ -139,11 +213,18 @@ public class SubmitCommand extends AbstractCommand {
                 return;
             }
 
-            resultPrinter.printSubmissionResult(result, isOnlyExercise);
+            if (jsonWriter != null) {
+                long timeMillis = (System.nanoTime() - start) / 1000000;
+                jsonWriter.writeSubmissionResult(exercise.getName(), result, timeMillis);
+            } else {
+                resultPrinter.printSubmissionResult(result, isOnlyExercise);
+            }
 
             exercise.setAttempted(true);
+            info.removePendingSubmission(exercise.getName());
             if (result.getStatus() == SubmissionResult.Status.OK) {
                 exercise.setCompleted(true);
+                info.setSubmittedDigest(exercise.getName(), digests.get(exercise.getName()));
             }
 
             List<FeedbackQuestion> feedback = result.getFeedbackQuestions();
@@ -152,17 +233,123 @@ public class SubmitCommand extends AbstractCommand {
                 exercisesWithFeedback.add(exercise.getName());
                 feedbackUris.add(URI.create(result.getFeedbackAnswerUrl()));
             }
-            io.println();
+            if (jsonWriter == null) {
+                io.println();
+            }
+        }
+        if (noWait) {
+            CourseInfoIo.save(info, courseInfoFile);
+            if (jsonWriter != null) {
+                jsonWriter.writeSummary();
+            }
+            return;
+        }
+        // the same course details are used for the statuses and the update check
+        ExerciseUpdater exerciseUpdater = new ExerciseUpdater(ctx, currentCourse);
+        if (jsonWriter != null) {
+            // the output is meant for scripts, so don't ask questions
+            try (Span span = tracer.start("cli", "submit.updateCourseJson")) {
+                updateCourseJson(exerciseUpdater, submitExercises, info, jsonWriter);
+            }
+            // the summary is the last line of the output
+            jsonWriter.writeSummary();
+            return;
         }
         if (!isOnlyExercise) {
             resultPrinter.printTotalExerciseResults();
         }
 
-        updateCourseJson(submitExercises, info);
-        checkForExerciseUpdates(currentCourse);
+        try (Span span = tracer.start("cli", "submit.updateCourseJson")) {
+            updateCourseJson(exerciseUpdater, submitExercises, info, null);
+        }
+        try (Span span = tracer.start("cli", "submit.checkForExerciseUpdates")) {
+            checkForExerciseUpdates(exerciseUpdater);
+        }
         sendFeedbacks(feedbackLists, exercisesWithFeedback, feedbackUris);
     }
 
+    private static Map<String, String> computeDigests(WorkDir workDir, List<Exercise> exercises) {
+        Map<String, Path> directories = new LinkedHashMap<>();
+        for (Exercise exercise : exercises) {
+            directories.put(
+                    exercise.getName(),
+                    workDir.getCourseDirectory().resolve(exercise.getName()));
+        }
+        return ExerciseDigest.computeAll(directories);
+    }
+
+    /**
+     * Leave out the completed exercises whose files are the same as in the submission that
+     * passed, unless --force was given.
+     */
+    private List<Exercise> skipUnchanged(
+            CourseInfo info,
+            List<Exercise> exercises,
+            Map<String, String> digests,
+            JsonResultWriter jsonWriter) {
+        if (force) {
+            return exercises;
+        }
+        List<Exercise> changed = new ArrayList<>();
+        for (Exercise exercise : exercises) {
+            String digest = digests.get(exercise.getName());
+            if (!exercise.isCompleted()
+                    || digest == null
+                    || !digest.equals(info.getSubmittedDigest(exercise.getName()))) {
+                changed.add(exercise);
+                continue;
+            }
+            logger.info("Skipping unchanged exercise " + exercise.getName());
+            if (jsonWriter != null) {
+                jsonWriter.writeSkipped(exercise.getName(), "unchanged");
+            } else {
+                io.println(
+                        "Skipping "
+                                + exercise.getName()
+                                + ", it hasn't changed since it was completed."
+                                + " Use --force to submit it anyway.");
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Send the exercise and store the submission URL in the course file for 'tmc result'.
+     *
+     * @return false if the submission failed
+     */
+    private boolean sendWithoutWaiting(
+            CourseInfo info,
+            Exercise exercise,
+            Map<String, String> digests,
+            JsonResultWriter jsonWriter) {
+        URI submissionUrl;
+        try (Span span = ctx.getTracer().start("cli", "submit.send")) {
+            span.setAttribute("exercise", exercise.getName());
+            submissionUrl = TmcUtil.sendSubmission(ctx, exercise);
+        }
+        if (submissionUrl == null) {
+            if (jsonWriter != null) {
+                jsonWriter.writeError(exercise.getName(), "Submission failed.");
+                jsonWriter.writeSummary();
+            } else {
+                io.errorln("Submission failed.");
+            }
+            return false;
+        }
+        exercise.setAttempted(true);
+        info.setPendingSubmission(
+                exercise.getName(), submissionUrl.toString(), digests.get(exercise.getName()));
+        if (jsonWriter != null) {
+            jsonWriter.writeSubmitted(exercise.getName(), submissionUrl.toString());
+        } else {
+            io.println(
+                    "Submitted " + exercise.getName() + ". Use 'tmc result "
+                            + exercise.getName() + "' to see the result.");
+        }
+        return true;
+    }
+
     private void sendFeedbacks(List<List<FeedbackQuestion>> feedbackLists, List<String> exercisesWithFeedback, List<URI> feedbackUris) {
         for (int i = 0; i < exercisesWithFeedback.size(); i++) {
             if (io.readConfirmation(
@@ -178,22 +365,58 @@ public class SubmitCommand extends AbstractCommand {
         }
     }
 
+    /**
+     * Tell that the command can't continue, as an error event when the output is json.
+     */
+    private void fail(JsonResultWriter jsonWriter, String message) {
+        if (jsonWriter != null) {
+            jsonWriter.writeError(null, message);
+            jsonWriter.writeSummary();
+        } else {
+            io.println(message);
+        }
+    }
+
+    /**
+     * Tell about a problem that doesn't stop the command, as an error event when the output
+     * is json.
+     */
+    private void warn(JsonResultWriter jsonWriter, String message) {
+        if (jsonWriter != null) {
+            jsonWriter.writeError(null, message);
+        } else {
+            io.println(message);
+        }
+    }
+
     /**
      * Fetch updated exercise statuses from server and update course JSON file accordingly.
+     *
+     * @param jsonWriter the writer of the json output or null if the output is text
      */
     private void updateCourseJson(
-            List<Exercise> submittedExercises, CourseInfo courseInfo) {
-
-        List<Exercise> exercises = TmcUtil.getCourseExercises(ctx);
-        if (exercises == null) {
-            io.println(
+            ExerciseUpdater exerciseUpdater,
+            List<Exercise> submittedExercises,
+            CourseInfo courseInfo,
+            JsonResultWriter jsonWriter) {
+
+        Course serverCourse = exerciseUpdater.fetchCourse();
+        if (serverCourse == null) {
+            warn(
+                    jsonWriter,
                     "Failed to update config file for course " + courseInfo.getCourseName());
+            // keep the digests of the passed submissions
+            CourseInfoIo.save(courseInfo, courseInfoFile);
             return;
         }
         for (Exercise submitted : submittedExercises) {
-            java.util.Optional<Exercise> ex = exercises.stream().filter(e -> e.getName().equals(submitted.getName())).findFirst();
+            java.util.Optional<Exercise> ex =
+                    serverCourse.getExercises().stream()
+                            .filter(e -> e.getName().equals(submitted.getName()))
+                            .findFirst();
             if (!ex.isPresent()) {
-                io.println(
+                warn(
+                        jsonWriter,
                         "Failed to update config file for exercise "
                                 + submitted.getName()
                                 + ". The exercise doesn't exist in server anymore.");
@@ -210,8 +433,7 @@ public class SubmitCommand extends AbstractCommand {
         CourseInfoIo.save(courseInfo, courseInfoFile);
     }
 
-    private void checkForExerciseUpdates(Course course) {
-        ExerciseUpdater exerciseUpdater = new ExerciseUpdater(ctx, course);
+    private void checkForExerciseUpdates(ExerciseUpdater exerciseUpdater) {
         if (!exerciseUpdater.updatesAvailable()) {
             return;
         }
@@ -241,7 +463,7 @@ public class SubmitCommand extends AbstractCommand {
         return !course.getDetailsUrl().toString().contains("v" + API_VERSION);
     }
 
-    private void updateCourseAndExercises() {
+    private void updateCourseAndExercises(JsonResultWriter jsonWriter) {
         // This is a patch to migrate away from api 7 urls
         // as some exercises have been downloaded before the new api
         String oldDetailsUrl = ctx.getCourseInfo().getCourse().getDetailsUrl().toString();
@@ -254,7 +476,8 @@ public class SubmitCommand extends AbstractCommand {
         }
         List<Exercise> exercises = TmcUtil.getCourseExercises(ctx);
         if (exercises == null) {
-            io.println(
+            warn(
+                    jsonWriter,
                     "Failed to update urls for exercises of course " + ctx.getCourseInfo().getCourseName());
             return;
         }
@@ -278,6 +501,12 @@ public class SubmitCommand extends AbstractCommand {
         this.showAll = args.hasOption("a");
         this.showDetails = args.hasOption("d");
         this.filterUncompleted = args.hasOption("c");
+        this.force = args.hasOption("force");
+        this.noWait = args.hasOption("no-wait");
+        this.format = OutputFormat.parse(io, args);
+        if (format == null) {
+            return null;
+        }
         return args.getArgs();
     }
 }
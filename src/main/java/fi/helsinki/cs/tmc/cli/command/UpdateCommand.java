@@ -7,14 +7,19 @@ import fi.helsinki.cs.tmc.cli.core.Command;
 import fi.helsinki.cs.tmc.cli.io.CliProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.Color;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.io.MultiProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.cli.shared.ExerciseUpdater;
+import fi.helsinki.cs.tmc.cli.shared.Workspace;
 
 import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -27,6 +32,10 @@ public class UpdateCommand extends AbstractCommand {
     @Override
     public void getOptions(Options options) {
         //TODO --all or --force
+        options.addOption(
+                OptionBuilder.withLongOpt("recursive")
+                        .withDescription("Update all the courses under the current directory")
+                        .create());
     }
 
     @Override
@@ -45,6 +54,10 @@ public class UpdateCommand extends AbstractCommand {
             return;
         }
 
+        if (args.hasOption("recursive")) {
+            updateWorkspace();
+            return;
+        }
 
         WorkDir workDir = ctx.getWorkDir();
 
@@ -82,6 +95,48 @@ public class UpdateCommand extends AbstractCommand {
         if (!exerciseUpdater.updateCourseJson(info, configFile)) {
             io.errorln("Failed to update course config file");
         }
+        WarmupCommand.warmUpAfterDownload(
+                ctx, ctx.getWorkDir().getCourseDirectory(), downloaded);
+    }
+
+    private void updateWorkspace() {
+        Workspace workspace = Workspace.scan(ctx);
+        if (workspace.getCourseDirectories().isEmpty()) {
+            io.errorln("No courses found under " + workspace.getRoot());
+            return;
+        }
+        Color color1 = ctx.getColorProperty("progressbar-left", ctx.getApp());
+        Color color2 = ctx.getColorProperty("progressbar-right", ctx.getApp());
+        List<Workspace.Result<String>> results;
+        try (MultiProgressObserver progobs = new MultiProgressObserver(io, color1, color2)) {
+            results = workspace.run(ctx, courseContext -> updateCourse(courseContext), progobs);
+        }
+        workspace.printResults(io, results, message -> message);
+    }
+
+    private String updateCourse(CliContext courseContext) throws IOException {
+        CourseInfo info = courseContext.getCourseInfo();
+        if (info == null) {
+            throw new IOException("Invalid course file");
+        }
+        ExerciseUpdater exerciseUpdater = new ExerciseUpdater(courseContext, info.getCourse());
+        if (exerciseUpdater.fetchCourse() == null) {
+            throw new IOException("Failed to fetch the course from the server");
+        }
+        if (!exerciseUpdater.updatesAvailable()) {
+            return "All exercises are up-to-date";
+        }
+
+        int newCount = exerciseUpdater.getNewExercises().size();
+        int modifiedCount = exerciseUpdater.getUpdatedExercises().size();
+        if (exerciseUpdater.downloadUpdates(ProgressObserver.NULL_OBSERVER) == null) {
+            throw new IOException("Failed to download exercises");
+        }
+        Path configFile = courseContext.getWorkDir().getConfigFile();
+        if (!exerciseUpdater.updateCourseJson(info, configFile)) {
+            throw new IOException("Failed to update course config file");
+        }
+        return newCount + " new and " + modifiedCount + " modified exercises";
     }
 
     private void printExercises(List<Exercise> exercises, String message) {
@@ -0,0 +1,151 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
+import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.core.Command;
+import fi.helsinki.cs.tmc.cli.io.Color;
+import fi.helsinki.cs.tmc.cli.io.ColorUtil;
+import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.runner.Warmup;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the dependencies of the Java exercises and compiles them ahead of 'tmc test'.
+ */
+@Command(name = "warmup", desc = "Prepare the Java exercises for fast test runs")
+public class WarmupCommand extends AbstractCommand {
+
+    private Io io;
+
+    @Override
+    public String[] getUsages() {
+        return new String[] {"[--background] [EXERCISES...]"};
+    }
+
+    @Override
+    public void getOptions(Options options) {
+        options.addOption(
+                OptionBuilder.withLongOpt("background")
+                        .withDescription("Warm up in a background process at a low priority")
+                        .create());
+    }
+
+    @Override
+    public void run(CliContext context, CommandLine args) {
+        this.io = context.getIo();
+        WorkDir workDir = context.getWorkDir();
+
+        for (String exercise : args.getArgs()) {
+            if (!workDir.addPath(exercise)) {
+                io.errorln("Error: " + exercise + " is not a valid exercise.");
+                return;
+            }
+        }
+        if (workDir.getConfigFile() == null) {
+            io.errorln("You have to be in a course directory to warm up exercises.");
+            return;
+        }
+        List<Exercise> exercises = workDir.getExercises();
+        if (exercises.isEmpty()) {
+            io.errorln("No exercises specified.");
+            return;
+        }
+        Path courseDirectory = workDir.getCourseDirectory();
+
+        if (args.hasOption("background")) {
+            if (!startInBackground(context, courseDirectory, exercises)) {
+                io.errorln("Can't warm up in the background, run 'tmc warmup' instead.");
+            }
+            return;
+        }
+
+        List<Path> directories = new ArrayList<>();
+        for (Exercise exercise : exercises) {
+            directories.add(courseDirectory.resolve(exercise.getName()));
+        }
+        io.println("Warming up " + exercises.size() + " exercises.");
+        Warmup.Summary summary = TmcUtil.warmUpExercises(context, directories);
+        if (summary == null) {
+            io.errorln("Failed to warm up the exercises.");
+            return;
+        }
+        printSummary(summary);
+    }
+
+    private void printSummary(Warmup.Summary summary) {
+        if (summary.getExerciseCount() == 0) {
+            io.println("None of the exercises is a Java exercise that can be warmed up.");
+            return;
+        }
+        if (summary.getDependencySetCount() > 0) {
+            io.println(
+                    "Resolved "
+                            + summary.getDependencySetCount()
+                            + " different sets of dependencies.");
+        }
+        if (!summary.getUnresolved().isEmpty()) {
+            io.println(
+                    ColorUtil.colorString(
+                            "Could not resolve the dependencies of "
+                                    + String.join(", ", summary.getUnresolved()),
+                            Color.RED));
+        }
+        if (!summary.isCompiling()) {
+            io.println(
+                    "Set 'tmc config "
+                            + TmcUtil.WARM_TEST_RUNNERS
+                            + "' to also compile the exercises ahead of the tests.");
+            return;
+        }
+        io.println("Compiled " + summary.getCompiledCount() + " exercises.");
+        if (!summary.getNotCompiling().isEmpty()) {
+            io.println(
+                    "These exercises don't compile yet: "
+                            + String.join(", ", summary.getNotCompiling()));
+        }
+    }
+
+    /**
+     * Warm up the downloaded exercises in the background if the user has asked for it.
+     */
+    static void warmUpAfterDownload(
+            CliContext context, Path courseDirectory, List<Exercise> exercises) {
+        if (exercises.isEmpty()
+                || !Boolean.parseBoolean(
+                        context.getProperties().get(TmcUtil.WARMUP_AFTER_DOWNLOAD))) {
+            return;
+        }
+        if (startInBackground(context, courseDirectory, exercises)) {
+            return;
+        }
+        context.getIo()
+                .println("Can't warm up the exercises in the background, run 'tmc warmup'.");
+    }
+
+    private static boolean startInBackground(
+            CliContext context, Path courseDirectory, List<Exercise> exercises) {
+        List<String> names = new ArrayList<>();
+        for (Exercise exercise : exercises) {
+            names.add(exercise.getName());
+        }
+        if (!TmcUtil.startWarmUp(courseDirectory, names)) {
+            return false;
+        }
+        context.getIo()
+                .println(
+                        "Warming up the exercises in the background, the output is in "
+                                + Warmup.getLogFile());
+        return true;
+    }
+}
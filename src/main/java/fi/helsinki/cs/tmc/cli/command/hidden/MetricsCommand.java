@@ -0,0 +1,130 @@
+package fi.helsinki.cs.tmc.cli.command.hidden;
+
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.core.AbstractCommand;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.core.Command;
+import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.metrics.LatencyHistogram;
+import fi.helsinki.cs.tmc.cli.metrics.Metrics;
+import fi.helsinki.cs.tmc.cli.metrics.MetricsHistory;
+import fi.helsinki.cs.tmc.cli.metrics.OperationMetrics;
+import fi.helsinki.cs.tmc.cli.metrics.PrometheusFormat;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+@Command(name = "metrics", desc = "Show the latencies and failures of recent commands")
+public class MetricsCommand extends AbstractCommand {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsCommand.class);
+    private Io io;
+
+    @Override
+    public String[] getUsages() {
+        return new String[] {"[-p] [--output FILE]", "--clear"};
+    }
+
+    @Override
+    public void getOptions(Options options) {
+        options.addOption("p", "prometheus", false, "Print the metrics in Prometheus format");
+        options.addOption(
+                OptionBuilder.withLongOpt("output")
+                        .hasArg()
+                        .withArgName("FILE")
+                        .withDescription("Write the metrics in Prometheus format into a file")
+                        .create());
+        options.addOption(
+                OptionBuilder.withLongOpt("clear")
+                        .withDescription("Remove all the recorded metrics")
+                        .create());
+    }
+
+    @Override
+    public void run(CliContext context, CommandLine args) {
+        this.io = context.getIo();
+        Path configRoot = SettingsIo.getConfigDirectory();
+
+        if (args.hasOption("clear")) {
+            if (Metrics.clear(configRoot)) {
+                io.println("Removed all the recorded metrics.");
+            } else {
+                io.errorln("Failed to remove the metrics file.");
+            }
+            return;
+        }
+
+        MetricsHistory history = Metrics.load(configRoot);
+        Map<String, OperationMetrics> totals = history.getTotals();
+
+        if (args.hasOption("output")) {
+            writePrometheusFile(Paths.get(args.getOptionValue("output")), totals);
+            return;
+        }
+        if (args.hasOption("p")) {
+            io.print(PrometheusFormat.format(totals));
+            return;
+        }
+        if (totals.isEmpty()) {
+            io.println("No metrics have been recorded yet.");
+            return;
+        }
+        printTable(history.getDayCount(), totals);
+    }
+
+    private void writePrometheusFile(Path file, Map<String, OperationMetrics> totals) {
+        // the collector must never see a half written file
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.write(temp, PrometheusFormat.format(totals).getBytes(Charset.forName("UTF-8")));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Failed to write the metrics into " + file, e);
+            io.errorln("Failed to write the metrics into " + file);
+        }
+    }
+
+    private void printTable(int days, Map<String, OperationMetrics> totals) {
+        io.println("Metrics of the last " + days + " day" + (days == 1 ? "" : "s") + ":");
+        int width = "OPERATION".length();
+        for (String operation : totals.keySet()) {
+            width = Math.max(width, operation.length());
+        }
+        String format = "%-" + width + "s %6s %6s %8s %8s %8s %8s";
+        io.println(String.format(format, "OPERATION", "RUNS", "FAILED", "P50 MS", "P90 MS",
+                "P99 MS", "MAX MS"));
+
+        for (Map.Entry<String, OperationMetrics> entry : totals.entrySet()) {
+            OperationMetrics metrics = entry.getValue();
+            LatencyHistogram durations = metrics.getDurations();
+            io.println(String.format(format, entry.getKey(), durations.getCount(),
+                    metrics.getFailureCount(), durations.getPercentile(50),
+                    durations.getPercentile(90), durations.getPercentile(99),
+                    durations.getMax()));
+        }
+
+        for (Map.Entry<String, OperationMetrics> entry : totals.entrySet()) {
+            Map<String, Long> failures = entry.getValue().getFailures();
+            if (failures.isEmpty()) {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append("Failures of ").append(entry.getKey()).append(':');
+            for (Map.Entry<String, Long> failure : failures.entrySet()) {
+                sb.append(' ').append(failure.getKey()).append('=').append(failure.getValue());
+            }
+            io.println(sb.toString());
+        }
+    }
+}
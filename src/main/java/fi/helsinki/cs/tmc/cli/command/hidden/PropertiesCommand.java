@@ -81,7 +81,6 @@ public class PropertiesCommand extends AbstractCommand {
                 io.println("Set " + arguments[i] + "=>" + arguments[i + 1] + ", was " + last);
             }
         }
-        context.saveProperties();
     }
 
     private void printAllProps(HashMap<String, String> props) {
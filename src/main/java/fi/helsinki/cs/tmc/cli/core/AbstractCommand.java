@@ -2,6 +2,8 @@ package fi.helsinki.cs.tmc.cli.core;
 
 import fi.helsinki.cs.tmc.cli.io.HelpGenerator;
 import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.metrics.Metrics;
+import fi.helsinki.cs.tmc.cli.trace.Span;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.GnuParser;
@@ -59,9 +61,29 @@ public abstract class AbstractCommand {
 
     public void execute(CliContext context, String[] stringArgs) {
         CommandLine args = parseArgs(context, stringArgs);
-        if (args != null) {
+        if (args == null) {
+            return;
+        }
+        Metrics metrics = context.getMetrics();
+        String operation = Metrics.COMMAND_PREFIX + getMetricsName();
+        metrics.takeLastFailure();
+        long start = System.nanoTime();
+        try (Span span = context.getTracer().start("cli", operation)) {
             run(context, args);
+        } catch (RuntimeException e) {
+            metrics.record(operation, start, e.getClass().getSimpleName());
+            throw e;
+        }
+        // the command fails if any of the tmc-core operations failed
+        metrics.record(operation, start, metrics.takeLastFailure());
+    }
+
+    private String getMetricsName() {
+        Command command = getCommand();
+        if (command == null) {
+            return getClass().getSimpleName();
         }
+        return command.name();
     }
 
     protected CommandLine parseArgs(CliContext context, String[] stringArgs) {
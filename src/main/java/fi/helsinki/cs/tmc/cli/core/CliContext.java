@@ -6,9 +6,15 @@ import fi.helsinki.cs.tmc.cli.backend.Account;
 import fi.helsinki.cs.tmc.cli.backend.AccountList;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
+import fi.helsinki.cs.tmc.cli.backend.PropertyStore;
 import fi.helsinki.cs.tmc.cli.backend.Settings;
 import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.backend.SubmissionPackager;
+import fi.helsinki.cs.tmc.cli.backend.TemplateStore;
 import fi.helsinki.cs.tmc.cli.io.*;
+import fi.helsinki.cs.tmc.cli.metrics.Metrics;
+import fi.helsinki.cs.tmc.cli.trace.Tracer;
 import fi.helsinki.cs.tmc.cli.shared.CourseFinder;
 import fi.helsinki.cs.tmc.core.TmcCore;
 
@@ -26,9 +32,14 @@ public class CliContext {
     /* cached values */
     private boolean hasLogin;
     private CourseInfo courseInfo;
-    private HashMap<String, String> properties;
+    private PropertyStore propertyStore;
     private final boolean inTest;
     private AnalyticsFacade analyticsFacade;
+    private Metrics metrics;
+    private Tracer tracer;
+    private TemplateStore templateStore;
+    private SubmissionPackager submissionPackager;
+    private CourseRegistry courseRegistry;
 
     public CliContext(Io io, TmcCore core, WorkDir workDir, Settings settings, AnalyticsFacade facade) {
         inTest = (io != null);
@@ -37,7 +48,7 @@ public class CliContext {
         }
         this.io = io;
         this.workDir = workDir;
-        this.properties = SettingsIo.loadProperties();
+        this.propertyStore = PropertyStore.load();
         this.settings = settings;
         this.tmcCore = core;
         this.hasLogin = (core != null);
@@ -45,6 +56,36 @@ public class CliContext {
         this.analyticsFacade = facade;
     }
 
+    private CliContext(CliContext parent, WorkDir workDir) {
+        this.inTest = parent.inTest;
+        this.io = parent.io;
+        this.workDir = workDir;
+        this.application = parent.application;
+        this.propertyStore = parent.propertyStore;
+        this.settings = parent.settings;
+        this.tmcCore = parent.tmcCore;
+        this.hasLogin = parent.hasLogin;
+        this.courseInfo = null;
+        this.analyticsFacade = parent.analyticsFacade;
+        this.metrics = parent.getMetrics();
+        this.tracer = parent.getTracer();
+        this.templateStore = parent.templateStore;
+        this.submissionPackager = parent.submissionPackager;
+        this.courseRegistry = parent.courseRegistry;
+    }
+
+    /**
+     * Create a context for running a command in another directory. The new context shares
+     * everything with this one except the working directory and the cached course info.
+     * The settings are shared too, so the login info isn't loaded again in the new context.
+     *
+     * @param workDir the working directory of the new context
+     * @return new context
+     */
+    public CliContext forWorkDir(WorkDir workDir) {
+        return new CliContext(this, workDir);
+    }
+
     /*TODO create reset method for removing all cached data that is called
      * when working directory is changed or by user's demand, also use it in
      * constructor.
@@ -109,18 +150,18 @@ public class CliContext {
      * @return the whole mutable map
      */
     public HashMap<String, String> getProperties() {
-        // Loads properties from the global configuration file in .config/tmc-cli/
-        return this.properties;
+        // Loaded once from the global configuration file in .config/tmc-cli/
+        return propertyStore.getProperties();
     }
 
     /**
-     * Save the properties map into the a file.
+     * Merge the changed properties into the global configuration file. The application
+     * calls this once after the command, so the commands only change the properties map.
      *
      * @return true if success
      */
-    public boolean saveProperties() {
-        // Saves properties to the global configuration file in .config/tmc-cli/
-        return SettingsIo.saveProperties(properties);
+    public boolean commitProperties() {
+        return propertyStore.commit();
     }
 
     /**
@@ -201,6 +242,84 @@ public class CliContext {
         return this.analyticsFacade;
     }
 
+    /**
+     * Get the latency and error metrics of this session.
+     *
+     * @return singleton metrics object
+     */
+    public synchronized Metrics getMetrics() {
+        if (metrics == null) {
+            metrics = new Metrics();
+        }
+        return metrics;
+    }
+
+    /**
+     * Get the tracer of this session. The tracer is disabled unless tracing was asked with
+     * the --trace option.
+     *
+     * @return singleton tracer object
+     */
+    public synchronized Tracer getTracer() {
+        if (tracer == null) {
+            tracer = Tracer.disabled();
+        }
+        return tracer;
+    }
+
+    public synchronized void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Get the store of downloaded exercise templates in the config directory.
+     *
+     * @return singleton template store
+     */
+    public synchronized TemplateStore getTemplateStore() {
+        if (templateStore == null) {
+            templateStore = TemplateStore.open();
+        }
+        return templateStore;
+    }
+
+    public synchronized void setTemplateStore(TemplateStore templateStore) {
+        this.templateStore = templateStore;
+    }
+
+    /**
+     * Get the packager that caches the compressed files of submissions in the config
+     * directory.
+     *
+     * @return singleton submission packager
+     */
+    public synchronized SubmissionPackager getSubmissionPackager() {
+        if (submissionPackager == null) {
+            submissionPackager = SubmissionPackager.open();
+        }
+        return submissionPackager;
+    }
+
+    public synchronized void setSubmissionPackager(SubmissionPackager submissionPackager) {
+        this.submissionPackager = submissionPackager;
+    }
+
+    /**
+     * Get the index of the course directories in the config directory.
+     *
+     * @return singleton course registry
+     */
+    public synchronized CourseRegistry getCourseRegistry() {
+        if (courseRegistry == null) {
+            courseRegistry = CourseRegistry.open();
+        }
+        return courseRegistry;
+    }
+
+    public synchronized void setCourseRegistry(CourseRegistry courseRegistry) {
+        this.courseRegistry = courseRegistry;
+    }
+
     public void loadUserInformation(boolean useCache) {
         Account cachedAccount = null;
         AccountList list = SettingsIo.loadAccountList();
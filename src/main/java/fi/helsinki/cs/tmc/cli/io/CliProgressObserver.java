@@ -2,12 +2,20 @@ package fi.helsinki.cs.tmc.cli.io;
 
 import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 public class CliProgressObserver extends ProgressObserver {
     private static final char PIPCHAR = '█';
     private static final char EMPTYCHAR = '░';
     private static final char BARLEFT = '[';
     private static final char BARRIGHT = ']';
 
+    /**
+     * Minimum time between two redraws of the same progress bar.
+     */
+    private static final long DEFAULT_REDRAW_INTERVAL_MS = 50;
+
     private Io io;
     private int pips;
     private int maxline;
@@ -16,6 +24,16 @@ public class CliProgressObserver extends ProgressObserver {
     private String lastMessage;
     private Boolean hasProgressBar;
 
+    // Rendering state, the bar is only redrawn if it would look different.
+    private final long redrawIntervalNanos;
+    private final StringBuilder line;
+    private final char[] donePips;
+    private final char[] notDonePips;
+    private final char[] spaces;
+    private int lastPipsDone;
+    private int lastPercent;
+    private long lastRedraw;
+
     public CliProgressObserver() {
         this(new TerminalIo(System.in));
     }
@@ -25,12 +43,24 @@ public class CliProgressObserver extends ProgressObserver {
     }
 
     public CliProgressObserver(Io io, Color color1, Color color2) {
+        this(io, color1, color2, DEFAULT_REDRAW_INTERVAL_MS);
+    }
+
+    CliProgressObserver(Io io, Color color1, Color color2, long redrawIntervalMs) {
         this.hasProgressBar = false;
         this.io = io;
         this.maxline = EnvironmentUtil.getTerminalWidth();
-        this.pips = this.maxline - 6;
+        this.pips = Math.max(this.maxline - 6, 0);
         this.color1 = color1;
         this.color2 = color2;
+
+        this.redrawIntervalNanos = TimeUnit.MILLISECONDS.toNanos(redrawIntervalMs);
+        this.line = new StringBuilder(this.maxline + 32);
+        this.donePips = filledArray(this.pips, PIPCHAR);
+        this.notDonePips = filledArray(this.pips, EMPTYCHAR);
+        this.spaces = filledArray(Math.max(this.maxline, 0), ' ');
+        this.lastPipsDone = -1;
+        this.lastPercent = -1;
     }
 
     @Override
@@ -38,23 +68,61 @@ public class CliProgressObserver extends ProgressObserver {
         if (lastMessage == null || !lastMessage.equals(message)) {
             printMessage(message);
             lastMessage = message;
+            io.flush();
         }
     }
 
     @Override
     public void progress(long id, Double progress, String message) {
         this.hasProgressBar = true;
-        if (lastMessage == null || !lastMessage.equals(message)) {
+        boolean newMessage = lastMessage == null || !lastMessage.equals(message);
+        if (newMessage) {
             printMessage(message);
             lastMessage = message;
             io.println();
         }
-        this.io.print("\r" + progressBar(progress, this.maxline, this.color1, this.color2));
+        if (!newMessage && !shouldRedraw(progress)) {
+            return;
+        }
+        line.setLength(0);
+        line.append('\r');
+        appendProgressBar(line, progress);
+        this.io.print(line);
+        this.io.flush();
+    }
+
+    private boolean shouldRedraw(double progress) {
+        int pipsDone = pipsDone(progress, pips);
+        int percent = (int) (progress * 100);
+        if (pipsDone == lastPipsDone && percent == lastPercent) {
+            return false;
+        }
+        // always show the finished bar
+        if (percent >= 100) {
+            return true;
+        }
+        return System.nanoTime() - lastRedraw >= redrawIntervalNanos;
+    }
+
+    private void appendProgressBar(StringBuilder sb, double progress) {
+        int pipsDone = pipsDone(progress, pips);
+        int percent = (int) (progress * 100);
+        appendPercentage(sb, percent);
+        sb.append(BARLEFT);
+        ColorUtil.appendColored(sb, donePips, 0, pipsDone, color1);
+        ColorUtil.appendColored(sb, notDonePips, 0, pips - pipsDone, color2);
+        sb.append(BARRIGHT);
+
+        lastPipsDone = pipsDone;
+        lastPercent = percent;
+        lastRedraw = System.nanoTime();
     }
 
     private void printMessage(String message) {
         message = shorten(message, maxline);
-        io.print("\r" + message);
+        line.setLength(0);
+        line.append('\r').append(message);
+        io.print(line);
         flush(maxline - message.length());
     }
 
@@ -73,6 +141,7 @@ public class CliProgressObserver extends ProgressObserver {
         } else {
             this.io.println();
         }
+        this.io.flush();
     }
 
     private String shorten(String str, int length) {
@@ -85,18 +154,22 @@ public class CliProgressObserver extends ProgressObserver {
 
     private void flush(int length) {
         // "Flush" the rest of the line if the next message is shorter than the last
-        if (length == 0) {
+        if (length <= 0) {
             return;
         }
-        StringBuilder sb = new StringBuilder();
-        for (int i = length; i > 0; i--) {
-            sb.append(' ');
-        }
-        io.print(sb);
+        line.setLength(0);
+        line.append(spaces, 0, Math.min(length, spaces.length));
+        io.print(line);
     }
 
-    private static String progressBar(double progress, int length, Color color1, Color color2) {
-        return progressBar(progress, length, color1, color2, BARLEFT, BARRIGHT, PIPCHAR, EMPTYCHAR);
+    private static int pipsDone(double progress, int pips) {
+        return Math.max(0, Math.min(pips, (int) (pips * progress)));
+    }
+
+    private static char[] filledArray(int length, char ch) {
+        char[] array = new char[length];
+        Arrays.fill(array, ch);
+        return array;
     }
 
     private static String progressBar(
@@ -108,33 +181,31 @@ public class CliProgressObserver extends ProgressObserver {
             char barRight,
             char donePip,
             char notDonePip) {
-        int pipsDone = (int) ((length - 6) * progress);
-        StringBuilder sbLeft = new StringBuilder(pipsDone);
-        StringBuilder sbRight = new StringBuilder((length - 6) - pipsDone);
-        for (int i = 0; i < pipsDone; i++) {
-            sbLeft.append(donePip);
-        }
-        for (int i = 0; i < (length - 6) - pipsDone; i++) {
-            sbRight.append(notDonePip);
-        }
-        return percentage(progress)
-                + barLeft
-                + ColorUtil.colorString(sbLeft.toString(), color1)
-                + ColorUtil.colorString(sbRight.toString(), color2)
-                + barRight;
+        int pips = Math.max(length - 6, 0);
+        int pipsDone = pipsDone(progress, pips);
+        StringBuilder sb = new StringBuilder(length + 32);
+        appendPercentage(sb, (int) (progress * 100));
+        sb.append(barLeft);
+        ColorUtil.appendColored(sb, filledArray(pipsDone, donePip), 0, pipsDone, color1);
+        ColorUtil.appendColored(
+                sb, filledArray(pips - pipsDone, notDonePip), 0, pips - pipsDone, color2);
+        sb.append(barRight);
+        return sb.toString();
     }
 
-    static String percentage(double progress) {
-        int percent = (int) (progress * 100);
-        String percentage;
+    private static void appendPercentage(StringBuilder sb, int percent) {
         if (percent < 10) {
-            percentage = "  ";
+            sb.append("  ");
         } else if (percent < 100) {
-            percentage = " ";
-        } else {
-            percentage = "";
+            sb.append(' ');
         }
-        return percentage + percent + "%";
+        sb.append(percent).append('%');
+    }
+
+    static String percentage(double progress) {
+        StringBuilder sb = new StringBuilder(4);
+        appendPercentage(sb, (int) (progress * 100));
+        return sb.toString();
     }
 
     public static String getPassedTestsBar(int passed, int total, Color color1, Color color2) {
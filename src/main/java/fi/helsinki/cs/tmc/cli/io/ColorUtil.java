@@ -10,6 +10,18 @@ public class ColorUtil {
         }
     }
 
+    /**
+     * Append colored characters to the builder without creating intermediate strings.
+     */
+    public static StringBuilder appendColored(
+            StringBuilder sb, char[] chars, int offset, int len, Color color) {
+        if (!EnvironmentUtil.isWindows() && color != Color.NONE) {
+            return sb.append(color).append(chars, offset, len).append(Color.RESET);
+        } else {
+            return sb.append(chars, offset, len);
+        }
+    }
+
     public static Color getColor(String name) {
         try {
             Color color = Color.valueOf(name.toUpperCase());
@@ -16,6 +16,13 @@ public class EnvironmentUtil {
         return os.contains("windows");
     }
 
+    /**
+     * Tells whether the standard output is connected to an interactive terminal.
+     */
+    public static boolean isTerminal() {
+        return System.console() != null;
+    }
+
     public static int getTerminalWidth() {
         String colEnv = System.getenv("COLUMNS");
         if (colEnv != null && !colEnv.equals("")) {
@@ -48,6 +55,8 @@ public class EnvironmentUtil {
     }
 
     public static boolean runProcess(String[] args, boolean wait) {
+        // the external program writes straight to the terminal
+        TerminalOutput.getInstance().flush();
         if (EnvironmentUtil.isWindows()) {
             logger.info("Launching external program " + Arrays.toString(args));
             try {
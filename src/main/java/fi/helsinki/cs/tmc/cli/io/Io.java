@@ -2,7 +2,6 @@ package fi.helsinki.cs.tmc.cli.io;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Arrays;
 
 public abstract class Io extends Writer {
 
@@ -12,6 +11,10 @@ public abstract class Io extends Writer {
         print(String.valueOf(obj));
     }
 
+    public void print(CharSequence chars) {
+        print(String.valueOf(chars));
+    }
+
     public void println(String str) {
         print(str + "\n");
     }
@@ -38,11 +41,14 @@ public abstract class Io extends Writer {
 
     @Override
     public void write(char[] cbuf, int offset, int len) throws IOException {
-        print(new String(Arrays.copyOfRange(cbuf, offset, offset + len)));
+        print(String.valueOf(cbuf, offset, len));
     }
 
+    /**
+     * Make sure that everything printed so far is visible to the user.
+     */
     @Override
-    public void flush() throws IOException {}
+    public void flush() {}
 
     @Override
     public void close() throws IOException {}
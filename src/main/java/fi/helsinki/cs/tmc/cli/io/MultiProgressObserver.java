@@ -0,0 +1,313 @@
+package fi.helsinki.cs.tmc.cli.io;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress observer for operations that run many tasks at the same time.
+ *
+ * <p>Each task id gets its own progress bar and an aggregate bar with the throughput is
+ * shown below them. The block is redrawn in place by a single render thread at most
+ * {@link #DEFAULT_FRAME_INTERVAL_MS} milliseconds apart. When the output is not a terminal,
+ * a line is appended only when a task changes its message or finishes.
+ *
+ * <p>The observer must be closed when all the tasks have finished.
+ */
+public class MultiProgressObserver extends ProgressObserver implements AutoCloseable {
+    private static final char PIPCHAR = '█';
+    private static final char EMPTYCHAR = '░';
+    private static final long DEFAULT_FRAME_INTERVAL_MS = 100;
+    private static final int MAX_VISIBLE_TASKS = 8;
+    private static final int MAX_BAR_WIDTH = 20;
+    private static final String CURSOR_UP = "\u001B[%dA";
+    private static final String CLEAR_LINE = "\u001B[2K";
+
+    private final Io io;
+    private final Color color1;
+    private final Color color2;
+    private final boolean interactive;
+    private final long frameIntervalMs;
+    private final int maxline;
+    private final int barWidth;
+    private final char[] donePips;
+    private final char[] notDonePips;
+    private final StringBuilder frame;
+
+    private final Map<Long, Task> tasks;
+    private long startTime;
+    private int finishedCount;
+    private int blockHeight;
+    private boolean dirty;
+    private boolean closed;
+    private ScheduledExecutorService renderer;
+
+    public MultiProgressObserver(Io io, Color color1, Color color2) {
+        this(io, color1, color2, EnvironmentUtil.isTerminal(), DEFAULT_FRAME_INTERVAL_MS);
+    }
+
+    MultiProgressObserver(
+            Io io, Color color1, Color color2, boolean interactive, long frameIntervalMs) {
+        this.io = io;
+        this.color1 = color1;
+        this.color2 = color2;
+        this.interactive = interactive;
+        this.frameIntervalMs = frameIntervalMs;
+        this.maxline = EnvironmentUtil.getTerminalWidth();
+        this.barWidth = Math.max(Math.min(MAX_BAR_WIDTH, maxline / 3), 1);
+        this.donePips = filledArray(barWidth, PIPCHAR);
+        this.notDonePips = filledArray(barWidth, EMPTYCHAR);
+        this.frame = new StringBuilder(maxline * (MAX_VISIBLE_TASKS + 2));
+        this.tasks = new LinkedHashMap<>();
+    }
+
+    @Override
+    public synchronized void start(long id) {
+        getTask(id);
+        markDirty();
+    }
+
+    @Override
+    public synchronized void progress(long id, String message) {
+        Task task = getTask(id);
+        task.setMessage(message);
+        markDirty();
+    }
+
+    @Override
+    public synchronized void progress(long id, Double progress, String message) {
+        Task task = getTask(id);
+        task.setMessage(message);
+        if (progress != null) {
+            task.progress = Math.max(0.0, Math.min(1.0, progress));
+        }
+        markDirty();
+    }
+
+    @Override
+    public synchronized void end(long id) {
+        Task task = getTask(id);
+        if (!task.finished) {
+            task.finished = true;
+            task.progress = 1.0;
+            task.changed = true;
+            finishedCount++;
+        }
+        markDirty();
+    }
+
+    /**
+     * Stop the render thread and draw the final state of the tasks.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            executor = renderer;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            render();
+            if (!tasks.isEmpty()) {
+                io.println(summary());
+            }
+            io.flush();
+        }
+    }
+
+    synchronized void render() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        frame.setLength(0);
+        if (interactive) {
+            renderBlock();
+        } else {
+            renderLines();
+        }
+        if (frame.length() > 0) {
+            io.print(frame);
+            io.flush();
+        }
+    }
+
+    synchronized double getAggregateProgress() {
+        if (tasks.isEmpty()) {
+            return 0.0;
+        }
+        double sum = 0.0;
+        for (Task task : tasks.values()) {
+            sum += task.progress;
+        }
+        return sum / tasks.size();
+    }
+
+    synchronized double getThroughput() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        if (seconds <= 0.0) {
+            return 0.0;
+        }
+        return finishedCount / seconds;
+    }
+
+    private void renderBlock() {
+        if (blockHeight > 0) {
+            frame.append(String.format(CURSOR_UP, blockHeight));
+        }
+        int lines = 0;
+        int hidden = 0;
+        for (Task task : tasks.values()) {
+            // finished tasks make room for the running ones
+            boolean crowded = tasks.size() > MAX_VISIBLE_TASKS;
+            if (lines >= MAX_VISIBLE_TASKS || (task.finished && crowded)) {
+                hidden++;
+                continue;
+            }
+            frame.append('\r').append(CLEAR_LINE);
+            appendBar(task.progress);
+            frame.append(' ');
+            appendShortened(task.message, maxline - barWidth - 7);
+            frame.append('\n');
+            lines++;
+        }
+        // the block never shrinks so that the lines below it stay in place
+        while (lines < blockHeight - 1) {
+            frame.append('\r').append(CLEAR_LINE).append('\n');
+            lines++;
+        }
+        frame.append('\r').append(CLEAR_LINE);
+        appendBar(getAggregateProgress());
+        frame.append(' ');
+        String total = totalLine(hidden);
+        appendShortened(total, maxline - barWidth - 7);
+        frame.append('\n');
+        blockHeight = lines + 1;
+    }
+
+    private void renderLines() {
+        for (Task task : tasks.values()) {
+            if (!task.changed) {
+                continue;
+            }
+            task.changed = false;
+            if (task.message != null) {
+                frame.append(task.message);
+                if (task.finished) {
+                    frame.append(" (done)");
+                }
+                frame.append('\n');
+            }
+        }
+    }
+
+    private String totalLine(int hidden) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(finishedCount).append('/').append(tasks.size()).append(" done, ");
+        sb.append(String.format(Locale.ROOT, "%.1f", getThroughput())).append("/s");
+        if (hidden > 0) {
+            sb.append(", ").append(hidden).append(" not shown");
+        }
+        return sb.toString();
+    }
+
+    private String summary() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return String.format(
+                Locale.ROOT,
+                "%d/%d tasks finished in %.1f s (%.1f/s)",
+                finishedCount,
+                tasks.size(),
+                seconds,
+                getThroughput());
+    }
+
+    private void appendBar(double progress) {
+        int pipsDone = (int) (barWidth * progress);
+        int percent = (int) (progress * 100);
+        if (percent < 10) {
+            frame.append("  ");
+        } else if (percent < 100) {
+            frame.append(' ');
+        }
+        frame.append(percent).append("%[");
+        ColorUtil.appendColored(frame, donePips, 0, pipsDone, color1);
+        ColorUtil.appendColored(frame, notDonePips, 0, barWidth - pipsDone, color2);
+        frame.append(']');
+    }
+
+    private void appendShortened(String str, int length) {
+        if (str == null || length <= 0) {
+            return;
+        }
+        if (str.length() <= length) {
+            frame.append(str);
+        } else if (length > 3) {
+            frame.append(str, 0, length - 3).append("...");
+        }
+    }
+
+    private Task getTask(long id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            if (tasks.isEmpty()) {
+                startTime = System.nanoTime();
+            }
+            task = new Task();
+            tasks.put(id, task);
+        }
+        return task;
+    }
+
+    private void markDirty() {
+        dirty = true;
+        if (renderer == null && !closed) {
+            renderer =
+                    Executors.newSingleThreadScheduledExecutor(
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "progress-renderer");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            renderer.scheduleAtFixedRate(
+                    this::render, frameIntervalMs, frameIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static char[] filledArray(int length, char ch) {
+        char[] array = new char[length];
+        Arrays.fill(array, ch);
+        return array;
+    }
+
+    private static class Task {
+        private String message;
+        private double progress;
+        private boolean finished;
+        private boolean changed;
+
+        private void setMessage(String message) {
+            if (message != null && !message.equals(this.message)) {
+                this.message = message;
+                this.changed = true;
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ public class ShutdownHandler extends Thread {
         // Reset terminal color back to default in case we exit in the middle of
         // colored printing. Otherwise user is left with a colored terminal.
         io.println(Color.RESET.toString());
+        io.flush();
     }
 
     public void enable() {
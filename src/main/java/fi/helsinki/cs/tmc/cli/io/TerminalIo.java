@@ -5,12 +5,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Console;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.Scanner;
 
 public class TerminalIo extends Io {
 
     private static final Logger logger = LoggerFactory.getLogger(TerminalIo.class);
     private final Scanner scanner;
+    private final TerminalOutput output;
 
     public TerminalIo(InputStream stream) {
         Scanner newScanner = null;
@@ -18,16 +20,55 @@ public class TerminalIo extends Io {
             newScanner = new Scanner(stream);
         }
         scanner = newScanner;
+        output = TerminalOutput.getInstance();
     }
 
     @Override
     public void print(String str) {
-        System.out.print(str);
+        output.write(String.valueOf(str));
+    }
+
+    @Override
+    public void print(CharSequence chars) {
+        output.write(chars == null ? "null" : chars);
+    }
+
+    @Override
+    public void println(String str) {
+        output.write(String.valueOf(str));
+        output.write('\n');
+    }
+
+    @Override
+    public void println() {
+        output.write('\n');
+    }
+
+    @Override
+    public void write(char[] cbuf, int offset, int len) {
+        output.write(cbuf, offset, len);
+    }
+
+    @Override
+    public void write(String str, int offset, int len) {
+        output.write(str, offset, offset + len);
+    }
+
+    @Override
+    public Writer append(CharSequence chars) {
+        print(chars);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        output.flush();
     }
 
     @Override
     public String readLine(String prompt) {
         print(prompt);
+        flush();
 
         try {
             return scanner.nextLine();
@@ -40,6 +81,7 @@ public class TerminalIo extends Io {
     @Override
     public String readPassword(String prompt) {
         Console console = System.console();
+        flush();
         if (console != null) {
             try {
                 return new String(console.readPassword(prompt));
@@ -73,6 +115,8 @@ public class TerminalIo extends Io {
 
     @Override
     public void error(String str) {
+        // keep the standard output and error in order
+        flush();
         System.err.print(str);
     }
 }
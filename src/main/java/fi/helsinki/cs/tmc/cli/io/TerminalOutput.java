@@ -0,0 +1,145 @@
+package fi.helsinki.cs.tmc.cli.io;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Write buffer in front of the standard output.
+ *
+ * <p>Everything printed through {@link TerminalIo} is collected here and written to the
+ * standard output in large blocks. The buffer is flushed when it fills up, before the user
+ * is prompted for input, when progress is shown, before an external program takes over the
+ * terminal and when the program exits.
+ *
+ * <p>The standard output is looked up on every flush, so that {@link System#setOut} works
+ * as expected.
+ */
+public class TerminalOutput {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final TerminalOutput instance = new TerminalOutput(DEFAULT_BUFFER_SIZE);
+
+    private final char[] buffer;
+    private final Charset charset;
+    private int count;
+
+    TerminalOutput(int bufferSize) {
+        this(bufferSize, Charset.defaultCharset());
+    }
+
+    TerminalOutput(int bufferSize, Charset charset) {
+        this.buffer = new char[bufferSize];
+        this.charset = charset;
+        this.count = 0;
+    }
+
+    public static TerminalOutput getInstance() {
+        return instance;
+    }
+
+    public synchronized void write(char ch) {
+        if (count == buffer.length) {
+            flushBuffer(false);
+        }
+        buffer[count++] = ch;
+    }
+
+    public synchronized void write(char[] cbuf, int offset, int len) {
+        if (len >= buffer.length) {
+            // don't copy large blocks through the buffer
+            flushBuffer(false);
+            if (count > 0) {
+                // complete the surrogate pair that was left in the buffer
+                buffer[count++] = cbuf[offset++];
+                len--;
+                flushBuffer(true);
+            }
+            int end = offset + len;
+            if (Character.isHighSurrogate(cbuf[end - 1])) {
+                end--;
+            }
+            writeOut(CharBuffer.wrap(cbuf, offset, end - offset));
+            if (end < offset + len) {
+                buffer[count++] = cbuf[end];
+            }
+            return;
+        }
+        if (len > buffer.length - count) {
+            flushBuffer(false);
+        }
+        System.arraycopy(cbuf, offset, buffer, count, len);
+        count += len;
+    }
+
+    public synchronized void write(CharSequence chars) {
+        write(chars, 0, chars.length());
+    }
+
+    public synchronized void write(CharSequence chars, int start, int end) {
+        while (start < end) {
+            if (count == buffer.length) {
+                flushBuffer(false);
+            }
+            int chunk = Math.min(end - start, buffer.length - count);
+            copyChars(chars, start, start + chunk);
+            start += chunk;
+        }
+    }
+
+    /**
+     * Write the buffered characters to the standard output and flush it.
+     */
+    public synchronized void flush() {
+        flushBuffer(true);
+        System.out.flush();
+    }
+
+    /**
+     * Amount of characters waiting in the buffer.
+     */
+    synchronized int getBufferedCount() {
+        return count;
+    }
+
+    private void copyChars(CharSequence chars, int start, int end) {
+        if (chars instanceof String) {
+            ((String) chars).getChars(start, end, buffer, count);
+        } else if (chars instanceof StringBuilder) {
+            ((StringBuilder) chars).getChars(start, end, buffer, count);
+        } else {
+            for (int i = start; i < end; i++) {
+                buffer[count + i - start] = chars.charAt(i);
+            }
+        }
+        count += end - start;
+    }
+
+    /**
+     * Write out the buffer.
+     *
+     * @param all false to keep a high surrogate at the end of the buffer until its low half is
+     *     written, since the halves of a pair encoded separately would both become '?'
+     */
+    private void flushBuffer(boolean all) {
+        int end = count;
+        if (!all && end > 0 && buffer.length > 1 && Character.isHighSurrogate(buffer[end - 1])) {
+            end--;
+        }
+        if (end == 0) {
+            return;
+        }
+        writeOut(CharBuffer.wrap(buffer, 0, end));
+        if (end < count) {
+            buffer[0] = buffer[end];
+        }
+        count -= end;
+    }
+
+    private void writeOut(CharBuffer chars) {
+        ByteBuffer bytes = charset.encode(chars);
+        PrintStream out = System.out;
+        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+    }
+}
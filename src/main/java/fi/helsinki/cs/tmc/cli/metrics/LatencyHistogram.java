@@ -0,0 +1,98 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Histogram of durations in milliseconds with logarithmic buckets.
+ *
+ * <p>Values below {@link #LINEAR_LIMIT} are counted exactly. Each power of two above that is
+ * divided into {@link #SUB_BUCKETS} buckets, so the reported percentiles are within about
+ * three percent of the real value no matter how large the values are. Only the used buckets
+ * are stored, which keeps the serialized histogram small.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+    private TreeMap<Integer, Long> buckets;
+    private long count;
+    private long sum;
+    private long max;
+
+    public LatencyHistogram() {
+        this.buckets = new TreeMap<>();
+    }
+
+    public void record(long millis) {
+        long value = Math.max(millis, 0);
+        buckets.merge(bucketOf(value), 1L, Long::sum);
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add all the values of another histogram into this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (Map.Entry<Integer, Long> entry : other.buckets.entrySet()) {
+            buckets.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Get the value below which the given percent of the recorded values are.
+     *
+     * @param percentile number between 0 and 100
+     * @return the highest value of the matching bucket, or 0 if nothing is recorded
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100.0 * count), 1);
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return Math.min(highestValueOf(entry.getKey()), max);
+            }
+        }
+        return max;
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,147 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import fi.helsinki.cs.tmc.cli.backend.LockedFiles;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the durations and failures of the commands and tmc-core operations run in this
+ * process.
+ *
+ * <p>The collected metrics are added to the {@link #METRICS_FILE} in the config directory
+ * when the application exits. The file keeps the metrics of the last {@link #KEEP_DAYS} days.
+ * It's read and written while holding the lock of the config directory, so the processes
+ * that exit at the same time don't lose each other's metrics.
+ */
+public class Metrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    public static final String METRICS_FILE = "metrics.json";
+    public static final int KEEP_DAYS = 14;
+
+    public static final String COMMAND_PREFIX = "command.";
+    public static final String CORE_PREFIX = "core.";
+
+    private final Map<String, OperationMetrics> session;
+    private String lastFailure;
+
+    public Metrics() {
+        this.session = new TreeMap<>();
+    }
+
+    /**
+     * Record the outcome of an operation.
+     *
+     * @param operation name of the operation
+     * @param startNanos value of {@link System#nanoTime()} when the operation started
+     * @param failure reason of the failure or null if the operation succeeded
+     */
+    public synchronized void record(String operation, long startNanos, String failure) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        session.computeIfAbsent(operation, key -> new OperationMetrics()).record(millis, failure);
+        if (failure != null) {
+            lastFailure = failure;
+        }
+    }
+
+    /**
+     * Get the reason of the latest failure and forget it.
+     * This is used for finding out the outcome of a whole command.
+     */
+    public synchronized String takeLastFailure() {
+        String failure = lastFailure;
+        lastFailure = null;
+        return failure;
+    }
+
+    public synchronized Map<String, OperationMetrics> getSession() {
+        return new TreeMap<>(session);
+    }
+
+    /**
+     * Add the metrics of this session into the metrics file.
+     *
+     * @return true if success
+     */
+    public synchronized boolean save(Path configRoot, LocalDate today) {
+        if (session.isEmpty()) {
+            return true;
+        }
+        try {
+            Files.createDirectories(configRoot);
+        } catch (IOException e) {
+            logger.error("Could not create the config directory", e);
+            return false;
+        }
+        boolean saved =
+                LockedFiles.withLock(
+                        configRoot.resolve(SettingsIo.LOCK_FILE),
+                        () -> {
+                            MetricsHistory history = load(configRoot);
+                            history.add(today, session);
+                            history.prune(today, KEEP_DAYS);
+                            return write(history, configRoot);
+                        });
+        if (saved) {
+            session.clear();
+        }
+        return saved;
+    }
+
+    public static MetricsHistory load(Path configRoot) {
+        Path file = configRoot.resolve(METRICS_FILE);
+        if (!Files.exists(file)) {
+            return new MetricsHistory();
+        }
+        try (Reader reader = Files.newBufferedReader(file, Charset.forName("UTF-8"))) {
+            MetricsHistory history = new Gson().fromJson(reader, MetricsHistory.class);
+            if (history != null) {
+                return history;
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Ignoring unreadable metrics file " + file, e);
+        }
+        return new MetricsHistory();
+    }
+
+    /**
+     * Remove all the stored metrics.
+     *
+     * @return true if success
+     */
+    public static boolean clear(Path configRoot) {
+        try {
+            Files.deleteIfExists(configRoot.resolve(METRICS_FILE));
+        } catch (IOException e) {
+            logger.error("Could not delete the metrics file", e);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean write(MetricsHistory history, Path configRoot) {
+        byte[] json = new Gson().toJson(history).getBytes(Charset.forName("UTF-8"));
+        try {
+            LockedFiles.writeAtomically(configRoot.resolve(METRICS_FILE), json);
+        } catch (IOException e) {
+            logger.error("Could not write the metrics file", e);
+            return false;
+        }
+        return true;
+    }
+}
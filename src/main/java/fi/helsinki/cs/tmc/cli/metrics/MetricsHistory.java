@@ -0,0 +1,62 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Contents of the local metrics file, the metrics of every operation grouped by day.
+ */
+public class MetricsHistory {
+    private TreeMap<String, TreeMap<String, OperationMetrics>> days;
+
+    public MetricsHistory() {
+        this.days = new TreeMap<>();
+    }
+
+    /**
+     * Add the metrics of one session into the given day.
+     */
+    public void add(LocalDate day, Map<String, OperationMetrics> operations) {
+        Map<String, OperationMetrics> target =
+                days.computeIfAbsent(day.toString(), key -> new TreeMap<>());
+        for (Map.Entry<String, OperationMetrics> entry : operations.entrySet()) {
+            target.computeIfAbsent(entry.getKey(), key -> new OperationMetrics())
+                    .add(entry.getValue());
+        }
+    }
+
+    /**
+     * Remove the days that are older than the given amount of days.
+     */
+    public void prune(LocalDate today, int keepDays) {
+        String oldest = today.minusDays(keepDays - 1).toString();
+        Iterator<String> iterator = days.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().compareTo(oldest) < 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Combine the metrics of all days.
+     *
+     * @return metrics of every operation sorted by the operation name
+     */
+    public Map<String, OperationMetrics> getTotals() {
+        Map<String, OperationMetrics> totals = new TreeMap<>();
+        for (Map<String, OperationMetrics> day : days.values()) {
+            for (Map.Entry<String, OperationMetrics> entry : day.entrySet()) {
+                totals.computeIfAbsent(entry.getKey(), key -> new OperationMetrics())
+                        .add(entry.getValue());
+            }
+        }
+        return totals;
+    }
+
+    public int getDayCount() {
+        return days.size();
+    }
+}
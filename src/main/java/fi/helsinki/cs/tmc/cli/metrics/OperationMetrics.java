@@ -0,0 +1,56 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Durations and failure reasons of a single command or tmc-core operation.
+ */
+public class OperationMetrics {
+    private LatencyHistogram durations;
+    private TreeMap<String, Long> failures;
+
+    public OperationMetrics() {
+        this.durations = new LatencyHistogram();
+        this.failures = new TreeMap<>();
+    }
+
+    /**
+     * Record one run of the operation.
+     *
+     * @param millis duration of the run
+     * @param failure reason of the failure or null if the run succeeded
+     */
+    public void record(long millis, String failure) {
+        durations.record(millis);
+        if (failure != null) {
+            failures.merge(failure, 1L, Long::sum);
+        }
+    }
+
+    public void add(OperationMetrics other) {
+        durations.add(other.durations);
+        for (Map.Entry<String, Long> entry : other.failures.entrySet()) {
+            failures.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    public LatencyHistogram getDurations() {
+        return durations;
+    }
+
+    /**
+     * Get the failure counts by their reason.
+     */
+    public Map<String, Long> getFailures() {
+        return failures;
+    }
+
+    public long getFailureCount() {
+        long total = 0;
+        for (long value : failures.values()) {
+            total += value;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,57 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Formats the metrics in the Prometheus text exposition format.
+ *
+ * <p>The output can be written into the directory of the node exporter's textfile collector.
+ */
+public class PrometheusFormat {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String DURATION = "tmc_cli_operation_duration_seconds";
+    private static final String FAILURES = "tmc_cli_operation_failures_total";
+
+    private PrometheusFormat() {}
+
+    public static String format(Map<String, OperationMetrics> operations) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP ").append(DURATION)
+                .append(" Duration of tmc-cli commands and tmc-core operations.\n");
+        sb.append("# TYPE ").append(DURATION).append(" summary\n");
+        for (Map.Entry<String, OperationMetrics> entry : operations.entrySet()) {
+            String label = "operation=\"" + escape(entry.getKey()) + "\"";
+            LatencyHistogram durations = entry.getValue().getDurations();
+            for (double quantile : QUANTILES) {
+                sb.append(DURATION).append('{').append(label)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(durations.getPercentile(quantile * 100))).append('\n');
+            }
+            sb.append(DURATION).append("_sum{").append(label).append("} ")
+                    .append(seconds(durations.getSum())).append('\n');
+            sb.append(DURATION).append("_count{").append(label).append("} ")
+                    .append(durations.getCount()).append('\n');
+        }
+
+        sb.append("# HELP ").append(FAILURES)
+                .append(" Failed tmc-cli commands and tmc-core operations by reason.\n");
+        sb.append("# TYPE ").append(FAILURES).append(" counter\n");
+        for (Map.Entry<String, OperationMetrics> entry : operations.entrySet()) {
+            for (Map.Entry<String, Long> failure : entry.getValue().getFailures().entrySet()) {
+                sb.append(FAILURES).append("{operation=\"").append(escape(entry.getKey()))
+                        .append("\",reason=\"").append(escape(failure.getKey())).append("\"} ")
+                        .append(failure.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String seconds(long millis) {
+        return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,340 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles a source set with the compiler of the running JDK, compiling only what changed
+ * since the previous compilation.
+ *
+ * <p>The modification times and sizes of the compiled sources are kept in a state file next
+ * to the output directory. A changed source is compiled again together with the unchanged
+ * sources that mention the name of a changed class, so that the callers of a changed method
+ * and the users of a changed constant don't keep stale class files. When a source is removed
+ * or the class path changes, the output is deleted and everything is compiled again.
+ *
+ * <p>The state of the sources of a project is saved only when its tests compile too. The
+ * tests that use a changed class are compiled again only when that class was compiled in the
+ * same compilation, so after a failed test compilation the sources have to be compiled again.
+ */
+class IncrementalCompiler {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CLASSPATH_LINE = "#classpath ";
+    private static final String LOCK_FILE = "compile.lock";
+
+    private final JavaCompiler compiler;
+
+    IncrementalCompiler() {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+    }
+
+    /**
+     * Whether the runner is running on a JDK. A JRE has no compiler.
+     */
+    boolean isAvailable() {
+        return compiler != null;
+    }
+
+    /**
+     * Compile the changed sources and then the changed tests of the project.
+     *
+     * <p>The output directory of the project is locked during the compilation, since a warmup
+     * and a warm runner may compile the same exercise at the same time.
+     *
+     * @return the result of the tests, or of the sources if they didn't compile
+     */
+    Result compile(JavaProject project) throws IOException {
+        Path output = project.getClassesDirectory().getParent();
+        Files.createDirectories(output);
+        try (FileChannel channel =
+                        FileChannel.open(
+                                output.resolve(LOCK_FILE),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE);
+                FileLock lock = channel.lock()) {
+            List<Path> classpath = project.getClasspath();
+            Result main =
+                    compileChanges(
+                            project.getSourceDirectories(),
+                            classpath,
+                            project.getClassesDirectory(),
+                            Collections.<String>emptySet());
+            if (!main.isSuccess()) {
+                return main;
+            }
+            List<Path> testClasspath = new ArrayList<>();
+            testClasspath.add(project.getClassesDirectory());
+            testClasspath.addAll(classpath);
+            Result tests =
+                    compile(
+                            project.getTestDirectories(),
+                            testClasspath,
+                            project.getTestClassesDirectory(),
+                            main.getChangedNames());
+            if (tests.isSuccess()) {
+                main.saveState();
+            }
+            return tests;
+        }
+    }
+
+    /**
+     * Compile the changed sources of the source directories into the output directory.
+     *
+     * @param changedUpstream simple names of the classes that changed in the source sets
+     *     this one depends on, or null if they were all compiled again
+     */
+    Result compile(
+            List<Path> sourceDirectories,
+            List<Path> classpath,
+            Path output,
+            Set<String> changedUpstream)
+            throws IOException {
+        Result result = compileChanges(sourceDirectories, classpath, output, changedUpstream);
+        if (result.isSuccess()) {
+            result.saveState();
+        }
+        return result;
+    }
+
+    /**
+     * Compile the changed sources without saving their state, so that a failed compilation
+     * of the source sets that depend on these doesn't lose the changes.
+     */
+    private Result compileChanges(
+            List<Path> sourceDirectories,
+            List<Path> classpath,
+            Path output,
+            Set<String> changedUpstream)
+            throws IOException {
+        Map<Path, String> sources = new LinkedHashMap<>();
+        for (Path directory : sourceDirectories) {
+            try (Stream<Path> stream = Files.walk(directory)) {
+                for (Path source :
+                        stream.filter(path -> path.toString().endsWith(".java"))
+                                .sorted()
+                                .collect(Collectors.toList())) {
+                    sources.put(source, stamp(source));
+                }
+            }
+        }
+        String classpathLine = CLASSPATH_LINE + join(classpath);
+        Path stateFile = output.resolveSibling(output.getFileName() + ".state");
+        Map<Path, String> previous = readState(stateFile, classpathLine);
+
+        boolean full =
+                previous == null
+                        || changedUpstream == null
+                        || !Files.isDirectory(output)
+                        || !sources.keySet().containsAll(previous.keySet());
+        List<Path> changed = new ArrayList<>();
+        Set<String> changedNames = new HashSet<>();
+        for (Map.Entry<Path, String> source : sources.entrySet()) {
+            if (full || !source.getValue().equals(previous.get(source.getKey()))) {
+                changed.add(source.getKey());
+                changedNames.add(className(source.getKey()));
+            }
+        }
+        if (!full) {
+            Set<String> names = new HashSet<>(changedNames);
+            names.addAll(changedUpstream);
+            if (!names.isEmpty()) {
+                for (Path source : sources.keySet()) {
+                    if (!changed.contains(source) && mentions(source, names)) {
+                        changed.add(source);
+                    }
+                }
+            }
+        }
+        if (changed.isEmpty()) {
+            return new Result(true, "", changedNames, false, null);
+        }
+
+        if (full) {
+            FileUtils.deleteDirectory(output.toFile());
+            Files.deleteIfExists(stateFile);
+        }
+        Files.createDirectories(output);
+        List<String> options = new ArrayList<>();
+        options.addAll(Arrays.asList("-d", output.toString(), "-encoding", "UTF-8", "-g"));
+        List<Path> fullClasspath = new ArrayList<>();
+        fullClasspath.add(output);
+        fullClasspath.addAll(classpath);
+        options.addAll(Arrays.asList("-classpath", join(fullClasspath)));
+        options.addAll(Arrays.asList("-sourcepath", join(sourceDirectories)));
+
+        StringWriter diagnostics = new StringWriter();
+        boolean success;
+        try (StandardJavaFileManager files =
+                compiler.getStandardFileManager(null, null, UTF8)) {
+            List<File> changedFiles =
+                    changed.stream().map(Path::toFile).collect(Collectors.toList());
+            success =
+                    compiler.getTask(
+                                    diagnostics,
+                                    files,
+                                    null,
+                                    options,
+                                    null,
+                                    files.getJavaFileObjectsFromFiles(changedFiles))
+                            .call();
+        }
+        // the changes are compiled again next time if this compilation failed
+        return new Result(
+                success,
+                diagnostics.toString(),
+                changedNames,
+                full,
+                new State(stateFile, classpathLine, sources));
+    }
+
+    private static String stamp(Path source) throws IOException {
+        return Files.getLastModifiedTime(source).toMillis() + " " + Files.size(source);
+    }
+
+    private static String className(Path source) {
+        String name = source.getFileName().toString();
+        return name.substring(0, name.length() - ".java".length());
+    }
+
+    private static boolean mentions(Path source, Set<String> names) throws IOException {
+        String content = new String(Files.readAllBytes(source), UTF8);
+        for (String name : names) {
+            int index = content.indexOf(name);
+            while (index >= 0) {
+                int end = index + name.length();
+                if ((index == 0 || !Character.isJavaIdentifierPart(content.charAt(index - 1)))
+                        && (end == content.length()
+                                || !Character.isJavaIdentifierPart(content.charAt(end)))) {
+                    return true;
+                }
+                index = content.indexOf(name, end);
+            }
+        }
+        return false;
+    }
+
+    private static String join(List<Path> paths) {
+        return paths.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /**
+     * Read the stamps of the sources of the previous compilation.
+     *
+     * @return null if there was no previous compilation or it used another class path
+     */
+    private static Map<Path, String> readState(Path file, String classpathLine)
+            throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        List<String> lines = Files.readAllLines(file, UTF8);
+        if (lines.isEmpty() || !lines.get(0).equals(classpathLine)) {
+            return null;
+        }
+        Map<Path, String> state = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split(" ", 3);
+            if (parts.length == 3) {
+                state.put(file.getFileSystem().getPath(parts[2]), parts[0] + " " + parts[1]);
+            }
+        }
+        return state;
+    }
+
+    private static void writeState(Path file, String classpathLine, Map<Path, String> sources)
+            throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(classpathLine);
+        for (Map.Entry<Path, String> source : sources.entrySet()) {
+            lines.add(source.getValue() + " " + source.getKey());
+        }
+        Files.write(file, lines, UTF8);
+    }
+
+    /**
+     * The stamps of the compiled sources, to be written into the state file.
+     */
+    private static class State {
+        private final Path file;
+        private final String classpathLine;
+        private final Map<Path, String> sources;
+
+        State(Path file, String classpathLine, Map<Path, String> sources) {
+            this.file = file;
+            this.classpathLine = classpathLine;
+            this.sources = sources;
+        }
+    }
+
+    static class Result {
+        private final boolean success;
+        private final String diagnostics;
+        private final Set<String> changedNames;
+        private final boolean full;
+        private final State state;
+
+        Result(
+                boolean success,
+                String diagnostics,
+                Set<String> changedNames,
+                boolean full,
+                State state) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.changedNames = changedNames;
+            this.full = full;
+            this.state = state;
+        }
+
+        /**
+         * Save the state of the sources if they compiled, so the next compilation compiles
+         * only what changed after this one.
+         */
+        private void saveState() throws IOException {
+            if (success && state != null) {
+                writeState(state.file, state.classpathLine, state.sources);
+            }
+        }
+
+        boolean isSuccess() {
+            return success;
+        }
+
+        String getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * Get the simple names of the classes whose sources changed, or null if the whole
+         * source set was compiled again.
+         */
+        Set<String> getChangedNames() {
+            return full ? null : changedNames;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the JUnit tests of an exercise in a class loader of their own.
+ *
+ * <p>The exercise brings its own JUnit and the loader doesn't see the classes of tmc-cli, so
+ * every run starts from fresh static state and the version of JUnit is the one the exercise
+ * was written for. JUnit is used through reflection for the same reason. The points of a test
+ * come from the {@code @Points} annotations of the test class and the test method, like in
+ * tmc-langs.
+ */
+class JUnitRunner {
+
+    private static final String TEST_ANNOTATION = "org.junit.Test";
+    private static final String RUN_WITH_ANNOTATION = "org.junit.runner.RunWith";
+    private static final String POINTS_ANNOTATION = "Points";
+
+    /**
+     * Run the tests in the test class directory.
+     *
+     * @param classpath everything the tests need, including the test classes
+     */
+    List<RunResponse.Test> run(Path testClasses, List<Path> classpath) throws IOException {
+        List<String> names = findClassNames(testClasses);
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = classpath.get(i).toUri().toURL();
+        }
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextLoader = thread.getContextClassLoader();
+        // the parent sees only the platform classes, not tmc-cli and its libraries
+        try (URLClassLoader loader =
+                new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent())) {
+            thread.setContextClassLoader(loader);
+            JUnit junit = new JUnit(loader);
+            List<RunResponse.Test> tests = new ArrayList<>();
+            for (String name : names) {
+                Class<?> testClass;
+                try {
+                    testClass = Class.forName(name, false, loader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    continue;
+                }
+                if (isTestClass(testClass)) {
+                    tests.addAll(junit.runClass(testClass));
+                }
+            }
+            return tests;
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Could not run JUnit of the exercise", e);
+        } finally {
+            thread.setContextClassLoader(contextLoader);
+        }
+    }
+
+    private static List<String> findClassNames(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> stream = Files.walk(directory)) {
+            return stream.map(directory::relativize)
+                    .map(path -> path.toString().replace('\\', '/'))
+                    .filter(name -> name.endsWith(".class") && !name.contains("$"))
+                    .map(name -> name.substring(0, name.length() - 6).replace('/', '.'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isTestClass(Class<?> testClass) {
+        try {
+            if (Modifier.isAbstract(testClass.getModifiers())
+                    || !Modifier.isPublic(testClass.getModifiers())) {
+                return false;
+            }
+            if (hasAnnotation(testClass, RUN_WITH_ANNOTATION)) {
+                return true;
+            }
+            for (Method method : testClass.getMethods()) {
+                if (hasAnnotation(method, TEST_ANNOTATION)) {
+                    return true;
+                }
+            }
+        } catch (LinkageError e) {
+            // a class that can't be linked isn't run, like in tmc-langs
+        }
+        return false;
+    }
+
+    private static boolean hasAnnotation(AnnotatedElement element, String name) {
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> points(AnnotatedElement element)
+            throws ReflectiveOperationException {
+        List<String> points = new ArrayList<>();
+        if (element == null) {
+            return points;
+        }
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getSimpleName().equals(POINTS_ANNOTATION)) {
+                Object value = annotation.annotationType().getMethod("value").invoke(annotation);
+                for (String point : String.valueOf(value).trim().split("\\s+")) {
+                    if (!point.isEmpty()) {
+                        points.add(point);
+                    }
+                }
+            }
+        }
+        return points;
+    }
+
+    private static Method findMethod(Class<?> testClass, String methodName) {
+        if (methodName == null) {
+            return null;
+        }
+        // the parameterized runner appends the parameters to the name
+        int bracket = methodName.indexOf('[');
+        String name = bracket >= 0 ? methodName.substring(0, bracket) : methodName;
+        try {
+            return testClass.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The JUnit classes of the exercise.
+     */
+    private static class JUnit {
+        private final Object core;
+        private final Method aClass;
+        private final Method getRunner;
+        private final Method getDescription;
+        private final Method run;
+        private final Method getFailures;
+        private final Method getChildren;
+        private final Method isTest;
+        private final Method getMethodName;
+        private final Method getFailureDescription;
+        private final Method getMessage;
+        private final Method getException;
+
+        JUnit(ClassLoader loader) throws ReflectiveOperationException {
+            Class<?> request = loader.loadClass("org.junit.runner.Request");
+            Class<?> description = loader.loadClass("org.junit.runner.Description");
+            Class<?> failure = loader.loadClass("org.junit.runner.notification.Failure");
+            Class<?> core = loader.loadClass("org.junit.runner.JUnitCore");
+            this.core = core.newInstance();
+            this.aClass = request.getMethod("aClass", Class.class);
+            this.getRunner = request.getMethod("getRunner");
+            this.getDescription = loader.loadClass("org.junit.runner.Runner")
+                    .getMethod("getDescription");
+            this.run = core.getMethod("run", request);
+            this.getFailures = loader.loadClass("org.junit.runner.Result")
+                    .getMethod("getFailures");
+            this.getChildren = description.getMethod("getChildren");
+            this.isTest = description.getMethod("isTest");
+            this.getMethodName = description.getMethod("getMethodName");
+            this.getFailureDescription = failure.getMethod("getDescription");
+            this.getMessage = failure.getMethod("getMessage");
+            this.getException = failure.getMethod("getException");
+        }
+
+        List<RunResponse.Test> runClass(Class<?> testClass) throws ReflectiveOperationException {
+            Object request = aClass.invoke(null, testClass);
+            Object description = getDescription.invoke(getRunner.invoke(request));
+            List<Object> leaves = new ArrayList<>();
+            collectTests(description, leaves);
+
+            Object result;
+            try {
+                result = run.invoke(core, request);
+            } catch (InvocationTargetException e) {
+                RunResponse.Test test = new RunResponse.Test();
+                test.name = testClass.getName();
+                test.message = String.valueOf(e.getCause());
+                test.exception = stackTrace(e.getCause());
+                return Arrays.asList(test);
+            }
+            Map<Object, Object> failures = new HashMap<>();
+            for (Object failure : (List<?>) getFailures.invoke(result)) {
+                failures.put(getFailureDescription.invoke(failure), failure);
+            }
+
+            List<String> classPoints = points(testClass);
+            List<RunResponse.Test> tests = new ArrayList<>();
+            for (Object leaf : leaves) {
+                String methodName = (String) getMethodName.invoke(leaf);
+                RunResponse.Test test = new RunResponse.Test();
+                test.name = testClass.getName() + " " + methodName;
+                test.points.addAll(classPoints);
+                test.points.addAll(points(findMethod(testClass, methodName)));
+                Object failure = failures.remove(leaf);
+                test.passed = failure == null;
+                if (failure != null) {
+                    test.message = (String) getMessage.invoke(failure);
+                    test.exception = stackTrace((Throwable) getException.invoke(failure));
+                }
+                tests.add(test);
+            }
+            // failures of the whole class, such as an exception in @BeforeClass
+            for (Object failure : failures.values()) {
+                RunResponse.Test test = new RunResponse.Test();
+                test.name = testClass.getName();
+                test.message = (String) getMessage.invoke(failure);
+                test.exception = stackTrace((Throwable) getException.invoke(failure));
+                tests.add(test);
+            }
+            return tests;
+        }
+
+        private void collectTests(Object description, List<Object> leaves)
+                throws ReflectiveOperationException {
+            if ((Boolean) isTest.invoke(description)) {
+                leaves.add(description);
+                return;
+            }
+            for (Object child : (List<?>) getChildren.invoke(description)) {
+                collectTests(child, leaves);
+            }
+        }
+
+        private static List<String> stackTrace(Throwable exception) {
+            List<String> lines = new ArrayList<>();
+            if (exception == null) {
+                return lines;
+            }
+            lines.add(exception.toString());
+            for (StackTraceElement element : exception.getStackTrace()) {
+                lines.add(element.toString());
+            }
+            return lines;
+        }
+    }
+}
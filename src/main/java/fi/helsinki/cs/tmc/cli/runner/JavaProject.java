@@ -0,0 +1,289 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The source directories and the class path of a Java exercise that the warm runners can
+ * compile and test.
+ *
+ * <p>Ant projects, the NetBeans layout of most TMC Java exercises, keep their sources in
+ * {@code src}, the tests in {@code test} and the libraries in {@code lib}. The class path of a
+ * Maven project is resolved with {@code mvn dependency:build-classpath} into
+ * {@link #MAVEN_CLASSPATH_FILE}, and resolved again when the pom changes. Projects with other
+ * layouts are left to tmc-langs.
+ *
+ * <p>tmc-langs runs the Maven exercises with their build plugins, so the warmup resolves the
+ * plugins too with {@code mvn dependency:resolve-plugins} and marks them resolved in
+ * {@link #MAVEN_PLUGINS_FILE}.
+ */
+public class JavaProject {
+
+    private static final Logger logger = LoggerFactory.getLogger(JavaProject.class);
+
+    static final String OUTPUT_DIRECTORY = "warm-runner";
+    static final String MAVEN_CLASSPATH_FILE = "tmc-classpath.txt";
+    static final String MAVEN_PLUGINS_FILE = "tmc-plugins.txt";
+    private static final long MAVEN_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // strings, so the project can be sent to a runner as json
+    private String root;
+    private List<String> sourceDirectories;
+    private List<String> testDirectories;
+    private List<String> classpath;
+    private String classesDirectory;
+    private String testClassesDirectory;
+
+    JavaProject(
+            Path root,
+            List<Path> sourceDirectories,
+            List<Path> testDirectories,
+            List<Path> classpath,
+            Path outputDirectory) {
+        this.root = root.toString();
+        this.sourceDirectories = toStrings(sourceDirectories);
+        this.testDirectories = toStrings(testDirectories);
+        this.classpath = toStrings(classpath);
+        this.classesDirectory = outputDirectory.resolve("classes").toString();
+        this.testClassesDirectory = outputDirectory.resolve("test-classes").toString();
+    }
+
+    /**
+     * Find out the layout of the exercise.
+     *
+     * @return the project or null if the warm runners can't test the exercise
+     */
+    public static JavaProject detect(Path directory) {
+        Path root = directory.toAbsolutePath().normalize();
+        try {
+            if (isAntProject(root)) {
+                List<Path> classpath = listJars(root.resolve("lib"));
+                // the resources of an ant project are next to the sources
+                classpath.add(root.resolve("src"));
+                return new JavaProject(
+                        root,
+                        Collections.singletonList(root.resolve("src")),
+                        Collections.singletonList(root.resolve("test")),
+                        classpath,
+                        root.resolve("build").resolve(OUTPUT_DIRECTORY));
+            }
+            if (isMavenProject(root)) {
+                List<Path> dependencies = resolveMavenClasspath(root);
+                if (dependencies == null) {
+                    return null;
+                }
+                List<Path> classpath = new ArrayList<>(dependencies);
+                for (String resources : Arrays.asList("src/main/resources", "src/test/resources")) {
+                    if (Files.isDirectory(root.resolve(resources))) {
+                        classpath.add(root.resolve(resources));
+                    }
+                }
+                return new JavaProject(
+                        root,
+                        Collections.singletonList(root.resolve("src/main/java")),
+                        existing(root.resolve("src/test/java")),
+                        classpath,
+                        root.resolve("target").resolve(OUTPUT_DIRECTORY));
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read the project " + root, e);
+        }
+        return null;
+    }
+
+    /**
+     * Get the class path of the Maven project, resolving it with mvn if the pom has changed
+     * since it was last resolved.
+     *
+     * @return the jars or null if they couldn't be resolved
+     */
+    static List<Path> resolveMavenClasspath(Path root) throws IOException {
+        Path file = getMavenClasspathFile(root);
+        if (!isMavenClasspathResolved(root)) {
+            Files.createDirectories(file.getParent());
+            Files.deleteIfExists(file);
+            if (!runMaven(
+                            root,
+                            file.resolveSibling(MAVEN_CLASSPATH_FILE + ".log"),
+                            "dependency:build-classpath",
+                            "-Dmdep.outputFile=" + file)
+                    || !Files.exists(file)) {
+                logger.info("mvn could not resolve the class path of {}", root);
+                return null;
+            }
+        }
+        String content = new String(Files.readAllBytes(file), UTF8).trim();
+        List<Path> classpath = new ArrayList<>();
+        if (!content.isEmpty()) {
+            for (String entry : content.split(File.pathSeparator)) {
+                classpath.add(Paths.get(entry));
+            }
+        }
+        return classpath;
+    }
+
+    /**
+     * Download the build plugins of the Maven project into the local repository, unless they
+     * have been downloaded since the pom changed.
+     *
+     * @return false if they couldn't be resolved
+     */
+    static boolean resolveMavenPlugins(Path root) throws IOException {
+        if (isMavenPluginsResolved(root)) {
+            return true;
+        }
+        Path file = getMavenPluginsFile(root);
+        Files.createDirectories(file.getParent());
+        Path log = file.resolveSibling(MAVEN_PLUGINS_FILE + ".log");
+        if (!runMaven(root, log, "dependency:resolve-plugins")) {
+            logger.info("mvn could not resolve the plugins of {}", root);
+            return false;
+        }
+        Files.write(file, new byte[0]);
+        return true;
+    }
+
+    /**
+     * Run mvn in the project with its output in the log file.
+     *
+     * @return false if mvn couldn't be run, failed or timed out
+     */
+    private static boolean runMaven(Path root, Path log, String... arguments) {
+        List<String> command = new ArrayList<>();
+        command.addAll(Arrays.asList(EnvironmentUtil.isWindows() ? "mvn.cmd" : "mvn", "-q", "-B"));
+        command.addAll(Arrays.asList(arguments));
+        Process process;
+        try {
+            process =
+                    new ProcessBuilder(command)
+                            .directory(root.toFile())
+                            .redirectErrorStream(true)
+                            .redirectOutput(log.toFile())
+                            .start();
+        } catch (IOException e) {
+            logger.info("Could not run mvn, leaving the tests to tmc-langs", e);
+            return false;
+        }
+        try {
+            if (!process.waitFor(MAVEN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return process.exitValue() == 0;
+    }
+
+    static boolean isAntProject(Path root) {
+        return Files.exists(root.resolve("build.xml"))
+                && Files.isDirectory(root.resolve("src"))
+                && Files.isDirectory(root.resolve("test"));
+    }
+
+    static boolean isMavenProject(Path root) {
+        return Files.exists(root.resolve("pom.xml"))
+                && Files.isDirectory(root.resolve("src/main/java"));
+    }
+
+    static Path getMavenClasspathFile(Path root) {
+        return root.resolve("target").resolve(MAVEN_CLASSPATH_FILE);
+    }
+
+    static Path getMavenPluginsFile(Path root) {
+        return root.resolve("target").resolve(MAVEN_PLUGINS_FILE);
+    }
+
+    /**
+     * Whether the class path file of the Maven project is newer than its pom.
+     */
+    static boolean isMavenClasspathResolved(Path root) throws IOException {
+        return isNewerThanPom(getMavenClasspathFile(root), root);
+    }
+
+    /**
+     * Whether the plugins of the Maven project have been resolved since its pom changed.
+     */
+    static boolean isMavenPluginsResolved(Path root) throws IOException {
+        return isNewerThanPom(getMavenPluginsFile(root), root);
+    }
+
+    private static boolean isNewerThanPom(Path file, Path root) throws IOException {
+        return Files.exists(file)
+                && Files.getLastModifiedTime(file)
+                                .compareTo(Files.getLastModifiedTime(root.resolve("pom.xml")))
+                        >= 0;
+    }
+
+    private static List<Path> listJars(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> stream = Files.walk(directory)) {
+            return stream.filter(path -> path.getFileName().toString().endsWith(".jar"))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static List<Path> existing(Path directory) {
+        if (Files.isDirectory(directory)) {
+            return Collections.singletonList(directory);
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> toStrings(List<Path> paths) {
+        return paths.stream().map(Path::toString).collect(Collectors.toList());
+    }
+
+    private static List<Path> toPaths(List<String> paths) {
+        return paths.stream().map(Paths::get).collect(Collectors.toList());
+    }
+
+    public Path getRoot() {
+        return Paths.get(root);
+    }
+
+    public List<Path> getSourceDirectories() {
+        return toPaths(sourceDirectories);
+    }
+
+    public List<Path> getTestDirectories() {
+        return toPaths(testDirectories);
+    }
+
+    /**
+     * Get the libraries and the resource directories of the exercise.
+     */
+    public List<Path> getClasspath() {
+        return toPaths(classpath);
+    }
+
+    public Path getClassesDirectory() {
+        return Paths.get(classesDirectory);
+    }
+
+    public Path getTestClassesDirectory() {
+        return Paths.get(testClassesDirectory);
+    }
+}
@@ -0,0 +1,35 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+/**
+ * A request to a warm runner to compile and test a project, or to exit when there is no
+ * project. The requests are sent as one line of json.
+ */
+class RunRequest {
+
+    // the runner answers only to the processes that can read its state file
+    private String token;
+    private JavaProject project;
+    private long timeoutMs;
+
+    RunRequest(String token, JavaProject project, long timeoutMs) {
+        this.token = token;
+        this.project = project;
+        this.timeoutMs = timeoutMs;
+    }
+
+    static RunRequest stop(String token) {
+        return new RunRequest(token, null, 0);
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    JavaProject getProject() {
+        return project;
+    }
+
+    long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
@@ -0,0 +1,110 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
+import fi.helsinki.cs.tmc.langs.domain.TestResult;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The answer of a warm runner, sent as one line of json.
+ */
+class RunResponse {
+
+    /**
+     * The runner can't test the project, so the tests should be run with tmc-langs.
+     */
+    static final String UNSUPPORTED = "UNSUPPORTED";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // one of RunResult.Status or UNSUPPORTED
+    private String status;
+    private List<Test> tests = new ArrayList<>();
+    private String compilerOutput;
+    private String output;
+    private String error;
+
+    static RunResponse of(RunResult.Status status) {
+        RunResponse response = new RunResponse();
+        response.status = status.name();
+        return response;
+    }
+
+    static RunResponse unsupported(String error) {
+        RunResponse response = new RunResponse();
+        response.status = UNSUPPORTED;
+        response.error = error;
+        return response;
+    }
+
+    static RunResponse error(String error) {
+        RunResponse response = of(RunResult.Status.GENERIC_ERROR);
+        response.error = error;
+        return response;
+    }
+
+    boolean isSupported() {
+        return !UNSUPPORTED.equals(status);
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    List<Test> getTests() {
+        return tests;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    void setCompilerOutput(String compilerOutput) {
+        this.compilerOutput = compilerOutput;
+    }
+
+    void setOutput(String output) {
+        this.output = output;
+    }
+
+    /**
+     * Convert the response into the result that tmc-langs would have given.
+     */
+    RunResult toRunResult() {
+        ImmutableList.Builder<TestResult> results = ImmutableList.builder();
+        for (Test test : tests) {
+            results.add(
+                    new TestResult(
+                            test.name,
+                            test.passed,
+                            ImmutableList.copyOf(test.points),
+                            test.message != null ? test.message : "",
+                            ImmutableList.copyOf(test.exception)));
+        }
+        ImmutableMap.Builder<String, byte[]> logs = ImmutableMap.builder();
+        if (output != null) {
+            logs.put(SpecialLogs.STDOUT, output.getBytes(UTF8));
+        }
+        if (compilerOutput != null) {
+            logs.put(SpecialLogs.COMPILER_OUTPUT, compilerOutput.getBytes(UTF8));
+        }
+        if (error != null) {
+            logs.put(SpecialLogs.GENERIC_ERROR_MESSAGE, error.getBytes(UTF8));
+        }
+        return new RunResult(RunResult.Status.valueOf(status), results.build(), logs.build());
+    }
+
+    static class Test {
+        String name;
+        boolean passed;
+        List<String> points = new ArrayList<>();
+        String message;
+        List<String> exception = new ArrayList<>();
+    }
+}
@@ -0,0 +1,336 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
+
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A pool of warm runner JVMs that test Java exercises without starting a build tool.
+ *
+ * <p>Each runner has a slot in the pool directory with a lock file and a state file. A
+ * process that wants to run tests locks a free slot, connects to the runner of the slot and
+ * starts a new {@link WarmRunner} if there isn't one. The runners outlive the tmc process and
+ * exit by themselves when they have been idle for {@link #IDLE_TIMEOUT_MS}, so the next
+ * {@code tmc test} finds a JVM whose compiler and JUnit classes are already loaded.
+ *
+ * <p>A runner is started in the root of the exercise that it tests, since the tests may open
+ * files by relative paths. The slots whose runner is already in the root of the exercise are
+ * tried first, and a runner that is in another directory is stopped and replaced.
+ *
+ * <p>The runners are started with the java of the running JVM and the tmc jar, so the pool is
+ * only available when tmc is run as a jar.
+ */
+public class RunnerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunnerPool.class);
+
+    public static final String DIRECTORY = "runners";
+    public static final int MAX_SIZE = 8;
+    public static final long DEFAULT_TIMEOUT_MS = 3 * 60 * 1000;
+    static final long IDLE_TIMEOUT_MS = 30 * 60 * 1000;
+    static final long STARTUP_TIMEOUT_MS = 30 * 1000;
+    private static final long STARTUP_POLL_MS = 50;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // the slots locked by this process; a file lock can't be taken twice in one JVM
+    private static final Set<Path> lockedSlots = Collections.synchronizedSet(new HashSet<>());
+
+    private final Path directory;
+    private final int size;
+    private final List<String> javaCommand;
+    private final long idleTimeoutMs;
+    private final Gson gson;
+
+    /**
+     * Create a pool.
+     *
+     * @param javaCommand the command that starts a JVM with tmc-cli in its class path
+     */
+    public RunnerPool(Path directory, int size, List<String> javaCommand) {
+        this(directory, size, javaCommand, IDLE_TIMEOUT_MS);
+    }
+
+    RunnerPool(Path directory, int size, List<String> javaCommand, long idleTimeoutMs) {
+        this.directory = directory;
+        this.size = size;
+        this.javaCommand = new ArrayList<>(javaCommand);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.gson = new Gson();
+    }
+
+    /**
+     * Open the pool in the config directory.
+     *
+     * @return the pool or null if the size is 0 or tmc isn't running as a jar
+     */
+    public static RunnerPool open(int size) {
+        if (size <= 0) {
+            return null;
+        }
+        List<String> command = findJavaCommand();
+        if (command == null) {
+            return null;
+        }
+        return new RunnerPool(SettingsIo.getConfigDirectory().resolve(DIRECTORY), size, command);
+    }
+
+    /**
+     * Get the command that starts a JVM with the running tmc jar in its class path.
+     *
+     * @return the command or null if tmc isn't running as a jar
+     */
+    static List<String> findJavaCommand() {
+        String javaHome = System.getProperty("java.home");
+        if (javaHome == null) {
+            return null;
+        }
+        Path java =
+                Paths.get(javaHome, "bin", EnvironmentUtil.isWindows() ? "java.exe" : "java");
+        try {
+            File jar =
+                    new File(
+                            RunnerPool.class
+                                    .getProtectionDomain()
+                                    .getCodeSource()
+                                    .getLocation()
+                                    .toURI());
+            if (!Files.isExecutable(java) || !jar.exists()) {
+                return null;
+            }
+            return Arrays.asList(java.toString(), "-cp", jar.toString());
+        } catch (Exception e) {
+            logger.info("Could not find the tmc jar, the warm runners are disabled", e);
+            return null;
+        }
+    }
+
+    /**
+     * Compile and test the project in a warm runner.
+     *
+     * @return the result or null if all the runners were busy or the runner couldn't test
+     *     the project
+     * @throws IOException if the runner failed, for example when the tests exit the JVM
+     */
+    public RunResult run(JavaProject project, long timeoutMs) throws IOException {
+        return inFreeSlot(project.getRoot(), slot -> runInSlot(slot, project, timeoutMs));
+    }
+
+    /**
+     * Lock the first free slot and run the task in it. The slots whose runner is in the root
+     * are tried first.
+     *
+     * @return the result of the task or null if all the slots were busy
+     */
+    private <T> T inFreeSlot(Path root, SlotTask<T> task) throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> slots = new ArrayList<>();
+        for (int slot = 0; slot < size; slot++) {
+            // only a hint, the state is read again once the slot is locked
+            RunnerState state = RunnerState.read(stateFile(slot));
+            if (state != null && state.isIn(root)) {
+                slots.add(0, slot);
+            } else {
+                slots.add(slot);
+            }
+        }
+        for (int slot : slots) {
+            Path lockFile = directory.resolve("runner-" + slot + ".lock");
+            if (!lockedSlots.add(lockFile)) {
+                continue;
+            }
+            try (FileChannel channel =
+                    FileChannel.open(
+                            lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = tryLock(channel);
+                if (lock == null) {
+                    continue;
+                }
+                try {
+                    return task.run(slot);
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                lockedSlots.remove(lockFile);
+            }
+        }
+        logger.info("All the {} warm runners are busy", size);
+        return null;
+    }
+
+    /**
+     * Lock the slot unless another process, or another pool in this process, has locked it.
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private RunResult runInSlot(int slot, JavaProject project, long timeoutMs)
+            throws IOException {
+        RunnerState state = RunnerState.read(stateFile(slot));
+        if (state != null && !state.isIn(project.getRoot())) {
+            stop(state);
+            state = null;
+        }
+        Socket socket = state != null ? connect(state) : null;
+        if (socket == null) {
+            state = startRunner(slot, project.getRoot());
+            socket = state != null ? connect(state) : null;
+            if (socket == null) {
+                return null;
+            }
+        }
+        try {
+            // the runner answers when the timeout passes, this only guards against a hung runner
+            long readTimeout = timeoutMs + STARTUP_TIMEOUT_MS;
+            socket.setSoTimeout((int) Math.min(readTimeout, Integer.MAX_VALUE));
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), UTF8);
+            writer.write(gson.toJson(new RunRequest(state.getToken(), project, timeoutMs)));
+            writer.write('\n');
+            writer.flush();
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("The warm runner exited during the test run");
+            }
+            RunResponse response = gson.fromJson(line, RunResponse.class);
+            if (!response.isSupported()) {
+                logger.info("The warm runner can't test the project: {}", response.getError());
+                return null;
+            }
+            return response.toRunResult();
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid answer from the warm runner", e);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Ask the runner to exit, so that it doesn't wait for its idle timeout in a slot that
+     * another runner takes.
+     */
+    private void stop(RunnerState state) {
+        Socket socket = connect(state);
+        if (socket == null) {
+            return;
+        }
+        try {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), UTF8);
+            writer.write(gson.toJson(RunRequest.stop(state.getToken())));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            logger.info("Could not stop the warm runner", e);
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private static Socket connect(RunnerState state) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), state.getPort()));
+            return socket;
+        } catch (ConnectException e) {
+            closeQuietly(socket);
+            return null;
+        } catch (IOException e) {
+            logger.info("Could not connect to the warm runner", e);
+            closeQuietly(socket);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Start a runner in the slot with the root as its working directory and wait until it's
+     * listening.
+     *
+     * @return the state of the new runner or null if it didn't start
+     */
+    private RunnerState startRunner(int slot, Path root) throws IOException {
+        Path stateFile = stateFile(slot);
+        Files.deleteIfExists(stateFile);
+        List<String> command = new ArrayList<>(javaCommand);
+        command.add(WarmRunner.class.getName());
+        command.add(stateFile.toString());
+        command.add(Long.toString(idleTimeoutMs));
+        Process process =
+                new ProcessBuilder(command)
+                        .directory(root.toFile())
+                        .redirectErrorStream(true)
+                        .redirectOutput(directory.resolve("runner-" + slot + ".log").toFile())
+                        .start();
+        process.getOutputStream().close();
+
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            RunnerState state = RunnerState.read(stateFile);
+            if (state != null) {
+                return state;
+            }
+            try {
+                Thread.sleep(STARTUP_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        logger.warn("The warm runner {} did not start", slot);
+        process.destroy();
+        return null;
+    }
+
+    private interface SlotTask<T> {
+        T run(int slot) throws IOException;
+    }
+
+    private Path stateFile(int slot) {
+        return directory.resolve("runner-" + slot + ".json");
+    }
+}
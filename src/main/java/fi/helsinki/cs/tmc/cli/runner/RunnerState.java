@@ -0,0 +1,68 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The port, the token and the working directory of a running {@link WarmRunner}, kept in the
+ * state file of its slot.
+ */
+class RunnerState {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private int port;
+    private String token;
+    private String root;
+
+    RunnerState(int port, String token, Path root) {
+        this.port = port;
+        this.token = token;
+        this.root = root.toString();
+    }
+
+    /**
+     * Read the state file.
+     *
+     * @return the state or null if there is no runner in the slot
+     */
+    static RunnerState read(Path file) throws IOException {
+        try {
+            String json = new String(Files.readAllBytes(file), UTF8);
+            RunnerState state = new Gson().fromJson(json, RunnerState.class);
+            return state != null && state.token != null ? state : null;
+        } catch (NoSuchFileException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * Whether the runner is running in the directory.
+     */
+    boolean isIn(Path directory) {
+        return root != null && isSameDirectory(Paths.get(root), directory);
+    }
+
+    static boolean isSameDirectory(Path first, Path second) {
+        try {
+            return Files.isSameFile(first, second);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A long-lived JVM that compiles and tests Java exercises for {@link RunnerPool}.
+ *
+ * <p>The runner listens on a local port, which it writes with a random token into its state
+ * file. It runs one request at a time, so the output of the tests and the static state of
+ * the JDK belong to one exercise at a time. A test run that doesn't finish within the
+ * timeout of the request can't be stopped safely, so the runner answers that the run was
+ * interrupted and exits. The runner also exits when it has been idle for the idle timeout
+ * or has run {@link #MAX_RUNS} test runs, so the classes that the tests leak are freed.
+ *
+ * <p>The tests run in the working directory of the runner, which is the root of the exercise
+ * that the runner was started for, so tests that open files by relative paths find them like
+ * they do under tmc-langs. The runner refuses to test the projects in other directories.
+ */
+public class WarmRunner {
+
+    static final int MAX_RUNS = 100;
+    private static final int REQUEST_TIMEOUT_MS = 10 * 1000;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Path stateFile;
+    private final long idleTimeoutMs;
+    private final Path root;
+    private final String token;
+    private final Gson gson;
+    private final IncrementalCompiler compiler;
+    private final JUnitRunner junit;
+
+    WarmRunner(Path stateFile, long idleTimeoutMs, Path root) {
+        this.stateFile = stateFile;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.root = root;
+        this.token = UUID.randomUUID().toString();
+        this.gson = new Gson();
+        this.compiler = new IncrementalCompiler();
+        this.junit = new JUnitRunner();
+    }
+
+    /**
+     * Start a runner.
+     *
+     * @param args the state file and the idle timeout in milliseconds
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: WarmRunner STATE_FILE IDLE_TIMEOUT_MS");
+            System.exit(1);
+        }
+        // the pool starts the runner in the root of the exercise
+        Path root = Paths.get("").toAbsolutePath();
+        new WarmRunner(Paths.get(args[0]), Long.parseLong(args[1]), root).serve();
+        System.exit(0);
+    }
+
+    void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 5, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) Math.min(idleTimeoutMs, Integer.MAX_VALUE));
+            writeState(server.getLocalPort());
+            for (int runs = 0; runs < MAX_RUNS; runs++) {
+                try (Socket socket = server.accept()) {
+                    if (!handle(socket)) {
+                        break;
+                    }
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+            }
+        } finally {
+            removeState();
+        }
+    }
+
+    /**
+     * Answer one request.
+     *
+     * @return false if the runner has to exit
+     */
+    private boolean handle(Socket socket) throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF8));
+        RunRequest request;
+        try {
+            socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+            request = gson.fromJson(reader.readLine(), RunRequest.class);
+        } catch (SocketTimeoutException | JsonParseException e) {
+            return true;
+        }
+        if (request == null || !token.equals(request.getToken())) {
+            return true;
+        }
+        if (request.getProject() == null) {
+            return false;
+        }
+
+        FutureTask<RunResponse> task = new FutureTask<>(() -> test(request.getProject()));
+        Thread worker = new Thread(task, "warm-runner-test");
+        worker.setDaemon(true);
+        worker.start();
+        RunResponse response;
+        boolean finished = true;
+        try {
+            response = task.get(request.getTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            response = RunResponse.of(RunResult.Status.TESTRUN_INTERRUPTED);
+            finished = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            response = RunResponse.error(String.valueOf(e.getCause()));
+        }
+        Writer writer = new OutputStreamWriter(socket.getOutputStream(), UTF8);
+        writer.write(gson.toJson(response));
+        writer.write('\n');
+        writer.flush();
+        return finished;
+    }
+
+    /**
+     * Compile the changes of the project and run its tests.
+     */
+    RunResponse test(JavaProject project) throws IOException {
+        if (!compiler.isAvailable()) {
+            return RunResponse.unsupported("The runner is not running on a JDK");
+        }
+        if (!RunnerState.isSameDirectory(root, project.getRoot())) {
+            return RunResponse.unsupported("The runner is running in " + root);
+        }
+        IncrementalCompiler.Result compiled = compiler.compile(project);
+        if (!compiled.isSuccess()) {
+            RunResponse response = RunResponse.of(RunResult.Status.COMPILE_FAILED);
+            response.setCompilerOutput(compiled.getDiagnostics());
+            return response;
+        }
+
+        List<Path> runClasspath = new ArrayList<>();
+        runClasspath.add(project.getTestClassesDirectory());
+        runClasspath.add(project.getClassesDirectory());
+        runClasspath.addAll(project.getClasspath());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        RunResponse response;
+        try (PrintStream captured = new PrintStream(output, true, UTF8.name())) {
+            System.setOut(captured);
+            System.setErr(captured);
+            List<RunResponse.Test> results =
+                    junit.run(project.getTestClassesDirectory(), runClasspath);
+            boolean passed = results.stream().allMatch(test -> test.passed);
+            response =
+                    RunResponse.of(
+                            passed ? RunResult.Status.PASSED : RunResult.Status.TESTS_FAILED);
+            response.getTests().addAll(results);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        response.setOutput(new String(output.toByteArray(), UTF8));
+        return response;
+    }
+
+    private void writeState(int port) throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Path temp = Files.createTempFile(stateFile.getParent(), ".tmp-", ".json");
+        Files.write(temp, gson.toJson(new RunnerState(port, token, root)).getBytes(UTF8));
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Remove the state file, unless another runner has already taken the slot.
+     */
+    private void removeState() {
+        try {
+            RunnerState state = RunnerState.read(stateFile);
+            if (state != null && token.equals(state.getToken())) {
+                Files.deleteIfExists(stateFile);
+            }
+        } catch (IOException e) {
+            // the next client finds out that the runner is gone
+        }
+    }
+}
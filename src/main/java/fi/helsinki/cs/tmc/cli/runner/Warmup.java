@@ -0,0 +1,354 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Prepares downloaded Java exercises so that their first test run doesn't start cold.
+ *
+ * <p>The Maven exercises of a course usually have the same dependencies, so they are grouped
+ * by the parts of their poms that decide the class path and the build plugins, and mvn
+ * resolves the dependencies and the plugins of each group only once into the local repository
+ * that it shares with tmc-langs, so tmc-langs doesn't download them in the first test run.
+ * The class path of the first exercise of a group is copied to the rest. Resolving is done one
+ * group at a time, since concurrent mvn processes can corrupt the local repository.
+ *
+ * <p>When the exercises are compiled too, they are compiled in parallel on low priority
+ * threads into the output directories of the warm runners, so the runner of the first
+ * {@code tmc test} finds nothing to compile.
+ */
+public class Warmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(Warmup.class);
+
+    public static final String LOG_FILE = "warmup.log";
+
+    // the parts of a pom that decide its class path and its plugins
+    private static final List<String> DEPENDENCY_ELEMENTS =
+            Arrays.asList(
+                    "parent",
+                    "properties",
+                    "dependencyManagement",
+                    "dependencies",
+                    "repositories",
+                    "build",
+                    "pluginRepositories");
+
+    private final int threads;
+    private final boolean compile;
+    private final IncrementalCompiler compiler;
+
+    /**
+     * Create a warmup.
+     *
+     * @param threads the number of exercises compiled at the same time
+     * @param compile whether the exercises are compiled for the warm runners
+     */
+    public Warmup(int threads, boolean compile) {
+        this.threads = threads;
+        this.compile = compile;
+        this.compiler = new IncrementalCompiler();
+    }
+
+    /**
+     * Get the number of compiling threads that leaves half of the processors free.
+     */
+    public static int getDefaultThreads() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * Warm up the exercises in the directories. Directories that aren't Java exercises are
+     * skipped.
+     */
+    public Summary run(List<Path> directories) throws IOException {
+        Summary summary = new Summary();
+        List<Path> roots = new ArrayList<>();
+        for (Path directory : directories) {
+            Path root = directory.toAbsolutePath().normalize();
+            if (JavaProject.isAntProject(root) || JavaProject.isMavenProject(root)) {
+                roots.add(root);
+            }
+        }
+        summary.exerciseCount = roots.size();
+        resolveDependencies(roots, summary);
+        if (compile && compiler.isAvailable()) {
+            summary.compiling = true;
+            compileAll(roots, summary);
+        }
+        return summary;
+    }
+
+    private void resolveDependencies(List<Path> roots, Summary summary) throws IOException {
+        Map<String, List<Path>> groups = new LinkedHashMap<>();
+        for (Path root : roots) {
+            if (JavaProject.isMavenProject(root)) {
+                groups.computeIfAbsent(
+                                dependencyKey(root.resolve("pom.xml")),
+                                key -> new ArrayList<>())
+                        .add(root);
+            }
+        }
+        summary.dependencySetCount = groups.size();
+
+        for (List<Path> group : groups.values()) {
+            Path resolved = null;
+            for (Path root : group) {
+                if (JavaProject.isMavenClasspathResolved(root)) {
+                    resolved = root;
+                    break;
+                }
+            }
+            if (resolved == null) {
+                resolved = group.get(0);
+                if (JavaProject.resolveMavenClasspath(resolved) == null) {
+                    for (Path root : group) {
+                        summary.unresolved.add(root.getFileName().toString());
+                    }
+                    continue;
+                }
+            }
+            Path classpathFile = JavaProject.getMavenClasspathFile(resolved);
+            for (Path root : group) {
+                if (!JavaProject.isMavenClasspathResolved(root)) {
+                    Path target = JavaProject.getMavenClasspathFile(root);
+                    Files.createDirectories(target.getParent());
+                    // the copy is newer than the pom, so it counts as resolved
+                    Files.copy(classpathFile, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            resolvePlugins(group, resolved);
+        }
+    }
+
+    /**
+     * Resolve the plugins of the group with mvn, unless an exercise of the group already has
+     * them resolved, and mark them resolved for the rest.
+     */
+    private static void resolvePlugins(List<Path> group, Path first) throws IOException {
+        Path resolved = first;
+        for (Path root : group) {
+            if (JavaProject.isMavenPluginsResolved(root)) {
+                resolved = root;
+                break;
+            }
+        }
+        if (!JavaProject.resolveMavenPlugins(resolved)) {
+            // tmc-langs downloads them when it first tests the exercises
+            return;
+        }
+        Path pluginsFile = JavaProject.getMavenPluginsFile(resolved);
+        for (Path root : group) {
+            if (!JavaProject.isMavenPluginsResolved(root)) {
+                Path target = JavaProject.getMavenPluginsFile(root);
+                Files.createDirectories(target.getParent());
+                Files.copy(pluginsFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private void compileAll(List<Path> roots, Summary summary) throws IOException {
+        ExecutorService executor =
+                Executors.newFixedThreadPool(
+                        threads,
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "warmup-compiler");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        });
+        try {
+            Map<Path, Future<Boolean>> results = new LinkedHashMap<>();
+            for (Path root : roots) {
+                if (summary.unresolved.contains(root.getFileName().toString())) {
+                    continue;
+                }
+                results.put(root, executor.submit(() -> compile(root)));
+            }
+            for (Map.Entry<Path, Future<Boolean>> result : results.entrySet()) {
+                if (waitFor(result.getValue())) {
+                    summary.compiledCount++;
+                } else {
+                    summary.notCompiling.add(result.getKey().getFileName().toString());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean compile(Path root) throws IOException {
+        JavaProject project = JavaProject.detect(root);
+        return project != null && compiler.compile(project).isSuccess();
+    }
+
+    private static boolean waitFor(Future<Boolean> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The warmup was interrupted", e);
+        } catch (ExecutionException e) {
+            logger.warn("Could not compile the exercise", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Get the parts of the pom that decide the class path of the project, so that the poms
+     * that differ only by their names have the same key.
+     *
+     * @return the key, or the path of the pom if it couldn't be read
+     */
+    static String dependencyKey(Path pom) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            // the default handler prints the errors into the terminal
+            builder.setErrorHandler(new DefaultHandler());
+            Element project = builder.parse(pom.toFile()).getDocumentElement();
+            StringBuilder key = new StringBuilder();
+            for (Node child = project.getFirstChild();
+                    child != null;
+                    child = child.getNextSibling()) {
+                if (child instanceof Element && DEPENDENCY_ELEMENTS.contains(child.getNodeName())) {
+                    appendNode(key, child);
+                }
+            }
+            return key.toString();
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            logger.info("Could not read " + pom, e);
+            return pom.toString();
+        }
+    }
+
+    private static void appendNode(StringBuilder key, Node node) {
+        if (node instanceof Element) {
+            key.append('<').append(node.getNodeName()).append('>');
+            for (Node child = node.getFirstChild();
+                    child != null;
+                    child = child.getNextSibling()) {
+                appendNode(key, child);
+            }
+            key.append("</>");
+        } else if (node.getNodeType() == Node.TEXT_NODE
+                || node.getNodeType() == Node.CDATA_SECTION_NODE) {
+            key.append(node.getNodeValue().trim());
+        }
+    }
+
+    public static Path getLogFile() {
+        return SettingsIo.getConfigDirectory().resolve(LOG_FILE);
+    }
+
+    /**
+     * Start tmc in a process that outlives this one, at a lower priority and with its output in
+     * the {@link #getLogFile() log file}.
+     *
+     * @param arguments the main class of tmc and its arguments
+     * @return false if tmc isn't running as a jar
+     */
+    public static boolean startInBackground(Path workingDirectory, List<String> arguments)
+            throws IOException {
+        List<String> java = RunnerPool.findJavaCommand();
+        if (java == null) {
+            return false;
+        }
+        List<String> command = new ArrayList<>();
+        if (!EnvironmentUtil.isWindows()) {
+            // the priorities of java threads are only hints on most platforms
+            command.addAll(Arrays.asList("nice", "-n", "10"));
+        }
+        command.addAll(java);
+        command.addAll(arguments);
+        Path log = getLogFile();
+        Files.createDirectories(log.getParent());
+        Process process =
+                new ProcessBuilder(command)
+                        .directory(workingDirectory.toFile())
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                        .start();
+        process.getOutputStream().close();
+        return true;
+    }
+
+    /**
+     * What the warmup did.
+     */
+    public static class Summary {
+        private int exerciseCount;
+        private int dependencySetCount;
+        private int compiledCount;
+        private boolean compiling;
+        private final List<String> unresolved = new ArrayList<>();
+        private final List<String> notCompiling = new ArrayList<>();
+
+        /**
+         * Get the number of Java exercises.
+         */
+        public int getExerciseCount() {
+            return exerciseCount;
+        }
+
+        /**
+         * Get the number of different sets of dependencies of the Maven exercises.
+         */
+        public int getDependencySetCount() {
+            return dependencySetCount;
+        }
+
+        /**
+         * Whether the exercises were compiled.
+         */
+        public boolean isCompiling() {
+            return compiling;
+        }
+
+        public int getCompiledCount() {
+            return compiledCount;
+        }
+
+        /**
+         * Get the exercises whose dependencies mvn couldn't resolve.
+         */
+        public List<String> getUnresolved() {
+            return Collections.unmodifiableList(unresolved);
+        }
+
+        /**
+         * Get the exercises that don't compile, often because the tests use code that the
+         * student hasn't written yet.
+         */
+        public List<String> getNotCompiling() {
+            return Collections.unmodifiableList(notCompiling);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Difference between the exercises stored in .tmc.json and the exercises on the server.
+ *
+ * <p>The exercises are matched by name and an exercise has changed when its checksum is
+ * different, so the diff can be made from a single course details request.
+ */
+public class ExerciseDiff {
+
+    private final List<Exercise> serverExercises;
+    private final List<Exercise> newExercises;
+    private final List<Exercise> changedExercises;
+    private final List<Exercise> removedExercises;
+
+    private ExerciseDiff(List<Exercise> serverExercises) {
+        this.serverExercises = serverExercises;
+        this.newExercises = new ArrayList<>();
+        this.changedExercises = new ArrayList<>();
+        this.removedExercises = new ArrayList<>();
+    }
+
+    /**
+     * Compare the locally stored exercises to the exercises from the server.
+     */
+    public static ExerciseDiff compute(
+            List<Exercise> localExercises, List<Exercise> serverExercises) {
+        ExerciseDiff diff = new ExerciseDiff(serverExercises);
+        Map<String, Exercise> local = byName(localExercises);
+        Map<String, Exercise> server = byName(serverExercises);
+
+        for (Exercise exercise : server.values()) {
+            if (exercise.isLocked()) {
+                // can't be downloaded before it's unlocked
+                continue;
+            }
+            Exercise old = local.get(exercise.getName());
+            if (old == null) {
+                diff.newExercises.add(exercise);
+            } else if (!Objects.equals(old.getChecksum(), exercise.getChecksum())) {
+                diff.changedExercises.add(exercise);
+            }
+        }
+        for (Exercise exercise : local.values()) {
+            if (!server.containsKey(exercise.getName())) {
+                diff.removedExercises.add(exercise);
+            }
+        }
+        return diff;
+    }
+
+    public List<Exercise> getNewExercises() {
+        return newExercises;
+    }
+
+    public List<Exercise> getChangedExercises() {
+        return changedExercises;
+    }
+
+    public List<Exercise> getRemovedExercises() {
+        return removedExercises;
+    }
+
+    public boolean isEmpty() {
+        return newExercises.isEmpty() && changedExercises.isEmpty() && removedExercises.isEmpty();
+    }
+
+    /**
+     * Patch the course info in place. The exercises keep their order, the removed exercises
+     * are dropped and the new ones are added to the end. All the remaining exercises are
+     * replaced with the server versions, so that their completion status is up to date.
+     */
+    public void applyTo(CourseInfo info) {
+        Map<String, Exercise> server = byName(serverExercises);
+        List<Exercise> patched = new ArrayList<>();
+        for (Exercise exercise : info.getExercises()) {
+            Exercise updated = server.remove(exercise.getName());
+            if (updated != null) {
+                patched.add(updated);
+            }
+        }
+        patched.addAll(server.values());
+        info.setExercises(patched);
+    }
+
+    private static Map<String, Exercise> byName(List<Exercise> exercises) {
+        Map<String, Exercise> map = new LinkedHashMap<>();
+        for (Exercise exercise : exercises) {
+            map.put(exercise.getName(), exercise);
+        }
+        return map;
+    }
+}
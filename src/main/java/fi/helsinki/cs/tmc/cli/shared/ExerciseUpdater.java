@@ -4,11 +4,11 @@ import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
 import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
 import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
-import fi.helsinki.cs.tmc.cli.io.CliProgressObserver;
+import fi.helsinki.cs.tmc.cli.trace.Span;
 
-import fi.helsinki.cs.tmc.core.commands.GetUpdatableExercises.UpdateResult;
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
 
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +26,8 @@ public class ExerciseUpdater {
 
     private List<Exercise> newExercises;
     private List<Exercise> updatedExercises;
+    private Course serverCourse;
+    private ExerciseDiff diff;
 
     public ExerciseUpdater(CliContext context, Course course) {
         this.ctx = context;
@@ -67,24 +69,44 @@ public class ExerciseUpdater {
     }
 
     /**
-     * Asks tmc-core if there are new or updated exercises available. Call this
-     * before other methods.
+     * Fetch the course details from the server. The details are fetched only once, so the
+     * same response can be used both to check for updates and to update .tmc.json.
      *
-     * @return true if there is something new to download, false if not.
+     * @return the course from the server or null if the request failed
      */
-    public boolean updatesAvailable() {
-        UpdateResult result = TmcUtil.getUpdatableExercises(ctx, course);
-        if (result == null) {
-            return false;
+    public Course fetchCourse() {
+        if (serverCourse == null) {
+            try (Span span = ctx.getTracer().start("cli", "updater.fetchCourse")) {
+                serverCourse = TmcUtil.getCourseDetails(ctx, course);
+            }
         }
+        return serverCourse;
+    }
 
-        newExercises = result.getNewExercises();
-        updatedExercises = result.getUpdatedExercises();
+    /**
+     * Compares the checksums of the exercises in the course to the ones on the server. Call
+     * this before other methods.
+     *
+     * @return true if there is something new to download, false if not.
+     */
+    public boolean updatesAvailable() {
+        try (Span span = ctx.getTracer().start("cli", "updater.updatesAvailable")) {
+            Course fetched = fetchCourse();
+            if (fetched == null) {
+                return false;
+            }
 
+            diff = ExerciseDiff.compute(course.getExercises(), fetched.getExercises());
+            newExercises = diff.getNewExercises();
+            updatedExercises = diff.getChangedExercises();
+            span.setAttribute("new", newExercises.size());
+            span.setAttribute("updated", updatedExercises.size());
+            span.setAttribute("removed", diff.getRemovedExercises().size());
+        }
         return newExercisesAvailable() || updatedExercisesAvailable();
     }
 
-    public List<Exercise> downloadUpdates(CliProgressObserver progobs) {
+    public List<Exercise> downloadUpdates(ProgressObserver progobs) {
         List<Exercise> newAndUpdated = getNewAndUpdatedExercises();
         for (Iterator<Exercise> iterator = newAndUpdated.iterator(); iterator.hasNext(); ) {
             Exercise next = iterator.next();
@@ -92,15 +114,28 @@ public class ExerciseUpdater {
                 iterator.remove();
             }
         }
-        return TmcUtil.downloadExercises(ctx, newAndUpdated, progobs);
+        try (Span span = ctx.getTracer().start("cli", "updater.downloadUpdates")) {
+            span.setAttribute("exercises", newAndUpdated.size());
+            return TmcUtil.downloadExercises(ctx, newAndUpdated, progobs);
+        }
     }
 
+    /**
+     * Patch the exercises in .tmc.json with the differences found by {@link
+     * #updatesAvailable()} and refresh the sync time of the course in the course registry.
+     */
     public boolean updateCourseJson(CourseInfo info, Path configFile) {
-        Course newDetailsCourse = TmcUtil.findCourse(ctx, course.getName());
-        if (newDetailsCourse == null) {
+        if (diff == null) {
+            updatesAvailable();
+        }
+        if (diff == null) {
+            return false;
+        }
+        diff.applyTo(info);
+        if (!CourseInfoIo.save(info, configFile)) {
             return false;
         }
-        info.setExercises(newDetailsCourse.getExercises());
-        return CourseInfoIo.save(info, configFile);
+        ctx.getCourseRegistry().register(info, configFile.getParent());
+        return true;
     }
 }
@@ -0,0 +1,326 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.io.Io;
+
+import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+import fi.helsinki.cs.tmc.langs.abstraction.Strategy;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationError;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
+import fi.helsinki.cs.tmc.langs.domain.TestResult;
+
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes results as newline delimited JSON, one event object per line.
+ *
+ * <p>The events are streamed to the io as soon as they are written, nothing is collected
+ * in memory. Every event has an "event" field that tells its type: "test_case",
+ * "exercise_result", "summary", "course", "exercise", "skipped", "submitted" or "error".
+ */
+public class JsonResultWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonResultWriter.class);
+
+    private final Io io;
+    private final JsonWriter writer;
+    private final String command;
+
+    private int totalExercises;
+    private int passedExercises;
+
+    public JsonResultWriter(Io io, String command) {
+        this.io = io;
+        this.command = command;
+        this.writer = new JsonWriter(io);
+        // lenient mode allows writing many top level values into the same stream
+        this.writer.setLenient(true);
+        this.writer.setSerializeNulls(false);
+        this.totalExercises = 0;
+        this.passedExercises = 0;
+    }
+
+    public boolean writeLocalTestResult(
+            String exercise, RunResult runResult, ValidationResult valResult, long timeMillis) {
+        if (runResult == null) {
+            return false;
+        }
+        totalExercises++;
+
+        List<TestResult> testResults = runResult.testResults;
+        boolean validationsPassed = validationsPassed(valResult);
+        boolean passed = runResult.status == RunResult.Status.PASSED && validationsPassed;
+        if (passed) {
+            passedExercises++;
+        }
+        try {
+            writeTestCases(exercise, testResults);
+
+            beginEvent("exercise_result");
+            writer.name("exercise").value(exercise);
+            writer.name("status").value(runResult.status.name().toLowerCase());
+            writer.name("passed").value(passed);
+            writer.name("passed_tests").value(passedTests(testResults));
+            writer.name("total_tests").value(testResults.size() + (validationsPassed ? 0 : 1));
+            writer.name("time_ms").value(timeMillis);
+            if (runResult.status == RunResult.Status.GENERIC_ERROR) {
+                byte[] log = runResult.logs.get(SpecialLogs.GENERIC_ERROR_MESSAGE);
+                writer.name("error").value(log != null ? new String(log) : "");
+            }
+            if (!validationsPassed) {
+                writeValidationErrors(valResult);
+            }
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write test results", e);
+        }
+        return passed;
+    }
+
+    public boolean writeSubmissionResult(
+            String exercise, SubmissionResult result, long timeMillis) {
+        if (result == null) {
+            return false;
+        }
+        totalExercises++;
+
+        boolean passed = result.getStatus() == SubmissionResult.Status.OK;
+        if (passed) {
+            passedExercises++;
+        }
+        List<TestResult> testResults = result.getTestCases();
+        try {
+            writeTestCases(exercise, testResults);
+
+            beginEvent("exercise_result");
+            writer.name("exercise").value(exercise);
+            writer.name("status").value(result.getStatus().name().toLowerCase());
+            writer.name("passed").value(passed);
+            if (testResults != null) {
+                writer.name("passed_tests").value(passedTests(testResults));
+                writer.name("total_tests").value(testResults.size());
+            }
+            writer.name("time_ms").value(timeMillis);
+            writeStrings("points", result.getPoints());
+            writer.name("solution_url").value(result.getSolutionUrl());
+            writer.name("submission_url").value(result.getSubmissionUrl());
+            if (result.getStatus() == SubmissionResult.Status.ERROR) {
+                writer.name("error").value(result.getError());
+            }
+            String valgrind = result.getValgrind();
+            if (valgrind != null && !valgrind.isEmpty()) {
+                writer.name("valgrind").value(valgrind);
+            }
+            if (result.validationsFailed()) {
+                writeValidationErrors(result.getValidationResult());
+            }
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write submission results", e);
+        }
+        return passed;
+    }
+
+    /**
+     * Write an error event, the exercise may be null.
+     */
+    public void writeError(String exercise, String message) {
+        if (exercise != null) {
+            totalExercises++;
+        }
+        try {
+            beginEvent("error");
+            writer.name("exercise").value(exercise);
+            writer.name("message").value(message);
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write error", e);
+        }
+    }
+
+    /**
+     * Write an event for an exercise that wasn't run or submitted.
+     */
+    public void writeSkipped(String exercise, String reason) {
+        try {
+            beginEvent("skipped");
+            writer.name("exercise").value(exercise);
+            writer.name("reason").value(reason);
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write skipped exercise", e);
+        }
+    }
+
+    /**
+     * Write an event for an exercise that was submitted without waiting for the result.
+     */
+    public void writeSubmitted(String exercise, String submissionUrl) {
+        try {
+            beginEvent("submitted");
+            writer.name("exercise").value(exercise);
+            writer.name("submission_url").value(submissionUrl);
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write submitted exercise", e);
+        }
+    }
+
+    public void writeSummary() {
+        try {
+            beginEvent("summary");
+            writer.name("passed_exercises").value(passedExercises);
+            writer.name("total_exercises").value(totalExercises);
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write summary", e);
+        }
+    }
+
+    public void writeCourse(Course course) {
+        List<Exercise> exercises = course.getExercises();
+        int completed = 0;
+        if (exercises != null) {
+            for (Exercise exercise : exercises) {
+                if (exercise.isCompleted()) {
+                    completed++;
+                }
+            }
+        }
+        try {
+            beginEvent("course");
+            writer.name("name").value(course.getName());
+            writer.name("id").value(course.getId());
+            writer.name("exercises").value(exercises != null ? exercises.size() : 0);
+            writer.name("completed_exercises").value(completed);
+            writer.name("locked_exercises").value(course.getUnlockables().size());
+            writer.name("details_url").value(String.valueOf(course.getDetailsUrl()));
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write course", e);
+        }
+    }
+
+    public void writeExercise(String courseName, Exercise exercise) {
+        try {
+            beginEvent("exercise");
+            writer.name("course").value(courseName);
+            writer.name("name").value(exercise.getName());
+            writer.name("id").value(exercise.getId());
+            writer.name("status").value(exerciseStatus(exercise));
+            writer.name("deadline").value(CourseInfo.getExerciseDeadline(exercise));
+            writer.name("deadline_passed").value(exercise.hasDeadlinePassed());
+            writer.name("locked").value(exercise.isLocked());
+            writer.name("attempted").value(exercise.isAttempted());
+            writer.name("completed").value(exercise.isCompleted());
+            writer.name("requires_review").value(exercise.requiresReview());
+            writer.name("reviewed").value(exercise.isReviewed());
+            writer.name("checksum").value(exercise.getChecksum());
+            endEvent();
+        } catch (IOException e) {
+            logger.error("Failed to write exercise", e);
+        }
+    }
+
+    private void writeTestCases(String exercise, List<TestResult> testResults)
+            throws IOException {
+        if (testResults == null) {
+            return;
+        }
+        for (TestResult testResult : testResults) {
+            beginEvent("test_case");
+            writer.name("exercise").value(exercise);
+            writer.name("name").value(testResult.getName());
+            writer.name("passed").value(testResult.isSuccessful());
+            writeStrings("points", testResult.getPoints());
+            if (!testResult.isSuccessful()) {
+                writer.name("message").value(testResult.getMessage());
+                writeStrings("detailed_message", testResult.getDetailedMessage());
+                writeStrings("exception", testResult.getException());
+            }
+            endEvent();
+        }
+    }
+
+    private void writeValidationErrors(ValidationResult result) throws IOException {
+        writer.name("validation_errors").beginArray();
+        Map<File, List<ValidationError>> errors = result.getValidationErrors();
+        for (Map.Entry<File, List<ValidationError>> entry : errors.entrySet()) {
+            for (ValidationError error : entry.getValue()) {
+                writer.beginObject();
+                writer.name("file").value(entry.getKey().getPath());
+                writer.name("line").value(error.getLine());
+                writer.name("column").value(error.getColumn());
+                writer.name("message").value(error.getMessage());
+                writer.endObject();
+            }
+        }
+        writer.endArray();
+    }
+
+    private void writeStrings(String name, List<String> strings) throws IOException {
+        if (strings == null || strings.isEmpty()) {
+            return;
+        }
+        writer.name(name).beginArray();
+        for (String string : strings) {
+            writer.value(string);
+        }
+        writer.endArray();
+    }
+
+    private void beginEvent(String event) throws IOException {
+        writer.beginObject();
+        writer.name("event").value(event);
+        writer.name("command").value(command);
+    }
+
+    private void endEvent() throws IOException {
+        writer.endObject();
+        io.println();
+        io.flush();
+    }
+
+    private static String exerciseStatus(Exercise exercise) {
+        if (exercise.isCompleted()) {
+            if (exercise.requiresReview() && !exercise.isReviewed()) {
+                return "requires_review";
+            }
+            return "completed";
+        } else if (exercise.hasDeadlinePassed()) {
+            return "deadline_passed";
+        } else if (exercise.isAttempted()) {
+            return "attempted";
+        }
+        return "not_completed";
+    }
+
+    private static boolean validationsPassed(ValidationResult result) {
+        if (result == null || result.getStrategy() == Strategy.DISABLED) {
+            return true;
+        }
+        Map<File, List<ValidationError>> errors = result.getValidationErrors();
+        return errors == null || errors.isEmpty();
+    }
+
+    private static int passedTests(List<TestResult> testResults) {
+        int passed = 0;
+        for (TestResult testResult : testResults) {
+            if (testResult.isSuccessful()) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,47 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import fi.helsinki.cs.tmc.cli.io.Io;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+
+/**
+ * Output format selected with the --format option.
+ */
+public enum OutputFormat {
+    TEXT,
+    JSON;
+
+    private static final String OPTION = "format";
+
+    public static void addOption(Options options) {
+        options.addOption(
+                OptionBuilder.withLongOpt(OPTION)
+                        .hasArg()
+                        .withArgName("FORMAT")
+                        .withDescription("Output format: text (default) or json")
+                        .create());
+    }
+
+    /**
+     * Parse the format from the command line arguments.
+     *
+     * @return the format or null if the format is unknown
+     */
+    public static OutputFormat parse(Io io, CommandLine args) {
+        String value = args.getOptionValue(OPTION);
+        if (value == null) {
+            return TEXT;
+        }
+        switch (value.toLowerCase()) {
+            case "text":
+                return TEXT;
+            case "json":
+                return JSON;
+            default:
+                io.errorln("Unknown output format \"" + value + "\", use text or json.");
+                return null;
+        }
+    }
+}
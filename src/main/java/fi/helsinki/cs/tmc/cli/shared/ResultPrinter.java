@@ -1,5 +1,6 @@
 package fi.helsinki.cs.tmc.cli.shared;
 
+import fi.helsinki.cs.tmc.cli.backend.SubmissionStatus;
 import fi.helsinki.cs.tmc.cli.io.CliProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.Color;
 import fi.helsinki.cs.tmc.cli.io.ColorUtil;
@@ -34,6 +35,7 @@ public class ResultPrinter {
     private boolean showPassed;
     private int totalExercises;
     private int passedExercises;
+    private String lastQueueMessage;
 
     public ResultPrinter(
             Io io, boolean showDetails, boolean showPassed, Color passedColor, Color failedColor) {
@@ -72,6 +74,7 @@ public class ResultPrinter {
             return false;
         }
         totalExercises++;
+        lastQueueMessage = null;
 
         switch (submResult.getStatus()) {
             case OK:
@@ -95,6 +98,43 @@ public class ResultPrinter {
         }
     }
 
+    /**
+     * Print where the submission is in the queue of the server. Nothing is printed if the
+     * place hasn't changed since the previous call, so this can be called after every poll.
+     */
+    public void printQueueStatus(SubmissionStatus status) {
+        String message = getQueueMessage(status);
+        if (message.equals(lastQueueMessage)) {
+            return;
+        }
+        lastQueueMessage = message;
+        io.println(ColorUtil.colorString(message, Color.CYAN));
+    }
+
+    static String getQueueMessage(SubmissionStatus status) {
+        String sandboxStatus = status.getSandboxStatus();
+        if ("processing_on_sandbox".equals(sandboxStatus)) {
+            return "Running the tests on the server";
+        }
+        if ("sending_to_sandbox".equals(sandboxStatus)) {
+            return "Sending the submission to the sandbox";
+        }
+        int before = status.getSubmissionsBeforeThis();
+        if (before < 0) {
+            return "Processing";
+        }
+        if (before == 0) {
+            return "Next in the queue";
+        }
+        String message =
+                "In the queue, " + before + " submission" + (before > 1 ? "s" : "")
+                        + " before this one";
+        if (status.getTotalUnprocessed() > before) {
+            message += " (" + status.getTotalUnprocessed() + " waiting)";
+        }
+        return message;
+    }
+
     public boolean printLocalTestResult(
             RunResult runResult, ValidationResult valResult, boolean printResultBar) {
         if (runResult == null) {
@@ -166,7 +206,10 @@ public class ResultPrinter {
         io.println(CliProgressObserver.getPassedTestsBar(passed, total, passedColor, failedColor));
     }
 
-    private boolean validationsPassed(ValidationResult result) {
+    /**
+     * Check whether the code style validations passed or weren't run at all.
+     */
+    public static boolean validationsPassed(ValidationResult result) {
         if (result == null || result.getStrategy() == Strategy.DISABLED) {
             return true;
         }
@@ -0,0 +1,335 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.AccountList;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.Io;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * The course directories under a root directory, for running a command in all of them.
+ *
+ * <p>The directories are found with a parallel walk that doesn't descend into the course
+ * directories or the hidden directories. tmc-core has only one set of settings per process,
+ * so the courses are grouped by their account and the directory that contains them. The
+ * groups are run one after another and the courses of a group in parallel, unless the task
+ * has to run {@link #ONE_AT_A_TIME}.
+ */
+public class Workspace {
+
+    private static final Logger logger = LoggerFactory.getLogger(Workspace.class);
+
+    /**
+     * How many directory levels under the root are searched for courses.
+     */
+    public static final int MAX_DEPTH = 4;
+
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * The number of threads for the tasks that can't run in parallel, like the ones that
+     * build the exercises with tmc-langs, since concurrent mvn processes can corrupt the
+     * local repository that they share.
+     */
+    public static final int ONE_AT_A_TIME = 1;
+
+    private final Path root;
+    private final List<Path> courseDirectories;
+
+    private Workspace(Path root, List<Path> courseDirectories) {
+        this.root = root;
+        this.courseDirectories = courseDirectories;
+    }
+
+    /**
+     * Find the course directories under the working directory of the context. If it is inside
+     * a course, the workspace has only that course. The courses in the {@link CourseRegistry}
+     * that are too deep for the walk are included too.
+     */
+    public static Workspace scan(CliContext ctx) {
+        WorkDir workDir = ctx.getWorkDir();
+        Path root = workDir.getWorkingDirectory();
+        Path courseDirectory = workDir.getCourseDirectory();
+        if (courseDirectory != null) {
+            return new Workspace(root, Collections.singletonList(courseDirectory));
+        }
+        Workspace workspace = scan(root, MAX_DEPTH);
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        for (CourseRegistry.Entry entry : ctx.getCourseRegistry().getEntries()) {
+            Path directory = entry.getPath();
+            if (directory.startsWith(absoluteRoot)
+                    && !workspace.courseDirectories.contains(directory)) {
+                workspace.courseDirectories.add(directory);
+            }
+        }
+        Collections.sort(workspace.courseDirectories);
+        return workspace;
+    }
+
+    public static Workspace scan(Path root, int maxDepth) {
+        List<Path> found = ForkJoinPool.commonPool().invoke(new ScanTask(root, maxDepth));
+        Collections.sort(found);
+        return new Workspace(root, found);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public List<Path> getCourseDirectories() {
+        return courseDirectories;
+    }
+
+    /**
+     * Run the task in every course. Each task gets a context whose working directory is the
+     * course directory and which is already logged in as the account of the course.
+     *
+     * @return the results in the order of {@link #getCourseDirectories()}
+     */
+    public <T> List<Result<T>> run(CliContext ctx, CourseTask<T> task) {
+        return run(ctx, task, ProgressObserver.NULL_OBSERVER);
+    }
+
+    /**
+     * Run the task in every course and report the courses as the tasks of the observer. The
+     * index of the course in {@link #getCourseDirectories()} is its task id, and the tasks of
+     * the courses that fail are never ended.
+     */
+    public <T> List<Result<T>> run(
+            CliContext ctx, CourseTask<T> task, ProgressObserver observer) {
+        return run(ctx, task, observer, MAX_THREADS);
+    }
+
+    /**
+     * Run the task in every course with at most the given number of courses at a time.
+     */
+    public <T> List<Result<T>> run(
+            CliContext ctx, CourseTask<T> task, ProgressObserver observer, int threads) {
+        Map<Path, Result<T>> results = new LinkedHashMap<>();
+        Map<String, List<Path>> groups = new LinkedHashMap<>();
+        Map<String, String> usernames = new LinkedHashMap<>();
+        for (Path directory : courseDirectories) {
+            results.put(directory, null);
+            CourseInfo info = CourseInfoIo.load(directory.resolve(CourseInfoIo.COURSE_CONFIG));
+            if (info == null) {
+                results.put(directory, new Result<>(directory, null, "Invalid course file"));
+                continue;
+            }
+            String key =
+                    info.getUsername() + "@" + info.getServerAddress() + " "
+                            + directory.getParent();
+            usernames.put(key, info.getUsername());
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(directory);
+        }
+
+        AccountList accounts = SettingsIo.loadAccountList();
+        Account previous = ctx.getSettings().getAccount();
+        try {
+            for (Map.Entry<String, List<Path>> group : groups.entrySet()) {
+                String username = usernames.get(group.getKey());
+                Account account = accounts != null ? accounts.getAccount(username) : null;
+                if (account == null) {
+                    for (Path directory : group.getValue()) {
+                        results.put(
+                                directory,
+                                new Result<>(directory, null, "Not logged in as " + username));
+                    }
+                    continue;
+                }
+                ctx.useAccount(account);
+                // tmc-core downloads the exercises next to the first course of the group
+                ctx.getSettings().setWorkDir(new WorkDir(group.getValue().get(0)));
+                results.putAll(runGroup(ctx, group.getValue(), task, observer, threads));
+            }
+        } finally {
+            if (previous != null) {
+                ctx.useAccount(previous);
+            }
+            ctx.getSettings().setWorkDir(ctx.getWorkDir());
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    private <T> Map<Path, Result<T>> runGroup(
+            CliContext ctx,
+            List<Path> directories,
+            CourseTask<T> task,
+            ProgressObserver observer,
+            int threads) {
+        Map<Path, Result<T>> results = new LinkedHashMap<>();
+        ExecutorService executor =
+                Executors.newFixedThreadPool(Math.max(1, Math.min(directories.size(), threads)));
+        try {
+            Map<Path, Future<T>> futures = new LinkedHashMap<>();
+            for (Path directory : directories) {
+                CliContext courseContext = ctx.forWorkDir(new WorkDir(directory));
+                long id = courseDirectories.indexOf(directory);
+                String name = getName(directory);
+                futures.put(
+                        directory,
+                        executor.submit(
+                                () -> {
+                                    observer.progress(id, 0.0, name);
+                                    T value = task.run(courseContext);
+                                    observer.end(id);
+                                    return value;
+                                }));
+            }
+            for (Map.Entry<Path, Future<T>> entry : futures.entrySet()) {
+                results.put(entry.getKey(), getResult(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static <T> Result<T> getResult(Path directory, Future<T> future) {
+        try {
+            return new Result<>(directory, future.get(), null);
+        } catch (ExecutionException ex) {
+            logger.warn("Command failed in " + directory, ex.getCause());
+            String message = ex.getCause().getMessage();
+            return new Result<>(
+                    directory,
+                    null,
+                    message != null ? message : ex.getCause().getClass().getSimpleName());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new Result<>(directory, null, "Interrupted");
+        }
+    }
+
+    /**
+     * Print a line for each course and the number of courses that failed.
+     */
+    public <T> void printResults(Io io, List<Result<T>> results, Function<T, String> format) {
+        int failed = 0;
+        for (Result<T> result : results) {
+            String name = getName(result.getDirectory());
+            if (result.isSuccess()) {
+                io.println(name + ": " + format.apply(result.getValue()));
+            } else {
+                io.errorln(name + ": " + result.getError());
+                failed++;
+            }
+        }
+        io.println(results.size() + " courses, " + failed + " failed");
+    }
+
+    private String getName(Path directory) {
+        String name = root.relativize(directory).toString();
+        return name.isEmpty() ? "." : name;
+    }
+
+    /**
+     * The part of a command that is run in one course.
+     */
+    public interface CourseTask<T> {
+
+        /**
+         * Run the command in the course of the context.
+         *
+         * @return the result that is printed in the summary
+         * @throws Exception if the command failed, the message is printed in the summary
+         */
+        T run(CliContext courseContext) throws Exception;
+    }
+
+    public static class Result<T> {
+
+        private final Path directory;
+        private final T value;
+        private final String error;
+
+        Result(Path directory, T value, String error) {
+            this.directory = directory;
+            this.value = value;
+            this.error = error;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    private static class ScanTask extends RecursiveTask<List<Path>> {
+
+        private final Path directory;
+        private final int depth;
+
+        ScanTask(Path directory, int depth) {
+            this.directory = directory;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            List<Path> found = new ArrayList<>();
+            if (Files.exists(directory.resolve(CourseInfoIo.COURSE_CONFIG))) {
+                // exercises don't contain other courses
+                found.add(directory);
+                return found;
+            }
+            if (depth <= 0) {
+                return found;
+            }
+
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)
+                            && !child.getFileName().toString().startsWith(".")) {
+                        subtasks.add(new ScanTask(child, depth - 1));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Could not list the directory " + directory, e);
+                return found;
+            }
+            for (ScanTask subtask : invokeAll(subtasks)) {
+                found.addAll(subtask.join());
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package fi.helsinki.cs.tmc.cli.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed section of the program. The span ends when it's closed.
+ *
+ * <p>Spans opened inside another span in the same thread are shown nested in the trace
+ * viewer. Use them with try-with-resources:
+ * <pre>
+ * try (Span span = ctx.getTracer().start("submit", "zip")) {
+ *     span.setAttribute("exercise", name);
+ *     ...
+ * }
+ * </pre>
+ */
+public class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span(null, null, null);
+
+    private final Tracer tracer;
+    private final String category;
+    private final String name;
+    private final long startMicros;
+    private final long threadId;
+    private Map<String, Object> attributes;
+    private boolean closed;
+
+    Span(Tracer tracer, String category, String name) {
+        this.tracer = tracer;
+        this.category = category;
+        this.name = name;
+        this.startMicros = tracer != null ? tracer.now() : 0;
+        this.threadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * Attach a value to the span. It's shown in the details of the span.
+     *
+     * @return this span
+     */
+    public Span setAttribute(String key, Object value) {
+        if (tracer == null) {
+            return this;
+        }
+        if (attributes == null) {
+            attributes = new LinkedHashMap<>();
+        }
+        attributes.put(key, value);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() {
+        if (tracer == null || closed) {
+            return;
+        }
+        closed = true;
+        tracer.addEvent(
+                new TraceEvent(
+                        name,
+                        category,
+                        TraceEvent.COMPLETE,
+                        startMicros,
+                        tracer.now() - startMicros,
+                        threadId,
+                        attributes));
+    }
+}
@@ -0,0 +1,80 @@
+package fi.helsinki.cs.tmc.cli.trace;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Single event of the Chrome trace event format.
+ */
+class TraceEvent {
+    static final String COMPLETE = "X";
+    static final String INSTANT = "i";
+    static final String METADATA = "M";
+
+    final String name;
+    final String category;
+    final String phase;
+    final long timestamp;
+    final long duration;
+    final long threadId;
+    final Map<String, Object> args;
+
+    TraceEvent(
+            String name,
+            String category,
+            String phase,
+            long timestamp,
+            long duration,
+            long threadId,
+            Map<String, Object> args) {
+        this.name = name;
+        this.category = category;
+        this.phase = phase;
+        this.timestamp = timestamp;
+        this.duration = duration;
+        this.threadId = threadId;
+        this.args = args;
+    }
+
+    void write(JsonWriter writer, long processId) throws IOException {
+        writer.beginObject();
+        writer.name("name").value(name);
+        if (category != null) {
+            writer.name("cat").value(category);
+        }
+        writer.name("ph").value(phase);
+        writer.name("ts").value(timestamp);
+        if (COMPLETE.equals(phase)) {
+            writer.name("dur").value(duration);
+        }
+        if (INSTANT.equals(phase)) {
+            // thread scoped instant event
+            writer.name("s").value("t");
+        }
+        writer.name("pid").value(processId);
+        writer.name("tid").value(threadId);
+        if (args != null && !args.isEmpty()) {
+            writer.name("args").beginObject();
+            for (Map.Entry<String, Object> entry : args.entrySet()) {
+                writer.name(entry.getKey());
+                writeValue(writer, entry.getValue());
+            }
+            writer.endObject();
+        }
+        writer.endObject();
+    }
+
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else if (value instanceof Boolean) {
+            writer.value(((Boolean) value).booleanValue());
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package fi.helsinki.cs.tmc.cli.trace;
+
+import fi.helsinki.cs.tmc.cli.io.EnvironmentUtil;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects spans of the current invocation and writes them in the Chrome trace event format.
+ *
+ * <p>The written file can be opened in chrome://tracing or in any other viewer that
+ * understands the format. A disabled tracer doesn't record anything, so the spans can be
+ * left in the code.
+ */
+public class Tracer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+    private static final long PROCESS_ID = 1;
+
+    private final boolean enabled;
+    private final long originNanos;
+    private final List<TraceEvent> events;
+    private final Map<Long, String> threadNames;
+
+    private Tracer(boolean enabled) {
+        this.enabled = enabled;
+        this.originNanos = System.nanoTime();
+        this.events = new ArrayList<>();
+        this.threadNames = new LinkedHashMap<>();
+    }
+
+    /**
+     * Create a tracer that records all the spans.
+     */
+    public static Tracer create() {
+        return new Tracer(true);
+    }
+
+    /**
+     * Create a tracer that ignores all the spans.
+     */
+    public static Tracer disabled() {
+        return new Tracer(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start a new span in the current thread.
+     *
+     * @param category group of the span, such as "cli" or "core"
+     * @param name name shown in the trace viewer
+     * @return span that must be closed
+     */
+    public Span start(String category, String name) {
+        if (!enabled) {
+            return Span.NOOP;
+        }
+        return new Span(this, category, name);
+    }
+
+    /**
+     * Mark a moment in the current thread.
+     */
+    public void instant(String category, String name) {
+        if (!enabled) {
+            return;
+        }
+        addEvent(
+                new TraceEvent(
+                        name,
+                        category,
+                        TraceEvent.INSTANT,
+                        now(),
+                        0,
+                        Thread.currentThread().getId(),
+                        null));
+    }
+
+    /**
+     * Wrap the progress observer so that each progress message of tmc-core becomes its own
+     * span. The spans must be ended with {@link TracingProgressObserver#close()}.
+     *
+     * @param delegate observer that still gets all the progress updates
+     * @return the tracing observer
+     */
+    public TracingProgressObserver observe(String category, ProgressObserver delegate) {
+        return new TracingProgressObserver(this, category, delegate);
+    }
+
+    /**
+     * Write all the recorded events into the file.
+     *
+     * @return true if success
+     */
+    public boolean write(Path file) {
+        List<TraceEvent> snapshot;
+        Map<Long, String> names;
+        synchronized (this) {
+            snapshot = new ArrayList<>(events);
+            names = new LinkedHashMap<>(threadNames);
+        }
+        try (Writer out = Files.newBufferedWriter(file, Charset.forName("UTF-8"));
+                JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("displayTimeUnit").value("ms");
+            writer.name("traceEvents").beginArray();
+            writeMetadata(writer, 0, "process_name", "tmc-cli " + EnvironmentUtil.getVersion());
+            for (Map.Entry<Long, String> entry : names.entrySet()) {
+                writeMetadata(writer, entry.getKey(), "thread_name", entry.getValue());
+            }
+            for (TraceEvent event : snapshot) {
+                event.write(writer, PROCESS_ID);
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            logger.error("Failed to write the trace into " + file, e);
+            return false;
+        }
+        return true;
+    }
+
+    synchronized List<TraceEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    synchronized void addEvent(TraceEvent event) {
+        events.add(event);
+        Thread thread = Thread.currentThread();
+        if (event.threadId == thread.getId() && !threadNames.containsKey(event.threadId)) {
+            threadNames.put(event.threadId, thread.getName());
+        }
+    }
+
+    long now() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - originNanos);
+    }
+
+    private static void writeMetadata(JsonWriter writer, long threadId, String name, String value)
+            throws IOException {
+        Map<String, Object> args = Collections.singletonMap("name", value);
+        new TraceEvent(name, null, TraceEvent.METADATA, 0, 0, threadId, args)
+                .write(writer, PROCESS_ID);
+    }
+}
@@ -0,0 +1,83 @@
+package fi.helsinki.cs.tmc.cli.trace;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Progress observer that turns the progress messages of tmc-core into spans.
+ *
+ * <p>tmc-core tells what it's doing with the progress messages, e.g. zipping, sending and
+ * waiting for the results. Every distinct message starts a new span that lasts until the
+ * next message, so the trace shows where the time of a single tmc-core operation went.
+ */
+public class TracingProgressObserver extends ProgressObserver implements AutoCloseable {
+
+    private final Tracer tracer;
+    private final String category;
+    private final ProgressObserver delegate;
+    private final Map<Long, Span> phases;
+
+    TracingProgressObserver(Tracer tracer, String category, ProgressObserver delegate) {
+        this.tracer = tracer;
+        this.category = category;
+        this.delegate = delegate;
+        this.phases = new HashMap<>();
+    }
+
+    @Override
+    public void progress(long id, String message) {
+        startPhase(id, message);
+        delegate.progress(id, message);
+    }
+
+    @Override
+    public void progress(long id, Double progress, String message) {
+        startPhase(id, message);
+        delegate.progress(id, progress, message);
+    }
+
+    @Override
+    public void start(long id) {
+        delegate.start(id);
+    }
+
+    @Override
+    public void end(long id) {
+        endPhase(id);
+        delegate.end(id);
+    }
+
+    /**
+     * End the spans of the operations that didn't report their end.
+     */
+    @Override
+    public synchronized void close() {
+        for (Span span : phases.values()) {
+            span.close();
+        }
+        phases.clear();
+    }
+
+    private synchronized void startPhase(long id, String message) {
+        if (message == null) {
+            return;
+        }
+        Span current = phases.get(id);
+        if (current != null && message.equals(current.getName())) {
+            return;
+        }
+        if (current != null) {
+            current.close();
+        }
+        phases.put(id, tracer.start(category, message).setAttribute("task", id));
+    }
+
+    private synchronized void endPhase(long id) {
+        Span current = phases.remove(id);
+        if (current != null) {
+            current.close();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package fi.helsinki.cs.tmc.cli.updater;
 
+import fi.helsinki.cs.tmc.cli.backend.CliHttpClient;
+import fi.helsinki.cs.tmc.cli.io.CliProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.ExternalsUtil;
 import fi.helsinki.cs.tmc.cli.io.Io;
 
@@ -9,35 +11,68 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.InputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class AutoUpdater {
 
+    /**
+     * GitHub repository the releases are published to. scripts/make_patch.sh reads
+     * this line to find the binary that the patches are built against.
+     */
+    static final String RELEASE_REPOSITORY = "testmycode/tmc-cli";
+
     /**
      * URL to a JSON that contains information about the latest tmc-cli release.
      */
     private static final String LATEST_RELEASE_URL =
-            "https://api.github.com/repos/tmc-cli/tmc-cli/releases/latest";
+            "https://api.github.com/repos/" + RELEASE_REPOSITORY + "/releases/latest";
+
+    /**
+     * Prefix of the asset digests in the GitHub release JSON.
+     */
+    private static final String SHA256_DIGEST_PREFIX = "sha256:";
+
+    /**
+     * Suffix of the release asset that contains the checksum of another asset.
+     */
+    private static final String SHA256_ASSET_SUFFIX = ".sha256";
+
+    /**
+     * Name of the release asset that patches the given version into the release.
+     */
+    private static final Pattern PATCH_ASSET = Pattern.compile("tmc-(.+)\\.patch");
+
+    private static final String PATCH_SUFFIX = ".patch";
+    private static final String PATCHED_SUFFIX = ".patched";
 
     private static final Logger logger = LoggerFactory.getLogger(AutoUpdater.class);
 
     private final Io io;
     private final boolean isWindows;
     private final String currentVersion;
+    private final String releaseUrl;
 
     public AutoUpdater(Io io, String currentVersion, boolean isWindows) {
+        this(io, currentVersion, isWindows, LATEST_RELEASE_URL);
+    }
+
+    AutoUpdater(Io io, String currentVersion, boolean isWindows, String releaseUrl) {
         this.io = io;
         this.currentVersion = currentVersion;
         this.isWindows = isWindows;
+        this.releaseUrl = releaseUrl;
     }
 
     public static AutoUpdater createUpdater(Io io, String currentVersion, boolean isWindows) {
@@ -46,10 +81,57 @@ public class AutoUpdater {
 
     /**
      * Checks if there's a newer tmc-cli version released on Github and asks if
-     * the user wants to download it. TODO: split it up
+     * the user wants to download it.
      */
     public boolean run() {
-        JsonObject release = toJsonObject(fetchLatestReleaseJson());
+        return offerUpdate(fetchLatestReleaseJson());
+    }
+
+    /**
+     * Fetch the latest release without printing anything, so this can be run in a background
+     * thread while a command is running. If the cached release has an ETag, the request is
+     * conditional and the cached release is returned when it hasn't changed.
+     *
+     * @param cached release from an earlier check or null
+     * @return the latest release or null if the request failed
+     */
+    public LatestRelease checkLatestRelease(LatestRelease cached) {
+        HttpGet request = new HttpGet(releaseUrl);
+        if (cached != null && cached.getEtag() != null) {
+            request.setHeader("If-None-Match", cached.getEtag());
+        }
+        try {
+            return CliHttpClient.getInstance()
+                    .execute(
+                            request,
+                            response -> {
+                                Header etag = response.getFirstHeader("ETag");
+                                String json =
+                                        EntityUtils.toString(response.getEntity(), "UTF-8");
+                                return new LatestRelease(
+                                        etag != null ? etag.getValue() : null,
+                                        trimRelease(json));
+                            });
+        } catch (HttpResponseException ex) {
+            if (ex.getStatusCode() == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                return cached;
+            }
+            logger.warn("Failed to check the latest release", ex);
+        } catch (IOException ex) {
+            logger.warn("Failed to check the latest release", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Tell the user about the release if it's newer than the current version and ask if they
+     * want to download it.
+     *
+     * @param releaseJson release JSON from the GitHub API
+     * @return true if the update was installed or a download link was shown
+     */
+    public boolean offerUpdate(String releaseJson) {
+        JsonObject release = toJsonObject(releaseJson);
         if (release == null || !isNewer(release)) {
             return false;
         }
@@ -63,7 +145,8 @@ public class AutoUpdater {
         io.println("A new version of tmc-cli is available!");
 
         if (isWindows) { //just show a link for Windows users now, todo...
-            io.println("Download: https://github.com/tmc-cli/tmc-cli/releases/latest");
+            io.println(
+                    "Download: https://github.com/" + RELEASE_REPOSITORY + "/releases/latest");
             return true;
         }
 
@@ -80,8 +163,11 @@ public class AutoUpdater {
         }
         File destination = new File(currentBinLocation + binName);
 
+        String sha256 = findExpectedSha256(release, binAsset);
+
         io.println("Downloading...");
-        if (!fetchTmcCliBinary(dlUrl, destination)) {
+        if (!fetchDeltaUpdate(release, destination, sha256)
+                && !fetchTmcCliBinary(dlUrl, destination, sha256)) {
             return false;
         }
 
@@ -93,36 +179,20 @@ public class AutoUpdater {
     }
 
     private byte[] fetchHttpEntity(String urlAddress) {
-        URL url;
-
         try {
-            url = new URL(urlAddress);
-        } catch (MalformedURLException ex) {
+            return CliHttpClient.getInstance().getBytes(urlAddress);
+        } catch (IllegalArgumentException ex) {
             logger.warn("Url formatting failed", ex);
             return null;
-        }
-
-        InputStream inputStream;
-        try {
-            URLConnection connection = url.openConnection();
-            connection.setConnectTimeout(10000);
-            connection.setRequestProperty(
-                    "User-Agent", "tmc-cli (https://github.com/tmc-cli/tmc-cli)");
-            inputStream = connection.getInputStream();
+        } catch (HttpResponseException ex) {
+            logger.warn("Failed to fetch page", ex);
+            io.errorln("Server responded with " + ex.getStatusCode() + ".");
+            return null;
         } catch (IOException ex) {
             logger.warn("Failed to fetch page", ex);
             io.errorln("Failed to create a https connection.");
             return null;
         }
-
-        byte[] content;
-        try {
-            content = IOUtils.toByteArray(inputStream);
-        } catch (IOException ex) {
-            logger.warn("Failed to fetch data from github", ex);
-            content = null;
-        }
-        return content;
     }
 
     /**
@@ -130,7 +200,7 @@ public class AutoUpdater {
      * tmc-cli release.
      */
     String fetchLatestReleaseJson() {
-        byte[] content = fetchHttpEntity(LATEST_RELEASE_URL);
+        byte[] content = fetchHttpEntity(releaseUrl);
         if (content == null) {
             return null;
         }
@@ -144,21 +214,133 @@ public class AutoUpdater {
 
     /**
      * Downloads a binary file from downloadUrl and saves it to destination
-     * file.
+     * file. An interrupted download is resumed on the next update.
+     *
+     * @param sha256 expected checksum of the file or null if the release doesn't have one
      */
-    boolean fetchTmcCliBinary(String downloadUrl, File destination) {
-        byte[] content = fetchHttpEntity(downloadUrl);
-        if (content == null) {
-            io.errorln("Failed to download tmc-cli.");
+    boolean fetchTmcCliBinary(String downloadUrl, File destination, String sha256) {
+        BinaryDownloader downloader =
+                new BinaryDownloader(
+                        CliHttpClient.getInstance(),
+                        new CliProgressObserver(io),
+                        "Downloading tmc-cli");
+        try {
+            downloader.download(downloadUrl, destination, sha256);
+            return true;
+        } catch (HttpResponseException ex) {
+            logger.warn("Failed to download tmc-cli", ex);
+            io.errorln("Server responded with " + ex.getStatusCode() + ".");
+        } catch (IOException ex) {
+            logger.warn("Failed to download tmc-cli", ex);
+            io.errorln("Failed to download tmc-cli: " + ex.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Try to build the new binary by patching the current one, which is a lot smaller download
+     * than the whole binary. The patched file must have the same checksum as the full binary,
+     * so patching is only tried if the release has the checksum.
+     *
+     * @param sha256 expected checksum of the new binary
+     * @return true if the new binary was written into destination
+     */
+    boolean fetchDeltaUpdate(JsonObject release, File destination, String sha256) {
+        JsonObject patchAsset = findPatchAsset(release);
+        if (patchAsset == null || sha256 == null) {
             return false;
         }
+        File currentBinary = getCurrentBinary();
+        if (currentBinary == null || !currentBinary.isFile()) {
+            return false;
+        }
+
+        File patch = new File(destination.getPath() + PATCH_SUFFIX);
+        File patched = new File(destination.getPath() + PATCHED_SUFFIX);
+        BinaryDownloader downloader =
+                new BinaryDownloader(
+                        CliHttpClient.getInstance(),
+                        new CliProgressObserver(io),
+                        "Downloading the update patch");
         try {
-            FileUtils.writeByteArrayToFile(destination, content);
+            downloader.download(
+                    patchAsset.get("browser_download_url").getAsString(),
+                    patch,
+                    findExpectedSha256(release, patchAsset));
+            DeltaPatch.apply(currentBinary.toPath(), patch.toPath(), patched.toPath());
+            String actual = BinaryDownloader.sha256(patched.toPath());
+            if (!actual.equalsIgnoreCase(sha256)) {
+                throw new IOException(
+                        "Checksum mismatch, expected " + sha256 + " but got " + actual);
+            }
+            BinaryDownloader.moveIntoPlace(patched.toPath(), destination.toPath());
             return true;
         } catch (IOException ex) {
-            io.println("Failed to write the new version into \'" + destination + "\'.");
+            logger.warn("Failed to update with a patch", ex);
+            io.println("Failed to apply the update patch, downloading the whole update.");
             return false;
+        } finally {
+            FileUtils.deleteQuietly(patch);
+            FileUtils.deleteQuietly(patched);
+        }
+    }
+
+    /**
+     * Find the "tmc-VERSION.patch" asset that turns the current version into the release.
+     */
+    private JsonObject findPatchAsset(JsonObject release) {
+        JsonArray assets = release.getAsJsonArray("assets");
+        if (assets == null) {
+            return null;
+        }
+        Version installedVer = new Version(currentVersion);
+        for (JsonElement assetElement : assets) {
+            JsonObject asset = assetElement.getAsJsonObject();
+            Matcher matcher = PATCH_ASSET.matcher(asset.get("name").getAsString());
+            if (!matcher.matches() || !asset.has("browser_download_url")) {
+                continue;
+            }
+            try {
+                if (new Version(matcher.group(1)).compareTo(installedVer) == 0) {
+                    return asset;
+                }
+            } catch (IllegalArgumentException ex) {
+                logger.warn("Patch asset has invalid version", ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the SHA-256 checksum of the asset. GitHub includes the digest of each asset in
+     * the release JSON; older releases may have a separate "NAME.sha256" asset instead.
+     *
+     * @return hex encoded checksum or null if the release doesn't have it
+     */
+    String findExpectedSha256(JsonObject release, JsonObject binAsset) {
+        if (binAsset.has("digest") && !binAsset.get("digest").isJsonNull()) {
+            String digest = binAsset.get("digest").getAsString();
+            if (digest.startsWith(SHA256_DIGEST_PREFIX)) {
+                return digest.substring(SHA256_DIGEST_PREFIX.length());
+            }
+        }
+
+        String checksumName = binAsset.get("name").getAsString() + SHA256_ASSET_SUFFIX;
+        for (JsonElement assetElement : release.getAsJsonArray("assets")) {
+            JsonObject asset = assetElement.getAsJsonObject();
+            if (!checksumName.equals(asset.get("name").getAsString())
+                    || !asset.has("browser_download_url")) {
+                continue;
+            }
+            byte[] content = fetchHttpEntity(asset.get("browser_download_url").getAsString());
+            if (content == null) {
+                return null;
+            }
+            // same format as the output of sha256sum
+            String[] fields = new String(content, Charset.forName("UTF-8")).trim().split("\\s+");
+            return fields[0].isEmpty() ? null : fields[0];
         }
+        return null;
     }
 
     /**
@@ -205,6 +387,39 @@ public class AutoUpdater {
         return null;
     }
 
+    /**
+     * Keep only the parts of the release JSON that the updater uses, so the cached copy in
+     * the properties stays small. The release notes alone can be several kilobytes.
+     */
+    private String trimRelease(String json) {
+        JsonObject release = toJsonObject(json);
+        if (release == null) {
+            return json;
+        }
+        JsonObject trimmed = new JsonObject();
+        copyMember(release, trimmed, "tag_name");
+        JsonArray assets = release.getAsJsonArray("assets");
+        if (assets != null) {
+            JsonArray trimmedAssets = new JsonArray();
+            for (JsonElement assetElement : assets) {
+                JsonObject asset = assetElement.getAsJsonObject();
+                JsonObject trimmedAsset = new JsonObject();
+                copyMember(asset, trimmedAsset, "name");
+                copyMember(asset, trimmedAsset, "browser_download_url");
+                copyMember(asset, trimmedAsset, "digest");
+                trimmedAssets.add(trimmedAsset);
+            }
+            trimmed.add("assets", trimmedAssets);
+        }
+        return trimmed.toString();
+    }
+
+    private static void copyMember(JsonObject from, JsonObject to, String name) {
+        if (from.has(name)) {
+            to.add(name, from.get(name));
+        }
+    }
+
     /**
      * Parses a JSON string into JsonObject. Returns null if string is not valid
      * JsonObject.
@@ -228,18 +443,23 @@ public class AutoUpdater {
         return null;
     }
 
-    private static String getJarLocation() {
+    private String getJarLocation() {
+        File currentBinary = getCurrentBinary();
+        if (currentBinary == null) {
+            return null;
+        }
+        return currentBinary.getParent() + File.separator;
+    }
+
+    /**
+     * Get the jar or the tmc script that is running.
+     */
+    File getCurrentBinary() {
         try {
             return new File(
-                                    AutoUpdater.class
-                                            .getProtectionDomain()
-                                            .getCodeSource()
-                                            .getLocation()
-                                            .toURI())
-                            .getParent()
-                    + File.separator;
+                    AutoUpdater.class.getProtectionDomain().getCodeSource().getLocation().toURI());
         } catch (Exception ex) {
-            logger.warn("Unable to get current jar folder.", ex);
+            logger.warn("Unable to get current jar.", ex);
             return null;
         }
     }
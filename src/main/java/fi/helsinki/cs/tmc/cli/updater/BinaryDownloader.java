@@ -0,0 +1,236 @@
+package fi.helsinki.cs.tmc.cli.updater;
+
+import fi.helsinki.cs.tmc.cli.backend.CliHttpClient;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Streams a file from the network straight to the disk.
+ *
+ * <p>The bytes are first written into a ".part" file next to the destination. The name of the
+ * part file contains the expected SHA-256 checksum, so a partial file is only continued by a
+ * download of the same file. If such a download was interrupted, the rest of the file is
+ * requested with a HTTP range request. Without a checksum a spliced file couldn't be noticed,
+ * so the download always starts from the beginning. The finished file is verified against the
+ * checksum and only then renamed into place, so the destination is either missing or
+ * complete.
+ */
+public class BinaryDownloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryDownloader.class);
+
+    static final String PART_SUFFIX = ".part";
+    private static final int PART_KEY_LENGTH = 16;
+    private static final long CHUNK_SIZE = 64 * 1024;
+    private static final long TASK_ID = 0;
+
+    private final CliHttpClient client;
+    private final ProgressObserver observer;
+    private final String message;
+
+    public BinaryDownloader(CliHttpClient client, ProgressObserver observer, String message) {
+        this.client = client;
+        this.observer = observer;
+        this.message = message;
+    }
+
+    /**
+     * Download the file into destination. A partial file of an earlier download of the same
+     * file is continued when the checksum is known.
+     *
+     * @param expectedSha256 hex encoded checksum of the file or null if it isn't known
+     * @throws HttpResponseException if the server didn't respond with 2xx status code
+     * @throws IOException if the download fails or the checksum doesn't match
+     */
+    public void download(String url, File destination, String expectedSha256)
+            throws IOException {
+        Path part = getPartFile(destination, expectedSha256);
+        removeOtherPartFiles(destination, part);
+        if (expectedSha256 == null) {
+            Files.deleteIfExists(part);
+        }
+        observer.start(TASK_ID);
+        try {
+            try {
+                fetch(url, part, Files.exists(part) ? Files.size(part) : 0);
+            } catch (HttpResponseException ex) {
+                if (ex.getStatusCode() != HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    throw ex;
+                }
+                // the partial file is from some other version of the file
+                logger.info("Server refused to resume the download, starting over");
+                fetch(url, part, 0);
+            }
+        } finally {
+            observer.end(TASK_ID);
+        }
+
+        if (expectedSha256 != null) {
+            String actual = sha256(part);
+            if (!actual.equalsIgnoreCase(expectedSha256)) {
+                Files.deleteIfExists(part);
+                throw new IOException(
+                        "Checksum mismatch, expected " + expectedSha256 + " but got " + actual);
+            }
+        } else {
+            logger.warn("No checksum available for {}, skipping verification", url);
+        }
+        moveIntoPlace(part, destination.toPath());
+    }
+
+    /**
+     * Get the partial file of the download of the file with the checksum.
+     *
+     * @param expectedSha256 the checksum or null if it isn't known
+     */
+    static Path getPartFile(File destination, String expectedSha256) {
+        if (expectedSha256 == null) {
+            return new File(destination.getPath() + PART_SUFFIX).toPath();
+        }
+        String key = expectedSha256.toLowerCase();
+        key = key.substring(0, Math.min(PART_KEY_LENGTH, key.length()));
+        return new File(destination.getPath() + "." + key + PART_SUFFIX).toPath();
+    }
+
+    /**
+     * Remove the partial files that earlier downloads of other versions left behind.
+     */
+    private static void removeOtherPartFiles(File destination, Path part) {
+        Path directory = destination.getAbsoluteFile().toPath().getParent();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, destination.getName() + ".*" + PART_SUFFIX)) {
+            for (Path file : stream) {
+                if (!file.getFileName().equals(part.getFileName())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Path unverified = getPartFile(destination, null);
+            if (!unverified.equals(part)) {
+                Files.deleteIfExists(unverified);
+            }
+        } catch (IOException ex) {
+            logger.warn("Could not remove the old partial downloads", ex);
+        }
+    }
+
+    private void fetch(String url, Path part, long offset) throws IOException {
+        HttpGet request = new HttpGet(url);
+        // ranges of compressed content don't match the bytes on the disk
+        request.setHeader("Accept-Encoding", "identity");
+        if (offset > 0) {
+            logger.info("Resuming download of {} from byte {}", url, offset);
+            request.setHeader("Range", "bytes=" + offset + "-");
+        }
+        client.execute(
+                request,
+                response -> {
+                    write(response, part, resumedFrom(response, offset));
+                    return null;
+                });
+    }
+
+    /**
+     * Get the position where the body of the response starts in the file. The server may
+     * ignore the range and send the whole file instead.
+     */
+    private static long resumedFrom(HttpResponse response, long offset)
+            throws HttpResponseException {
+        int status = response.getStatusLine().getStatusCode();
+        if (offset == 0 || status != HttpStatus.SC_PARTIAL_CONTENT) {
+            return 0;
+        }
+        Header range = response.getFirstHeader("Content-Range");
+        if (range == null || !range.getValue().startsWith("bytes " + offset + "-")) {
+            // handled like a refused range, so the download is started over
+            throw new HttpResponseException(
+                    HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "Unexpected content range " + range);
+        }
+        return offset;
+    }
+
+    private void write(HttpResponse response, Path part, long offset) throws IOException {
+        HttpEntity entity = response.getEntity();
+        long length = entity.getContentLength();
+        long total = length >= 0 ? offset + length : -1;
+        if (total < 0) {
+            observer.progress(TASK_ID, message);
+        }
+
+        try (InputStream body = entity.getContent();
+                ReadableByteChannel in = Channels.newChannel(body);
+                FileChannel out =
+                        FileChannel.open(
+                                part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            out.truncate(offset);
+            long position = offset;
+            long transferred;
+            while ((transferred = out.transferFrom(in, position, CHUNK_SIZE)) > 0) {
+                position += transferred;
+                if (total > 0) {
+                    observer.progress(TASK_ID, (double) position / total, message);
+                }
+            }
+            out.force(true);
+            if (total >= 0 && position != total) {
+                throw new IOException(
+                        "Connection closed after " + position + " of " + total + " bytes");
+            }
+        }
+    }
+
+    static void moveIntoPlace(Path part, Path destination) throws IOException {
+        try {
+            Files.move(part, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(part, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) CHUNK_SIZE);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
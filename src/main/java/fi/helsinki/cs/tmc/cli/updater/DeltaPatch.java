@@ -0,0 +1,228 @@
+package fi.helsinki.cs.tmc.cli.updater;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Binary patch that turns one release of tmc-cli into the next one.
+ *
+ * <p>The patch is a gzipped list of instructions that either copy a range of the old file or
+ * insert new bytes. The ranges are found by indexing the old file in fixed size blocks with a
+ * rolling checksum, like rsync does. Most of the entries in the shaded jar come from the
+ * dependencies and are identical between releases, so the patch is usually a small fraction
+ * of the full download.
+ *
+ * <p>The patch starts with the SHA-256 checksum of the old file, so it's never applied on top
+ * of a binary that it wasn't made for.
+ */
+public class DeltaPatch {
+
+    private static final String MAGIC = "TMCDELTA1";
+    static final int BLOCK_SIZE = 2048;
+
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int INSERT = 2;
+
+    private DeltaPatch() {}
+
+    /**
+     * Create a patch from the old file to the new file.
+     *
+     * <p>Usage from the release build: {@code java -cp tmc-cli.jar
+     * fi.helsinki.cs.tmc.cli.updater.DeltaPatch OLD NEW PATCH}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: DeltaPatch OLD NEW PATCH");
+            System.exit(1);
+        }
+        Path patch = Paths.get(args[2]);
+        create(Paths.get(args[0]), Paths.get(args[1]), patch);
+        System.out.println(
+                "Created " + patch + " (" + Files.size(patch) + " of "
+                        + Files.size(Paths.get(args[1])) + " bytes)");
+    }
+
+    /**
+     * Write a patch that turns the old file into the new file.
+     */
+    public static void create(Path oldFile, Path newFile, Path patch) throws IOException {
+        byte[] oldBytes = Files.readAllBytes(oldFile);
+        byte[] newBytes = Files.readAllBytes(newFile);
+        Map<Integer, Integer> blocks = indexBlocks(oldBytes);
+
+        try (OutputStream file = Files.newOutputStream(patch);
+                DataOutputStream out = new DataOutputStream(new GZIPOutputStream(file))) {
+            out.writeUTF(MAGIC);
+            out.writeUTF(BinaryDownloader.sha256(oldFile));
+
+            ByteArrayOutputStream inserted = new ByteArrayOutputStream();
+            RollingChecksum checksum = null;
+            if (newBytes.length >= BLOCK_SIZE) {
+                checksum = new RollingChecksum(newBytes, 0);
+            }
+            int pos = 0;
+            while (pos + BLOCK_SIZE <= newBytes.length) {
+                Integer oldPos = blocks.get(checksum.value());
+                if (oldPos != null && regionsMatch(oldBytes, oldPos, newBytes, pos, BLOCK_SIZE)) {
+                    int length = BLOCK_SIZE;
+                    while (oldPos + length < oldBytes.length
+                            && pos + length < newBytes.length
+                            && oldBytes[oldPos + length] == newBytes[pos + length]) {
+                        length++;
+                    }
+                    writeInsert(out, inserted);
+                    out.writeByte(COPY);
+                    out.writeInt(oldPos);
+                    out.writeInt(length);
+                    pos += length;
+                    if (pos + BLOCK_SIZE <= newBytes.length) {
+                        checksum = new RollingChecksum(newBytes, pos);
+                    }
+                    continue;
+                }
+                inserted.write(newBytes[pos]);
+                if (pos + BLOCK_SIZE < newBytes.length) {
+                    checksum.roll(newBytes[pos], newBytes[pos + BLOCK_SIZE]);
+                }
+                pos++;
+            }
+            inserted.write(newBytes, pos, newBytes.length - pos);
+            writeInsert(out, inserted);
+            out.writeByte(END);
+        }
+    }
+
+    /**
+     * Apply the patch on the old file and write the result into a new file.
+     *
+     * @throws IOException if the patch is malformed or it was made for another file
+     */
+    public static void apply(Path oldFile, Path patch, Path result) throws IOException {
+        try (InputStream file = Files.newInputStream(patch);
+                DataInputStream in = new DataInputStream(new GZIPInputStream(file));
+                FileChannel old = FileChannel.open(oldFile, StandardOpenOption.READ);
+                FileChannel out =
+                        FileChannel.open(
+                                result,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (!MAGIC.equals(in.readUTF())) {
+                throw new IOException("Not a tmc-cli patch");
+            }
+            String expectedBase = in.readUTF();
+            if (!expectedBase.equalsIgnoreCase(BinaryDownloader.sha256(oldFile))) {
+                throw new IOException("The patch was made for another version");
+            }
+
+            int op;
+            while ((op = in.readUnsignedByte()) != END) {
+                if (op == COPY) {
+                    copy(old, in.readInt(), in.readInt(), out);
+                } else if (op == INSERT) {
+                    byte[] bytes = new byte[checkLength(in.readInt())];
+                    in.readFully(bytes);
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                } else {
+                    throw new IOException("Malformed patch, unknown instruction " + op);
+                }
+            }
+            out.force(true);
+        }
+    }
+
+    private static void copy(FileChannel old, long position, int length, FileChannel out)
+            throws IOException {
+        if (position < 0 || checkLength(length) > old.size() - position) {
+            throw new IOException("Malformed patch, copy outside of the old file");
+        }
+        long done = 0;
+        while (done < length) {
+            done += old.transferTo(position + done, length - done, out);
+        }
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Malformed patch, negative length");
+        }
+        return length;
+    }
+
+    private static void writeInsert(DataOutputStream out, ByteArrayOutputStream inserted)
+            throws IOException {
+        if (inserted.size() == 0) {
+            return;
+        }
+        out.writeByte(INSERT);
+        out.writeInt(inserted.size());
+        inserted.writeTo(out);
+        inserted.reset();
+    }
+
+    /**
+     * Map the checksum of each whole block of the file to its position. The first block wins
+     * if two blocks have the same checksum.
+     */
+    private static Map<Integer, Integer> indexBlocks(byte[] bytes) {
+        Map<Integer, Integer> blocks = new HashMap<>();
+        for (int pos = 0; pos + BLOCK_SIZE <= bytes.length; pos += BLOCK_SIZE) {
+            blocks.putIfAbsent(new RollingChecksum(bytes, pos).value(), pos);
+        }
+        return blocks;
+    }
+
+    private static boolean regionsMatch(byte[] a, int aPos, byte[] b, int bPos, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aPos + i] != b[bPos + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The weak checksum of rsync, which can be moved forward by one byte in constant time.
+     */
+    private static class RollingChecksum {
+        private int a;
+        private int b;
+
+        RollingChecksum(byte[] bytes, int start) {
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                int value = bytes[start + i] & 0xff;
+                a += value;
+                b += (BLOCK_SIZE - i) * value;
+            }
+        }
+
+        void roll(byte removed, byte added) {
+            int out = removed & 0xff;
+            a += (added & 0xff) - out;
+            b += a - BLOCK_SIZE * out;
+        }
+
+        int value() {
+            return (a & 0xffff) | (b << 16);
+        }
+    }
+}
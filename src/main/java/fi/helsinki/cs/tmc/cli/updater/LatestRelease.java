@@ -0,0 +1,57 @@
+package fi.helsinki.cs.tmc.cli.updater;
+
+import java.util.Map;
+
+/**
+ * Release JSON of the latest tmc-cli release and the ETag that GitHub sent with it.
+ *
+ * <p>Both are cached in the properties, so the next check can be a conditional request. A
+ * "304 Not Modified" response doesn't contain a body and doesn't count against the API rate
+ * limit.
+ */
+public class LatestRelease {
+
+    static final String ETAG_KEY = "update-etag";
+    static final String RELEASE_KEY = "update-release";
+
+    private final String etag;
+    private final String json;
+
+    public LatestRelease(String etag, String json) {
+        this.etag = etag;
+        this.json = json;
+    }
+
+    /**
+     * Get the cached release from the properties.
+     *
+     * @return the release or null if nothing is cached
+     */
+    public static LatestRelease fromProperties(Map<String, String> properties) {
+        String json = properties.get(RELEASE_KEY);
+        if (json == null) {
+            return null;
+        }
+        return new LatestRelease(properties.get(ETAG_KEY), json);
+    }
+
+    /**
+     * Store the release into the properties. The properties still have to be saved.
+     */
+    public void saveTo(Map<String, String> properties) {
+        properties.put(RELEASE_KEY, json);
+        if (etag != null) {
+            properties.put(ETAG_KEY, etag);
+        } else {
+            properties.remove(ETAG_KEY);
+        }
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getJson() {
+        return json;
+    }
+}
@@ -1,8 +1,11 @@
 package fi.helsinki.cs.tmc.cli;
 
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -30,6 +33,9 @@ import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 
 @RunWith(PowerMockRunner.class)
@@ -147,4 +153,43 @@ public class ApplicationTest {
         io.assertNotContains("Command foo doesn't exist.");
         verify(app, times(1)).runAutoUpdate();
     }
+
+    @Test
+    public void forceUpdateCommitsTheProperties() {
+        CliContext ctx = spy(new CliContext(io, null, new WorkDir(), new Settings(), null));
+        doReturn(true).when(ctx).commitProperties();
+        app = spy(new Application(ctx));
+        doReturn(true).when(app).runAutoUpdate();
+
+        app.run(new String[] {"--force-update"});
+        verify(ctx).commitProperties();
+    }
+
+    @Test
+    public void propertiesAreCommittedWhenTheCommandFails() {
+        CliContext ctx = spy(new CliContext(io, null, new WorkDir(), new Settings(), null));
+        doReturn(true).when(ctx).commitProperties();
+        doThrow(new IllegalStateException("broken")).when(ctx).getMetrics();
+        app = new Application(ctx);
+
+        try {
+            app.run(new String[] {"help"});
+            fail("The exception of the command should not be caught");
+        } catch (IllegalStateException e) {
+            verify(ctx).commitProperties();
+        }
+    }
+
+    @Test
+    public void traceOptionWritesTraceFile() throws IOException {
+        Path file = Files.createTempFile("tmc-trace", ".json");
+        try {
+            app.run(new String[] {"--trace", file.toString(), "help"});
+            String trace = new String(Files.readAllBytes(file), "UTF-8");
+            assertTrue(trace.contains("\"traceEvents\""));
+            assertTrue(trace.contains("\"name\":\"command.help\""));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
 }
@@ -0,0 +1,208 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import com.google.common.base.Optional;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveDownloaderTest {
+
+    private HttpServer server;
+    private CliHttpClient http;
+    private ArchiveDownloader downloader;
+    private String address;
+    private Path root;
+    private AtomicInteger requests;
+    private volatile String authorization;
+    private volatile byte[] solution;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("tmc-archive-test");
+        requests = new AtomicInteger();
+        solution = zip("src/Calc.java", "class Calc {}");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(
+                "/solutions/1",
+                exchange -> {
+                    requests.incrementAndGet();
+                    authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                    respond(exchange, 200, solution);
+                });
+        server.createContext(
+                "/solutions/2",
+                exchange -> {
+                    requests.incrementAndGet();
+                    respond(exchange, 200, zip("src/Hello.java", "class Hello {}"));
+                });
+        server.createContext(
+                "/missing",
+                exchange -> respond(exchange, 404, "no".getBytes(StandardCharsets.UTF_8)));
+        server.createContext(
+                "/evil",
+                exchange -> respond(exchange, 200, zip("../outside.txt", "gotcha")));
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        Settings settings = new Settings();
+        settings.setToken(Optional.of("secret"));
+        http = new CliHttpClient(2000, 2000);
+        downloader = new ArchiveDownloader(http, settings, new HostRateLimiter(0), 2);
+    }
+
+    @After
+    public void tearDown() {
+        http.close();
+        server.stop(0);
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body)
+            throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] zip(String name, String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry(name));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private ArchiveDownloader.Archive archive(String name, String path, String checksum) {
+        return new ArchiveDownloader.Archive(
+                name, URI.create(address + path), root.resolve(name), checksum);
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void archivesAreExtractedIntoTheirTargets() throws IOException {
+        ArchiveDownloader.Summary summary =
+                downloader.download(
+                        root,
+                        Arrays.asList(
+                                archive("calc", "/solutions/1", "a"),
+                                archive("hello", "/solutions/2", "b")));
+
+        assertEquals(Arrays.asList("calc", "hello"), summary.getDownloaded());
+        assertEquals("class Calc {}", read(root.resolve("calc/src/Calc.java")));
+        assertEquals("class Hello {}", read(root.resolve("hello/src/Hello.java")));
+        assertEquals("Bearer secret", authorization);
+        assertTrue(Files.exists(root.resolve(ArchiveDownloader.MANIFEST_FILE)));
+    }
+
+    @Test
+    public void unchangedChecksumSkipsTheDownload() throws IOException {
+        List<ArchiveDownloader.Archive> archives =
+                Collections.singletonList(archive("calc", "/solutions/1", "a"));
+        downloader.download(root, archives);
+        ArchiveDownloader.Summary summary = downloader.download(root, archives);
+
+        assertEquals(Collections.singletonList("calc"), summary.getUnchanged());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void changedChecksumReplacesTheOldFiles() throws IOException {
+        downloader.download(
+                root, Collections.singletonList(archive("calc", "/solutions/1", "a")));
+        Files.write(root.resolve("calc/stale.txt"), new byte[0]);
+        solution = zip("src/Calc.java", "class Calc { int x; }");
+
+        ArchiveDownloader.Summary summary =
+                downloader.download(
+                        root, Collections.singletonList(archive("calc", "/solutions/1", "b")));
+        assertEquals(Collections.singletonList("calc"), summary.getDownloaded());
+        assertEquals("class Calc { int x; }", read(root.resolve("calc/src/Calc.java")));
+        assertFalse(Files.exists(root.resolve("calc/stale.txt")));
+    }
+
+    @Test
+    public void archiveWithoutChecksumIsComparedByItsContent() throws IOException {
+        List<ArchiveDownloader.Archive> archives =
+                Collections.singletonList(archive("calc", "/solutions/1", null));
+        downloader.download(root, archives);
+        Files.write(root.resolve("calc/notes.txt"), new byte[0]);
+
+        ArchiveDownloader.Summary summary = downloader.download(root, archives);
+        assertEquals(Collections.singletonList("calc"), summary.getUnchanged());
+        assertEquals(2, requests.get());
+        // the files weren't extracted again
+        assertTrue(Files.exists(root.resolve("calc/notes.txt")));
+    }
+
+    @Test
+    public void failedArchiveDoesNotStopTheOthers() throws IOException {
+        List<ArchiveDownloader.Archive> archives = new ArrayList<>();
+        archives.add(archive("missing", "/missing", "a"));
+        archives.add(archive("calc", "/solutions/1", "b"));
+
+        ArchiveDownloader.Summary summary = downloader.download(root, archives);
+        assertEquals(Collections.singletonList("missing"), summary.getFailed());
+        assertEquals(Collections.singletonList("calc"), summary.getDownloaded());
+        assertFalse(Files.exists(root.resolve("missing")));
+    }
+
+    @Test
+    public void eachArchiveIsATaskOfTheObserver() throws IOException {
+        List<ArchiveDownloader.Archive> archives = new ArrayList<>();
+        archives.add(archive("missing", "/missing", "a"));
+        archives.add(archive("calc", "/solutions/1", "b"));
+        ProgressObserver observer = mock(ProgressObserver.class);
+
+        downloader.download(root, archives, observer);
+        verify(observer).progress(0, 0.0, "Downloading missing");
+        verify(observer).progress(1, 0.0, "Downloading calc");
+        verify(observer).end(1);
+        // the failed download stays unfinished
+        verify(observer, never()).end(0);
+    }
+
+    @Test
+    public void entriesOutsideTheTargetAreRejected() throws IOException {
+        ArchiveDownloader.Summary summary =
+                downloader.download(
+                        root, Collections.singletonList(archive("evil", "/evil", null)));
+        assertEquals(Collections.singletonList("evil"), summary.getFailed());
+        assertFalse(Files.exists(root.resolve("outside.txt")));
+        assertFalse(Files.exists(root.resolve("evil")));
+    }
+}
@@ -0,0 +1,98 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.HttpResponseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.GZIPOutputStream;
+
+public class CliHttpClientTest {
+
+    private HttpServer server;
+    private CliHttpClient client;
+    private String address;
+    private volatile String acceptEncoding;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hello", exchange -> respond(exchange, 200, "hello", false));
+        server.createContext("/missing", exchange -> respond(exchange, 404, "no", false));
+        server.createContext(
+                "/gzip",
+                exchange -> {
+                    acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    respond(exchange, 200, "compressed", true);
+                });
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+        client = new CliHttpClient(2000, 2000);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body, boolean gzip)
+            throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        if (gzip) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                out.write(bytes);
+            }
+            bytes = buffer.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void getBytesReturnsBody() throws IOException {
+        assertEquals("hello", new String(client.getBytes(address + "/hello"), "UTF-8"));
+        assertEquals(1, client.getRequestCount());
+    }
+
+    @Test
+    public void connectionIsReused() throws IOException {
+        client.getBytes(address + "/hello");
+        client.getBytes(address + "/hello");
+        client.getBytes(address + "/hello");
+        assertEquals(3, client.getRequestCount());
+        assertEquals(2, client.getReusedConnectionCount());
+    }
+
+    @Test
+    public void gzipResponseIsDecompressed() throws IOException {
+        assertEquals("compressed", new String(client.getBytes(address + "/gzip"), "UTF-8"));
+        assertTrue(acceptEncoding.contains("gzip"));
+    }
+
+    @Test
+    public void errorStatusThrowsException() throws IOException {
+        try {
+            client.getBytes(address + "/missing");
+            fail("Expected an exception");
+        } catch (HttpResponseException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+        // the connection is still usable after the error
+        assertEquals("hello", new String(client.getBytes(address + "/hello"), "UTF-8"));
+    }
+}
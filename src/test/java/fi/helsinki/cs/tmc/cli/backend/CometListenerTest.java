@@ -0,0 +1,143 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class CometListenerTest {
+
+    private static final URI SUBMISSION = URI.create("https://tmc.example.com/submissions/7");
+
+    private HttpServer server;
+    private CliHttpClient http;
+    private String cometUrl;
+    private List<String> requests;
+    private List<JsonObject> published;
+    private volatile boolean refuseHandshake;
+    private volatile String subscription;
+    private volatile JsonObject authentication;
+
+    @Before
+    public void setUp() throws IOException {
+        requests = new CopyOnWriteArrayList<>();
+        published = new CopyOnWriteArrayList<>();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/comet", this::handle);
+        server.start();
+        cometUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/comet";
+        http = new CliHttpClient(2000, 2000);
+    }
+
+    @After
+    public void tearDown() {
+        http.close();
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        JsonObject message =
+                new JsonParser()
+                        .parse(IOUtils.toString(exchange.getRequestBody(), "UTF-8"))
+                        .getAsJsonArray()
+                        .get(0)
+                        .getAsJsonObject();
+        String channel = message.get("channel").getAsString();
+        requests.add(channel);
+
+        JsonObject reply = new JsonObject();
+        reply.addProperty("channel", channel);
+        reply.addProperty("successful", true);
+        JsonArray response = new JsonArray();
+        response.add(reply);
+        if (channel.equals("/meta/handshake")) {
+            authentication = message.getAsJsonObject("ext").getAsJsonObject("authentication");
+            if (refuseHandshake) {
+                reply.addProperty("successful", false);
+                reply.addProperty("error", "403::Unauthorized");
+            }
+            reply.addProperty("clientId", "client-1");
+        } else if (channel.equals("/meta/subscribe")) {
+            subscription = message.get("subscription").getAsString();
+        } else if (channel.equals("/meta/connect") && !published.isEmpty()) {
+            response.add(published.remove(0));
+        }
+
+        byte[] bytes = response.toString().getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void publish(String submissionUrl) {
+        JsonObject data = new JsonObject();
+        data.addProperty("submission_url", submissionUrl);
+        JsonObject message = new JsonObject();
+        message.addProperty("channel", CometListener.getChannel("testuser"));
+        message.add("data", data);
+        published.add(message);
+    }
+
+    @Test
+    public void subscribesToTheChannelOfTheUser() throws IOException {
+        try (CometListener listener =
+                CometListener.open(http, cometUrl, "testuser", "secret")) {
+            assertEquals("/broadcast/tmc/user/testuser/submission-result", subscription);
+            assertEquals("secret", authentication.get("token").getAsString());
+        }
+        assertEquals("/meta/disconnect", requests.get(requests.size() - 1));
+    }
+
+    @Test
+    public void announcementOfTheSubmissionIsReceived() throws IOException {
+        publish("https://tmc.example.com/submissions/6");
+        publish(SUBMISSION.toString());
+
+        try (CometListener listener =
+                CometListener.open(http, cometUrl, "testuser", null)) {
+            assertTrue(listener.awaitResult(SUBMISSION, 2000));
+        }
+        // the announcement of the other submission didn't end the wait
+        assertEquals(
+                2, requests.stream().filter(channel -> channel.equals("/meta/connect")).count());
+    }
+
+    @Test
+    public void returnsFalseWhenNothingIsAnnounced() throws IOException {
+        try (CometListener listener =
+                CometListener.open(http, cometUrl, "testuser", null)) {
+            assertFalse(listener.awaitResult(SUBMISSION, 50));
+        }
+    }
+
+    @Test
+    public void refusedHandshakeThrowsException() {
+        refuseHandshake = true;
+        try {
+            CometListener.open(http, cometUrl, "testuser", null);
+            fail("Expected an exception");
+        } catch (IOException e) {
+            assertEquals(
+                    "Comet request /meta/handshake failed: 403::Unauthorized", e.getMessage());
+        }
+        assertFalse(requests.contains("/meta/subscribe"));
+    }
+}
@@ -1,6 +1,7 @@
 package fi.helsinki.cs.tmc.cli.backend;
 
 import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
 
 import fi.helsinki.cs.tmc.core.domain.Organization;
 import junit.framework.Assert;
@@ -13,6 +14,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertTrue;
 
@@ -67,4 +71,79 @@ public class CourseInfoIoTest {
         Path courseJson = Paths.get(tempDir).resolve(".tmc.json");
         assertTrue(!Files.exists(courseJson));
     }
+
+    @Test
+    public void changesOfBothWritersAreKept() {
+        Exercise exercise = new Exercise("ex1", "test-course");
+        exercise.setChecksum("old");
+        this.course.setExercises(new ArrayList<>(Collections.singletonList(exercise)));
+        CourseInfoIo.save(this.course, this.courseFile);
+
+        CourseInfo first = CourseInfoIo.load(this.courseFile);
+        CourseInfo second = CourseInfoIo.load(this.courseFile);
+        first.getLocalCompletedExercises().add("ex1");
+        Exercise updated = new Exercise("ex1", "test-course");
+        updated.setChecksum("new");
+        second.replaceOldExercise(updated);
+        second.setProperty("key", "value");
+        Assert.assertTrue(CourseInfoIo.save(first, this.courseFile));
+        Assert.assertTrue(CourseInfoIo.save(second, this.courseFile));
+
+        CourseInfo loadedInfo = CourseInfoIo.load(this.courseFile);
+        Assert.assertEquals(
+                Collections.singletonList("ex1"), loadedInfo.getLocalCompletedExercises());
+        Assert.assertEquals("new", loadedInfo.getExercise("ex1").getChecksum());
+        Assert.assertEquals("value", loadedInfo.getPropertyString("key"));
+        Assert.assertTrue(Files.exists(CourseInfoIo.getLockFile(this.courseFile)));
+    }
+
+    @Test
+    public void removalIsMergedWithOtherChanges() {
+        this.course.getLocalCompletedExercises().add("ex1");
+        CourseInfoIo.save(this.course, this.courseFile);
+
+        CourseInfo first = CourseInfoIo.load(this.courseFile);
+        CourseInfo second = CourseInfoIo.load(this.courseFile);
+        first.getLocalCompletedExercises().remove("ex1");
+        second.getLocalCompletedExercises().add("ex2");
+        CourseInfoIo.save(first, this.courseFile);
+        CourseInfoIo.save(second, this.courseFile);
+
+        Assert.assertEquals(
+                Collections.singletonList("ex2"),
+                CourseInfoIo.load(this.courseFile).getLocalCompletedExercises());
+    }
+
+    @Test
+    public void parallelWritersDontLoseChanges() throws Exception {
+        CourseInfoIo.save(this.course, this.courseFile);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String name = "ex" + i;
+            threads.add(
+                    new Thread(
+                            () -> {
+                                CourseInfo info = CourseInfoIo.load(this.courseFile);
+                                info.getLocalCompletedExercises().add(name);
+                                CourseInfoIo.save(info, this.courseFile);
+                            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(
+                8, CourseInfoIo.load(this.courseFile).getLocalCompletedExercises().size());
+    }
+
+    @Test
+    public void brokenFileIsNotLoaded() throws IOException {
+        Files.createDirectories(this.courseFile.getParent());
+        Files.write(this.courseFile, "{\"course\": [".getBytes("UTF-8"));
+        Assert.assertNull(CourseInfoIo.load(this.courseFile));
+    }
 }
@@ -2,6 +2,7 @@ package fi.helsinki.cs.tmc.cli.backend;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import fi.helsinki.cs.tmc.core.domain.Course;
@@ -111,4 +112,16 @@ public class CourseInfoTest {
         assertEquals(got.get(0), "test-exercise1");
         assertEquals(got.get(1), "test-exercise2");
     }
+
+    @Test
+    public void pendingSubmissionIsStoredAndRemoved() {
+        courseInfo.setPendingSubmission("ex", "https://tmc.example.com/submissions/1", "abc");
+        assertEquals(
+                "https://tmc.example.com/submissions/1", courseInfo.getPendingSubmission("ex"));
+        assertEquals("abc", courseInfo.getPendingDigest("ex"));
+
+        courseInfo.removePendingSubmission("ex");
+        assertNull(courseInfo.getPendingSubmission("ex"));
+        assertNull(courseInfo.getPendingDigest("ex"));
+    }
 }
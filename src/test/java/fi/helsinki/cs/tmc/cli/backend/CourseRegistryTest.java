@@ -0,0 +1,118 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.core.domain.Course;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class CourseRegistryTest {
+
+    private Path configRoot;
+    private Path workspace;
+    private CourseRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        configRoot = Files.createTempDirectory("tmc-registry-config");
+        workspace = Files.createTempDirectory("tmc-registry-courses");
+        registry = new CourseRegistry(configRoot);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(configRoot.toFile());
+        FileUtils.deleteQuietly(workspace.toFile());
+    }
+
+    private CourseInfo createCourse(String directory, String courseName) throws IOException {
+        Account account = new Account("student");
+        account.setServerAddress("https://tmc.example.com");
+        CourseInfo info = new CourseInfo(account, new Course(courseName));
+        Path courseDirectory = workspace.resolve(directory);
+        Files.createDirectories(courseDirectory);
+        Files.write(courseDirectory.resolve(CourseInfoIo.COURSE_CONFIG), "{}".getBytes("UTF-8"));
+        return info;
+    }
+
+    @Test
+    public void registeredCoursesAreListed() throws IOException {
+        CourseInfo info = createCourse("first", "course");
+        assertTrue(registry.register(info, workspace.resolve("first")));
+
+        List<CourseRegistry.Entry> entries = new CourseRegistry(configRoot).getEntries();
+        assertEquals(1, entries.size());
+        CourseRegistry.Entry entry = entries.get(0);
+        assertEquals(workspace.resolve("first").toAbsolutePath(), entry.getPath());
+        assertEquals("course", entry.getCourseName());
+        assertEquals("student", entry.getUsername());
+        assertEquals("https://tmc.example.com", entry.getServerAddress());
+        assertTrue(entry.getLastSync() > 0);
+    }
+
+    @Test
+    public void registeringTwiceKeepsOneEntry() throws IOException {
+        CourseInfo info = createCourse("first", "course");
+        registry.register(info, workspace.resolve("first"));
+        registry.register(info, workspace.resolve("first").resolve("..").resolve("first"));
+        assertEquals(1, registry.getEntries().size());
+    }
+
+    @Test
+    public void unregisteredCoursesAreRemoved() throws IOException {
+        registry.register(createCourse("first", "course"), workspace.resolve("first"));
+        registry.register(createCourse("second", "course"), workspace.resolve("second"));
+        assertTrue(registry.unregister(workspace.resolve("first")));
+
+        List<CourseRegistry.Entry> entries = registry.getEntries();
+        assertEquals(1, entries.size());
+        assertEquals(workspace.resolve("second").toAbsolutePath(), entries.get(0).getPath());
+    }
+
+    @Test
+    public void deletedCoursesAreDroppedWhenRead() throws IOException {
+        registry.register(createCourse("first", "course"), workspace.resolve("first"));
+        registry.register(createCourse("second", "other"), workspace.resolve("second"));
+        FileUtils.deleteDirectory(workspace.resolve("first").toFile());
+
+        assertEquals(1, registry.getEntries().size());
+        String json =
+                new String(
+                        Files.readAllBytes(configRoot.resolve(CourseRegistry.REGISTRY_FILE)),
+                        "UTF-8");
+        assertTrue(!json.contains("first"));
+    }
+
+    @Test
+    public void findsCopiesOfCourse() throws IOException {
+        registry.register(createCourse("first", "course"), workspace.resolve("first"));
+        registry.register(createCourse("second", "course"), workspace.resolve("second"));
+        registry.register(createCourse("third", "other"), workspace.resolve("third"));
+
+        assertEquals(2, registry.findCourse("course", "https://tmc.example.com").size());
+        assertTrue(registry.findCourse("course", "https://other.example.com").isEmpty());
+    }
+
+    @Test
+    public void brokenRegistryIsStartedOver() throws IOException {
+        Files.write(configRoot.resolve(CourseRegistry.REGISTRY_FILE), "[{".getBytes("UTF-8"));
+        assertTrue(registry.getEntries().isEmpty());
+        assertTrue(registry.register(createCourse("first", "course"), workspace.resolve("first")));
+        assertEquals(1, registry.getEntries().size());
+    }
+
+    @Test
+    public void registryWithoutConfigDirectoryIsEmpty() {
+        CourseRegistry disabled = new CourseRegistry(null);
+        assertTrue(disabled.getEntries().isEmpty());
+    }
+}
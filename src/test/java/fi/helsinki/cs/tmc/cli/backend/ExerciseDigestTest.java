@@ -0,0 +1,118 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ExerciseDigestTest {
+
+    private Path tempDir;
+    private Path exercise;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("tmc-digest");
+        exercise = tempDir.resolve("ex1");
+        // an ant exercise, so its student files are in src
+        write("build.xml", "<project/>");
+        write("src/Main.java", "class Main {}");
+        write("test/MainTest.java", "class MainTest {}");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(tempDir.toFile());
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = exercise.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void sameFilesHaveSameDigest() throws IOException {
+        String digest = ExerciseDigest.compute(exercise);
+        assertNotNull(digest);
+        assertEquals(64, digest.length());
+        assertEquals(digest, ExerciseDigest.compute(exercise));
+    }
+
+    @Test
+    public void editedFileChangesDigest() throws IOException {
+        String digest = ExerciseDigest.compute(exercise);
+        write("src/Main.java", "class Main { }");
+        assertFalse(digest.equals(ExerciseDigest.compute(exercise)));
+    }
+
+    @Test
+    public void renamedFileChangesDigest() throws IOException {
+        String digest = ExerciseDigest.compute(exercise);
+        Files.move(exercise.resolve("src/Main.java"), exercise.resolve("src/Other.java"));
+        assertFalse(digest.equals(ExerciseDigest.compute(exercise)));
+    }
+
+    @Test
+    public void filesOtherThanStudentFilesAreIgnored() throws IOException {
+        String digest = ExerciseDigest.compute(exercise);
+        write("build/classes/Main.class", "compiled");
+        write("test/MainTest.java", "class MainTest { }");
+        write("lib/junit.jar", "jar");
+        write(".tmc_test_results.json", "[]");
+        write(".git/HEAD", "ref: refs/heads/master");
+        assertEquals(digest, ExerciseDigest.compute(exercise));
+    }
+
+    @Test
+    public void studentPackageNamedLikeBuildOutputIsIncluded() throws IOException {
+        String digest = ExerciseDigest.compute(exercise);
+        write("src/build/Tool.java", "package build; class Tool {}");
+        assertFalse(digest.equals(ExerciseDigest.compute(exercise)));
+    }
+
+    @Test
+    public void withoutLanguagePluginHiddenFilesAreIgnored() throws IOException {
+        Files.delete(exercise.resolve("build.xml"));
+        String digest = ExerciseDigest.compute(exercise);
+        write(".git/HEAD", "ref: refs/heads/master");
+        assertEquals(digest, ExerciseDigest.compute(exercise));
+        write("notes.txt", "todo");
+        assertFalse(digest.equals(ExerciseDigest.compute(exercise)));
+    }
+
+    @Test
+    public void missingDirectoryHasNoDigest() throws IOException {
+        assertNull(ExerciseDigest.compute(tempDir.resolve("missing")));
+    }
+
+    @Test
+    public void computesManyInParallel() throws IOException {
+        Map<String, Path> directories = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            Path dir = tempDir.resolve("parallel" + i);
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("file.txt"), ("content " + (i % 2)).getBytes("UTF-8"));
+            directories.put("ex" + i, dir);
+        }
+        directories.put("missing", tempDir.resolve("missing"));
+
+        Map<String, String> digests = ExerciseDigest.computeAll(directories);
+        assertEquals(11, digests.size());
+        assertEquals(digests.get("ex0"), digests.get("ex2"));
+        assertFalse(digests.get("ex0").equals(digests.get("ex1")));
+        assertEquals(ExerciseDigest.compute(tempDir.resolve("parallel3")), digests.get("ex3"));
+        assertNull(digests.get("missing"));
+    }
+}
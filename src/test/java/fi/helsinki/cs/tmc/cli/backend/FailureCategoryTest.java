@@ -0,0 +1,44 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+
+import fi.helsinki.cs.tmc.core.exceptions.ShowToUserException;
+
+import org.apache.oltu.oauth2.common.exception.OAuthProblemException;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+
+public class FailureCategoryTest {
+
+    @Test
+    public void authenticationProblem() {
+        Exception exception = new Exception(OAuthProblemException.error("invalid_grant"));
+        assertEquals(FailureCategory.AUTHENTICATION, FailureCategory.of(exception));
+    }
+
+    @Test
+    public void invalidArguments() {
+        assertEquals(
+                FailureCategory.INVALID_ARGUMENTS,
+                FailureCategory.of(new IllegalArgumentException()));
+    }
+
+    @Test
+    public void noConnection() {
+        Exception exception = new Exception(new Exception(new UnknownHostException()));
+        assertEquals(FailureCategory.NO_CONNECTION, FailureCategory.of(exception));
+    }
+
+    @Test
+    public void showToUser() {
+        Exception exception = new Exception(new ShowToUserException("Server is down"));
+        assertEquals(FailureCategory.SHOW_TO_USER, FailureCategory.of(exception));
+        assertEquals("show_to_user", FailureCategory.SHOW_TO_USER.getLabel());
+    }
+
+    @Test
+    public void otherFailures() {
+        assertEquals(FailureCategory.OTHER, FailureCategory.of(new Exception("boom")));
+    }
+}
@@ -0,0 +1,49 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.net.URI;
+
+public class HostRateLimiterTest {
+
+    @Test
+    public void requestsToTheSameHostAreSpacedOut() {
+        HostRateLimiter limiter = new HostRateLimiter(100);
+        assertEquals(0, limiter.reserve("tmc.example.com", 1000));
+        assertEquals(100, limiter.reserve("tmc.example.com", 1000));
+        assertEquals(150, limiter.reserve("tmc.example.com", 1050));
+    }
+
+    @Test
+    public void hostsDontWaitForEachOther() {
+        HostRateLimiter limiter = new HostRateLimiter(100);
+        assertEquals(0, limiter.reserve("tmc.example.com", 1000));
+        assertEquals(0, limiter.reserve("cdn.example.com", 1000));
+    }
+
+    @Test
+    public void freeSlotIsNotWaitedFor() {
+        HostRateLimiter limiter = new HostRateLimiter(100);
+        limiter.reserve("tmc.example.com", 1000);
+        assertEquals(0, limiter.reserve("tmc.example.com", 5000));
+    }
+
+    @Test
+    public void acquireSleepsUntilTheSlot() throws InterruptedException {
+        HostRateLimiter limiter = new HostRateLimiter(50);
+        URI url = URI.create("https://tmc.example.com/solution");
+        long start = System.currentTimeMillis();
+        limiter.acquire(url);
+        limiter.acquire(url);
+        limiter.acquire(url);
+        assertTrue(System.currentTimeMillis() - start >= 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeIntervalIsInvalid() {
+        new HostRateLimiter(-1);
+    }
+}
@@ -0,0 +1,56 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+public class JsonMergeTest {
+
+    private static JsonElement json(String text) {
+        return new JsonParser().parse(text.replace('\'', '"'));
+    }
+
+    private static void assertMerge(String expected, String base, String ours, String theirs) {
+        assertEquals(json(expected), JsonMerge.merge(json(base), json(ours), json(theirs)));
+    }
+
+    @Test
+    public void objectsAreMergedByKey() {
+        assertMerge(
+                "{'a': 2, 'b': 3, 'c': 4}",
+                "{'a': 1, 'b': 1, 'd': 1}",
+                "{'a': 2, 'b': 1, 'c': 4}",
+                "{'a': 1, 'b': 3, 'd': 1}");
+    }
+
+    @Test
+    public void oursWinsConflicts() {
+        assertMerge("{'a': 2}", "{'a': 1}", "{'a': 2}", "{'a': 3}");
+    }
+
+    @Test
+    public void valueArraysAreMergedAsSets() {
+        assertMerge("['b', 'c', 'd']", "['a', 'b']", "['b', 'd']", "['a', 'b', 'c']");
+    }
+
+    @Test
+    public void namedArraysAreMergedByName() {
+        assertMerge(
+                "[{'name': 'b', 'x': 2}, {'name': 'c'}, {'name': 'd'}]",
+                "[{'name': 'a'}, {'name': 'b', 'x': 1}]",
+                "[{'name': 'b', 'x': 2}, {'name': 'd'}]",
+                "[{'name': 'a'}, {'name': 'b', 'x': 1}, {'name': 'c'}]");
+    }
+
+    @Test
+    public void nestedChangesOfBothSidesAreKept() {
+        assertMerge(
+                "{'course': {'exercises': [{'name': 'a', 'x': 2, 'y': 2}]}}",
+                "{'course': {'exercises': [{'name': 'a', 'x': 1, 'y': 1}]}}",
+                "{'course': {'exercises': [{'name': 'a', 'x': 2, 'y': 1}]}}",
+                "{'course': {'exercises': [{'name': 'a', 'x': 1, 'y': 2}]}}");
+    }
+}
@@ -0,0 +1,57 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class PollScheduleTest {
+
+    @Test
+    public void baseDelayIsDoubledUpToTheMaximum() {
+        PollSchedule schedule = new PollSchedule(1000, 5000);
+        assertEquals(1000, schedule.getBaseDelay(1));
+        assertEquals(2000, schedule.getBaseDelay(2));
+        assertEquals(4000, schedule.getBaseDelay(3));
+        assertEquals(5000, schedule.getBaseDelay(4));
+        assertEquals(5000, schedule.getBaseDelay(100));
+    }
+
+    @Test
+    public void jitterShortensTheDelayByAtMostAHalf() {
+        PollSchedule schedule = new PollSchedule(1000, 8000);
+        Random random = new Random(42);
+        for (int attempt = 1; attempt < 10; attempt++) {
+            long base = schedule.getBaseDelay(attempt);
+            long delay = schedule.getDelay(attempt, random);
+            assertTrue(delay <= base);
+            assertTrue(delay >= base / 2);
+        }
+    }
+
+    @Test
+    public void parsesSeconds() {
+        PollSchedule schedule = PollSchedule.parse("0.5, 30");
+        assertEquals(500, schedule.getInitialDelay());
+        assertEquals(30000, schedule.getMaxDelay());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maximumBelowInitialIsInvalid() {
+        PollSchedule.parse("10,5");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueWithoutMaximumIsInvalid() {
+        PollSchedule.parse("10");
+    }
+
+    @Test
+    public void invalidValueFallsBackToTheDefault() {
+        assertSame(PollSchedule.DEFAULT, PollSchedule.parseOrDefault("soon"));
+        assertSame(PollSchedule.DEFAULT, PollSchedule.parseOrDefault(null));
+    }
+}
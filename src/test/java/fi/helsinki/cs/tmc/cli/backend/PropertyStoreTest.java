@@ -0,0 +1,104 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class PropertyStoreTest {
+
+    private Path configRoot;
+
+    @Before
+    public void setUp() throws IOException {
+        configRoot = Files.createTempDirectory("tmc-properties");
+        HashMap<String, String> initial = new HashMap<>();
+        initial.put("kept", "1");
+        initial.put("changed", "2");
+        initial.put("removed", "3");
+        assertTrue(SettingsIo.savePropertiesTo(initial, configRoot));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(configRoot.toFile());
+    }
+
+    private PropertyStore load() {
+        return new PropertyStore(configRoot, SettingsIo.loadPropertiesFrom(configRoot));
+    }
+
+    @Test
+    public void unchangedStoreIsNotDirty() {
+        PropertyStore store = load();
+        store.getProperties().put("kept", "1");
+        assertFalse(store.isDirty());
+        assertTrue(store.commit());
+    }
+
+    @Test
+    public void findsChangedAndRemovedKeys() {
+        PropertyStore store = load();
+        store.getProperties().put("changed", "20");
+        store.getProperties().put("added", "4");
+        store.getProperties().remove("removed");
+
+        assertEquals(2, store.getChangedProperties().size());
+        assertEquals("20", store.getChangedProperties().get("changed"));
+        assertEquals("4", store.getChangedProperties().get("added"));
+        assertEquals(Collections.singleton("removed"), store.getRemovedProperties());
+        assertTrue(store.isDirty());
+    }
+
+    @Test
+    public void commitKeepsChangesOfOtherProcesses() {
+        PropertyStore first = load();
+        PropertyStore second = load();
+        first.getProperties().put("changed", "20");
+        first.getProperties().remove("removed");
+        second.getProperties().put("added", "4");
+
+        assertTrue(first.commit());
+        assertTrue(second.commit());
+        assertFalse(first.isDirty());
+
+        HashMap<String, String> onDisk = SettingsIo.loadPropertiesFrom(configRoot);
+        assertEquals("1", onDisk.get("kept"));
+        assertEquals("20", onDisk.get("changed"));
+        assertEquals("4", onDisk.get("added"));
+        assertFalse(onDisk.containsKey("removed"));
+    }
+
+    @Test
+    public void concurrentCommitsDontLoseUpdates() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            PropertyStore store = load();
+            store.getProperties().put("thread-" + i, Integer.toString(i));
+            threads.add(new Thread(store::commit));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        HashMap<String, String> onDisk = SettingsIo.loadPropertiesFrom(configRoot);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(Integer.toString(i), onDisk.get("thread-" + i));
+        }
+    }
+}
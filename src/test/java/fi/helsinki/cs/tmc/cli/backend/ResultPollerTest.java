@@ -0,0 +1,93 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultPollerTest {
+
+    private static final URI URL = URI.create("https://tmc.example.com/submissions/1");
+
+    private SubmissionClient client;
+    private SubmissionStatus processing;
+    private SubmissionStatus done;
+
+    @Before
+    public void setUp() {
+        client = mock(SubmissionClient.class);
+        processing = createStatus(SubmissionResult.Status.PROCESSING, 3, -1);
+        done = createStatus(SubmissionResult.Status.OK, -1, -1);
+    }
+
+    private static SubmissionStatus createStatus(
+            SubmissionResult.Status status, int before, long retryAfter) {
+        SubmissionResult result = new SubmissionResult();
+        result.setStatus(status);
+        return new SubmissionStatus(result, "created", before, 10, retryAfter);
+    }
+
+    @Test
+    public void pollsUntilTheSubmissionIsProcessed() throws Exception {
+        when(client.fetchStatus(URL)).thenReturn(processing, processing, done);
+
+        ResultPoller poller = new ResultPoller(client, new PollSchedule(1, 4), 10000);
+        assertEquals(done.getResult(), poller.waitForResult(URL));
+        verify(client, times(3)).fetchStatus(URL);
+    }
+
+    @Test
+    public void listenerGetsTheQueueStatus() throws Exception {
+        when(client.fetchStatus(URL)).thenReturn(processing, done);
+        List<SubmissionStatus> statuses = new ArrayList<>();
+
+        new ResultPoller(client, new PollSchedule(1, 1), 10000)
+                .waitForResult(URL, statuses::add);
+        assertEquals(1, statuses.size());
+        assertEquals(3, statuses.get(0).getSubmissionsBeforeThis());
+    }
+
+    @Test
+    public void waitsAtLeastAsLongAsRetryAfterTells() throws Exception {
+        when(client.fetchStatus(URL))
+                .thenThrow(new RetryAfterException(503, "Service Unavailable", 200))
+                .thenReturn(done);
+
+        long start = System.currentTimeMillis();
+        new ResultPoller(client, new PollSchedule(1, 1), 10000).waitForResult(URL);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        verify(client, times(2)).fetchStatus(URL);
+    }
+
+    @Test
+    public void givesUpAfterTheTimeout() throws Exception {
+        when(client.fetchStatus(URL)).thenReturn(processing);
+
+        ResultPoller poller = new ResultPoller(client, new PollSchedule(5, 5), 50);
+        try {
+            poller.waitForResult(URL);
+            fail("Expected an exception");
+        } catch (IOException e) {
+            assertEquals("The submission wasn't processed in time", e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void fetchFailureIsThrown() throws Exception {
+        when(client.fetchStatus(URL)).thenThrow(new IOException("Connection refused"));
+        new ResultPoller(client, new PollSchedule(1, 1), 1000).waitForResult(URL);
+    }
+}
@@ -0,0 +1,35 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.http.client.utils.DateUtils;
+import org.junit.Test;
+
+import java.util.Date;
+
+public class RetryAfterExceptionTest {
+
+    @Test
+    public void parsesSeconds() {
+        assertEquals(120000, RetryAfterException.parseRetryAfter("120", 0));
+    }
+
+    @Test
+    public void parsesDate() {
+        long now = 1500000000000L;
+        String date = DateUtils.formatDate(new Date(now + 30000));
+        assertEquals(30000, RetryAfterException.parseRetryAfter(date, now));
+    }
+
+    @Test
+    public void dateInThePastMeansNoDelay() {
+        String date = DateUtils.formatDate(new Date(1000000000000L));
+        assertEquals(0, RetryAfterException.parseRetryAfter(date, 1500000000000L));
+    }
+
+    @Test
+    public void invalidValueIsIgnored() {
+        assertEquals(-1, RetryAfterException.parseRetryAfter("later", 0));
+        assertEquals(-1, RetryAfterException.parseRetryAfter(null, 0));
+    }
+}
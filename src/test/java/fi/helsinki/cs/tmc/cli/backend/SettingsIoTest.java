@@ -1,6 +1,7 @@
 package fi.helsinki.cs.tmc.cli.backend;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -10,10 +11,13 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.stream.Stream;
 
 public class SettingsIoTest {
 
@@ -134,4 +138,44 @@ public class SettingsIoTest {
         assertEquals("new", newList.getAccount("username").getOrganization().get().getName());
         SettingsIo.delete();
     }
+
+    @Test
+    public void updatePropertiesMergesIntoFile() {
+        HashMap<String, String> props = new HashMap<>();
+        props.put("kept", "1");
+        props.put("removed", "2");
+        SettingsIo.savePropertiesTo(props, tempDir);
+
+        assertTrue(
+                SettingsIo.updatePropertiesIn(
+                        tempDir,
+                        Collections.singletonMap("added", "3"),
+                        Collections.singleton("removed")));
+        HashMap<String, String> loaded = SettingsIo.loadPropertiesFrom(tempDir);
+        assertEquals(2, loaded.size());
+        assertEquals("1", loaded.get("kept"));
+        assertEquals("3", loaded.get("added"));
+    }
+
+    @Test
+    public void writesLeaveNoTemporaryFiles() throws IOException {
+        SettingsIo.savePropertiesTo(new HashMap<>(), tempDir);
+        SettingsIo.saveAccountList(accountList, tempDir);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void updateAccountListKeepsOtherAccounts() {
+        accountList.addAccount(account);
+        SettingsIo.saveAccountList(accountList, tempDir);
+
+        assertTrue(
+                SettingsIo.updateAccountList(
+                        tempDir, list -> list.addAccount(new Account("another"))));
+        AccountList loaded = SettingsIo.loadAccountList(tempDir);
+        assertEquals(2, loaded.getAccountCount());
+        assertNotNull(loaded.getAccount("testuser"));
+    }
 }
@@ -0,0 +1,229 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+
+import com.google.common.base.Optional;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class SubmissionClientTest {
+
+    private HttpServer server;
+    private CliHttpClient http;
+    private SubmissionClient client;
+    private String address;
+    private volatile String authorization;
+    private volatile String query;
+    private volatile String uploaded;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(
+                "/exercises/1/submissions",
+                exchange -> {
+                    authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                    query = exchange.getRequestURI().getQuery();
+                    uploaded = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                    respond(exchange, 200, "{\"submission_url\": \"" + address
+                            + "/submissions/7\"}");
+                });
+        server.createContext(
+                "/submissions/7",
+                exchange ->
+                        respond(
+                                exchange,
+                                200,
+                                "{\"status\": \"fail\", \"points\": [\"1.1\"],"
+                                        + " \"submission_url\": \"" + address
+                                        + "/submissions/7\", \"test_cases\": [{\"name\":"
+                                        + " \"CalcTest\", \"successful\": false, \"message\":"
+                                        + " \"expected 3\", \"exception\": [\"at Calc\"]}]}"));
+        server.createContext(
+                "/submissions/8",
+                exchange ->
+                        respond(
+                                exchange,
+                                200,
+                                "{\"status\": \"processing\", \"sandbox_status\": \"created\","
+                                        + " \"submissions_before_this\": 12,"
+                                        + " \"total_unprocessed\": 40}"));
+        server.createContext(
+                "/submissions/9",
+                exchange -> {
+                    exchange.getResponseHeaders().set("Retry-After", "3");
+                    respond(exchange, 503, "busy");
+                });
+        server.createContext(
+                "/broken", exchange -> respond(exchange, 200, "{\"submission\": 1}"));
+        server.createContext(
+                "/api/v8/courses/3/submissions",
+                exchange ->
+                        respond(
+                                exchange,
+                                200,
+                                "[{\"id\": 11, \"user_id\": 4, \"exercise_name\": \"calc\","
+                                        + " \"submitted_zip_url\": \"" + address
+                                        + "/submissions/11.zip\"}]"));
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        Settings settings = new Settings();
+        settings.setToken(Optional.of("secret"));
+        http = new CliHttpClient(2000, 2000);
+        client = new SubmissionClient(http, settings);
+    }
+
+    @After
+    public void tearDown() {
+        http.close();
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Exercise createExercise(String returnPath) {
+        Exercise exercise = new Exercise("calc", "course");
+        exercise.setReturnUrl(URI.create(address + returnPath));
+        return exercise;
+    }
+
+    @Test
+    public void submitUploadsZipAndReturnsSubmissionUrl() throws IOException {
+        URI url = client.submit(createExercise("/exercises/1/submissions"), "ZIP".getBytes());
+
+        assertEquals(URI.create(address + "/submissions/7"), url);
+        assertEquals("Bearer secret", authorization);
+        assertTrue(query.contains("client=tmc_cli"));
+        assertTrue(uploaded.contains("name=\"" + SubmissionClient.FILE_FIELD + "\""));
+        assertTrue(uploaded.contains("ZIP"));
+    }
+
+    @Test
+    public void submitStreamsPackagedExercise() throws IOException {
+        Path cache = Files.createTempDirectory("tmc-submission-cache");
+        Path exercise = Files.createTempDirectory("tmc-exercise").resolve("calc");
+        try {
+            Files.createDirectories(exercise);
+            Files.write(exercise.resolve("Calc.java"), "class Calc {}".getBytes("UTF-8"));
+            SubmissionArchive archive = new SubmissionPackager(cache).pack(exercise);
+
+            URI url = client.submit(createExercise("/exercises/1/submissions"), archive);
+            assertEquals(URI.create(address + "/submissions/7"), url);
+            assertTrue(uploaded.contains("calc/Calc.java"));
+        } finally {
+            FileUtils.deleteQuietly(cache.toFile());
+            FileUtils.deleteQuietly(exercise.getParent().toFile());
+        }
+    }
+
+    @Test
+    public void submitFailsWithoutSubmissionUrl() {
+        try {
+            client.submit(createExercise("/broken"), new byte[0]);
+            fail("Expected an exception");
+        } catch (IOException e) {
+            assertEquals("The server didn't return the submission URL", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fetchResultParsesTheResult() throws IOException {
+        SubmissionResult result = client.fetchResult(URI.create(address + "/submissions/7"));
+
+        assertEquals(SubmissionResult.Status.FAIL, result.getStatus());
+        assertEquals("1.1", result.getPoints().get(0));
+        assertEquals(address + "/submissions/7", result.getSubmissionUrl());
+        assertEquals(1, result.getTestCases().size());
+        assertEquals("CalcTest", result.getTestCases().get(0).getName());
+        assertFalse(result.getTestCases().get(0).isSuccessful());
+        assertEquals("at Calc", result.getTestCases().get(0).getException().get(0));
+    }
+
+    @Test
+    public void processingSubmissionHasItsPlaceInTheQueue() throws IOException {
+        SubmissionStatus status = client.fetchStatus(URI.create(address + "/submissions/8"));
+        assertTrue(status.isProcessing());
+        assertEquals(SubmissionResult.Status.PROCESSING, status.getResult().getStatus());
+        assertEquals("created", status.getSandboxStatus());
+        assertEquals(12, status.getSubmissionsBeforeThis());
+        assertEquals(40, status.getTotalUnprocessed());
+        assertEquals(-1, status.getRetryAfter());
+    }
+
+    @Test
+    public void busyServerThrowsRetryAfter() throws IOException {
+        try {
+            client.fetchStatus(URI.create(address + "/submissions/9"));
+            fail("Expected an exception");
+        } catch (RetryAfterException e) {
+            assertEquals(503, e.getStatusCode());
+            assertEquals(3000, e.getRetryAfter());
+        }
+    }
+
+    @Test
+    public void courseSubmissionsAreListed() throws IOException {
+        List<CourseSubmission> submissions = client.listCourseSubmissions(address + "/", 3);
+        assertEquals(1, submissions.size());
+        assertEquals(11, submissions.get(0).getId());
+        assertEquals(4, submissions.get(0).getUserId());
+        assertEquals("calc", submissions.get(0).getExerciseName());
+        assertEquals(
+                URI.create(address + "/submissions/11.zip"),
+                SubmissionClient.getSubmissionZipUrl(address, submissions.get(0)));
+    }
+
+    @Test
+    public void submissionZipUrlDefaultsToTheCoreApi() {
+        assertEquals(
+                URI.create("https://tmc.example.com/api/v8/core/submissions/5/download"),
+                SubmissionClient.getSubmissionZipUrl(
+                        "https://tmc.example.com/", new CourseSubmission(5, 1, "calc", null)));
+    }
+
+    @Test
+    public void validationsAreParsed() throws IOException {
+        SubmissionResult result =
+                client.parseResult(
+                        "{\"status\": \"ok\", \"validations\": {\"strategy\": \"fail\","
+                                + " \"validationErrors\": {\"Calc.java\": [{\"line\": 4,"
+                                + " \"message\": \"Indentation\"}]}}}");
+        assertTrue(result.validationsFailed());
+        assertEquals(
+                4,
+                result.getValidationResult()
+                        .getValidationErrors()
+                        .values()
+                        .iterator()
+                        .next()
+                        .get(0)
+                        .getLine());
+    }
+}
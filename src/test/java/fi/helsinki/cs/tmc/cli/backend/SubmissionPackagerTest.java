@@ -0,0 +1,213 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class SubmissionPackagerTest {
+
+    private Path cache;
+    private Path exercise;
+    private SubmissionPackager packager;
+    private long old;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = Files.createTempDirectory("tmc-submission-cache");
+        exercise = Files.createTempDirectory("tmc-exercise").resolve("calc");
+        Files.createDirectories(exercise.resolve("src"));
+        // older than the racy window, so the files can be trusted by their metadata
+        old = System.currentTimeMillis() - 10 * SubmissionPackager.RACY_MS;
+        // an ant exercise, so its student files are in src
+        write("build.xml", "<project/>");
+        write("src/Calc.java", "class Calc {}");
+        write("src/Main.java", "class Main {}");
+        packager = new SubmissionPackager(cache, 2, SubmissionPackager.LIVE_MS);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(cache.toFile());
+        FileUtils.deleteQuietly(exercise.getParent().toFile());
+    }
+
+    private void write(String name, String content) throws IOException {
+        Path file = exercise.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(old));
+    }
+
+    private static Map<String, String> unzip(SubmissionArchive archive) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        archive.writeTo(bytes);
+        assertEquals(archive.getLength(), bytes.size());
+
+        Map<String, String> files = new LinkedHashMap<>();
+        try (ZipInputStream in =
+                new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                files.put(entry.getName(), IOUtils.toString(in, "UTF-8"));
+            }
+        }
+        return files;
+    }
+
+    private long blobCount() throws IOException {
+        try (Stream<Path> stream = Files.walk(cache)) {
+            return stream.filter(path -> path.getParent().endsWith("blobs")).count();
+        }
+    }
+
+    @Test
+    public void archiveContainsTheFilesOfTheExercise() throws IOException {
+        Map<String, String> files = unzip(packager.pack(exercise));
+
+        assertEquals(2, files.size());
+        assertEquals("class Calc {}", files.get("calc/src/Calc.java"));
+        assertEquals("class Main {}", files.get("calc/src/Main.java"));
+    }
+
+    @Test
+    public void centralDirectoryListsTheEntries() throws IOException {
+        Path zip = cache.resolve("submission.zip");
+        try (OutputStream out = Files.newOutputStream(zip)) {
+            packager.pack(exercise).writeTo(out);
+        }
+
+        try (ZipFile file = new ZipFile(zip.toFile())) {
+            assertEquals(2, file.size());
+            ZipEntry entry = file.getEntry("calc/src/Calc.java");
+            assertEquals(13, entry.getSize());
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertEquals("class Calc {}", IOUtils.toString(file.getInputStream(entry), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void onlyStudentFilesArePackaged() throws IOException {
+        write("build/classes/Calc.class", "bytecode");
+        write("test/CalcTest.java", "class CalcTest {}");
+        write("lib/junit.jar", "jar");
+        write(".tmcproject.yml", "extra_student_files: []");
+        write(".tmc_test_results.json", "{}");
+        write("src/build/Tool.java", "package build; class Tool {}");
+
+        Map<String, String> files = unzip(packager.pack(exercise));
+        assertEquals(3, files.size());
+        assertTrue(files.containsKey("calc/src/build/Tool.java"));
+        assertFalse(files.containsKey("calc/test/CalcTest.java"));
+    }
+
+    @Test
+    public void unchangedFilesAreReused() throws IOException {
+        assertEquals(0, packager.pack(exercise).getReusedCount());
+
+        SubmissionArchive archive = packager.pack(exercise);
+        assertEquals(2, archive.getReusedCount());
+        assertEquals("class Calc {}", unzip(archive).get("calc/src/Calc.java"));
+    }
+
+    @Test
+    public void changedFileIsCompressedAgain() throws IOException {
+        packager.pack(exercise);
+        write("src/Calc.java", "class Calc { int x; }");
+
+        SubmissionArchive archive = packager.pack(exercise);
+        assertEquals(1, archive.getReusedCount());
+        assertEquals("class Calc { int x; }", unzip(archive).get("calc/src/Calc.java"));
+    }
+
+    @Test
+    public void olderArchiveCanBeWrittenAfterANewerPackaging() throws IOException {
+        SubmissionArchive older = packager.pack(exercise);
+        write("src/Calc.java", "class Calc { int x; }");
+        packager.pack(exercise);
+        write("src/Calc.java", "class Calc { long y; }");
+        packager.pack(exercise);
+
+        // another process may still be uploading the older archive
+        assertEquals("class Calc {}", unzip(older).get("calc/src/Calc.java"));
+        assertEquals(4, blobCount());
+    }
+
+    @Test
+    public void dataOfExpiredPackagingsIsRemoved() throws IOException {
+        packager = new SubmissionPackager(cache, 2, 0);
+        packager.pack(exercise);
+        write("src/Calc.java", "class Calc { int x; }");
+        packager.pack(exercise);
+
+        assertEquals(2, blobCount());
+    }
+
+    @Test
+    public void touchedFileIsReusedByItsContent() throws IOException {
+        packager.pack(exercise);
+        Files.setLastModifiedTime(
+                exercise.resolve("src/Calc.java"), FileTime.fromMillis(old + 1000));
+
+        assertEquals(2, packager.pack(exercise).getReusedCount());
+    }
+
+    @Test
+    public void recentlyModifiedFileIsHashedAgain() throws IOException {
+        Files.setLastModifiedTime(
+                exercise.resolve("src/Calc.java"),
+                FileTime.fromMillis(System.currentTimeMillis()));
+        packager.pack(exercise);
+        // same size and modification time, but the file may have changed after the packaging
+        long modified = Files.getLastModifiedTime(exercise.resolve("src/Calc.java")).toMillis();
+        Files.write(
+                exercise.resolve("src/Calc.java"),
+                "class Calc {!}".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(exercise.resolve("src/Calc.java"), FileTime.fromMillis(modified));
+
+        SubmissionArchive archive = packager.pack(exercise);
+        assertEquals("class Calc {!}", unzip(archive).get("calc/src/Calc.java"));
+    }
+
+    @Test
+    public void missingCachedDataIsCompressedAgain() throws IOException {
+        packager.pack(exercise);
+        try (Stream<Path> stream = Files.walk(cache)) {
+            stream.filter(path -> path.getParent().endsWith("blobs"))
+                    .forEach(path -> path.toFile().delete());
+        }
+
+        SubmissionArchive archive = packager.pack(exercise);
+        assertEquals(0, archive.getReusedCount());
+        assertEquals("class Main {}", unzip(archive).get("calc/src/Main.java"));
+    }
+
+    @Test
+    public void emptyExerciseMakesAnEmptyZip() throws IOException {
+        FileUtils.cleanDirectory(exercise.toFile());
+
+        SubmissionArchive archive = packager.pack(exercise);
+        assertEquals(0, archive.getEntryCount());
+        assertTrue(unzip(archive).isEmpty());
+    }
+}
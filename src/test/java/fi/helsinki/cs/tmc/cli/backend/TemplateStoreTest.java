@@ -0,0 +1,156 @@
+package fi.helsinki.cs.tmc.cli.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+public class TemplateStoreTest {
+
+    private Path tempDir;
+    private Path storeRoot;
+    private Path projectDir;
+    private TemplateStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("tmc-template-store");
+        storeRoot = tempDir.resolve("store");
+        projectDir = tempDir.resolve("project");
+        store = new TemplateStore(storeRoot, false);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(tempDir.toFile());
+    }
+
+    private static Exercise exercise(String name, String checksum) {
+        Exercise exercise = new Exercise(name, "course");
+        exercise.setChecksum(checksum);
+        exercise.setZipUrl(URI.create("https://tmc.example.com/exercises/" + name + ".zip"));
+        return exercise;
+    }
+
+    private Path createExercise(Exercise exercise, String content) throws IOException {
+        Path dir = TemplateStore.getExerciseDirectory(projectDir, exercise);
+        Files.createDirectories(dir.resolve("src"));
+        Files.write(dir.resolve("src").resolve("Main.java"), content.getBytes("UTF-8"));
+        return dir;
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void storedExerciseIsMaterialized() throws IOException {
+        Exercise exercise = exercise("ex1", "abc");
+        store.put(exercise, createExercise(exercise, "class Main {}"));
+        assertTrue(store.contains(exercise));
+
+        Path target = tempDir.resolve("other").resolve("course").resolve("ex1");
+        assertTrue(store.materialize(exercise, target));
+        assertEquals("class Main {}", read(target.resolve("src").resolve("Main.java")));
+    }
+
+    @Test
+    public void materializeWithReflinkCopy() throws IOException {
+        store = new TemplateStore(storeRoot, true);
+        Exercise exercise = exercise("ex1", "abc");
+        store.put(exercise, createExercise(exercise, "class Main {}"));
+
+        Path target = tempDir.resolve("other").resolve("ex1");
+        assertTrue(store.materialize(exercise, target));
+        assertEquals("class Main {}", read(target.resolve("src").resolve("Main.java")));
+    }
+
+    @Test
+    public void changedChecksumIsNotFound() throws IOException {
+        Exercise exercise = exercise("ex1", "abc");
+        store.put(exercise, createExercise(exercise, "class Main {}"));
+
+        Path target = tempDir.resolve("other").resolve("ex1");
+        assertFalse(store.materialize(exercise("ex1", "def"), target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    public void existingDirectoryIsNotOverwritten() throws IOException {
+        Exercise exercise = exercise("ex1", "abc");
+        Path dir = createExercise(exercise, "class Main {}");
+        store.put(exercise, dir);
+        Files.write(dir.resolve("src").resolve("Main.java"), "edited".getBytes("UTF-8"));
+
+        assertFalse(store.materialize(exercise, dir));
+        assertEquals("edited", read(dir.resolve("src").resolve("Main.java")));
+    }
+
+    @Test
+    public void editsDoNotChangeTheStore() throws IOException {
+        Exercise exercise = exercise("ex1", "abc");
+        store.put(exercise, createExercise(exercise, "class Main {}"));
+        Path target = tempDir.resolve("other").resolve("ex1");
+        store.materialize(exercise, target);
+        Files.write(target.resolve("src").resolve("Main.java"), "edited".getBytes("UTF-8"));
+
+        Path again = tempDir.resolve("third").resolve("ex1");
+        assertTrue(store.materialize(exercise, again));
+        assertEquals("class Main {}", read(again.resolve("src").resolve("Main.java")));
+    }
+
+    @Test
+    public void exerciseWithoutChecksumIsNotStored() throws IOException {
+        Exercise exercise = exercise("ex1", null);
+        assertNull(TemplateStore.keyOf(exercise));
+        store.put(exercise, createExercise(exercise, "class Main {}"));
+        assertFalse(store.contains(exercise));
+        assertFalse(Files.exists(storeRoot));
+    }
+
+    @Test
+    public void trimRemovesLeastRecentlyUsed() throws IOException {
+        Exercise old = exercise("old", "1");
+        Exercise recent = exercise("recent", "2");
+        store.put(old, createExercise(old, "0123456789"));
+        store.put(recent, createExercise(recent, "0123456789"));
+        Files.setLastModifiedTime(
+                storeRoot.resolve(TemplateStore.keyOf(old)), FileTime.fromMillis(1000));
+
+        List<TemplateStore.Entry> removed = store.trim(15);
+        assertEquals(1, removed.size());
+        assertFalse(store.contains(old));
+        assertTrue(store.contains(recent));
+
+        assertEquals(1, store.trim(0).size());
+        assertTrue(store.getEntries().isEmpty());
+    }
+
+    @Test
+    public void staleTemporaryDirectoriesAreRemoved() throws IOException {
+        Path stale = storeRoot.resolve(".tmp-stale");
+        Files.createDirectories(stale);
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(1000));
+        Path active = storeRoot.resolve(".tmp-active");
+        Files.createDirectories(active);
+
+        assertTrue(store.getEntries().isEmpty());
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(active));
+    }
+}
@@ -9,6 +9,8 @@ import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
@@ -17,8 +19,9 @@ import fi.helsinki.cs.tmc.cli.io.CliProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.TestIo;
 
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.metrics.OperationMetrics;
+import fi.helsinki.cs.tmc.cli.trace.Tracer;
 import fi.helsinki.cs.tmc.core.TmcCore;
-import fi.helsinki.cs.tmc.core.commands.GetUpdatableExercises.UpdateResult;
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 import fi.helsinki.cs.tmc.core.domain.Organization;
@@ -29,19 +32,27 @@ import fi.helsinki.cs.tmc.core.holders.TmcSettingsHolder;
 import fi.helsinki.cs.tmc.langs.abstraction.ValidationResult;
 import fi.helsinki.cs.tmc.langs.domain.RunResult;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
@@ -50,6 +61,8 @@ import java.util.concurrent.Callable;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({RunResult.class, InetAddress.class, TmcUtil.class})
+// the stub server and the http client of the submission tests need the real classes
+@PowerMockIgnore({"com.sun.net.httpserver.*", "sun.net.httpserver.*", "javax.net.ssl.*"})
 public class TmcUtilTest {
 
     static Path workDir;
@@ -148,6 +161,92 @@ public class TmcUtilTest {
         assertEquals(expectedResult, result);
     }
 
+    @Test
+    public void coreOperationsAreRecordedInMetrics() {
+        when(mockCore.listCourses(any(ProgressObserver.class)))
+                .thenReturn(createReturningCallback(Collections.<Course>emptyList()));
+        TmcUtil.listCourses(ctx);
+
+        OperationMetrics metrics = ctx.getMetrics().getSession().get("core.listCourses");
+        assertEquals(1, metrics.getDurations().getCount());
+        assertEquals(0, metrics.getFailureCount());
+    }
+
+    @Test
+    public void progressMessagesBecomeTraceSpans() throws IOException {
+        ctx.setTracer(Tracer.create());
+        Exercise exercise = new Exercise("test-exercise");
+        when(mockCore.submit(any(ProgressObserver.class), eq(exercise)))
+                .thenAnswer(
+                        invocation -> {
+                            ProgressObserver observer =
+                                    (ProgressObserver) invocation.getArguments()[0];
+                            return (Callable<SubmissionResult>) () -> {
+                                observer.progress(1, "Zipping");
+                                observer.progress(1, "Sending");
+                                return new SubmissionResult();
+                            };
+                        });
+        TmcUtil.submitExercise(ctx, exercise);
+
+        Path file = Files.createTempFile("tmc-trace", ".json");
+        try {
+            assertTrue(ctx.getTracer().write(file));
+            String trace = new String(Files.readAllBytes(file), "UTF-8");
+            assertTrue(trace.contains("\"name\":\"core.submit\""));
+            assertTrue(trace.contains("\"name\":\"Zipping\""));
+            assertTrue(trace.contains("\"name\":\"Sending\""));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void submitUsesCoreByDefault() {
+        SubmissionResult result = new SubmissionResult();
+        when(mockCore.submit(any(ProgressObserver.class), any(Exercise.class)))
+                .thenReturn(createReturningCallback(result));
+
+        assertEquals(result, TmcUtil.submitExercise(ctx, new Exercise("ex", "course")));
+    }
+
+    @Test
+    public void submitPollsTheResultItselfInPollMode() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        String address = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.createContext(
+                "/submit",
+                exchange ->
+                        respond(exchange, "{\"submission_url\": \"" + address + "/result\"}"));
+        server.createContext("/result", exchange -> respond(exchange, "{\"status\": \"ok\"}"));
+        server.start();
+        Path tmcDirectory = Files.createTempDirectory("tmc-submit-test");
+        try {
+            ctx.getSettings().setWorkDir(new WorkDir(tmcDirectory));
+            ctx.setSubmissionPackager(new SubmissionPackager(tmcDirectory.resolve("cache")));
+            Files.createDirectories(tmcDirectory.resolve("course/ex/src"));
+            ctx.getProperties().put(TmcUtil.SUBMISSION_RESULTS, TmcUtil.RESULTS_POLL);
+            Exercise exercise = new Exercise("ex", "course");
+            exercise.setReturnUrl(URI.create(address + "/submit"));
+
+            SubmissionResult result = TmcUtil.submitExercise(ctx, exercise);
+            assertEquals(SubmissionResult.Status.OK, result.getStatus());
+            verify(mockCore, times(0)).submit(any(ProgressObserver.class), any(Exercise.class));
+        } finally {
+            ctx.getProperties().remove(TmcUtil.SUBMISSION_RESULTS);
+            server.stop(0);
+            FileUtils.deleteQuietly(tmcDirectory.toFile());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
     @Test
     public void findCourseWhenItExists() {
         Course expectedResult = new Course("test-course");
@@ -183,6 +282,49 @@ public class TmcUtilTest {
         assertEquals(expectedResult, result);
     }
 
+    @Test
+    public void downloadedExercisesComeFromTemplateStoreNextTime() throws IOException {
+        Path tempDir = Files.createTempDirectory("tmc-download");
+        try {
+            TemplateStore store = new TemplateStore(tempDir.resolve("store"));
+            Exercise exercise = new Exercise("ex1", "course");
+            exercise.setChecksum("abc");
+            exercise.setZipUrl(URI.create("https://tmc.example.com/ex1.zip"));
+            List<Exercise> exercises = Collections.singletonList(exercise);
+            Path first = Files.createDirectories(tempDir.resolve("first"));
+            Path second = Files.createDirectories(tempDir.resolve("second"));
+
+            Callable<List<Exercise>> download =
+                    () -> {
+                        Path dir = first.resolve("course").resolve("ex1");
+                        Files.createDirectories(dir);
+                        Files.write(dir.resolve("Main.java"), "class Main {}".getBytes("UTF-8"));
+                        return exercises;
+                    };
+            when(mockCore.downloadOrUpdateExercises(any(ProgressObserver.class), eq(exercises)))
+                    .thenReturn(download);
+
+            ctx = new CliContext(io, mockCore, new WorkDir(first), new Settings(), null);
+            ctx.setTemplateStore(store);
+            assertEquals(
+                    exercises,
+                    TmcUtil.downloadExercises(ctx, exercises, new CliProgressObserver(io)));
+            assertTrue(store.contains(exercise));
+
+            ctx = new CliContext(io, mockCore, new WorkDir(second), new Settings(), null);
+            ctx.setTemplateStore(store);
+            assertEquals(
+                    exercises,
+                    TmcUtil.downloadExercises(ctx, exercises, new CliProgressObserver(io)));
+            assertTrue(Files.exists(second.resolve("course").resolve("ex1").resolve("Main.java")));
+            verify(mockCore, times(1))
+                    .downloadOrUpdateExercises(
+                            any(ProgressObserver.class), anyListOf(Exercise.class));
+        } finally {
+            FileUtils.deleteQuietly(tempDir.toFile());
+        }
+    }
+
     @Test
     public void failToDownloadCourses() throws Exception {
         List<Exercise> exercises = Collections.singletonList(new Exercise("first"));
@@ -218,24 +360,24 @@ public class TmcUtilTest {
     }
 
     @Test
-    public void getUpdatableExercises() {
-        final UpdateResult expectedResult = mock(UpdateResult.class);
+    public void getCourseDetails() {
         Course course = new Course("test-course");
+        Course details = new Course("test-course");
+        details.setExercises(Collections.singletonList(new Exercise("first")));
 
-        when(mockCore.getExerciseUpdates(any(ProgressObserver.class), eq(course)))
-                .thenReturn(createReturningCallback(expectedResult));
+        when(mockCore.getCourseDetails(any(ProgressObserver.class), eq(course)))
+                .thenReturn(createReturningCallback(details));
 
-        UpdateResult result = TmcUtil.getUpdatableExercises(ctx, course);
-        assertEquals(expectedResult, result);
+        assertEquals(details, TmcUtil.getCourseDetails(ctx, course));
     }
 
     @Test
-    public void failToGetUpdatableExercises() {
+    public void failToGetCourseDetails() {
         Course course = new Course("test-course");
-        when(mockCore.getExerciseUpdates(any(ProgressObserver.class), eq(course)))
-                .thenReturn(createThrowingCallback(UpdateResult.class, "failed"));
+        when(mockCore.getCourseDetails(any(ProgressObserver.class), eq(course)))
+                .thenReturn(createThrowingCallback(Course.class, "failed"));
 
-        assertNull(TmcUtil.getUpdatableExercises(ctx, course));
+        assertNull(TmcUtil.getCourseDetails(ctx, course));
     }
 
     @Test
@@ -0,0 +1,108 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+import fi.helsinki.cs.tmc.cli.Application;
+import fi.helsinki.cs.tmc.cli.backend.Settings;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.backend.TemplateStore;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(SettingsIo.class)
+public class CacheCommandTest {
+
+    private Application app;
+    private TestIo io;
+    private Path configRoot;
+    private TemplateStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        configRoot = Files.createTempDirectory("tmc-cache-test");
+        mockStatic(SettingsIo.class);
+        when(SettingsIo.getConfigDirectory()).thenReturn(configRoot);
+        when(SettingsIo.loadProperties()).thenReturn(new HashMap<>());
+
+        io = new TestIo();
+        app = new Application(new CliContext(io, null, new WorkDir(), new Settings(), null));
+        store = TemplateStore.open();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(configRoot.toFile());
+    }
+
+    private void storeExercise(String name) throws IOException {
+        Exercise exercise = new Exercise(name, "course");
+        exercise.setChecksum("abc");
+        exercise.setZipUrl(URI.create("https://tmc.example.com/" + name + ".zip"));
+        Path dir = configRoot.resolve("download").resolve(name);
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("Main.java"), "class Main {}".getBytes("UTF-8"));
+        store.put(exercise, dir);
+    }
+
+    @Test
+    public void showsStoreSummary() throws IOException {
+        storeExercise("ex1");
+        storeExercise("ex2");
+        app.run(new String[] {"cache"});
+        io.assertContains(configRoot.resolve(TemplateStore.DIRECTORY).toString());
+        io.assertContains("2 exercises");
+    }
+
+    @Test
+    public void gcWithZeroSizeEmptiesTheStore() throws IOException {
+        storeExercise("ex1");
+        storeExercise("ex2");
+        app.run(new String[] {"cache", "gc", "--max-size", "0"});
+        io.assertContains("Removed 2 exercises");
+        assertTrue(store.getEntries().isEmpty());
+    }
+
+    @Test
+    public void gcKeepsStoreUnderDefaultLimit() throws IOException {
+        storeExercise("ex1");
+        app.run(new String[] {"cache", "gc"});
+        io.assertContains("Removed 0 exercises");
+        assertEquals(1, store.getEntries().size());
+    }
+
+    @Test
+    public void invalidMaxSizeIsRejected() throws IOException {
+        storeExercise("ex1");
+        app.run(new String[] {"cache", "gc", "--max-size", "lots"});
+        io.assertContains("must be a positive number");
+        assertFalse(store.getEntries().isEmpty());
+    }
+
+    @Test
+    public void unknownSubcommandPrintsUsage() {
+        app.run(new String[] {"cache", "purge"});
+        io.assertContains("Unknown cache command purge");
+    }
+}
@@ -63,7 +63,6 @@ public class ConfigCommandTest {
         ctx = Mockito.spy(new CliContext(io, core, new WorkDir(), new Settings(), analyticsFacade));
         app = new Application(ctx);
 
-        when(ctx.saveProperties()).thenReturn(true);
         props = new HashMap<>();
         when(ctx.getProperties()).thenReturn(props);
         when(ctx.getSettings()).thenReturn(settings);
@@ -301,6 +300,46 @@ public class ConfigCommandTest {
         io.assertContains("Please write either true or false");
     }
 
+    @Test
+    public void submissionResultsCanBeSetToPush() {
+        app.run(new String[] {"config", "-q", "submission-results=push"});
+        assertEquals("push", props.get("submission-results"));
+    }
+
+    @Test
+    public void submissionResultsIsValidated() {
+        app.run(new String[] {"config", "-q", "submission-results=websocket"});
+        io.assertContains("Please write either core, poll or push");
+        assertTrue(!props.containsKey("submission-results"));
+    }
+
+    @Test
+    public void submissionPollIntervalIsValidated() {
+        app.run(new String[] {"config", "-q", "submission-poll-interval=2,30"});
+        assertEquals("2,30", props.get("submission-poll-interval"));
+        app.run(new String[] {"config", "-q", "submission-poll-interval=30,2"});
+        io.assertContains("The maximum delay must be at least the initial delay");
+        assertEquals("2,30", props.get("submission-poll-interval"));
+    }
+
+    @Test
+    public void warmTestRunnersMustBeASmallNumber() {
+        app.run(new String[] {"config", "-q", "warm-test-runners=2"});
+        assertEquals("2", props.get("warm-test-runners"));
+        app.run(new String[] {"config", "-q", "warm-test-runners=many"});
+        io.assertContains("Please write a number from 0 to 8");
+        assertEquals("2", props.get("warm-test-runners"));
+    }
+
+    @Test
+    public void warmupAfterDownloadMustBeABoolean() {
+        app.run(new String[] {"config", "-q", "warmup-after-download=TRUE"});
+        assertEquals("true", props.get("warmup-after-download"));
+        app.run(new String[] {"config", "-q", "warmup-after-download=sometimes"});
+        io.assertContains("Please write either true or false");
+        assertEquals("true", props.get("warmup-after-download"));
+    }
+
     @Test
     public void serverAddressConfiguredToSettingsAndPromptsLogin() {
         when(TmcUtil.tryToLogin(eq(ctx), any(Account.class), any(String.class))).thenReturn(true);
@@ -16,10 +16,16 @@ import fi.helsinki.cs.tmc.cli.Application;
 import fi.helsinki.cs.tmc.cli.analytics.AnalyticsFacade;
 import fi.helsinki.cs.tmc.cli.backend.Account;
 import fi.helsinki.cs.tmc.cli.backend.AccountList;
+import fi.helsinki.cs.tmc.cli.backend.ArchiveDownloader;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
+import fi.helsinki.cs.tmc.cli.backend.CourseSubmission;
 import fi.helsinki.cs.tmc.cli.backend.Settings;
 import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
 import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.MultiProgressObserver;
 import fi.helsinki.cs.tmc.cli.io.TestIo;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.core.TmcCore;
@@ -39,12 +45,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
@@ -57,6 +66,7 @@ public class DownloadExercisesCommandTest {
 
     private Application app;
     private CliContext ctx;
+    private CourseRegistry registry;
     private TestIo io;
     private TmcCore mockCore;
     private WorkDir workDir;
@@ -76,6 +86,8 @@ public class DownloadExercisesCommandTest {
         EventSendBuffer eventSendBuffer = new EventSendBuffer(new EventStore());
         AnalyticsFacade analyticsFacade = new AnalyticsFacade(eventSendBuffer);
         ctx = new CliContext(io, mockCore, workDir, new Settings(), analyticsFacade);
+        registry = new CourseRegistry(tempDir.resolve(".config"));
+        ctx.setCourseRegistry(registry);
         app = new Application(ctx);
         Account account = new Account("user", testOrganization);
         ctx.useAccount(account);
@@ -308,4 +320,151 @@ public class DownloadExercisesCommandTest {
         File courseJson = tempDir.resolve("course1").resolve(".tmc.json").toFile();
         assertTrue(!courseJson.exists());
     }
+
+    @Test
+    public void downloadedCourseIsRegistered() {
+        Course course = new Course("course1");
+        course.setExercises(Collections.singletonList(new Exercise("exercise")));
+        when(TmcUtil.findCourse(eq(ctx), eq("course1"))).thenReturn(course);
+        when(
+                        TmcUtil.downloadExercises(
+                                eq(ctx), anyListOf(Exercise.class), any(ProgressObserver.class)))
+                .thenReturn(course.getExercises());
+
+        app.run(new String[] {"download", "course1"});
+        List<CourseRegistry.Entry> entries = registry.getEntries();
+        assertEquals(1, entries.size());
+        assertEquals(tempDir.resolve("course1").toAbsolutePath(), entries.get(0).getPath());
+    }
+
+    @Test
+    public void failedDownloadIsNotRegistered() {
+        when(TmcUtil.findCourse(eq(ctx), eq("course1"))).thenReturn(new Course("course1"));
+        when(
+                        TmcUtil.downloadExercises(
+                                eq(ctx), anyListOf(Exercise.class), any(ProgressObserver.class)))
+                .thenReturn(null);
+
+        app.run(new String[] {"download", "course1"});
+        assertTrue(registry.getEntries().isEmpty());
+    }
+
+    @Test
+    public void tellsWhereTheCourseHasAlreadyBeenDownloaded() throws IOException {
+        Path configRoot = Files.createTempDirectory("tmc-download-test");
+        try {
+            Account account = accountList.getAccount();
+            Course course = new Course("course1");
+            course.setExercises(Collections.singletonList(new Exercise("exercise")));
+            Path otherCopy = configRoot.resolve("elsewhere").resolve("course1");
+            CourseInfo info = new CourseInfo(account, course);
+            CourseInfoIo.save(info, otherCopy.resolve(CourseInfoIo.COURSE_CONFIG));
+            registry.register(info, otherCopy);
+
+            when(TmcUtil.findCourse(eq(ctx), eq("course1"))).thenReturn(course);
+            when(
+                            TmcUtil.downloadExercises(
+                                    eq(ctx),
+                                    anyListOf(Exercise.class),
+                                    any(ProgressObserver.class)))
+                    .thenReturn(course.getExercises());
+
+            app.run(new String[] {"download", "course1"});
+            io.assertContains("has already been downloaded into " + otherCopy);
+        } finally {
+            FileUtils.deleteQuietly(configRoot.toFile());
+        }
+    }
+
+    private static ArchiveDownloader.Summary summaryOf(List<ArchiveDownloader.Archive> archives) {
+        ArchiveDownloader.Summary summary = new ArchiveDownloader.Summary();
+        for (ArchiveDownloader.Archive archive : archives) {
+            summary.getDownloaded().add(archive.getName());
+        }
+        return summary;
+    }
+
+    @Test
+    public void solutionsAreDownloadedNextToTheTemplates() {
+        Exercise withSolution = new Exercise("exercise1", "course1");
+        withSolution.setSolutionDownloadUrl(URI.create("https://tmc.example.com/solution/1"));
+        withSolution.setChecksum("abc");
+        Exercise withoutSolution = new Exercise("exercise2", "course1");
+        Course course = new Course("course1");
+        course.setExercises(Arrays.asList(withSolution, withoutSolution));
+        when(TmcUtil.findCourse(eq(ctx), eq("course1"))).thenReturn(course);
+        when(TmcUtil.downloadArchives(
+                        eq(ctx),
+                        any(Path.class),
+                        anyListOf(ArchiveDownloader.Archive.class),
+                        any(MultiProgressObserver.class)))
+                .thenAnswer(invocation -> summaryOf(invocation.getArgumentAt(2, List.class)));
+
+        app.run(new String[] {"download", "--solutions", "course1"});
+        io.assertContains("Downloaded 1 solutions");
+
+        Path root = tempDir.resolve("course1").resolve("solutions");
+        ArgumentCaptor<List> archives = ArgumentCaptor.forClass(List.class);
+        verifyStatic();
+        TmcUtil.downloadArchives(
+                eq(ctx), eq(root), archives.capture(), any(MultiProgressObserver.class));
+        assertEquals(1, archives.getValue().size());
+        ArchiveDownloader.Archive archive =
+                (ArchiveDownloader.Archive) archives.getValue().get(0);
+        assertEquals(root.resolve("exercise1"), archive.getTarget());
+        assertEquals("abc", archive.getChecksum());
+
+        verifyStatic(Mockito.never());
+        TmcUtil.downloadExercises(
+                any(CliContext.class), anyListOf(Exercise.class), any(ProgressObserver.class));
+    }
+
+    @Test
+    public void onlyTheLatestSubmissionOfEveryStudentIsDownloaded() {
+        Course course = new Course("course1");
+        course.setExercises(Collections.singletonList(new Exercise("exercise1")));
+        when(TmcUtil.findCourse(eq(ctx), eq("course1"))).thenReturn(course);
+        when(TmcUtil.listCourseSubmissions(eq(ctx), any(Course.class)))
+                .thenReturn(
+                        Arrays.asList(
+                                new CourseSubmission(5, 1, "exercise1", null),
+                                new CourseSubmission(9, 1, "exercise1", null),
+                                new CourseSubmission(7, 2, "exercise1", null)));
+        when(TmcUtil.downloadArchives(
+                        eq(ctx),
+                        any(Path.class),
+                        anyListOf(ArchiveDownloader.Archive.class),
+                        any(MultiProgressObserver.class)))
+                .thenAnswer(invocation -> summaryOf(invocation.getArgumentAt(2, List.class)));
+
+        app.run(new String[] {"download", "--submissions", "course1"});
+        io.assertContains("Downloaded 2 submissions");
+
+        Path root = tempDir.resolve("course1").resolve("submissions");
+        ArgumentCaptor<List> archives = ArgumentCaptor.forClass(List.class);
+        verifyStatic();
+        TmcUtil.downloadArchives(
+                eq(ctx), eq(root), archives.capture(), any(MultiProgressObserver.class));
+        ArchiveDownloader.Archive first = (ArchiveDownloader.Archive) archives.getValue().get(0);
+        assertEquals(root.resolve("exercise1").resolve("1"), first.getTarget());
+        assertEquals("submission-9", first.getChecksum());
+        assertTrue(first.getUrl().toString().endsWith("/core/submissions/9/download"));
+    }
+
+    @Test
+    public void submissionsAreNotDownloadedWithoutTheList() {
+        Course course = new Course("course1");
+        course.setExercises(Collections.singletonList(new Exercise("exercise1")));
+        when(TmcUtil.findCourse(eq(ctx), eq("course1"))).thenReturn(course);
+        when(TmcUtil.listCourseSubmissions(eq(ctx), any(Course.class))).thenReturn(null);
+
+        app.run(new String[] {"download", "--submissions", "course1"});
+
+        verifyStatic(Mockito.never());
+        TmcUtil.downloadArchives(
+                any(CliContext.class),
+                any(Path.class),
+                anyListOf(ArchiveDownloader.Archive.class),
+                any(ProgressObserver.class));
+    }
 }
@@ -22,12 +22,16 @@ import fi.helsinki.cs.tmc.langs.util.TaskExecutor;
 import fi.helsinki.cs.tmc.langs.util.TaskExecutorImpl;
 import fi.helsinki.cs.tmc.snapshots.EventSendBuffer;
 import fi.helsinki.cs.tmc.snapshots.EventStore;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -96,4 +100,37 @@ public class ListCoursesCommandTest {
         app.run(args);
         io.assertContains("Found 2 courses");
     }
+
+    @Test
+    public void listsLocalCoursesWithoutConnection() throws IOException {
+        Path configRoot = Files.createTempDirectory("tmc-courses-test");
+        try {
+            CourseRegistry registry = new CourseRegistry(configRoot);
+            ctx.setCourseRegistry(registry);
+            when(TmcUtil.hasConnection(eq(ctx))).thenReturn(false);
+            Path courseDirectory = configRoot.resolve("course1");
+            CourseInfo info = new CourseInfo(new Account("student"), new Course("course1"));
+            CourseInfoIo.save(info, courseDirectory.resolve(CourseInfoIo.COURSE_CONFIG));
+            registry.register(info, courseDirectory);
+
+            app.run(new String[] {"courses", "--local"});
+            io.assertContains("course1");
+            io.assertContains(courseDirectory.toString());
+            io.assertContains("Found 1 courses on this computer");
+        } finally {
+            FileUtils.deleteQuietly(configRoot.toFile());
+        }
+    }
+
+    @Test
+    public void localListingTellsIfThereAreNoCourses() throws IOException {
+        Path configRoot = Files.createTempDirectory("tmc-courses-test");
+        try {
+            ctx.setCourseRegistry(new CourseRegistry(configRoot));
+            app.run(new String[] {"courses", "-l"});
+            io.assertContains("No courses have been downloaded");
+        } finally {
+            FileUtils.deleteQuietly(configRoot.toFile());
+        }
+    }
 }
@@ -144,6 +144,32 @@ public class ListExercisesCommandTest {
         io.assertContains("second");
     }
 
+    @Test
+    public void listExercisesAsJson() {
+        Exercise exercise = new Exercise("first");
+        exercise.setCompleted(true);
+        Course course = new Course("test-course");
+        course.setExercises(Arrays.asList(exercise, new Exercise("second")));
+        when(TmcUtil.findCourse(eq(ctx), eq("test-course"))).thenReturn(course);
+
+        String[] args = {"exercises", "--format", "json", "test-course", "-i"};
+        app.run(args);
+        io.assertContains(
+                "{\"event\":\"exercise\",\"command\":\"exercises\","
+                        + "\"course\":\"test-course\",\"name\":\"first\"");
+        io.assertContains("\"status\":\"completed\"");
+        io.assertContains("\"name\":\"second\"");
+        io.assertContains("\"status\":\"not_completed\"");
+        io.assertNotContains("Course name:");
+    }
+
+    @Test
+    public void failIfFormatIsUnknown() {
+        String[] args = {"exercises", "--format", "xml", "test-course", "-i"};
+        app.run(args);
+        io.assertContains("Unknown output format");
+    }
+
     @Test
     public void emptyArgsGivesAnErrorMessage() {
         when(TmcUtil.listCourses(eq(ctx))).thenReturn(null);
@@ -0,0 +1,144 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+import fi.helsinki.cs.tmc.cli.Application;
+import fi.helsinki.cs.tmc.cli.analytics.AnalyticsFacade;
+import fi.helsinki.cs.tmc.cli.backend.*;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+
+import fi.helsinki.cs.tmc.core.TmcCore;
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+
+import fi.helsinki.cs.tmc.langs.util.TaskExecutorImpl;
+import fi.helsinki.cs.tmc.snapshots.EventSendBuffer;
+import fi.helsinki.cs.tmc.snapshots.EventStore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({TmcUtil.class, CourseInfoIo.class, SettingsIo.class})
+public class ResultCommandTest {
+
+    private static final String EXERCISE_NAME = "Module_1-02_intro";
+    private static final URI SUBMISSION_URL =
+            URI.create("https://tmc.example.com/submissions/5");
+
+    private Application app;
+    private CliContext ctx;
+    private TestIo io;
+    private CourseInfo info;
+
+    @Before
+    public void setUp() throws URISyntaxException {
+        Path courseDir =
+                Paths.get(
+                        ResultCommandTest.class
+                                .getClassLoader()
+                                .getResource("dummy-courses/2016-aalto-c")
+                                .toURI());
+        io = new TestIo();
+        TmcCore core = new TmcCore(new Settings(), new TaskExecutorImpl());
+        AnalyticsFacade analyticsFacade =
+                new AnalyticsFacade(new EventSendBuffer(new EventStore()));
+        ctx = new CliContext(io, core, new WorkDir(courseDir), new Settings(), analyticsFacade);
+        app = new Application(ctx);
+
+        AccountList list = new AccountList();
+        list.addAccount(new Account("username"));
+        Account account = new Account("testuser");
+        account.setServerAddress("https://tmc.example.com");
+        list.addAccount(account);
+        mockStatic(SettingsIo.class);
+        when(SettingsIo.loadAccountList()).thenReturn(list);
+
+        mockStatic(TmcUtil.class);
+        mockStatic(CourseInfoIo.class);
+        when(CourseInfoIo.load(any(Path.class))).thenCallRealMethod();
+        info = CourseInfoIo.load(courseDir.resolve(CourseInfoIo.COURSE_CONFIG));
+        info.setPendingSubmission(EXERCISE_NAME, SUBMISSION_URL.toString(), "digest");
+        doReturn(info).when(CourseInfoIo.class);
+        CourseInfoIo.load(any(Path.class));
+        when(CourseInfoIo.save(any(CourseInfo.class), any(Path.class))).thenReturn(true);
+    }
+
+    private static SubmissionStatus createStatus(SubmissionResult.Status status) {
+        SubmissionResult result = mock(SubmissionResult.class);
+        when(result.getStatus()).thenReturn(status);
+        return new SubmissionStatus(result, "created", 2, 10, -1);
+    }
+
+    @Test
+    public void doNotRunIfNotLoggedIn() {
+        when(SettingsIo.loadAccountList()).thenReturn(new AccountList());
+        app.run(new String[] {"result"});
+        io.assertContains("You are not logged in");
+    }
+
+    @Test
+    public void tellsWhenNothingIsPending() {
+        info.removePendingSubmission(EXERCISE_NAME);
+        app.run(new String[] {"result"});
+        io.assertContains("No submissions are waiting for results.");
+    }
+
+    @Test
+    public void showsThePlaceInTheQueueWhileProcessing() {
+        SubmissionStatus status = createStatus(SubmissionResult.Status.PROCESSING);
+        when(TmcUtil.fetchSubmissionStatus(any(CliContext.class), any(URI.class)))
+                .thenReturn(status);
+
+        app.run(new String[] {"result", EXERCISE_NAME});
+        io.assertContains("In the queue, 2 submissions before this one");
+        io.assertContains("tmc result --wait");
+        assertEquals(SUBMISSION_URL.toString(), info.getPendingSubmission(EXERCISE_NAME));
+    }
+
+    @Test
+    public void passedResultCompletesTheExercise() {
+        SubmissionStatus status = createStatus(SubmissionResult.Status.OK);
+        when(TmcUtil.fetchSubmissionStatus(any(CliContext.class), any(URI.class)))
+                .thenReturn(status);
+
+        app.run(new String[] {"result", EXERCISE_NAME});
+        assertTrue(info.getExercise(EXERCISE_NAME).isCompleted());
+        assertEquals("digest", info.getSubmittedDigest(EXERCISE_NAME));
+        assertNull(info.getPendingSubmission(EXERCISE_NAME));
+
+        verifyStatic(times(1));
+        CourseInfoIo.save(any(CourseInfo.class), any(Path.class));
+    }
+
+    @Test
+    public void waitPollsUntilTheResultIsReady() {
+        SubmissionResult result = createStatus(SubmissionResult.Status.FAIL).getResult();
+        when(TmcUtil.waitForSubmissionResult(
+                        any(CliContext.class), any(URI.class), any(ResultPoller.Listener.class)))
+                .thenReturn(result);
+
+        app.run(new String[] {"result", "--wait", EXERCISE_NAME});
+        assertNull(info.getPendingSubmission(EXERCISE_NAME));
+
+        verifyStatic(times(0));
+        TmcUtil.fetchSubmissionStatus(any(CliContext.class), any(URI.class));
+    }
+}
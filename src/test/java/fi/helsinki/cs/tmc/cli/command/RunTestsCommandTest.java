@@ -1,5 +1,6 @@
 package fi.helsinki.cs.tmc.cli.command;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -30,6 +31,7 @@ import fi.helsinki.cs.tmc.langs.util.TaskExecutor;
 import fi.helsinki.cs.tmc.langs.util.TaskExecutorImpl;
 import fi.helsinki.cs.tmc.snapshots.EventSendBuffer;
 import fi.helsinki.cs.tmc.snapshots.EventStore;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -37,6 +39,8 @@ import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -133,6 +137,21 @@ public class RunTestsCommandTest {
         io.assertContains("Testing: " + EXERCISE2_NAME);
     }
 
+    @Test
+    public void printsJsonEventsWithFormatOption() {
+        when(TmcUtil.runLocalTests(eq(ctx), any(Exercise.class))).thenReturn(runResult);
+
+        workDir.setWorkdir(pathToDummyCourse);
+
+        String[] args = {"test", "--format", "json", EXERCISE1_NAME};
+        app.run(args);
+        io.assertContains(
+                "{\"event\":\"exercise_result\",\"command\":\"test\","
+                        + "\"exercise\":\"" + EXERCISE1_NAME + "\",\"status\":\"passed\"");
+        io.assertContains("{\"event\":\"summary\"");
+        io.assertNotContains("Testing: ");
+    }
+
     @Test
     public void worksInCourseDirectoryIfExerciseIsGiven() {
         when(TmcUtil.runLocalTests(eq(ctx), any(Exercise.class))).thenReturn(runResult);
@@ -143,4 +162,34 @@ public class RunTestsCommandTest {
         app.run(args);
         io.assertContains("Testing: " + EXERCISE1_NAME);
     }
+
+    @Test
+    public void testsAllCoursesWithRecursiveOption() throws IOException {
+        Path root = Files.createTempDirectory("tmc-workspace-test");
+        try {
+            FileUtils.copyDirectory(pathToDummyCourse.toFile(), root.resolve("first").toFile());
+            FileUtils.copyDirectory(
+                    pathToDummyCourse.toFile(), root.resolve("group/second").toFile());
+            when(TmcUtil.runLocalTests(any(CliContext.class), any(Exercise.class)))
+                    .thenReturn(runResult);
+
+            workDir.setWorkdir(root);
+            app.run(new String[] {"test", "--recursive"});
+            io.assertContains("first: 3/3 exercises passed");
+            io.assertContains("second: 3/3 exercises passed");
+            io.assertContains("2 courses, 0 failed");
+            CourseInfo info =
+                    CourseInfoIo.load(root.resolve("first").resolve(CourseInfoIo.COURSE_CONFIG));
+            assertEquals(3, info.getLocalCompletedExercises().size());
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+
+    @Test
+    public void recursiveOptionCantBeUsedWithExercises() {
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"test", "--recursive", EXERCISE1_NAME});
+        io.assertContains("can't be used with exercises");
+    }
 }
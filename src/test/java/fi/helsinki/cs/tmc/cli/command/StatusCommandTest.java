@@ -0,0 +1,149 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+import fi.helsinki.cs.tmc.cli.Application;
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.AccountList;
+import fi.helsinki.cs.tmc.cli.backend.Settings;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.shared.ExerciseUpdater;
+
+import fi.helsinki.cs.tmc.core.TmcCore;
+import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import fi.helsinki.cs.tmc.langs.util.TaskExecutorImpl;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({StatusCommand.class, TmcUtil.class, SettingsIo.class})
+public class StatusCommandTest {
+
+    private static final String COURSE_NAME = "2016-aalto-c";
+
+    private static Path pathToDummyCourse;
+
+    private Application app;
+    private TestIo io;
+    private WorkDir workDir;
+    private ExerciseUpdater exerciseUpdater;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        pathToDummyCourse =
+                Paths.get(
+                        StatusCommandTest.class
+                                .getClassLoader()
+                                .getResource("dummy-courses/" + COURSE_NAME)
+                                .toURI());
+        assertNotNull(pathToDummyCourse);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        io = new TestIo();
+        Settings settings = new Settings();
+        TmcCore core = new TmcCore(settings, new TaskExecutorImpl());
+        mockStatic(TmcUtil.class);
+        mockStatic(SettingsIo.class);
+        when(SettingsIo.loadProperties()).thenReturn(new HashMap<>());
+        AccountList list = new AccountList();
+        Account account = new Account("testuser");
+        account.setServerAddress("https://tmc.example.com");
+        list.addAccount(account);
+        when(SettingsIo.loadAccountList()).thenReturn(list);
+
+        CliContext ctx = new CliContext(io, core, new WorkDir(), settings, null);
+        app = new Application(ctx);
+        workDir = ctx.getWorkDir();
+
+        exerciseUpdater = PowerMockito.mock(ExerciseUpdater.class);
+        PowerMockito.whenNew(ExerciseUpdater.class).withAnyArguments().thenReturn(exerciseUpdater);
+    }
+
+    private Course serverCourse() {
+        Exercise completed = new Exercise("Module_1-02_intro", COURSE_NAME);
+        completed.setCompleted(true);
+        Exercise locked = new Exercise("locked", COURSE_NAME);
+        locked.setLocked(true);
+        Course course = new Course(COURSE_NAME);
+        course.setExercises(
+                Arrays.asList(completed, new Exercise("Module_1-04_func", COURSE_NAME), locked));
+        return course;
+    }
+
+    @Test
+    public void printsAnErrorMessageIfUsedOutsideCourseDirectory() throws IOException {
+        Path empty = Files.createTempDirectory("tmc-status-test");
+        try {
+            workDir.setWorkdir(empty);
+            app.run(new String[] {"status"});
+            io.assertContains("Not a course directory");
+        } finally {
+            FileUtils.deleteQuietly(empty.toFile());
+        }
+    }
+
+    @Test
+    public void showsProgressAndUpdates() {
+        when(exerciseUpdater.fetchCourse()).thenReturn(serverCourse());
+        when(exerciseUpdater.getNewExercises())
+                .thenReturn(Collections.singletonList(new Exercise("new", COURSE_NAME)));
+        workDir.setWorkdir(pathToDummyCourse);
+
+        app.run(new String[] {"status"});
+        io.assertContains("Course: " + COURSE_NAME);
+        io.assertContains("Completed: 1/2 exercises");
+        io.assertContains("1 new and 0 modified exercises available");
+    }
+
+    @Test
+    public void usesLocalExercisesIfServerCantBeReached() {
+        workDir.setWorkdir(pathToDummyCourse);
+
+        app.run(new String[] {"status"});
+        io.assertContains("Completed: 0/3 exercises");
+        io.assertContains("Could not check for updates");
+    }
+
+    @Test
+    public void showsStatusOfAllCoursesWithRecursiveOption() throws IOException {
+        Path root = Files.createTempDirectory("tmc-status-test");
+        try {
+            FileUtils.copyDirectory(pathToDummyCourse.toFile(), root.resolve("first").toFile());
+            FileUtils.copyDirectory(pathToDummyCourse.toFile(), root.resolve("second").toFile());
+            when(exerciseUpdater.fetchCourse()).thenReturn(serverCourse());
+
+            workDir.setWorkdir(root);
+            app.run(new String[] {"status", "--recursive"});
+            io.assertContains("first: " + COURSE_NAME + " 1/2 completed");
+            io.assertContains("second: " + COURSE_NAME + " 1/2 completed");
+            io.assertContains("up-to-date");
+            io.assertContains("2 courses, 0 failed");
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+}
@@ -2,8 +2,10 @@ package fi.helsinki.cs.tmc.cli.command;
 
 import static junit.framework.Assert.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
+import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
@@ -15,7 +17,6 @@ import fi.helsinki.cs.tmc.cli.io.TestIo;
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 
 import fi.helsinki.cs.tmc.core.TmcCore;
-import fi.helsinki.cs.tmc.core.commands.GetUpdatableExercises.UpdateResult;
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
@@ -31,12 +32,13 @@ import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 @RunWith(PowerMockRunner.class)
@@ -103,7 +105,10 @@ public class SubmitCommandTest {
 
         mockStatic(TmcUtil.class);
         when(TmcUtil.findCourse(any(CliContext.class), any(String.class))).thenReturn(course);
-        when(TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class)))
+        when(TmcUtil.submitExercise(
+                        any(CliContext.class),
+                        any(Exercise.class),
+                        any(ResultPoller.Listener.class)))
                 .thenReturn(result)
                 .thenReturn(result2);
         list = new AccountList();
@@ -137,7 +142,8 @@ public class SubmitCommandTest {
         io.assertContains("Submitting: " + EXERCISE1_NAME);
 
         verifyStatic(times(1));
-        TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
     }
 
     @Test
@@ -148,7 +154,8 @@ public class SubmitCommandTest {
         io.assertContains("Submitting: " + EXERCISE2_NAME);
 
         verifyStatic(times(2));
-        TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
     }
 
     @Test
@@ -162,7 +169,97 @@ public class SubmitCommandTest {
 
         // the third one's deadline is passed so it should not be submitted
         verifyStatic(times(2));
-        TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
+    }
+
+    private CourseInfo completeWithDigest(String exerciseName) throws IOException {
+        CourseInfo info = CourseInfoIo.load(pathToDummyCourse.resolve(CourseInfoIo.COURSE_CONFIG));
+        info.getExercise(exerciseName).setCompleted(true);
+        info.setSubmittedDigest(
+                exerciseName, ExerciseDigest.compute(pathToDummyCourse.resolve(exerciseName)));
+        doReturn(info).when(CourseInfoIo.class);
+        CourseInfoIo.load(any(Path.class));
+        // the same info is returned every time, so keep the exercises when migrating the api url
+        when(TmcUtil.getCourseExercises(any(CliContext.class))).thenReturn(null);
+        return info;
+    }
+
+    @Test
+    public void skipsCompletedExerciseThatHasNotChanged() throws IOException {
+        completeWithDigest(EXERCISE1_NAME);
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", EXERCISE1_NAME, EXERCISE2_NAME});
+        io.assertContains("Skipping " + EXERCISE1_NAME);
+        io.assertContains("Submitting: " + EXERCISE2_NAME);
+
+        verifyStatic(times(1));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
+    }
+
+    @Test
+    public void forceSubmitsUnchangedExercise() throws IOException {
+        completeWithDigest(EXERCISE1_NAME);
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", "--force", EXERCISE1_NAME});
+        io.assertNotContains("Skipping");
+        io.assertContains("Submitting: " + EXERCISE1_NAME);
+
+        verifyStatic(times(1));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
+    }
+
+    @Test
+    public void passedSubmissionRecordsDigest() throws IOException {
+        SubmissionResult passed = mock(SubmissionResult.class);
+        when(passed.getStatus()).thenReturn(SubmissionResult.Status.OK);
+        when(TmcUtil.submitExercise(
+                        any(CliContext.class),
+                        any(Exercise.class),
+                        any(ResultPoller.Listener.class)))
+                .thenReturn(passed);
+
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", EXERCISE1_NAME});
+        assertEquals(
+                ExerciseDigest.compute(pathToDummyCourse.resolve(EXERCISE1_NAME)),
+                ctx.getCourseInfo().getSubmittedDigest(EXERCISE1_NAME));
+    }
+
+    @Test
+    public void noWaitStoresTheSubmissionUrl() throws IOException {
+        CourseInfo info = CourseInfoIo.load(pathToDummyCourse.resolve(CourseInfoIo.COURSE_CONFIG));
+        doReturn(info).when(CourseInfoIo.class);
+        CourseInfoIo.load(any(Path.class));
+        when(TmcUtil.getCourseExercises(any(CliContext.class))).thenReturn(null);
+        when(TmcUtil.sendSubmission(any(CliContext.class), any(Exercise.class)))
+                .thenReturn(URI.create("https://tmc.example.com/submissions/5"));
+
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", "--no-wait", EXERCISE1_NAME});
+        io.assertContains("Use 'tmc result " + EXERCISE1_NAME + "' to see the result.");
+        assertEquals(
+                "https://tmc.example.com/submissions/5",
+                info.getPendingSubmission(EXERCISE1_NAME));
+        assertEquals(
+                ExerciseDigest.compute(pathToDummyCourse.resolve(EXERCISE1_NAME)),
+                info.getPendingDigest(EXERCISE1_NAME));
+
+        verifyStatic(times(0));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
+    }
+
+    @Test
+    public void noWaitShowsFailedUpload() {
+        when(TmcUtil.sendSubmission(any(CliContext.class), any(Exercise.class)))
+                .thenReturn(null);
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", "--no-wait", EXERCISE1_NAME});
+        io.assertContains("Submission failed.");
+        io.assertNotContains("tmc result");
     }
 
     @Test
@@ -179,7 +276,8 @@ public class SubmitCommandTest {
         io.assertContains("Invalid command line argument");
 
         verifyStatic(times(0));
-        TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
     }
 
     @Test
@@ -190,9 +288,41 @@ public class SubmitCommandTest {
         assertEquals(0, countSubstring("Submitting: ", io.out()));
     }
 
+    private void assertEveryLineIsJson() {
+        String[] lines = io.out().trim().split("\n");
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("{\"event\":"));
+        }
+        assertTrue(lines[lines.length - 1].startsWith("{\"event\":\"summary\""));
+    }
+
+    @Test
+    public void invalidExerciseIsAnErrorEventInJson() {
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", "--format", "json", "foo"});
+        io.assertContains("{\"event\":\"error\"");
+        io.assertContains("Error: foo is not a valid exercise.");
+        assertEveryLineIsJson();
+    }
+
+    @Test
+    public void failedCourseUpdateIsAnErrorEventBeforeTheJsonSummary() {
+        // keep the exercises in .tmc.json when migrating the api url
+        when(TmcUtil.getCourseExercises(any(CliContext.class))).thenReturn(null);
+        when(TmcUtil.getCourseDetails(any(CliContext.class), any(Course.class)))
+                .thenReturn(null);
+        workDir.setWorkdir(pathToDummyCourse);
+        app.run(new String[] {"submit", "--format", "json", EXERCISE1_NAME});
+        io.assertContains("Failed to update config file for course");
+        assertEveryLineIsJson();
+    }
+
     @Test
     public void showFailMsgIfSubmissionFailsInCore() {
-        when(TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class))).thenReturn(null);
+        when(TmcUtil.submitExercise(
+                        any(CliContext.class),
+                        any(Exercise.class),
+                        any(ResultPoller.Listener.class))).thenReturn(null);
         workDir.setWorkdir(pathToDummyCourse);
         app.run(new String[] {"submit", EXERCISE1_NAME});
 
@@ -200,7 +330,8 @@ public class SubmitCommandTest {
         assertEquals(1, countSubstring("Submission failed.", io.out()));
 
         verifyStatic(times(1));
-        TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
     }
 
     @Test
@@ -215,17 +346,20 @@ public class SubmitCommandTest {
 
     @Test
     public void showsMessageIfNewExercisesAreAvailable() {
-        UpdateResult updateResult = mock(UpdateResult.class);
-
-        List<Exercise> newExercises = Collections.singletonList(new Exercise("new_exercise"));
-        List<Exercise> updatedExercises =
-                Collections.singletonList(new Exercise("updated_exercise"));
-
-        when(updateResult.getNewExercises()).thenReturn(newExercises);
-        when(updateResult.getUpdatedExercises()).thenReturn(updatedExercises);
-
-        when(TmcUtil.getUpdatableExercises(any(CliContext.class), any(Course.class)))
-                .thenReturn(updateResult);
+        // the submitted exercise is refreshed from the server, so it's not reported
+        Exercise submitted = new Exercise(EXERCISE2_NAME, COURSE_NAME);
+        submitted.setChecksum("submitted");
+        Exercise changed = new Exercise("Module_1-05_calc", COURSE_NAME);
+        changed.setChecksum("changed");
+        Exercise newExercise = new Exercise("new_exercise", COURSE_NAME);
+        newExercise.setChecksum("new");
+        Course serverCourse = new Course(COURSE_NAME);
+        serverCourse.setExercises(Arrays.asList(submitted, changed, newExercise));
+
+        // keep the exercises in .tmc.json when migrating the api url
+        when(TmcUtil.getCourseExercises(any(CliContext.class))).thenReturn(null);
+        when(TmcUtil.getCourseDetails(any(CliContext.class), any(Course.class)))
+                .thenReturn(serverCourse);
 
         workDir.setWorkdir(pathToDummyCourse);
         app.run(new String[] {"submit", EXERCISE2_NAME});
@@ -241,7 +375,8 @@ public class SubmitCommandTest {
         app.run(new String[] {"submit", EXERCISE_WITH_DEADLINE_PASSED});
         io.assertContains("Deadline has passed for this exercise");
         verifyStatic(times(0));
-        TmcUtil.submitExercise(any(CliContext.class), any(Exercise.class));
+        TmcUtil.submitExercise(
+                any(CliContext.class), any(Exercise.class), any(ResultPoller.Listener.class));
     }
 
     @Test
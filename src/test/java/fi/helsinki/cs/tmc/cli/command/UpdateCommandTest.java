@@ -19,12 +19,15 @@ import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.cli.shared.ExerciseUpdater;
 
 import fi.helsinki.cs.tmc.core.TmcCore;
+import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
 
 import fi.helsinki.cs.tmc.langs.util.TaskExecutor;
 import fi.helsinki.cs.tmc.langs.util.TaskExecutorImpl;
 import fi.helsinki.cs.tmc.snapshots.EventSendBuffer;
 import fi.helsinki.cs.tmc.snapshots.EventStore;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -33,6 +36,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -172,4 +176,45 @@ public class UpdateCommandTest {
 
         verify(exerciseUpdater).updateCourseJson(any(CourseInfo.class), any(Path.class));
     }
+
+    @Test
+    public void updatesAllCoursesWithRecursiveOption() throws Exception {
+        Path root = Files.createTempDirectory("tmc-update-test");
+        try {
+            FileUtils.copyDirectory(pathToDummyCourse.toFile(), root.resolve("first").toFile());
+            FileUtils.copyDirectory(pathToDummyCourse.toFile(), root.resolve("second").toFile());
+            when(exerciseUpdater.fetchCourse()).thenReturn(new Course(COURSE_NAME));
+            when(exerciseUpdater.updatesAvailable()).thenReturn(true);
+            List<Exercise> newExercises = new ArrayList<>();
+            newExercises.add(new Exercise("new_exercise", COURSE_NAME));
+            when(exerciseUpdater.getNewExercises()).thenReturn(newExercises);
+            when(exerciseUpdater.downloadUpdates(any(ProgressObserver.class)))
+                    .thenReturn(newExercises);
+            when(exerciseUpdater.updateCourseJson(any(CourseInfo.class), any(Path.class)))
+                    .thenReturn(true);
+
+            workDir.setWorkdir(root);
+            app.run(new String[] {"update", "--recursive"});
+            io.assertContains("first: 1 new and 0 modified exercises");
+            io.assertContains("second: 1 new and 0 modified exercises");
+            io.assertContains("2 courses, 0 failed");
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+
+    @Test
+    public void recursiveUpdateReportsFailedCourses() throws Exception {
+        Path root = Files.createTempDirectory("tmc-update-test");
+        try {
+            FileUtils.copyDirectory(pathToDummyCourse.toFile(), root.resolve("first").toFile());
+
+            workDir.setWorkdir(root);
+            app.run(new String[] {"update", "--recursive"});
+            io.assertContains("first: Failed to fetch the course from the server");
+            io.assertContains("1 courses, 1 failed");
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
 }
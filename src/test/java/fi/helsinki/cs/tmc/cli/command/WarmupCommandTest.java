@@ -0,0 +1,167 @@
+package fi.helsinki.cs.tmc.cli.command;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+
+import fi.helsinki.cs.tmc.cli.Application;
+import fi.helsinki.cs.tmc.cli.backend.Settings;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.runner.Warmup;
+
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({TmcUtil.class, SettingsIo.class})
+public class WarmupCommandTest {
+
+    private static final List<String> EXERCISES =
+            Arrays.asList("Module_1-02_intro", "Module_1-04_func", "Module_1-05_calc");
+
+    private Path courseDir;
+    private Path configRoot;
+    private HashMap<String, String> properties;
+    private TestIo io;
+    private CliContext ctx;
+    private Application app;
+    private Warmup.Summary summary;
+
+    @Before
+    public void setUp() throws IOException, URISyntaxException {
+        courseDir =
+                Paths.get(
+                        WarmupCommandTest.class
+                                .getClassLoader()
+                                .getResource("dummy-courses/2016-aalto-c")
+                                .toURI());
+        configRoot = Files.createTempDirectory("tmc-warmup-test");
+        properties = new HashMap<>();
+        mockStatic(SettingsIo.class);
+        when(SettingsIo.getConfigDirectory()).thenReturn(configRoot);
+        when(SettingsIo.loadProperties()).thenReturn(properties);
+
+        io = new TestIo();
+        ctx = new CliContext(io, null, new WorkDir(courseDir), new Settings(), null);
+        app = new Application(ctx);
+
+        summary = mock(Warmup.Summary.class);
+        when(summary.getExerciseCount()).thenReturn(3);
+        when(summary.getUnresolved()).thenReturn(Collections.<String>emptyList());
+        when(summary.getNotCompiling()).thenReturn(Collections.<String>emptyList());
+        mockStatic(TmcUtil.class);
+        when(TmcUtil.warmUpExercises(any(CliContext.class), anyListOf(Path.class)))
+                .thenReturn(summary);
+        when(TmcUtil.startWarmUp(any(Path.class), anyListOf(String.class))).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(configRoot.toFile());
+    }
+
+    @Test
+    public void failsOutsideOfCourseDirectory() {
+        ctx = new CliContext(io, null, new WorkDir(configRoot), new Settings(), null);
+        new Application(ctx).run(new String[] {"warmup"});
+        io.assertContains("You have to be in a course directory");
+    }
+
+    @Test
+    public void warmsUpTheExerciseDirectories() {
+        when(summary.isCompiling()).thenReturn(true);
+        when(summary.getCompiledCount()).thenReturn(2);
+        when(summary.getNotCompiling()).thenReturn(Collections.singletonList("Module_1-05_calc"));
+
+        app.run(new String[] {"warmup"});
+        io.assertContains("Warming up 3 exercises");
+        io.assertContains("Compiled 2 exercises");
+        io.assertContains("don't compile yet: Module_1-05_calc");
+        verifyStatic();
+        TmcUtil.warmUpExercises(
+                eq(ctx),
+                eq(
+                        Arrays.asList(
+                                courseDir.resolve(EXERCISES.get(0)),
+                                courseDir.resolve(EXERCISES.get(1)),
+                                courseDir.resolve(EXERCISES.get(2)))));
+    }
+
+    @Test
+    public void suggestsTheWarmRunnersWhenNotCompiling() {
+        when(summary.getDependencySetCount()).thenReturn(1);
+
+        app.run(new String[] {"warmup"});
+        io.assertContains("Resolved 1 different sets of dependencies");
+        io.assertContains("tmc config warm-test-runners");
+        io.assertNotContains("Compiled");
+    }
+
+    @Test
+    public void tellsWhenThereAreNoJavaExercises() {
+        when(summary.getExerciseCount()).thenReturn(0);
+
+        app.run(new String[] {"warmup"});
+        io.assertContains("None of the exercises is a Java exercise");
+    }
+
+    @Test
+    public void warmsUpInTheBackground() {
+        app.run(new String[] {"warmup", "--background"});
+        io.assertContains("in the background");
+        io.assertContains(configRoot.resolve(Warmup.LOG_FILE).toString());
+        verifyStatic();
+        TmcUtil.startWarmUp(eq(courseDir), eq(EXERCISES));
+        verifyStatic(never());
+        TmcUtil.warmUpExercises(any(CliContext.class), anyListOf(Path.class));
+    }
+
+    @Test
+    public void tellsWhenTheBackgroundProcessCannotStart() {
+        when(TmcUtil.startWarmUp(any(Path.class), anyListOf(String.class))).thenReturn(false);
+
+        app.run(new String[] {"warmup", "--background"});
+        io.assertContains("Can't warm up in the background");
+    }
+
+    @Test
+    public void warmsUpAfterDownloadOnlyWhenEnabled() {
+        List<Exercise> exercises = Collections.singletonList(new Exercise(EXERCISES.get(0)));
+
+        WarmupCommand.warmUpAfterDownload(ctx, courseDir, exercises);
+        verifyStatic(never());
+        TmcUtil.startWarmUp(any(Path.class), anyListOf(String.class));
+
+        properties.put(TmcUtil.WARMUP_AFTER_DOWNLOAD, "true");
+        WarmupCommand.warmUpAfterDownload(ctx, courseDir, exercises);
+        verifyStatic(times(1));
+        TmcUtil.startWarmUp(courseDir, Collections.singletonList(EXERCISES.get(0)));
+    }
+}
@@ -0,0 +1,100 @@
+package fi.helsinki.cs.tmc.cli.command.hidden;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+import fi.helsinki.cs.tmc.cli.Application;
+import fi.helsinki.cs.tmc.cli.backend.Settings;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.metrics.Metrics;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(SettingsIo.class)
+public class MetricsCommandTest {
+
+    private Application app;
+    private TestIo io;
+    private Path configRoot;
+
+    @Before
+    public void setUp() throws IOException {
+        configRoot = Files.createTempDirectory("tmc-metrics-test");
+        mockStatic(SettingsIo.class);
+        when(SettingsIo.getConfigDirectory()).thenReturn(configRoot);
+        when(SettingsIo.loadProperties()).thenReturn(new HashMap<>());
+
+        io = new TestIo();
+        app = new Application(new CliContext(io, null, new WorkDir(), new Settings(), null));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(configRoot.toFile());
+    }
+
+    private void saveMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.record("command.submit", System.nanoTime(), null);
+        metrics.record("command.submit", System.nanoTime(), "no_connection");
+        metrics.save(configRoot, LocalDate.now());
+    }
+
+    @Test
+    public void printsMessageWithoutMetrics() {
+        app.run(new String[] {"metrics"});
+        io.assertContains("No metrics have been recorded yet.");
+    }
+
+    @Test
+    public void printsTableOfOperations() {
+        saveMetrics();
+        app.run(new String[] {"metrics"});
+        io.assertContains("P99 MS");
+        io.assertContains("command.submit");
+        io.assertContains("Failures of command.submit: no_connection=1");
+    }
+
+    @Test
+    public void printsPrometheusFormat() {
+        saveMetrics();
+        app.run(new String[] {"metrics", "-p"});
+        io.assertContains(
+                "tmc_cli_operation_duration_seconds_count{operation=\"command.submit\"} 2");
+    }
+
+    @Test
+    public void writesPrometheusFile() throws IOException {
+        saveMetrics();
+        Path file = configRoot.resolve("tmc.prom");
+        app.run(new String[] {"metrics", "--output", file.toString()});
+        String text = new String(Files.readAllBytes(file), "UTF-8");
+        assertTrue(text.contains("reason=\"no_connection\"} 1"));
+    }
+
+    @Test
+    public void clearRemovesMetrics() {
+        saveMetrics();
+        app.run(new String[] {"metrics", "--clear"});
+        io.assertContains("Removed all the recorded metrics.");
+        assertFalse(Files.exists(configRoot.resolve(Metrics.METRICS_FILE)));
+    }
+}
@@ -28,7 +28,6 @@ public class PropertiesCommandTest {
         CliContext ctx = Mockito.spy(new CliContext(io, null, new WorkDir(), new Settings(), null));
         app = new Application(ctx);
 
-        when(ctx.saveProperties()).thenReturn(true);
         props = new HashMap<>();
         when(ctx.getProperties()).thenReturn(props);
     }
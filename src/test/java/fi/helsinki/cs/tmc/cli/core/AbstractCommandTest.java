@@ -1,14 +1,21 @@
 package fi.helsinki.cs.tmc.cli.core;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
 import fi.helsinki.cs.tmc.cli.backend.Settings;
 import fi.helsinki.cs.tmc.cli.io.TestIo;
 
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
+import fi.helsinki.cs.tmc.cli.metrics.OperationMetrics;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
 import org.junit.Test;
 
+import java.util.Map;
+
 public class AbstractCommandTest {
 
     private AbstractCommand emptyCommand;
@@ -48,6 +55,18 @@ public class AbstractCommandTest {
         }
     }
 
+    @Command(name = "failing", desc = "Description")
+    private class FailingCommand extends AbstractCommand {
+
+        @Override
+        public void run(CliContext context, CommandLine args) {
+            context.getMetrics().record("core.submit", System.nanoTime(), "http_failure");
+        }
+
+        @Override
+        public void getOptions(Options options) {}
+    }
+
     public AbstractCommandTest() {
         emptyCommand = new EmptyCommand();
         io = new TestIo();
@@ -89,4 +108,37 @@ public class AbstractCommandTest {
         usageCommand.runMethodPrintUsage(ctx);
         io.assertContains("tmc usage-command OPTION");
     }
+
+    @Test
+    public void executeRecordsCommandMetrics() {
+        emptyCommand.execute(ctx, new String[] {});
+        Map<String, OperationMetrics> session = ctx.getMetrics().getSession();
+        OperationMetrics metrics = session.get("command.empty");
+        assertNotNull(metrics);
+        assertEquals(1, metrics.getDurations().getCount());
+        assertEquals(0, metrics.getFailureCount());
+    }
+
+    @Test
+    public void executeRecordsFailureOfCoreOperation() {
+        ctx.getMetrics().record("core.listCourses", System.nanoTime(), "no_connection");
+        emptyCommand.execute(ctx, new String[] {});
+        OperationMetrics metrics = ctx.getMetrics().getSession().get("command.empty");
+        // failures before the command started don't count
+        assertEquals(0, metrics.getFailureCount());
+    }
+
+    @Test
+    public void commandFailsInMetricsIfCoreOperationFails() {
+        new FailingCommand().execute(ctx, new String[] {});
+        OperationMetrics metrics = ctx.getMetrics().getSession().get("command.failing");
+        assertEquals(1, metrics.getFailureCount());
+        assertEquals(Long.valueOf(1), metrics.getFailures().get("http_failure"));
+    }
+
+    @Test
+    public void helpIsNotRecordedInMetrics() {
+        emptyCommand.execute(ctx, new String[] {"-h"});
+        assertNull(ctx.getMetrics().getSession().get("command.empty"));
+    }
 }
@@ -1,6 +1,7 @@
 package fi.helsinki.cs.tmc.cli.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -48,6 +49,44 @@ public class CliProgressObserverTest {
         assertTrue("Prints the end of the progress bar", io.out().contains("]"));
     }
 
+    @Test
+    public void unchangedProgressBarIsNotRedrawn() {
+        CliProgressObserver progobs = new CliProgressObserver(io, Color.NONE, Color.NONE, 0);
+        progobs.progress(0, 0.5, "Hello, world!");
+        int length = io.out().length();
+        progobs.progress(0, 0.501, "Hello, world!");
+        assertEquals(length, io.out().length());
+    }
+
+    @Test
+    public void progressBarIsRedrawnWhenPercentageChanges() {
+        CliProgressObserver progobs = new CliProgressObserver(io, Color.NONE, Color.NONE, 0);
+        progobs.progress(0, 0.5, "Hello, world!");
+        progobs.progress(0, 0.51, "Hello, world!");
+        assertTrue(io.out().contains(" 51%["));
+    }
+
+    @Test
+    public void progressBarRedrawsAreRateLimited() {
+        CliProgressObserver progobs =
+                new CliProgressObserver(io, Color.NONE, Color.NONE, 3600 * 1000);
+        progobs.progress(0, 0.5, "Hello, world!");
+        progobs.progress(0, 0.6, "Hello, world!");
+        assertFalse(io.out().contains(" 60%["));
+        progobs.progress(0, 1.0, "Hello, world!");
+        assertTrue("Finished bar is always shown", io.out().contains("100%["));
+    }
+
+    @Test
+    public void newMessageIsAlwaysShown() {
+        CliProgressObserver progobs =
+                new CliProgressObserver(io, Color.NONE, Color.NONE, 3600 * 1000);
+        progobs.progress(0, 0.5, "Hello, world!");
+        progobs.progress(0, 0.6, "Goodbye!");
+        assertTrue(io.out().contains("Goodbye!"));
+        assertTrue(io.out().contains(" 60%["));
+    }
+
     @Test
     public void testResultBarWorks() {
         String string = CliProgressObserver.getPassedTestsBar(1, 2, Color.NONE, Color.NONE);
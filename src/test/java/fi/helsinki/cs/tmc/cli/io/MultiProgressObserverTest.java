@@ -0,0 +1,124 @@
+package fi.helsinki.cs.tmc.cli.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiProgressObserverTest {
+
+    private static final long NEVER = 3600 * 1000;
+
+    private TestIo io;
+
+    @Before
+    public void setUp() {
+        io = new TestIo();
+    }
+
+    @Test
+    public void appendsLineWhenMessageChanges() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, false, NEVER);
+        observer.progress(1, "Downloading foo");
+        observer.progress(2, 0.5, "Downloading bar");
+        observer.render();
+        io.assertContains("Downloading foo\n");
+        io.assertContains("Downloading bar\n");
+
+        int length = io.out().length();
+        observer.progress(1, "Downloading foo");
+        observer.progress(2, 0.7, "Downloading bar");
+        observer.render();
+        assertEquals(length, io.out().length());
+        observer.close();
+    }
+
+    @Test
+    public void appendsLineWhenTaskFinishes() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, false, NEVER);
+        observer.progress(1, "Downloading foo");
+        observer.end(1);
+        observer.render();
+        io.assertContains("Downloading foo (done)\n");
+        observer.close();
+    }
+
+    @Test
+    public void drawsBarForEveryTaskAndAggregateBar() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, true, NEVER);
+        observer.progress(1, 0.5, "Downloading foo");
+        observer.progress(2, 1.0, "Downloading bar");
+        observer.render();
+        io.assertContains(" 50%[");
+        io.assertContains("Downloading foo");
+        io.assertContains("100%[");
+        io.assertContains(" 75%[");
+        io.assertContains("0/2 done");
+        observer.close();
+    }
+
+    @Test
+    public void redrawsBlockInPlace() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, true, NEVER);
+        observer.progress(1, 0.5, "Downloading foo");
+        observer.progress(2, 0.5, "Downloading bar");
+        observer.render();
+        io.assertNotContains("\u001B[3A");
+        observer.end(2);
+        observer.render();
+        io.assertContains("\u001B[3A");
+        io.assertContains("1/2 done");
+        observer.close();
+    }
+
+    @Test
+    public void aggregateProgressCountsFinishedTasksAsDone() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, false, NEVER);
+        assertEquals(0.0, observer.getAggregateProgress(), 0.001);
+        observer.progress(1, 0.2, "foo");
+        observer.start(2);
+        observer.end(2);
+        assertEquals(0.6, observer.getAggregateProgress(), 0.001);
+        observer.close();
+    }
+
+    @Test
+    public void closePrintsSummary() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, false, NEVER);
+        observer.progress(1, "foo");
+        observer.end(1);
+        observer.progress(2, "bar");
+        observer.end(2);
+        observer.close();
+        io.assertContains("2/2 tasks finished in");
+    }
+
+    @Test
+    public void closeWithoutTasksPrintsNothing() {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, false, NEVER);
+        observer.close();
+        assertEquals("", io.out());
+    }
+
+    @Test
+    public void renderThreadDrawsFrames() throws InterruptedException {
+        MultiProgressObserver observer =
+                new MultiProgressObserver(io, Color.NONE, Color.NONE, false, 10);
+        observer.progress(1, "Downloading foo");
+        for (int i = 0; i < 200 && !io.out().contains("Downloading foo"); i++) {
+            Thread.sleep(10);
+        }
+        observer.close();
+        io.assertContains("Downloading foo\n");
+        assertFalse(io.out().contains("Downloading foo\nDownloading foo\n"));
+        io.assertContains("0/1 tasks finished");
+    }
+}
@@ -18,6 +18,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Console;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
@@ -47,27 +48,62 @@ public class TerminalIoTest {
     @Test
     public void printWord() {
         io.print("foo");
+        io.flush();
         assertTrue(os.toString().equals("foo"));
     }
 
     @Test
     public void printLineWithNewLine() {
         io.println("foo");
+        io.flush();
         assertTrue(os.toString().equals("foo\n"));
     }
 
     @Test
     public void printNull() {
         io.print(null);
+        io.flush();
         assertTrue(os.toString().equals("null"));
     }
 
     @Test
     public void printInteger() {
         io.print(5);
+        io.flush();
         assertTrue(os.toString().equals("5"));
     }
 
+    @Test
+    public void printIsBufferedUntilFlush() {
+        io.print("foo");
+        io.println("bar");
+        assertEquals("", os.toString());
+        io.flush();
+        assertEquals("foobar\n", os.toString());
+    }
+
+    @Test
+    public void printCharSequence() {
+        io.print(new StringBuilder("foo").append("bar"));
+        io.flush();
+        assertEquals("foobar", os.toString());
+    }
+
+    @Test
+    public void writeCharArray() throws IOException {
+        io.write("xfoox".toCharArray(), 1, 3);
+        io.flush();
+        assertEquals("foo", os.toString());
+    }
+
+    @Test
+    public void errorFlushesStandardOutput() {
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        io.print("foo");
+        io.error("bar");
+        assertEquals("foo", os.toString());
+    }
+
     @Test
     public void readLine() {
         writeString("test");
@@ -0,0 +1,103 @@
+package fi.helsinki.cs.tmc.cli.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+public class TerminalOutputTest {
+
+    private TerminalOutput output;
+    private ByteArrayOutputStream os;
+    private PrintStream originalOut;
+
+    @Before
+    public void setUp() {
+        originalOut = System.out;
+        os = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(os));
+        output = new TerminalOutput(8);
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void nothingIsWrittenBeforeFlush() {
+        output.write("abc");
+        assertEquals("", os.toString());
+        assertEquals(3, output.getBufferedCount());
+    }
+
+    @Test
+    public void flushWritesBufferedCharacters() {
+        output.write("abc");
+        output.write('d');
+        output.flush();
+        assertEquals("abcd", os.toString());
+        assertEquals(0, output.getBufferedCount());
+    }
+
+    @Test
+    public void fullBufferIsWrittenOut() {
+        output.write("abcdef");
+        output.write("ghij");
+        assertEquals("abcdefgh", os.toString());
+        assertEquals(2, output.getBufferedCount());
+    }
+
+    @Test
+    public void largeArrayIsWrittenDirectly() {
+        output.write("ab");
+        output.write("0123456789".toCharArray(), 0, 10);
+        assertEquals("ab0123456789", os.toString());
+        assertEquals(0, output.getBufferedCount());
+    }
+
+    @Test
+    public void writePartOfArray() {
+        output.write("xabcx".toCharArray(), 1, 3);
+        output.flush();
+        assertEquals("abc", os.toString());
+    }
+
+    @Test
+    public void writeAnyCharSequence() {
+        output.write(new StringBuilder("abc"));
+        output.write(CharBuffer.wrap("defghijkl"));
+        output.flush();
+        assertEquals("abcdefghijkl", os.toString());
+    }
+
+    @Test
+    public void writeUsesDefaultCharset() {
+        output.write("[█░]");
+        output.flush();
+        assertArrayEquals("[█░]".getBytes(Charset.defaultCharset()), os.toByteArray());
+    }
+
+    @Test
+    public void surrogatePairIsNotSplitWhenTheBufferFills() {
+        Charset utf8 = Charset.forName("UTF-8");
+        output = new TerminalOutput(8, utf8);
+        String text = "abcdefg\uD83D\uDE00hij\uD83D\uDE00";
+        output.write(text);
+        output.write('k');
+        output.write("0123456\uD83D".toCharArray(), 0, 8);
+        output.write('\uDE00');
+        output.write("\uD83D\uDE00012345678".toCharArray(), 0, 11);
+        output.flush();
+        assertEquals(
+                text + "k0123456\uD83D\uDE00\uD83D\uDE00012345678",
+                new String(os.toByteArray(), utf8));
+    }
+}
@@ -0,0 +1,74 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReturnsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) {
+            histogram.record(i);
+        }
+        assertEquals(25, histogram.getPercentile(50));
+        assertEquals(45, histogram.getPercentile(90));
+        assertEquals(50, histogram.getPercentile(100));
+        assertEquals(50, histogram.getMax());
+        assertEquals(1275, histogram.getSum());
+    }
+
+    @Test
+    public void largeValuesAreWithinFewPercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100L);
+        }
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue("p50 was " + p50, p50 >= 50000 && p50 <= 50000 * 1.04);
+        assertTrue("p99 was " + p99, p99 >= 99000 && p99 <= 99000 * 1.04);
+    }
+
+    @Test
+    public void bucketsCoverAllValues() {
+        for (long value : new long[] {0, 1, 63, 64, 65, 127, 128, 1000, 123456789L}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.highestValueOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void addCombinesHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(20);
+        second.record(30);
+        first.add(second);
+        assertEquals(3, first.getCount());
+        assertEquals(60, first.getSum());
+        assertEquals(30, first.getMax());
+        assertEquals(20, first.getPercentile(50));
+    }
+}
@@ -0,0 +1,137 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class MetricsTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2017, 5, 20);
+
+    private Path configRoot;
+    private Metrics metrics;
+
+    @Before
+    public void setUp() throws IOException {
+        configRoot = Files.createTempDirectory("tmc-metrics-test");
+        metrics = new Metrics();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(configRoot.toFile());
+    }
+
+    @Test
+    public void recordsDurationAndFailure() {
+        metrics.record("core.submit", System.nanoTime(), null);
+        metrics.record("core.submit", System.nanoTime(), "no_connection");
+
+        OperationMetrics submit = metrics.getSession().get("core.submit");
+        assertEquals(2, submit.getDurations().getCount());
+        assertEquals(1, submit.getFailureCount());
+        assertEquals(Long.valueOf(1), submit.getFailures().get("no_connection"));
+    }
+
+    @Test
+    public void takeLastFailureForgetsTheFailure() {
+        metrics.record("core.submit", System.nanoTime(), "http_failure");
+        assertEquals("http_failure", metrics.takeLastFailure());
+        assertNull(metrics.takeLastFailure());
+    }
+
+    @Test
+    public void loadReturnsEmptyHistoryWithoutFile() {
+        assertTrue(Metrics.load(configRoot).getTotals().isEmpty());
+    }
+
+    @Test
+    public void savedMetricsAreAddedToTheFile() {
+        metrics.record("command.submit", System.nanoTime(), null);
+        assertTrue(metrics.save(configRoot, TODAY));
+
+        Metrics other = new Metrics();
+        other.record("command.submit", System.nanoTime(), "show_to_user");
+        assertTrue(other.save(configRoot, TODAY));
+
+        Map<String, OperationMetrics> totals = Metrics.load(configRoot).getTotals();
+        OperationMetrics submit = totals.get("command.submit");
+        assertEquals(2, submit.getDurations().getCount());
+        assertEquals(1, submit.getFailureCount());
+    }
+
+    @Test
+    public void concurrentSavesKeepEachOthersMetrics() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Metrics session = new Metrics();
+            session.record("command.test", System.nanoTime(), null);
+            threads.add(new Thread(() -> session.save(configRoot, TODAY)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        OperationMetrics test = Metrics.load(configRoot).getTotals().get("command.test");
+        assertEquals(8, test.getDurations().getCount());
+    }
+
+    @Test
+    public void saveClearsTheSession() {
+        metrics.record("command.submit", System.nanoTime(), null);
+        metrics.save(configRoot, TODAY);
+        metrics.save(configRoot, TODAY);
+        assertTrue(metrics.getSession().isEmpty());
+        assertEquals(
+                1, Metrics.load(configRoot).getTotals().get("command.submit")
+                        .getDurations().getCount());
+    }
+
+    @Test
+    public void oldDaysAreRemoved() {
+        metrics.record("command.old", System.nanoTime(), null);
+        metrics.save(configRoot, TODAY.minusDays(Metrics.KEEP_DAYS));
+        metrics.record("command.new", System.nanoTime(), null);
+        metrics.save(configRoot, TODAY);
+
+        MetricsHistory history = Metrics.load(configRoot);
+        assertEquals(1, history.getDayCount());
+        assertFalse(history.getTotals().containsKey("command.old"));
+        assertTrue(history.getTotals().containsKey("command.new"));
+    }
+
+    @Test
+    public void corruptedFileIsIgnored() throws IOException {
+        Files.write(configRoot.resolve(Metrics.METRICS_FILE), "{not json".getBytes("UTF-8"));
+        assertTrue(Metrics.load(configRoot).getTotals().isEmpty());
+
+        metrics.record("command.submit", System.nanoTime(), null);
+        assertTrue(metrics.save(configRoot, TODAY));
+        assertEquals(1, Metrics.load(configRoot).getTotals().size());
+    }
+
+    @Test
+    public void clearRemovesTheFile() {
+        metrics.record("command.submit", System.nanoTime(), null);
+        metrics.save(configRoot, TODAY);
+        assertTrue(Metrics.clear(configRoot));
+        assertFalse(Files.exists(configRoot.resolve(Metrics.METRICS_FILE)));
+    }
+}
@@ -0,0 +1,43 @@
+package fi.helsinki.cs.tmc.cli.metrics;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class PrometheusFormatTest {
+
+    @Test
+    public void formatsSummaryAndFailures() {
+        OperationMetrics submit = new OperationMetrics();
+        submit.record(1500, null);
+        submit.record(500, "no_connection");
+        Map<String, OperationMetrics> operations = new TreeMap<>();
+        operations.put("command.submit", submit);
+
+        String text = PrometheusFormat.format(operations);
+        assertTrue(text.contains("# TYPE tmc_cli_operation_duration_seconds summary\n"));
+        assertTrue(text.contains(
+                "tmc_cli_operation_duration_seconds{operation=\"command.submit\","
+                        + "quantile=\"0.99\"} 1.500\n"));
+        assertTrue(text.contains(
+                "tmc_cli_operation_duration_seconds_sum{operation=\"command.submit\"} 2.000\n"));
+        assertTrue(text.contains(
+                "tmc_cli_operation_duration_seconds_count{operation=\"command.submit\"} 2\n"));
+        assertTrue(text.contains(
+                "tmc_cli_operation_failures_total{operation=\"command.submit\","
+                        + "reason=\"no_connection\"} 1\n"));
+    }
+
+    @Test
+    public void escapesLabelValues() {
+        Map<String, OperationMetrics> operations = new TreeMap<>();
+        operations.put("bad\"name", new OperationMetrics());
+        String text = PrometheusFormat.format(operations);
+        assertTrue(text.contains("operation=\"bad\\\"name\""));
+        assertFalse(text.contains("operation=\"bad\"name\""));
+    }
+}
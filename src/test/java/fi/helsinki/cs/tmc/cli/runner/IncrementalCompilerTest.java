@@ -0,0 +1,130 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+
+public class IncrementalCompilerTest {
+
+    private JavaExercise exercise;
+    private IncrementalCompiler compiler;
+    private Path output;
+
+    @Before
+    public void setUp() throws IOException {
+        exercise = new JavaExercise();
+        exercise.write(
+                "src/Calc.java", JavaExercise.calc("int add(int a, int b) { return a + b; }"));
+        exercise.write("src/Main.java", "public class Main { int x = new Calc().add(1, 2); }");
+        exercise.write("src/Other.java", "public class Other {}");
+        compiler = new IncrementalCompiler();
+        output = exercise.getRoot().resolve("build/classes");
+    }
+
+    @After
+    public void tearDown() {
+        exercise.delete();
+    }
+
+    private IncrementalCompiler.Result compile() throws IOException {
+        List<Path> sources = Collections.singletonList(exercise.getRoot().resolve("src"));
+        return compiler.compile(
+                sources, Collections.<Path>emptyList(), output, Collections.<String>emptySet());
+    }
+
+    private void age(String name) throws IOException {
+        Files.setLastModifiedTime(output.resolve(name), FileTime.fromMillis(1000));
+    }
+
+    private boolean isOld(String name) throws IOException {
+        return Files.getLastModifiedTime(output.resolve(name)).toMillis() == 1000;
+    }
+
+    @Test
+    public void firstCompilationCompilesEverything() throws IOException {
+        IncrementalCompiler.Result result = compile();
+
+        assertTrue(result.isSuccess());
+        assertNull(result.getChangedNames());
+        assertTrue(Files.exists(output.resolve("Calc.class")));
+        assertTrue(Files.exists(output.resolve("Other.class")));
+    }
+
+    @Test
+    public void unchangedSourcesAreNotCompiledAgain() throws IOException {
+        compile();
+        age("Calc.class");
+
+        IncrementalCompiler.Result result = compile();
+        assertTrue(result.isSuccess());
+        assertTrue(result.getChangedNames().isEmpty());
+        assertTrue(isOld("Calc.class"));
+    }
+
+    @Test
+    public void changedSourceIsCompiledWithItsUsers() throws IOException {
+        compile();
+        age("Calc.class");
+        age("Main.class");
+        age("Other.class");
+        exercise.write(
+                "src/Calc.java", JavaExercise.calc("int add(int a, int b) { return b + a; }"));
+
+        IncrementalCompiler.Result result = compile();
+        assertEquals(Collections.singleton("Calc"), result.getChangedNames());
+        assertFalse(isOld("Calc.class"));
+        assertFalse(isOld("Main.class"));
+        assertTrue(isOld("Other.class"));
+    }
+
+    @Test
+    public void removedSourceCompilesEverythingAgain() throws IOException {
+        compile();
+        Files.delete(exercise.getRoot().resolve("src/Other.java"));
+
+        IncrementalCompiler.Result result = compile();
+        assertNull(result.getChangedNames());
+        assertFalse(Files.exists(output.resolve("Other.class")));
+    }
+
+    @Test
+    public void compileErrorIsReportedUntilFixed() throws IOException {
+        compile();
+        exercise.write("src/Calc.java", JavaExercise.calc("int add(int a, int b) { return a +; }"));
+
+        IncrementalCompiler.Result result = compile();
+        assertFalse(result.isSuccess());
+        assertTrue(result.getDiagnostics().contains("Calc.java"));
+        assertFalse(compile().isSuccess());
+    }
+
+    @Test
+    public void testsUsingAChangedClassAreCompiledAfterAFailedTestCompilation()
+            throws IOException {
+        exercise.write("test/CalcTest.java", JavaExercise.calcTest());
+        JavaProject project = JavaProject.detect(exercise.getRoot());
+        assertTrue(compiler.compile(project).isSuccess());
+        exercise.write("src/Calc.java", JavaExercise.calc("int add(int a) { return a; }"));
+        exercise.write("src/Main.java", "public class Main { int x = new Calc().add(1); }");
+        exercise.write("test/OtherTest.java", "public class OtherTest { int x = ; }");
+        assertFalse(compiler.compile(project).isSuccess());
+
+        exercise.write("test/OtherTest.java", "public class OtherTest {}");
+        // CalcTest calls the removed method, so its old class file mustn't be kept
+        IncrementalCompiler.Result result = compiler.compile(project);
+        assertFalse(result.isSuccess());
+        assertTrue(result.getDiagnostics().contains("CalcTest.java"));
+    }
+}
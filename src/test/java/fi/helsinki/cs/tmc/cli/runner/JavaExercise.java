@@ -0,0 +1,83 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * An ant style Java exercise in a temporary directory, with the JUnit of the tests as its
+ * library.
+ */
+class JavaExercise {
+
+    private final Path root;
+    private long clock = System.currentTimeMillis() - 60 * 1000;
+
+    JavaExercise() throws IOException {
+        root = Files.createTempDirectory("tmc-java-exercise").resolve("calc");
+        Files.createDirectories(root.resolve("src"));
+        Files.createDirectories(root.resolve("test"));
+        Files.createDirectories(root.resolve("lib"));
+        Files.write(root.resolve("build.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        copyJar(org.junit.Test.class);
+        copyJar(org.hamcrest.Matcher.class);
+        write(
+                "test/fi/helsinki/cs/tmc/edutestutils/Points.java",
+                "package fi.helsinki.cs.tmc.edutestutils;\n"
+                        + "import java.lang.annotation.*;\n"
+                        + "@Retention(RetentionPolicy.RUNTIME)\n"
+                        + "public @interface Points { String value(); }\n");
+    }
+
+    private void copyJar(Class<?> type) throws IOException {
+        try {
+            Path jar = Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+            Files.copy(jar, root.resolve("lib").resolve(jar.getFileName()));
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Write the file with a modification time later than that of the previous file, so the
+     * changes are seen even on file systems with a coarse clock.
+     */
+    void write(String name, String content) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        clock += 2000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(clock));
+    }
+
+    void delete() {
+        FileUtils.deleteQuietly(root.getParent().toFile());
+    }
+
+    static String calc(String body) {
+        return "public class Calc {\n" + body + "\n}\n";
+    }
+
+    static String calcTest() {
+        return "import org.junit.Test;\n"
+                + "import static org.junit.Assert.assertEquals;\n"
+                + "import fi.helsinki.cs.tmc.edutestutils.Points;\n"
+                + "@Points(\"1\")\n"
+                + "public class CalcTest {\n"
+                + "    @Test @Points(\"1.1 1.2\")\n"
+                + "    public void adds() { assertEquals(3, new Calc().add(1, 2)); }\n"
+                + "    @Test\n"
+                + "    public void prints() { System.out.println(\"hello\"); }\n"
+                + "}\n";
+    }
+}
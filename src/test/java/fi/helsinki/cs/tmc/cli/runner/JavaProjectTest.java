@@ -0,0 +1,80 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+public class JavaProjectTest {
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("tmc-java-project");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private void write(String name, String content) throws IOException {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void antProjectHasItsLibrariesInTheClasspath() throws IOException {
+        write("build.xml", "<project/>");
+        write("src/Calc.java", "class Calc {}");
+        write("test/CalcTest.java", "class CalcTest {}");
+        write("lib/junit.jar", "");
+        write("lib/testrunner/runner.jar", "");
+
+        JavaProject project = JavaProject.detect(root);
+        assertEquals(Collections.singletonList(root.resolve("src")),
+                project.getSourceDirectories());
+        assertEquals(Collections.singletonList(root.resolve("test")),
+                project.getTestDirectories());
+        assertTrue(project.getClasspath().contains(root.resolve("lib/junit.jar")));
+        assertTrue(project.getClasspath().contains(root.resolve("lib/testrunner/runner.jar")));
+        assertTrue(project.getClassesDirectory().startsWith(root.resolve("build")));
+    }
+
+    @Test
+    public void mavenProjectUsesTheResolvedClasspath() throws IOException {
+        write("pom.xml", "<project/>");
+        write("src/main/java/Calc.java", "class Calc {}");
+        Files.setLastModifiedTime(root.resolve("pom.xml"), FileTime.fromMillis(1000));
+        write(
+                "target/" + JavaProject.MAVEN_CLASSPATH_FILE,
+                "/m2/junit.jar" + File.pathSeparator + "/m2/hamcrest.jar");
+
+        JavaProject project = JavaProject.detect(root);
+        assertEquals(2, project.getClasspath().size());
+        assertTrue(project.getTestDirectories().isEmpty());
+        assertTrue(project.getClassesDirectory().startsWith(root.resolve("target")));
+    }
+
+    @Test
+    public void otherProjectsAreNotSupported() throws IOException {
+        write("Makefile", "all:");
+        write("src/main.c", "int main() {}");
+
+        assertNull(JavaProject.detect(root));
+    }
+}
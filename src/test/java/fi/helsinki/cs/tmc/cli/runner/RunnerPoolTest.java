@@ -0,0 +1,121 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class RunnerPoolTest {
+
+    private static final long IDLE_TIMEOUT_MS = 10 * 1000;
+
+    private JavaExercise exercise;
+    private Path directory;
+    private RunnerPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        exercise = new JavaExercise();
+        exercise.write(
+                "src/Calc.java", JavaExercise.calc("int add(int a, int b) { return a + b; }"));
+        exercise.write("test/CalcTest.java", JavaExercise.calcTest());
+        directory = Files.createTempDirectory("tmc-runners");
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator
+                + "java";
+        pool =
+                new RunnerPool(
+                        directory,
+                        1,
+                        Arrays.asList(java, "-cp", System.getProperty("java.class.path")),
+                        IDLE_TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() {
+        // the runner exits when it has been idle for a while
+        exercise.delete();
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @Test
+    public void runnerIsStartedAndReused() throws IOException {
+        RunResult result = pool.run(JavaProject.detect(exercise.getRoot()), 60 * 1000);
+        assertEquals(RunResult.Status.PASSED, result.status);
+        RunnerState first = RunnerState.read(directory.resolve("runner-0.json"));
+
+        exercise.write("src/Calc.java", JavaExercise.calc("int add(int a, int b) { return 0; }"));
+        result = pool.run(JavaProject.detect(exercise.getRoot()), 60 * 1000);
+        assertEquals(RunResult.Status.TESTS_FAILED, result.status);
+        assertEquals(
+                first.getToken(),
+                RunnerState.read(directory.resolve("runner-0.json")).getToken());
+    }
+
+    @Test
+    public void testsRunInTheRootOfTheExercise() throws IOException {
+        exercise.write("data.txt", "3");
+        exercise.write(
+                "test/DataTest.java",
+                "import org.junit.Test;\n"
+                        + "import static org.junit.Assert.assertEquals;\n"
+                        + "public class DataTest {\n"
+                        + "    @Test\n"
+                        + "    public void reads() throws Exception {\n"
+                        + "        java.io.File file = new java.io.File(\"data.txt\");\n"
+                        + "        byte[] data = java.nio.file.Files.readAllBytes(file.toPath());\n"
+                        + "        assertEquals(\"3\", new String(data, \"UTF-8\"));\n"
+                        + "    }\n"
+                        + "}\n");
+
+        RunResult result = pool.run(JavaProject.detect(exercise.getRoot()), 60 * 1000);
+        assertEquals(RunResult.Status.PASSED, result.status);
+    }
+
+    @Test
+    public void runnerInAnotherExerciseIsReplaced() throws IOException {
+        pool.run(JavaProject.detect(exercise.getRoot()), 60 * 1000);
+        RunnerState first = RunnerState.read(directory.resolve("runner-0.json"));
+
+        JavaExercise other = new JavaExercise();
+        try {
+            other.write(
+                    "src/Calc.java", JavaExercise.calc("int add(int a, int b) { return 0; }"));
+            other.write("test/CalcTest.java", JavaExercise.calcTest());
+            RunResult result = pool.run(JavaProject.detect(other.getRoot()), 60 * 1000);
+            assertEquals(RunResult.Status.TESTS_FAILED, result.status);
+            RunnerState second = RunnerState.read(directory.resolve("runner-0.json"));
+            assertFalse(first.getToken().equals(second.getToken()));
+            assertTrue(second.isIn(other.getRoot()));
+        } finally {
+            other.delete();
+        }
+    }
+
+    @Test
+    public void busyPoolLeavesTheTestsToTmcLangs() throws IOException {
+        try (FileChannel channel =
+                        FileChannel.open(
+                                directory.resolve("runner-0.lock"),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE);
+                FileLock lock = channel.lock()) {
+            assertNull(pool.run(JavaProject.detect(exercise.getRoot()), 60 * 1000));
+        }
+    }
+}
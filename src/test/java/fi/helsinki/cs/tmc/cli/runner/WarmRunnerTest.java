@@ -0,0 +1,101 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.SpecialLogs;
+import fi.helsinki.cs.tmc.langs.domain.TestResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class WarmRunnerTest {
+
+    private JavaExercise exercise;
+    private WarmRunner runner;
+
+    @Before
+    public void setUp() throws IOException {
+        exercise = new JavaExercise();
+        exercise.write(
+                "src/Calc.java", JavaExercise.calc("int add(int a, int b) { return a + b; }"));
+        exercise.write("test/CalcTest.java", JavaExercise.calcTest());
+        runner = new WarmRunner(exercise.getRoot().resolve("state.json"), 1000, exercise.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        exercise.delete();
+    }
+
+    private RunResult test() throws IOException {
+        return runner.test(JavaProject.detect(exercise.getRoot())).toRunResult();
+    }
+
+    private static TestResult find(RunResult result, String name) {
+        for (TestResult test : result.testResults) {
+            if (test.getName().equals(name)) {
+                return test;
+            }
+        }
+        throw new AssertionError("No test " + name);
+    }
+
+    @Test
+    public void passingTestsHaveTheirPoints() throws IOException {
+        RunResult result = test();
+
+        assertEquals(RunResult.Status.PASSED, result.status);
+        assertEquals(2, result.testResults.size());
+        TestResult adds = find(result, "CalcTest adds");
+        assertTrue(adds.isSuccessful());
+        assertEquals(Arrays.asList("1", "1.1", "1.2"), adds.getPoints());
+        assertEquals(Arrays.asList("1"), find(result, "CalcTest prints").getPoints());
+    }
+
+    @Test
+    public void outputOfTheTestsIsCaptured() throws IOException {
+        RunResult result = test();
+
+        String output = new String(result.logs.get(SpecialLogs.STDOUT), StandardCharsets.UTF_8);
+        assertTrue(output.contains("hello"));
+    }
+
+    @Test
+    public void failingTestHasItsMessage() throws IOException {
+        test();
+        exercise.write("src/Calc.java", JavaExercise.calc("int add(int a, int b) { return a; }"));
+
+        RunResult result = test();
+        assertEquals(RunResult.Status.TESTS_FAILED, result.status);
+        TestResult adds = find(result, "CalcTest adds");
+        assertFalse(adds.isSuccessful());
+        assertTrue(adds.getMessage().contains("expected:<3> but was:<1>"));
+        assertTrue(find(result, "CalcTest prints").isSuccessful());
+    }
+
+    @Test
+    public void compileErrorFailsTheRun() throws IOException {
+        exercise.write("src/Calc.java", JavaExercise.calc("int add(int a, int b) { return; }"));
+
+        RunResult result = test();
+        assertEquals(RunResult.Status.COMPILE_FAILED, result.status);
+        assertTrue(result.logs.containsKey(SpecialLogs.COMPILER_OUTPUT));
+    }
+
+    @Test
+    public void projectInAnotherDirectoryIsNotTested() throws IOException {
+        runner = new WarmRunner(exercise.getRoot().resolve("state.json"), 1000, Paths.get("/"));
+
+        RunResponse response = runner.test(JavaProject.detect(exercise.getRoot()));
+        assertFalse(response.isSupported());
+    }
+}
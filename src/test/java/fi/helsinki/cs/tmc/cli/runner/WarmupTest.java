@@ -0,0 +1,159 @@
+package fi.helsinki.cs.tmc.cli.runner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class WarmupTest {
+
+    private static final String DEPENDENCIES =
+            "<dependencies><dependency><groupId>junit</groupId><artifactId>junit</artifactId>"
+                    + "<version>4.12</version></dependency></dependencies>";
+
+    private JavaExercise exercise;
+    private Path courseRoot;
+
+    @Before
+    public void setUp() throws IOException {
+        exercise = new JavaExercise();
+        exercise.write(
+                "src/Calc.java", JavaExercise.calc("int add(int a, int b) { return a + b; }"));
+        exercise.write("test/CalcTest.java", JavaExercise.calcTest());
+        courseRoot = Files.createTempDirectory("tmc-warmup");
+    }
+
+    @After
+    public void tearDown() {
+        exercise.delete();
+        FileUtils.deleteQuietly(courseRoot.toFile());
+    }
+
+    private Path mavenExercise(String name, String dependencies) throws IOException {
+        Path root = courseRoot.resolve(name);
+        Files.createDirectories(root.resolve("src/main/java"));
+        Path pom = root.resolve("pom.xml");
+        write(
+                pom,
+                "<project>\n  <artifactId>" + name + "</artifactId>\n  " + dependencies
+                        + "\n</project>");
+        Files.setLastModifiedTime(pom, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        return root;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void compilesTheExercisesForTheWarmRunners() throws IOException {
+        Warmup.Summary summary =
+                new Warmup(2, true).run(Collections.singletonList(exercise.getRoot()));
+
+        assertEquals(1, summary.getExerciseCount());
+        assertTrue(summary.isCompiling());
+        assertEquals(1, summary.getCompiledCount());
+        JavaProject project = JavaProject.detect(exercise.getRoot());
+        assertTrue(Files.exists(project.getTestClassesDirectory().resolve("CalcTest.class")));
+        // the runner of the first test run has nothing left to compile
+        assertEquals(
+                Collections.emptySet(),
+                new IncrementalCompiler().compile(project).getChangedNames());
+    }
+
+    @Test
+    public void listsTheExercisesThatDoNotCompile() throws IOException {
+        exercise.write("src/Calc.java", JavaExercise.calc("int add(int a, int b) { return"));
+
+        Warmup.Summary summary =
+                new Warmup(1, true).run(Collections.singletonList(exercise.getRoot()));
+        assertEquals(0, summary.getCompiledCount());
+        assertEquals(Collections.singletonList("calc"), summary.getNotCompiling());
+    }
+
+    @Test
+    public void compilesNothingWhenNotAsked() throws IOException {
+        Warmup.Summary summary =
+                new Warmup(1, false).run(Collections.singletonList(exercise.getRoot()));
+        assertEquals(1, summary.getExerciseCount());
+        assertFalse(summary.isCompiling());
+        assertFalse(Files.exists(JavaProject.detect(exercise.getRoot()).getClassesDirectory()));
+    }
+
+    @Test
+    public void skipsDirectoriesThatAreNotJavaExercises() throws IOException {
+        Path directory = courseRoot.resolve("c-exercise");
+        Files.createDirectories(directory.resolve("src"));
+        Warmup.Summary summary = new Warmup(1, true).run(Collections.singletonList(directory));
+        assertEquals(0, summary.getExerciseCount());
+        assertEquals(0, summary.getCompiledCount());
+    }
+
+    @Test
+    public void resolvesEachSetOfDependenciesOnce() throws IOException {
+        Path first = mavenExercise("first", DEPENDENCIES);
+        Path second = mavenExercise("second", DEPENDENCIES);
+        // resolved earlier, so mvn isn't needed
+        write(JavaProject.getMavenClasspathFile(first), "/repository/junit-4.12.jar");
+        write(JavaProject.getMavenPluginsFile(first), "");
+
+        Warmup.Summary summary = new Warmup(1, false).run(Arrays.asList(first, second));
+        assertEquals(2, summary.getExerciseCount());
+        assertEquals(1, summary.getDependencySetCount());
+        assertTrue(summary.getUnresolved().isEmpty());
+        assertTrue(JavaProject.isMavenClasspathResolved(second));
+        assertEquals(
+                JavaProject.resolveMavenClasspath(first),
+                JavaProject.resolveMavenClasspath(second));
+        assertTrue(JavaProject.isMavenPluginsResolved(second));
+    }
+
+    @Test
+    public void buildPluginsArePartOfTheDependencyKey() throws IOException {
+        Path first = mavenExercise("first", DEPENDENCIES);
+        Path other =
+                mavenExercise(
+                        "other",
+                        DEPENDENCIES
+                                + "<build><plugins><plugin><artifactId>maven-surefire-plugin"
+                                + "</artifactId></plugin></plugins></build>");
+
+        assertFalse(
+                Warmup.dependencyKey(first.resolve("pom.xml"))
+                        .equals(Warmup.dependencyKey(other.resolve("pom.xml"))));
+    }
+
+    @Test
+    public void dependencyKeyIgnoresTheNameOfTheProject() throws IOException {
+        Path first = mavenExercise("first", DEPENDENCIES);
+        Path second = mavenExercise("second", DEPENDENCIES);
+        Path other = mavenExercise("other", DEPENDENCIES.replace("4.12", "4.13"));
+
+        String key = Warmup.dependencyKey(first.resolve("pom.xml"));
+        assertEquals(key, Warmup.dependencyKey(second.resolve("pom.xml")));
+        assertFalse(key.equals(Warmup.dependencyKey(other.resolve("pom.xml"))));
+    }
+
+    @Test
+    public void unreadablePomHasAKeyOfItsOwn() throws IOException {
+        Path first = mavenExercise("first", "<dependencies>");
+        Path second = mavenExercise("second", "<dependencies>");
+
+        assertFalse(
+                Warmup.dependencyKey(first.resolve("pom.xml"))
+                        .equals(Warmup.dependencyKey(second.resolve("pom.xml"))));
+    }
+}
@@ -0,0 +1,85 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+
+import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ExerciseDiffTest {
+
+    private static Exercise exercise(String name, String checksum) {
+        Exercise exercise = new Exercise(name, "course");
+        exercise.setChecksum(checksum);
+        return exercise;
+    }
+
+    private static List<String> names(List<Exercise> exercises) {
+        List<String> names = new ArrayList<>();
+        for (Exercise exercise : exercises) {
+            names.add(exercise.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void findsNewChangedAndRemovedExercises() {
+        List<Exercise> local =
+                Arrays.asList(
+                        exercise("same", "1"), exercise("changed", "2"), exercise("gone", "3"));
+        List<Exercise> server =
+                Arrays.asList(
+                        exercise("same", "1"), exercise("changed", "4"), exercise("new", "5"));
+
+        ExerciseDiff diff = ExerciseDiff.compute(local, server);
+        assertEquals(Collections.singletonList("new"), names(diff.getNewExercises()));
+        assertEquals(Collections.singletonList("changed"), names(diff.getChangedExercises()));
+        assertEquals(Collections.singletonList("gone"), names(diff.getRemovedExercises()));
+        assertFalse(diff.isEmpty());
+    }
+
+    @Test
+    public void sameChecksumsMakeEmptyDiff() {
+        List<Exercise> local = Arrays.asList(exercise("a", "1"), exercise("b", "2"));
+        List<Exercise> server = Arrays.asList(exercise("b", "2"), exercise("a", "1"));
+        assertTrue(ExerciseDiff.compute(local, server).isEmpty());
+    }
+
+    @Test
+    public void lockedExercisesAreNotNew() {
+        Exercise locked = exercise("locked", "1");
+        locked.setLocked(true);
+        ExerciseDiff diff =
+                ExerciseDiff.compute(new ArrayList<>(), Collections.singletonList(locked));
+        assertTrue(diff.getNewExercises().isEmpty());
+    }
+
+    @Test
+    public void applyKeepsOrderAndAddsNewToEnd() {
+        Course course = new Course("course");
+        course.setExercises(
+                new ArrayList<>(
+                        Arrays.asList(
+                                exercise("b", "1"), exercise("gone", "2"), exercise("a", "3"))));
+        CourseInfo info = new CourseInfo(new Account("user"), course);
+        Exercise completed = exercise("a", "3");
+        completed.setCompleted(true);
+        List<Exercise> server = Arrays.asList(exercise("new", "4"), completed, exercise("b", "5"));
+
+        ExerciseDiff.compute(info.getExercises(), server).applyTo(info);
+        assertEquals(Arrays.asList("b", "a", "new"), info.getExerciseNames());
+        assertEquals("5", info.getExercise("b").getChecksum());
+        assertTrue(info.getExercise("a").isCompleted());
+    }
+}
@@ -1,14 +1,22 @@
 package fi.helsinki.cs.tmc.cli.shared;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
 import fi.helsinki.cs.tmc.cli.analytics.AnalyticsFacade;
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
 import fi.helsinki.cs.tmc.cli.backend.Settings;
 import fi.helsinki.cs.tmc.cli.backend.TmcUtil;
 import fi.helsinki.cs.tmc.cli.core.CliContext;
@@ -16,7 +24,6 @@ import fi.helsinki.cs.tmc.cli.io.TestIo;
 
 import fi.helsinki.cs.tmc.cli.io.WorkDir;
 import fi.helsinki.cs.tmc.core.TmcCore;
-import fi.helsinki.cs.tmc.core.commands.GetUpdatableExercises.UpdateResult;
 import fi.helsinki.cs.tmc.core.domain.Course;
 import fi.helsinki.cs.tmc.core.domain.Exercise;
 
@@ -29,12 +36,15 @@ import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest(TmcUtil.class)
+@PrepareForTest({TmcUtil.class, CourseInfoIo.class})
 public class ExerciseUpdaterTest {
 
     private CliContext ctx;
@@ -82,17 +92,72 @@ public class ExerciseUpdaterTest {
         assertTrue(exerciseUpdater.getNewAndUpdatedExercises().contains(updatedExercises.get(0)));
     }
 
+    private static Exercise exercise(String name, String checksum) {
+        Exercise exercise = new Exercise(name, "course");
+        exercise.setChecksum(checksum);
+        return exercise;
+    }
+
+    private static Course course(Exercise... exercises) {
+        Course course = new Course("course");
+        course.setExercises(new ArrayList<>(Arrays.asList(exercises)));
+        return course;
+    }
+
     @Test
-    public void worksWithActualResultObject() {
-        UpdateResult result = mock(UpdateResult.class);
-        List<Exercise> exercises = new ArrayList<>();
-        exercises.add(new Exercise());
+    public void comparesChecksumsToCourseDetails() {
+        Course local = course(exercise("same", "1"), exercise("changed", "2"));
+        Course server =
+                course(exercise("same", "1"), exercise("changed", "3"), exercise("new", "4"));
+        when(TmcUtil.getCourseDetails(eq(ctx), any(Course.class))).thenReturn(server);
 
-        when(result.getNewExercises()).thenReturn(exercises);
-        when(result.getUpdatedExercises()).thenReturn(exercises);
-        when(TmcUtil.getUpdatableExercises(eq(ctx), any(Course.class))).thenReturn(result);
+        exerciseUpdater = new ExerciseUpdater(ctx, local);
+        assertTrue(exerciseUpdater.updatesAvailable());
+        assertEquals("new", exerciseUpdater.getNewExercises().get(0).getName());
+        assertEquals(1, exerciseUpdater.getNewExercises().size());
+        assertEquals("changed", exerciseUpdater.getUpdatedExercises().get(0).getName());
+        assertEquals(1, exerciseUpdater.getUpdatedExercises().size());
+    }
 
-        exerciseUpdater = new ExerciseUpdater(ctx, new Course());
+    @Test
+    public void noUpdatesIfChecksumsMatch() {
+        Course local = course(exercise("same", "1"));
+        when(TmcUtil.getCourseDetails(eq(ctx), any(Course.class)))
+                .thenReturn(course(exercise("same", "1")));
+
+        exerciseUpdater = new ExerciseUpdater(ctx, local);
+        assertFalse(exerciseUpdater.updatesAvailable());
+    }
+
+    @Test
+    public void noUpdatesIfRequestFails() {
+        when(TmcUtil.getCourseDetails(eq(ctx), any(Course.class))).thenReturn(null);
+
+        exerciseUpdater = new ExerciseUpdater(ctx, course(exercise("same", "1")));
+        assertFalse(exerciseUpdater.updatesAvailable());
+    }
+
+    @Test
+    public void courseJsonIsPatchedWithoutFetchingAgain() {
+        Course local = course(exercise("removed", "1"), exercise("changed", "2"));
+        Course server = course(exercise("changed", "3"), exercise("new", "4"));
+        when(TmcUtil.getCourseDetails(eq(ctx), any(Course.class))).thenReturn(server);
+        mockStatic(CourseInfoIo.class);
+        when(CourseInfoIo.save(any(CourseInfo.class), any(Path.class))).thenReturn(true);
+        CourseInfo info = new CourseInfo(new Account("user"), local);
+        CourseRegistry registry = mock(CourseRegistry.class);
+        ctx.setCourseRegistry(registry);
+
+        exerciseUpdater = new ExerciseUpdater(ctx, local);
         assertTrue(exerciseUpdater.updatesAvailable());
+        Path courseDirectory = Paths.get("course");
+        assertTrue(
+                exerciseUpdater.updateCourseJson(info, courseDirectory.resolve(".tmc.json")));
+        verify(registry).register(info, courseDirectory);
+
+        assertEquals(Arrays.asList("changed", "new"), info.getExerciseNames());
+        assertEquals("3", info.getExercise("changed").getChecksum());
+        verifyStatic(times(1));
+        TmcUtil.getCourseDetails(eq(ctx), any(Course.class));
     }
 }
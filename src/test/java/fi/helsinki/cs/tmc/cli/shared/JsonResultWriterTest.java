@@ -0,0 +1,180 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+
+import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.Exercise;
+import fi.helsinki.cs.tmc.core.domain.submission.SubmissionResult;
+import fi.helsinki.cs.tmc.core.domain.submission.ValidationErrorImpl;
+import fi.helsinki.cs.tmc.core.domain.submission.ValidationResultImpl;
+import fi.helsinki.cs.tmc.langs.abstraction.Strategy;
+import fi.helsinki.cs.tmc.langs.abstraction.ValidationError;
+import fi.helsinki.cs.tmc.langs.domain.RunResult;
+import fi.helsinki.cs.tmc.langs.domain.TestResult;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonResultWriterTest {
+
+    private TestIo io;
+    private JsonResultWriter writer;
+
+    @Before
+    public void setUp() {
+        io = new TestIo();
+        writer = new JsonResultWriter(io, "test");
+    }
+
+    private List<JsonObject> events() {
+        String[] lines = io.out().split("\n");
+        JsonObject[] events = new JsonObject[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            events[i] = new JsonParser().parse(lines[i]).getAsJsonObject();
+        }
+        return Arrays.asList(events);
+    }
+
+    @Test
+    public void writesOneEventPerTestCaseAndExercise() {
+        ImmutableList<TestResult> testResults =
+                ImmutableList.of(
+                        new TestResult("test1", false, "Not good."),
+                        new TestResult("test2", true, "Was good."));
+        RunResult runResult =
+                new RunResult(
+                        RunResult.Status.TESTS_FAILED,
+                        testResults,
+                        ImmutableMap.<String, byte[]>of());
+
+        assertFalse(writer.writeLocalTestResult("ex", runResult, null, 42));
+
+        List<JsonObject> events = events();
+        assertEquals(3, events.size());
+        assertEquals("test_case", events.get(0).get("event").getAsString());
+        assertEquals("test1", events.get(0).get("name").getAsString());
+        assertFalse(events.get(0).get("passed").getAsBoolean());
+        assertEquals("Not good.", events.get(0).get("message").getAsString());
+        assertFalse(events.get(1).has("message"));
+
+        JsonObject result = events.get(2);
+        assertEquals("exercise_result", result.get("event").getAsString());
+        assertEquals("test", result.get("command").getAsString());
+        assertEquals("tests_failed", result.get("status").getAsString());
+        assertEquals(1, result.get("passed_tests").getAsInt());
+        assertEquals(2, result.get("total_tests").getAsInt());
+        assertEquals(42, result.get("time_ms").getAsLong());
+    }
+
+    @Test
+    public void writesValidationErrors() {
+        RunResult runResult =
+                new RunResult(
+                        RunResult.Status.PASSED,
+                        ImmutableList.<TestResult>of(),
+                        ImmutableMap.<String, byte[]>of());
+        ValidationResultImpl valResult = new ValidationResultImpl();
+        ValidationErrorImpl validationError = new ValidationErrorImpl();
+        validationError.setLine(2);
+        validationError.setMessage("Bad indentation");
+        Map<File, List<ValidationError>> errors = new HashMap<>();
+        errors.put(new File("Main.java"), Arrays.<ValidationError>asList(validationError));
+        valResult.setValidationErrors(errors);
+        valResult.setStrategy(Strategy.FAIL);
+
+        assertFalse(writer.writeLocalTestResult("ex", runResult, valResult, 0));
+
+        JsonObject result = events().get(0);
+        JsonObject error = result.getAsJsonArray("validation_errors").get(0).getAsJsonObject();
+        assertEquals("Main.java", error.get("file").getAsString());
+        assertEquals("Bad indentation", error.get("message").getAsString());
+        assertEquals(1, result.get("total_tests").getAsInt());
+    }
+
+    @Test
+    public void writesSubmissionResult() {
+        SubmissionResult result = mock(SubmissionResult.class);
+        when(result.getStatus()).thenReturn(SubmissionResult.Status.OK);
+        when(result.getTestCases())
+                .thenReturn(ImmutableList.of(new TestResult("test1", true, "")));
+        when(result.getPoints()).thenReturn(Arrays.asList("1.1", "1.2"));
+
+        assertTrue(writer.writeSubmissionResult("ex", result, 1000));
+
+        JsonObject event = events().get(1);
+        assertEquals("ok", event.get("status").getAsString());
+        assertTrue(event.get("passed").getAsBoolean());
+        assertEquals("1.2", event.getAsJsonArray("points").get(1).getAsString());
+    }
+
+    @Test
+    public void summaryCountsExercises() {
+        SubmissionResult result = mock(SubmissionResult.class);
+        when(result.getStatus()).thenReturn(SubmissionResult.Status.OK);
+        writer.writeSubmissionResult("ex1", result, 0);
+        writer.writeError("ex2", "Submission failed.");
+        writer.writeSummary();
+
+        List<JsonObject> events = events();
+        assertEquals("error", events.get(1).get("event").getAsString());
+        JsonObject summary = events.get(2);
+        assertEquals(1, summary.get("passed_exercises").getAsInt());
+        assertEquals(2, summary.get("total_exercises").getAsInt());
+    }
+
+    @Test
+    public void skippedExercisesAreNotCounted() {
+        writer.writeSkipped("ex1", "unchanged");
+        writer.writeSummary();
+
+        List<JsonObject> events = events();
+        assertEquals("skipped", events.get(0).get("event").getAsString());
+        assertEquals("ex1", events.get(0).get("exercise").getAsString());
+        assertEquals("unchanged", events.get(0).get("reason").getAsString());
+        assertEquals(0, events.get(1).get("total_exercises").getAsInt());
+    }
+
+    @Test
+    public void writesSubmittedExercise() {
+        writer.writeSubmitted("ex1", "https://tmc.example.com/submissions/1");
+
+        JsonObject event = events().get(0);
+        assertEquals("submitted", event.get("event").getAsString());
+        assertEquals(
+                "https://tmc.example.com/submissions/1", event.get("submission_url").getAsString());
+    }
+
+    @Test
+    public void writesCourseAndExercises() {
+        Exercise exercise = new Exercise("first");
+        exercise.setAttempted(true);
+        Course course = new Course("test-course");
+        course.setExercises(Arrays.asList(exercise));
+
+        writer.writeCourse(course);
+        writer.writeExercise("test-course", exercise);
+
+        List<JsonObject> events = events();
+        assertEquals("course", events.get(0).get("event").getAsString());
+        assertEquals(1, events.get(0).get("exercises").getAsInt());
+        assertEquals("first", events.get(1).get("name").getAsString());
+        assertEquals("attempted", events.get(1).get("status").getAsString());
+    }
+}
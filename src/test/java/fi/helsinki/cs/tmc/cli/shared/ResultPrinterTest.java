@@ -1,8 +1,10 @@
 package fi.helsinki.cs.tmc.cli.shared;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import fi.helsinki.cs.tmc.cli.backend.SubmissionStatus;
 import fi.helsinki.cs.tmc.cli.io.Color;
 import fi.helsinki.cs.tmc.cli.io.TestIo;
 
@@ -51,6 +53,35 @@ public class ResultPrinterTest {
         io.assertEquals("");
     }
 
+    @Test
+    public void queueStatusIsPrintedOnlyWhenItChanges() {
+        SubmissionResult processing = new SubmissionResult();
+        processing.setStatus(SubmissionResult.Status.PROCESSING);
+        printer.printQueueStatus(new SubmissionStatus(processing, "created", 3, 10, -1));
+        printer.printQueueStatus(new SubmissionStatus(processing, "created", 3, 10, -1));
+        printer.printQueueStatus(
+                new SubmissionStatus(processing, "processing_on_sandbox", 0, 8, -1));
+
+        String out = io.out();
+        String queued = "In the queue, 3 submissions before this one (10 waiting)";
+        assertEquals(out.indexOf(queued), out.lastIndexOf(queued));
+        io.assertContains(queued);
+        io.assertContains("Running the tests on the server");
+    }
+
+    @Test
+    public void queueMessageWithoutQueueInformation() {
+        SubmissionResult processing = new SubmissionResult();
+        processing.setStatus(SubmissionResult.Status.PROCESSING);
+        assertEquals(
+                "Processing",
+                ResultPrinter.getQueueMessage(new SubmissionStatus(processing, null, -1, -1, -1)));
+        assertEquals(
+                "Next in the queue",
+                ResultPrinter.getQueueMessage(
+                        new SubmissionStatus(processing, "created", 0, 1, -1)));
+    }
+
     @Test
     public void printSubmissionResultWorksIfAllTestsPass() {
         when(mockSubResult.getStatus()).thenReturn(SubmissionResult.Status.OK);
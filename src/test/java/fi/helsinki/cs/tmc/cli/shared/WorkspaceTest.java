@@ -0,0 +1,218 @@
+package fi.helsinki.cs.tmc.cli.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.AccountList;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfo;
+import fi.helsinki.cs.tmc.cli.backend.CourseInfoIo;
+import fi.helsinki.cs.tmc.cli.backend.CourseRegistry;
+import fi.helsinki.cs.tmc.cli.backend.Settings;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+import fi.helsinki.cs.tmc.cli.core.CliContext;
+import fi.helsinki.cs.tmc.cli.io.TestIo;
+import fi.helsinki.cs.tmc.cli.io.WorkDir;
+
+import fi.helsinki.cs.tmc.core.domain.Course;
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(SettingsIo.class)
+public class WorkspaceTest {
+
+    private Path root;
+    private TestIo io;
+    private CliContext ctx;
+    private CourseRegistry registry;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("tmc-workspace-test");
+        mockStatic(SettingsIo.class);
+        when(SettingsIo.loadProperties()).thenReturn(new HashMap<>());
+        AccountList accounts = new AccountList();
+        accounts.addAccount(new Account("student"));
+        when(SettingsIo.loadAccountList()).thenReturn(accounts);
+
+        io = new TestIo();
+        ctx = new CliContext(io, null, new WorkDir(root), new Settings(), null);
+        // hidden, so the walk doesn't look into it
+        registry = new CourseRegistry(root.resolve(".config"));
+        ctx.setCourseRegistry(registry);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    private Path createCourse(String path, String username) {
+        Path directory = root.resolve(path);
+        Course course = new Course(directory.getFileName().toString());
+        CourseInfoIo.save(
+                new CourseInfo(new Account(username), course),
+                directory.resolve(CourseInfoIo.COURSE_CONFIG));
+        return directory;
+    }
+
+    @Test
+    public void findsCoursesAtDifferentDepths() {
+        Path first = createCourse("first", "student");
+        Path second = createCourse("staff/2017/second", "student");
+        createCourse("a/b/c/d/too-deep", "student");
+
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+        assertEquals(Arrays.asList(first, second), workspace.getCourseDirectories());
+    }
+
+    @Test
+    public void doesNotLookInsideCoursesOrHiddenDirectories() {
+        Path course = createCourse("course", "student");
+        createCourse("course/nested", "student");
+        createCourse(".trash/old", "student");
+
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+        assertEquals(Arrays.asList(course), workspace.getCourseDirectories());
+    }
+
+    @Test
+    public void usesTheCourseAroundTheWorkingDirectory() throws IOException {
+        Path course = createCourse("course", "student");
+        Files.createDirectories(course.resolve("exercise"));
+
+        Workspace workspace =
+                Workspace.scan(ctx.forWorkDir(new WorkDir(course.resolve("exercise"))));
+        assertEquals(Arrays.asList(course), workspace.getCourseDirectories());
+    }
+
+    @Test
+    public void includesRegisteredCoursesThatAreTooDeep() {
+        Path shallow = createCourse("shallow", "student");
+        Path deep = createCourse("a/b/c/d/deep", "student");
+        registry.register(new CourseInfo(new Account("student"), new Course("deep")), deep);
+
+        Workspace workspace = Workspace.scan(ctx);
+        assertEquals(Arrays.asList(deep, shallow), workspace.getCourseDirectories());
+    }
+
+    @Test
+    public void runsTaskInEveryCourse() {
+        createCourse("first", "student");
+        createCourse("second", "student");
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+
+        List<Workspace.Result<String>> results =
+                workspace.run(
+                        ctx,
+                        courseContext -> courseContext.getCourseInfo().getCourseName());
+        assertEquals(2, results.size());
+        assertEquals("first", results.get(0).getValue());
+        assertEquals("second", results.get(1).getValue());
+
+        workspace.printResults(io, results, name -> "done " + name);
+        io.assertContains("first: done first");
+        io.assertContains("2 courses, 0 failed");
+    }
+
+    @Test
+    public void reportsFailuresAndUnknownAccounts() {
+        createCourse("failing", "student");
+        createCourse("other", "stranger");
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+
+        List<Workspace.Result<String>> results =
+                workspace.run(
+                        ctx,
+                        courseContext -> {
+                            throw new IOException("Broken course");
+                        });
+        assertFalse(results.get(0).isSuccess());
+        assertEquals("Broken course", results.get(0).getError());
+        assertEquals("Not logged in as stranger", results.get(1).getError());
+
+        workspace.printResults(io, results, name -> name);
+        io.assertContains("2 courses, 2 failed");
+    }
+
+    @Test
+    public void eachCourseIsATaskOfTheObserver() {
+        createCourse("failing", "student");
+        createCourse("staff/passing", "student");
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+        ProgressObserver observer = mock(ProgressObserver.class);
+
+        workspace.run(
+                ctx,
+                courseContext -> {
+                    if (courseContext.getCourseInfo().getCourseName().equals("failing")) {
+                        throw new IOException("Broken course");
+                    }
+                    return null;
+                },
+                observer);
+        verify(observer).progress(0, 0.0, "failing");
+        verify(observer).progress(1, 0.0, Paths.get("staff", "passing").toString());
+        verify(observer).end(1);
+        verify(observer, never()).end(0);
+    }
+
+    @Test
+    public void oneAtATimeRunsTheCoursesOneAfterAnother() {
+        createCourse("first", "student");
+        createCourse("second", "student");
+        createCourse("third", "student");
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<Workspace.Result<String>> results =
+                workspace.run(
+                        ctx,
+                        courseContext -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            Thread.sleep(50);
+                            running.decrementAndGet();
+                            return "done";
+                        },
+                        ProgressObserver.NULL_OBSERVER,
+                        Workspace.ONE_AT_A_TIME);
+        assertEquals(3, results.size());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void courseContextHasCourseAsWorkingDirectory() {
+        Path course = createCourse("course", "student");
+        Workspace workspace = Workspace.scan(root, Workspace.MAX_DEPTH);
+
+        List<Workspace.Result<Path>> results =
+                workspace.run(ctx, courseContext -> courseContext.getWorkDir().getConfigFile());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(course.resolve(CourseInfoIo.COURSE_CONFIG), results.get(0).getValue());
+    }
+}
@@ -0,0 +1,257 @@
+package fi.helsinki.cs.tmc.cli.stubserver;
+
+import fi.helsinki.cs.tmc.cli.backend.Account;
+import fi.helsinki.cs.tmc.cli.backend.AccountList;
+import fi.helsinki.cs.tmc.cli.backend.SettingsIo;
+
+import com.google.common.base.Optional;
+import fi.helsinki.cs.tmc.core.domain.OauthCredentials;
+import fi.helsinki.cs.tmc.core.domain.Organization;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many concurrent tmc-cli processes against a {@link StubTmcServer} and prints the
+ * latency percentiles of every command.
+ *
+ * <p>Every client gets its own configuration directory and course directory, so that the
+ * clients only share the server. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=fi.helsinki.cs.tmc.cli.stubserver.LoadTestDriver -Dexec.args="..."}.
+ */
+public class LoadTestDriver {
+
+    private static final String USAGE = "LoadTestDriver [options] JAR-OR-NATIVE-BINARY";
+
+    private final List<String> executable;
+    private final int clients;
+    private final int rounds;
+    private final StubTmcServer server;
+    private final Map<String, List<Long>> latencies;
+    private final Map<String, Integer> failures;
+
+    public LoadTestDriver(List<String> executable, int clients, int rounds, StubTmcServer server) {
+        this.executable = executable;
+        this.clients = clients;
+        this.rounds = rounds;
+        this.server = server;
+        this.latencies = new LinkedHashMap<>();
+        this.failures = new LinkedHashMap<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("c", "clients", true, "Concurrent clients (default 8)");
+        options.addOption("r", "rounds", true, "Rounds per client (default 3)");
+        options.addOption("l", "latency", true, "Server latency in ms (default 20)");
+        options.addOption("j", "jitter", true, "Server latency jitter in ms (default 20)");
+        options.addOption("e", "error-rate", true, "Share of failing requests (default 0)");
+        options.addOption("x", "exercises", true, "Exercises per course (default 200)");
+        options.addOption("z", "zip-size", true, "Padding bytes in every zip (default 0)");
+        options.addOption("h", "help", false, "Show this help");
+
+        CommandLine line;
+        try {
+            line = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp(USAGE, options);
+            return;
+        }
+        if (line.hasOption("h") || line.getArgs().length != 1) {
+            new HelpFormatter().printHelp(USAGE, options);
+            return;
+        }
+
+        String target = new File(line.getArgs()[0]).getAbsolutePath();
+        List<String> executable;
+        if (target.endsWith(".jar")) {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            executable = Arrays.asList(java, "-jar", target);
+        } else {
+            executable = Collections.singletonList(target);
+        }
+
+        StubTmcServer server =
+                new StubTmcServer()
+                        .setCourses(3, intOption(line, "x", 200))
+                        .setLatency(intOption(line, "l", 20), intOption(line, "j", 20))
+                        .setErrorRate(Double.parseDouble(line.getOptionValue("e", "0")))
+                        .setZipPaddingBytes(intOption(line, "z", 0));
+        server.start();
+        try {
+            LoadTestDriver driver =
+                    new LoadTestDriver(
+                            executable, intOption(line, "c", 8), intOption(line, "r", 3), server);
+            driver.run();
+            driver.printReport();
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void run() throws Exception {
+        Path root = Files.createTempDirectory("tmc-load-test");
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                Path clientDir = root.resolve("client-" + i);
+                futures.add(executor.submit(() -> {
+                    runClient(clientDir);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+
+    private void runClient(Path clientDir) throws IOException, InterruptedException {
+        Path configHome = clientDir.resolve("config");
+        writeAccount(configHome.resolve(SettingsIo.CONFIG_DIR));
+
+        String course = StubTmcServer.getCourseName(1);
+        String exercise = StubTmcServer.getExerciseName(0);
+        for (int round = 0; round < rounds; round++) {
+            Path workDir = Files.createDirectories(clientDir.resolve("round-" + round));
+            Path courseDir = workDir.resolve(course);
+
+            runCommand("courses", configHome, workDir, "courses");
+            runCommand("exercises", configHome, workDir, "exercises", "-n", "-i", course);
+            runCommand("info", configHome, workDir, "info", "-i", course);
+            runCommand("download", configHome, workDir, "download", "-a", course);
+            if (Files.isDirectory(courseDir)) {
+                runCommand("submit", configHome, courseDir, "submit", exercise);
+            } else {
+                recordFailure("submit");
+            }
+        }
+    }
+
+    private void runCommand(String name, Path configHome, Path workDir, String... args)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(executable);
+        // -d disables the auto-update check
+        command.add("-d");
+        command.addAll(Arrays.asList(args));
+
+        File log = workDir.resolve(name + ".log").toFile();
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(workDir.toFile());
+        builder.environment().put("XDG_CONFIG_HOME", configHome.toString());
+        builder.environment().put("TMC_NO_NATIVE", "1");
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(log);
+        builder.redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")));
+
+        long start = System.nanoTime();
+        int exitCode = builder.start().waitFor();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        String output = new String(Files.readAllBytes(log.toPath()), Charset.defaultCharset());
+        boolean failed = exitCode != 0 || output.contains("Failed") || output.contains("failed");
+        synchronized (this) {
+            latencies.computeIfAbsent(name, key -> new ArrayList<>()).add(elapsed);
+        }
+        if (failed) {
+            recordFailure(name);
+        }
+    }
+
+    private synchronized void recordFailure(String name) {
+        failures.merge(name, 1, Integer::sum);
+    }
+
+    private void writeAccount(Path configDir) throws IOException {
+        Files.createDirectories(configDir);
+        Account account = new Account(StubTmcServer.USERNAME);
+        account.setServerAddress(server.getAddress());
+        account.setOauthCredentials(
+                Optional.of(
+                        new OauthCredentials(
+                                StubTmcServer.APPLICATION_ID, StubTmcServer.APPLICATION_SECRET)));
+        account.setOauthToken(Optional.of(StubTmcServer.ACCESS_TOKEN));
+        account.setOrganization(
+                Optional.of(
+                        new Organization(
+                                "Stub organization",
+                                "",
+                                StubTmcServer.ORGANIZATION_SLUG,
+                                "",
+                                false)));
+        AccountList list = new AccountList();
+        list.addAccount(account);
+        if (!SettingsIo.saveAccountList(list, configDir)) {
+            throw new IOException("Failed to write account to " + configDir);
+        }
+    }
+
+    public synchronized void printReport() {
+        System.out.println(
+                String.format(
+                        "%d clients x %d rounds, %d server requests, %d injected failures",
+                        clients,
+                        rounds,
+                        server.getRequestCount(),
+                        server.getFailureCount()));
+        System.out.println(
+                String.format(
+                        "%-10s %6s %6s %8s %8s %8s %8s",
+                        "command", "runs", "failed", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            List<Long> values = entry.getValue();
+            Collections.sort(values);
+            System.out.println(
+                    String.format(
+                            "%-10s %6d %6d %8d %8d %8d %8d",
+                            entry.getKey(),
+                            values.size(),
+                            failures.getOrDefault(entry.getKey(), 0),
+                            percentile(values, 50),
+                            percentile(values, 90),
+                            percentile(values, 99),
+                            values.get(values.size() - 1)));
+        }
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted list.
+     */
+    static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+
+    private static int intOption(CommandLine line, String option, int defaultValue) {
+        return Integer.parseInt(line.getOptionValue(option, Integer.toString(defaultValue)));
+    }
+}
@@ -0,0 +1,464 @@
+package fi.helsinki.cs.tmc.cli.stubserver;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Local stand-in for the TMC server, used in end-to-end and load tests.
+ *
+ * <p>Serves the OAuth token, the v8 core endpoints and a set of synthetic courses. The
+ * latency, jitter, error rate, course sizes and zip file sizes can be configured before
+ * the server is started.
+ */
+public class StubTmcServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubTmcServer.class);
+
+    public static final String ORGANIZATION_SLUG = "stub-org";
+    public static final String USERNAME = "stub-user";
+    public static final String ACCESS_TOKEN = "stub-access-token";
+    public static final String APPLICATION_ID = "stub-application-id";
+    public static final String APPLICATION_SECRET = "stub-application-secret";
+    public static final String COURSE_PREFIX = "stub-course-";
+
+    private static final int EXERCISE_ID_MULTIPLIER = 100000;
+    private static final Pattern CREDENTIALS =
+            Pattern.compile("/api/v8/application/[^/]+/credentials");
+    private static final Pattern COURSES = Pattern.compile("/api/v8/core/org/([^/]+)/courses");
+    private static final Pattern COURSE = Pattern.compile("/api/v8/core/courses/(\\d+)");
+    private static final Pattern DOWNLOAD =
+            Pattern.compile("/api/v8/core/exercises/(\\d+)/(download|solution/download)");
+    private static final Pattern SUBMIT =
+            Pattern.compile("/api/v8/core/exercises/(\\d+)/submissions");
+    private static final Pattern SUBMISSION = Pattern.compile("/api/v8/core/submissions/(\\d+)");
+    private static final Pattern FEEDBACK =
+            Pattern.compile("/api/v8/core/submissions/(\\d+)/feedback");
+
+    private final Gson gson;
+    private final Map<Integer, byte[]> courseCache;
+    private final Map<Long, AtomicInteger> submissionPolls;
+    private final AtomicLong submissionIds;
+    private final AtomicLong requestCount;
+    private final AtomicLong failureCount;
+
+    private int courseCount;
+    private int exerciseCount;
+    private int zipPaddingBytes;
+    private long latencyMs;
+    private long jitterMs;
+    private double errorRate;
+    private int processingPolls;
+    private int threads;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String address;
+    private byte[] zipFile;
+
+    public StubTmcServer() {
+        this.gson = new Gson();
+        this.courseCache = new ConcurrentHashMap<>();
+        this.submissionPolls = new ConcurrentHashMap<>();
+        this.submissionIds = new AtomicLong();
+        this.requestCount = new AtomicLong();
+        this.failureCount = new AtomicLong();
+
+        this.courseCount = 3;
+        this.exerciseCount = 20;
+        this.zipPaddingBytes = 0;
+        this.latencyMs = 0;
+        this.jitterMs = 0;
+        this.errorRate = 0.0;
+        this.processingPolls = 0;
+        this.threads = 32;
+    }
+
+    /**
+     * Set the amount of synthetic courses and exercises in each of them.
+     */
+    public StubTmcServer setCourses(int courseCount, int exerciseCount) {
+        this.courseCount = courseCount;
+        this.exerciseCount = exerciseCount;
+        return this;
+    }
+
+    /**
+     * Every response is delayed by the latency and a random jitter between 0 and jitterMs.
+     */
+    public StubTmcServer setLatency(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        return this;
+    }
+
+    /**
+     * Share of requests, between 0.0 and 1.0, that fail with internal server error.
+     */
+    public StubTmcServer setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Size of the incompressible padding file in every exercise zip.
+     */
+    public StubTmcServer setZipPaddingBytes(int zipPaddingBytes) {
+        this.zipPaddingBytes = zipPaddingBytes;
+        return this;
+    }
+
+    /**
+     * How many times a submission is reported as processing before its result is ready.
+     */
+    public StubTmcServer setProcessingPolls(int processingPolls) {
+        this.processingPolls = processingPolls;
+        return this;
+    }
+
+    public StubTmcServer setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Start the server on a free port of the loopback interface.
+     *
+     * @return the server address, for example http://127.0.0.1:41234
+     */
+    public String start() throws IOException {
+        zipFile = createExerciseZip(zipPaddingBytes);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+        logger.info("Stub TMC server listening on " + address);
+        return address;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public static String getCourseName(int courseId) {
+        return COURSE_PREFIX + courseId;
+    }
+
+    public static String getExerciseName(int index) {
+        return String.format("part%02d-e%04d", index / 100 + 1, index);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            drainRequestBody(exchange);
+            delay();
+            if (errorRate > 0.0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failureCount.incrementAndGet();
+                sendJson(exchange, 500, error("Synthetic server failure"));
+                return;
+            }
+            route(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.warn("Stub server failed to handle " + exchange.getRequestURI(), e);
+            sendJson(exchange, 500, error(e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Matcher matcher;
+
+        if (path.equals("/oauth/token") && method.equals("POST")) {
+            Map<String, Object> token = new LinkedHashMap<>();
+            token.put("access_token", ACCESS_TOKEN);
+            token.put("token_type", "bearer");
+            token.put("scope", "public");
+            token.put("created_at", System.currentTimeMillis() / 1000);
+            sendJson(exchange, 200, token);
+        } else if (CREDENTIALS.matcher(path).matches()) {
+            Map<String, Object> credentials = new LinkedHashMap<>();
+            credentials.put("application_id", APPLICATION_ID);
+            credentials.put("secret", APPLICATION_SECRET);
+            sendJson(exchange, 200, credentials);
+        } else if (path.equals("/api/v8/users/current")) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("id", 1);
+            user.put("username", USERNAME);
+            user.put("email", USERNAME + "@example.com");
+            user.put("administrator", false);
+            sendJson(exchange, 200, user);
+        } else if (path.equals("/api/v8/org.json")) {
+            sendJson(exchange, 200, new Object[] {organization()});
+        } else if ((matcher = COURSES.matcher(path)).matches()) {
+            if (!ORGANIZATION_SLUG.equals(matcher.group(1))) {
+                sendJson(exchange, 404, error("Organization not found"));
+                return;
+            }
+            List<Object> courses = new ArrayList<>();
+            for (int id = 1; id <= courseCount; id++) {
+                courses.add(course(id, false));
+            }
+            sendJson(exchange, 200, courses);
+        } else if ((matcher = COURSE.matcher(path)).matches()) {
+            int id = Integer.parseInt(matcher.group(1));
+            if (id < 1 || id > courseCount) {
+                sendJson(exchange, 404, error("Course not found"));
+                return;
+            }
+            byte[] body =
+                    courseCache.computeIfAbsent(
+                            id,
+                            key -> {
+                                Map<String, Object> details = new LinkedHashMap<>();
+                                details.put("course", course(key, true));
+                                return gson.toJson(details).getBytes(StandardCharsets.UTF_8);
+                            });
+            send(exchange, 200, "application/json", body);
+        } else if (DOWNLOAD.matcher(path).matches()) {
+            send(exchange, 200, "application/zip", zipFile);
+        } else if ((matcher = SUBMIT.matcher(path)).matches() && method.equals("POST")) {
+            long id = submissionIds.incrementAndGet();
+            submissionPolls.put(id, new AtomicInteger());
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("submission_url", address + "/api/v8/core/submissions/" + id);
+            response.put("paste_url", address + "/paste/" + id);
+            response.put("show_submission_url", address + "/submissions/" + id);
+            sendJson(exchange, 200, response);
+        } else if (FEEDBACK.matcher(path).matches() && method.equals("POST")) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", "ok");
+            sendJson(exchange, 200, response);
+        } else if ((matcher = SUBMISSION.matcher(path)).matches()) {
+            long id = Long.parseLong(matcher.group(1));
+            AtomicInteger polls = submissionPolls.get(id);
+            if (polls == null) {
+                sendJson(exchange, 404, error("Submission not found"));
+                return;
+            }
+            sendJson(exchange, 200, submissionResult(id, polls.incrementAndGet()));
+        } else {
+            sendJson(exchange, 404, error("No route for " + method + " " + path));
+        }
+    }
+
+    private Map<String, Object> organization() {
+        Map<String, Object> organization = new LinkedHashMap<>();
+        organization.put("name", "Stub organization");
+        organization.put("information", "Synthetic organization for testing");
+        organization.put("slug", ORGANIZATION_SLUG);
+        organization.put("logo_path", "/logos/missing.png");
+        organization.put("pinned", false);
+        return organization;
+    }
+
+    private Map<String, Object> course(int id, boolean withExercises) {
+        String url = address + "/api/v8/core/courses/" + id;
+        Map<String, Object> course = new LinkedHashMap<>();
+        course.put("id", id);
+        course.put("name", getCourseName(id));
+        course.put("title", "Stub course " + id);
+        course.put("description", "Synthetic course with " + exerciseCount + " exercises");
+        course.put("details_url", url);
+        course.put("unlock_url", url + "/unlock");
+        course.put("reviews_url", url + "/reviews");
+        course.put("comet_url", null);
+        course.put("spyware_urls", new String[0]);
+        course.put("unlockables", new String[0]);
+        if (withExercises) {
+            List<Object> exercises = new ArrayList<>(exerciseCount);
+            for (int i = 0; i < exerciseCount; i++) {
+                exercises.add(exercise(id, i));
+            }
+            course.put("exercises", exercises);
+        }
+        return course;
+    }
+
+    private Map<String, Object> exercise(int courseId, int index) {
+        int id = courseId * EXERCISE_ID_MULTIPLIER + index;
+        String url = address + "/api/v8/core/exercises/" + id;
+        Map<String, Object> exercise = new LinkedHashMap<>();
+        exercise.put("id", id);
+        exercise.put("name", getExerciseName(index));
+        exercise.put("locked", false);
+        exercise.put("deadline_description", null);
+        exercise.put("deadline", null);
+        exercise.put("checksum", checksum(id));
+        exercise.put("return_url", url + "/submissions");
+        exercise.put("zip_url", url + "/download");
+        exercise.put("solution_zip_url", url + "/solution/download");
+        exercise.put("exercise_submissions_url", url + "/submissions");
+        exercise.put("returnable", true);
+        exercise.put("requires_review", false);
+        exercise.put("attempted", false);
+        exercise.put("completed", false);
+        exercise.put("reviewed", false);
+        exercise.put("all_review_points_given", true);
+        exercise.put("memory_limit", null);
+        exercise.put("runtime_params", new String[0]);
+        exercise.put("code_review_requests_enabled", false);
+        exercise.put("run_tests_locally_action_enabled", true);
+        return exercise;
+    }
+
+    private Map<String, Object> submissionResult(long id, int poll) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("api_version", 8);
+        result.put("submission_url", address + "/api/v8/core/submissions/" + id);
+        if (poll <= processingPolls) {
+            result.put("status", "processing");
+            result.put("sandbox_status", "processing_on_sandbox");
+            return result;
+        }
+        Map<String, Object> testCase = new LinkedHashMap<>();
+        testCase.put("name", "MainTest testMain");
+        testCase.put("successful", true);
+        testCase.put("message", null);
+        testCase.put("exception", null);
+        testCase.put("detailed_message", null);
+
+        result.put("user_id", 1);
+        result.put("login", USERNAME);
+        result.put("status", "ok");
+        result.put("all_tests_passed", true);
+        result.put("points", new String[] {"1.1"});
+        result.put("valgrind", "");
+        result.put("solution_url", address + "/solutions/" + id);
+        result.put("processing_time", 1);
+        result.put("reviewed", false);
+        result.put("requests_review", false);
+        result.put("missing_review_points", new String[0]);
+        result.put("test_cases", new Object[] {testCase});
+        result.put("feedback_questions", new Object[0]);
+        result.put(
+                "feedback_answer_url", address + "/api/v8/core/submissions/" + id + "/feedback");
+        return result;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("errors", new String[] {message});
+        return error;
+    }
+
+    private static String checksum(int id) {
+        CRC32 crc = new CRC32();
+        crc.update(Integer.toString(id).getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private void delay() throws InterruptedException {
+        long delay = latencyMs;
+        if (jitterMs > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitterMs + 1);
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        send(exchange, status, "application/json", bytes);
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void drainRequestBody(HttpExchange exchange) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            while (in.read(buffer) != -1) {
+                // submissions are not inspected
+            }
+        }
+    }
+
+    /**
+     * Minimal maven exercise with an incompressible padding file of the given size.
+     */
+    static byte[] createExerciseZip(int paddingBytes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            addEntry(zip, "pom.xml", "<project><modelVersion>4.0.0</modelVersion>"
+                    + "<groupId>stub</groupId><artifactId>stub</artifactId>"
+                    + "<version>1.0</version></project>\n");
+            addEntry(zip, "src/main/java/Main.java",
+                    "public class Main {\n    public static void main(String[] args) {}\n}\n");
+            addEntry(zip, "src/test/java/MainTest.java",
+                    "import org.junit.Test;\n\npublic class MainTest {\n"
+                            + "    @Test\n    public void testMain() {}\n}\n");
+            if (paddingBytes > 0) {
+                byte[] padding = new byte[paddingBytes];
+                new Random(paddingBytes).nextBytes(padding);
+                zip.putNextEntry(new ZipEntry("src/main/resources/padding.bin"));
+                zip.write(padding);
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, String content)
+            throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,172 @@
+package fi.helsinki.cs.tmc.cli.stubserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class StubTmcServerTest {
+
+    private StubTmcServer server;
+    private String address;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubTmcServer().setCourses(2, 1500).setZipPaddingBytes(4096);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private HttpURLConnection open(String method, String path) throws IOException {
+        URL url = new URL(path.startsWith("http") ? path : address + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (method.equals("POST")) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write("grant_type=password".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private JsonElement getJson(String method, String path) throws IOException {
+        HttpURLConnection connection = open(method, path);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            return new JsonParser().parse(IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void servesOauthToken() throws IOException {
+        address = server.start();
+        JsonObject token = getJson("POST", "/oauth/token").getAsJsonObject();
+        assertEquals(StubTmcServer.ACCESS_TOKEN, token.get("access_token").getAsString());
+    }
+
+    @Test
+    public void servesOrganizationsAndCourses() throws IOException {
+        address = server.start();
+        JsonArray organizations = getJson("GET", "/api/v8/org.json").getAsJsonArray();
+        assertEquals(
+                StubTmcServer.ORGANIZATION_SLUG,
+                organizations.get(0).getAsJsonObject().get("slug").getAsString());
+
+        JsonArray courses =
+                getJson("GET", "/api/v8/core/org/" + StubTmcServer.ORGANIZATION_SLUG + "/courses")
+                        .getAsJsonArray();
+        assertEquals(2, courses.size());
+        assertEquals("stub-course-1", courses.get(0).getAsJsonObject().get("name").getAsString());
+    }
+
+    @Test
+    public void servesCourseWithThousandsOfExercises() throws IOException {
+        address = server.start();
+        JsonObject course =
+                getJson("GET", "/api/v8/core/courses/2")
+                        .getAsJsonObject()
+                        .getAsJsonObject("course");
+        JsonArray exercises = course.getAsJsonArray("exercises");
+        assertEquals(1500, exercises.size());
+        JsonObject exercise = exercises.get(1499).getAsJsonObject();
+        assertEquals("part15-e1499", exercise.get("name").getAsString());
+        assertTrue(exercise.get("zip_url").getAsString().startsWith(address));
+    }
+
+    @Test
+    public void servesExerciseZips() throws IOException {
+        address = server.start();
+        HttpURLConnection connection = open("GET", "/api/v8/core/exercises/100001/download");
+        assertEquals(200, connection.getResponseCode());
+        byte[] zip = IOUtils.toByteArray(connection.getInputStream());
+
+        List<String> names = new ArrayList<>();
+        long paddingSize = 0;
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                if (entry.getName().endsWith("padding.bin")) {
+                    paddingSize = IOUtils.toByteArray(in).length;
+                }
+            }
+        }
+        assertTrue(names.containsAll(Arrays.asList("pom.xml", "src/main/java/Main.java")));
+        assertEquals(4096, paddingSize);
+    }
+
+    @Test
+    public void submissionIsProcessedAfterPolls() throws IOException {
+        server.setProcessingPolls(2);
+        address = server.start();
+        JsonObject submission =
+                getJson("POST", "/api/v8/core/exercises/100001/submissions").getAsJsonObject();
+        String url = submission.get("submission_url").getAsString();
+
+        for (int i = 0; i < 2; i++) {
+            JsonObject result = getJson("GET", url).getAsJsonObject();
+            assertEquals("processing", result.get("status").getAsString());
+        }
+        JsonObject result = getJson("GET", url).getAsJsonObject();
+        assertEquals("ok", result.get("status").getAsString());
+        assertEquals(1, result.getAsJsonArray("test_cases").size());
+    }
+
+    @Test
+    public void unknownPathsReturnNotFound() throws IOException {
+        address = server.start();
+        assertEquals(404, open("GET", "/api/v8/nothing").getResponseCode());
+        assertEquals(404, open("GET", "/api/v8/core/courses/3").getResponseCode());
+    }
+
+    @Test
+    public void injectsErrors() throws IOException {
+        server.setErrorRate(1.0);
+        address = server.start();
+        assertEquals(500, open("GET", "/api/v8/org.json").getResponseCode());
+        assertEquals(1, server.getFailureCount());
+    }
+
+    @Test
+    public void delaysResponses() throws IOException {
+        server.setLatency(100, 20);
+        address = server.start();
+        long start = System.nanoTime();
+        getJson("GET", "/api/v8/org.json");
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertTrue("Response took only " + elapsedMs + " ms", elapsedMs >= 100);
+    }
+
+    @Test
+    public void percentileUsesNearestRank() {
+        List<Long> values = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertEquals(5, LoadTestDriver.percentile(values, 50));
+        assertEquals(9, LoadTestDriver.percentile(values, 90));
+        assertEquals(10, LoadTestDriver.percentile(values, 99));
+        assertEquals(0, LoadTestDriver.percentile(new ArrayList<Long>(), 50));
+    }
+}
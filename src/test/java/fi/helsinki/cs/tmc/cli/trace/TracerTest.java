@@ -0,0 +1,108 @@
+package fi.helsinki.cs.tmc.cli.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TracerTest {
+
+    @Test
+    public void disabledTracerRecordsNothing() {
+        Tracer tracer = Tracer.disabled();
+        assertFalse(tracer.isEnabled());
+        try (Span span = tracer.start("cli", "command.submit")) {
+            assertSame(Span.NOOP, span);
+            span.setAttribute("exercise", "ex1");
+        }
+        tracer.instant("cli", "mark");
+        assertTrue(tracer.getEvents().isEmpty());
+    }
+
+    @Test
+    public void nestedSpansAreInsideTheOuterSpan() {
+        Tracer tracer = Tracer.create();
+        try (Span outer = tracer.start("cli", "outer")) {
+            try (Span inner = tracer.start("core", "inner")) {
+                inner.setAttribute("count", 3);
+            }
+        }
+
+        List<TraceEvent> events = tracer.getEvents();
+        assertEquals(2, events.size());
+        TraceEvent inner = events.get(0);
+        TraceEvent outer = events.get(1);
+        assertEquals("inner", inner.name);
+        assertEquals("core", inner.category);
+        assertEquals(3, inner.args.get("count"));
+        assertTrue(inner.timestamp >= outer.timestamp);
+        assertTrue(inner.timestamp + inner.duration <= outer.timestamp + outer.duration);
+    }
+
+    @Test
+    public void closingSpanTwiceRecordsItOnce() {
+        Tracer tracer = Tracer.create();
+        Span span = tracer.start("cli", "span");
+        span.close();
+        span.close();
+        assertEquals(1, tracer.getEvents().size());
+    }
+
+    @Test
+    public void writesChromeTraceFormat() throws IOException {
+        Tracer tracer = Tracer.create();
+        try (Span span = tracer.start("cli", "command.test")) {
+            span.setAttribute("exercise", "ex1").setAttribute("passed", true);
+            tracer.instant("cli", "mark");
+        }
+
+        Path file = Files.createTempFile("tmc-trace", ".json");
+        try {
+            assertTrue(tracer.write(file));
+            String json = new String(Files.readAllBytes(file), "UTF-8");
+            JsonObject root = new JsonParser().parse(json).getAsJsonObject();
+            JsonArray events = root.getAsJsonArray("traceEvents");
+
+            JsonObject span = null;
+            JsonObject instant = null;
+            for (int i = 0; i < events.size(); i++) {
+                JsonObject event = events.get(i).getAsJsonObject();
+                if (event.get("name").getAsString().equals("command.test")) {
+                    span = event;
+                } else if (event.get("name").getAsString().equals("mark")) {
+                    instant = event;
+                }
+            }
+            assertEquals("X", span.get("ph").getAsString());
+            assertTrue(span.has("dur"));
+            assertEquals("ex1", span.getAsJsonObject("args").get("exercise").getAsString());
+            assertTrue(span.getAsJsonObject("args").get("passed").getAsBoolean());
+            assertEquals("i", instant.get("ph").getAsString());
+            assertEquals(
+                    Thread.currentThread().getId(), instant.get("tid").getAsLong());
+            assertEquals("M", events.get(0).getAsJsonObject().get("ph").getAsString());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void writeFailsIfFileCantBeCreated() throws IOException {
+        Path dir = Files.createTempDirectory("tmc-trace");
+        try {
+            assertFalse(Tracer.create().write(dir.resolve("missing").resolve("trace.json")));
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package fi.helsinki.cs.tmc.cli.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TracingProgressObserverTest {
+
+    private Tracer tracer;
+    private ProgressObserver delegate;
+    private TracingProgressObserver observer;
+
+    @Before
+    public void setUp() {
+        tracer = Tracer.create();
+        delegate = mock(ProgressObserver.class);
+        observer = tracer.observe("core", delegate);
+    }
+
+    @Test
+    public void everyMessageStartsNewSpan() {
+        observer.progress(1, "Zipping");
+        observer.progress(1, 0.5, "Zipping");
+        observer.progress(1, "Sending");
+        observer.end(1);
+
+        List<TraceEvent> events = tracer.getEvents();
+        assertEquals(2, events.size());
+        assertEquals("Zipping", events.get(0).name);
+        assertEquals("Sending", events.get(1).name);
+        assertEquals(1L, events.get(1).args.get("task"));
+    }
+
+    @Test
+    public void closeEndsOpenSpans() {
+        observer.progress(1, "Waiting for results");
+        observer.progress(2, "Downloading");
+        assertEquals(0, tracer.getEvents().size());
+
+        observer.close();
+        assertEquals(2, tracer.getEvents().size());
+    }
+
+    @Test
+    public void updatesArePassedToDelegate() {
+        observer.start(3);
+        observer.progress(3, "Zipping");
+        observer.progress(3, 0.25, "Zipping");
+        observer.end(3);
+
+        verify(delegate).start(3);
+        verify(delegate).progress(3, "Zipping");
+        verify(delegate).progress(3, 0.25, "Zipping");
+        verify(delegate).end(3);
+    }
+}
@@ -1,11 +1,16 @@
 package fi.helsinki.cs.tmc.cli.updater;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.containsString;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -15,6 +20,10 @@ import static org.mockito.Mockito.when;
 
 import fi.helsinki.cs.tmc.cli.io.TestIo;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -23,15 +32,26 @@ import org.junit.Test;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
 
 public class AutoUpdaterTest {
 
+    private static final String ETAG = "W/\"f00ba4\"";
+    private static final String SHA256 =
+            "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
     private static String latestJson;
     private static String apiLimitExeededJson;
     private static String malformedJson;
     private static String changedJson;
 
     private TestIo io;
+    private volatile String lastIfNoneMatch;
 
     @BeforeClass
     public static void setUpClass() throws IOException {
@@ -64,7 +84,8 @@ public class AutoUpdaterTest {
         doReturn(latestJson).when(updater).fetchLatestReleaseJson();
         //when(updater.fetchLatestReleaseJson()).thenReturn(latestJson);
         updater.run();
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         assertTrue(io.out().isEmpty());
     }
 
@@ -74,7 +95,8 @@ public class AutoUpdaterTest {
         doReturn(null).when(updater).fetchLatestReleaseJson();
         //when(updater.fetchLatestReleaseJson()).thenReturn(null);
         updater.run();
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         assertTrue(io.out().isEmpty());
     }
 
@@ -84,7 +106,8 @@ public class AutoUpdaterTest {
         doReturn(apiLimitExeededJson).when(updater).fetchLatestReleaseJson();
         //when(updater.fetchLatestReleaseJson()).thenReturn(apiLimitExeededJson);
         updater.run();
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         assertTrue(io.out().isEmpty());
     }
 
@@ -96,7 +119,8 @@ public class AutoUpdaterTest {
         //when(updater.fetchLatestReleaseJson()).thenReturn(latestJson);
         updater.run();
         assertThat(io.out(), containsString("A new version of tmc-cli is available!"));
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         io.assertAllPromptsUsed();
     }
 
@@ -106,12 +130,14 @@ public class AutoUpdaterTest {
         AutoUpdater updater = spy(new AutoUpdater(io, "0.1.0", false));
         doReturn(latestJson).when(updater).fetchLatestReleaseJson();
         //when(updater.fetchLatestReleaseJson()).thenReturn(latestJson);
-        doReturn(true).when(updater).fetchTmcCliBinary(any(String.class), any(File.class));
+        doReturn(true)
+                .when(updater)
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         when(updater.runNewTmcCliBinary(any(String.class))).thenReturn(true);
         updater.run();
         assertThat(io.out(), containsString("A new version of tmc-cli is available!"));
         assertThat(io.out(), containsString("Downloading..."));
-        verify(updater, times(1)).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, times(1)).fetchTmcCliBinary(any(String.class), any(File.class), eq(SHA256));
         verify(updater, times(1)).runNewTmcCliBinary(any(String.class));
         io.assertAllPromptsUsed();
     }
@@ -125,7 +151,8 @@ public class AutoUpdaterTest {
         updater.run();
         assertThat(io.out(), containsString("A new version of tmc-cli is available!"));
         assertThat(io.out(), containsString("Download: https://"));
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
     }
 
     @Test
@@ -134,7 +161,8 @@ public class AutoUpdaterTest {
         doReturn(malformedJson).when(updater).fetchLatestReleaseJson();
         //when(updater.fetchLatestReleaseJson()).thenReturn(malformedJson);
         updater.run();
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         assertTrue(io.out().isEmpty());
     }
 
@@ -144,10 +172,209 @@ public class AutoUpdaterTest {
         doReturn(changedJson).when(updater).fetchLatestReleaseJson();
         //when(updater.fetchLatestReleaseJson()).thenReturn(changedJson);
         updater.run();
-        verify(updater, never()).fetchTmcCliBinary(any(String.class), any(File.class));
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
         assertTrue(io.out().isEmpty());
     }
 
+    @Test
+    public void checksumIsReadFromAssetDigest() {
+        AutoUpdater updater = new AutoUpdater(io, "0.1.0", false);
+        JsonObject release = new JsonParser().parse(latestJson).getAsJsonObject();
+        JsonObject asset = release.getAsJsonArray("assets").get(0).getAsJsonObject();
+        assertEquals(SHA256, updater.findExpectedSha256(release, asset));
+    }
+
+    @Test
+    public void checksumIsMissingIfReleaseDoesNotHaveIt() {
+        AutoUpdater updater = new AutoUpdater(io, "0.1.0", false);
+        JsonObject release = new JsonParser().parse(latestJson).getAsJsonObject();
+        JsonObject asset = release.getAsJsonArray("assets").get(1).getAsJsonObject();
+        assertNull(updater.findExpectedSha256(release, asset));
+    }
+
+    @Test
+    public void checkLatestReleaseRemembersEtag() throws IOException {
+        HttpServer server = startReleaseServer();
+        try {
+            AutoUpdater updater = new AutoUpdater(io, "0.1.0", false, releaseUrl(server));
+            LatestRelease release = updater.checkLatestRelease(null);
+            assertEquals(ETAG, release.getEtag());
+            assertNull(lastIfNoneMatch);
+
+            JsonObject json = new JsonParser().parse(release.getJson()).getAsJsonObject();
+            assertEquals("0.1.1", json.get("tag_name").getAsString());
+            assertFalse(json.has("body"));
+            assertTrue(io.out().isEmpty());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void checkLatestReleaseReturnsCachedReleaseIfNotModified() throws IOException {
+        HttpServer server = startReleaseServer();
+        try {
+            AutoUpdater updater = new AutoUpdater(io, "0.1.0", false, releaseUrl(server));
+            LatestRelease cached = new LatestRelease(ETAG, "{\"tag_name\":\"0.1.1\"}");
+            assertSame(cached, updater.checkLatestRelease(cached));
+            assertEquals(ETAG, lastIfNoneMatch);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void checkLatestReleaseReturnsNullIfRequestFails() throws IOException {
+        HttpServer server = startReleaseServer();
+        server.stop(0);
+        AutoUpdater updater = new AutoUpdater(io, "0.1.0", false, releaseUrl(server));
+        assertNull(updater.checkLatestRelease(null));
+        assertTrue(io.out().isEmpty());
+    }
+
+    @Test
+    public void offerUpdateUsesCachedReleaseJson() {
+        io.addConfirmationPrompt(false);
+        AutoUpdater updater = new AutoUpdater(io, "0.1.0", false);
+        updater.offerUpdate(latestJson);
+        assertThat(io.out(), containsString("A new version of tmc-cli is available!"));
+        io.assertAllPromptsUsed();
+    }
+
+    @Test
+    public void deltaUpdateSkipsFullDownload() {
+        io.addConfirmationPrompt(true);
+        AutoUpdater updater = spy(new AutoUpdater(io, "0.1.0", false));
+        doReturn(latestJson).when(updater).fetchLatestReleaseJson();
+        doReturn(true)
+                .when(updater)
+                .fetchDeltaUpdate(any(JsonObject.class), any(File.class), eq(SHA256));
+        when(updater.runNewTmcCliBinary(any(String.class))).thenReturn(true);
+        updater.run();
+        verify(updater, never())
+                .fetchTmcCliBinary(any(String.class), any(File.class), any(String.class));
+        verify(updater, times(1)).runNewTmcCliBinary(any(String.class));
+    }
+
+    @Test
+    public void deltaUpdatePatchesCurrentBinary() throws IOException {
+        Path dir = Files.createTempDirectory("tmc-update");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        try {
+            JsonObject release = createPatchRelease(dir, server);
+            File destination = dir.resolve("tmc.new").toFile();
+            AutoUpdater updater = spy(new AutoUpdater(io, "0.1.0", false));
+            doReturn(dir.resolve("tmc").toFile()).when(updater).getCurrentBinary();
+
+            String sha256 = BinaryDownloader.sha256(dir.resolve("new"));
+            assertTrue(updater.fetchDeltaUpdate(release, destination, sha256));
+            assertTrue(
+                    Arrays.equals(
+                            Files.readAllBytes(dir.resolve("new")),
+                            Files.readAllBytes(destination.toPath())));
+            assertFalse(new File(destination.getPath() + ".patch").exists());
+            assertFalse(new File(destination.getPath() + ".patched").exists());
+        } finally {
+            server.stop(0);
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+
+    @Test
+    public void deltaUpdateFailsIfChecksumDoesNotMatch() throws IOException {
+        Path dir = Files.createTempDirectory("tmc-update");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        try {
+            JsonObject release = createPatchRelease(dir, server);
+            File destination = dir.resolve("tmc.new").toFile();
+            AutoUpdater updater = spy(new AutoUpdater(io, "0.1.0", false));
+            doReturn(dir.resolve("tmc").toFile()).when(updater).getCurrentBinary();
+
+            assertFalse(updater.fetchDeltaUpdate(release, destination, SHA256));
+            assertFalse(destination.exists());
+            assertFalse(new File(destination.getPath() + ".patched").exists());
+            assertThat(io.out(), containsString("downloading the whole update"));
+        } finally {
+            server.stop(0);
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+
+    @Test
+    public void deltaUpdateNeedsPatchForCurrentVersion() throws IOException {
+        AutoUpdater updater = spy(new AutoUpdater(io, "0.0.9", false));
+        JsonObject release = new JsonParser().parse(latestJson).getAsJsonObject();
+        JsonObject patch = new JsonObject();
+        patch.addProperty("name", "tmc-0.1.0.patch");
+        patch.addProperty("browser_download_url", "http://127.0.0.1:1/tmc-0.1.0.patch");
+        release.getAsJsonArray("assets").add(patch);
+
+        assertFalse(updater.fetchDeltaUpdate(release, new File("tmc.new"), SHA256));
+        verify(updater, never()).getCurrentBinary();
+    }
+
+    /**
+     * Create the current binary "tmc", the new binary "new" and a release that has a patch
+     * between them.
+     */
+    private JsonObject createPatchRelease(Path dir, HttpServer server) throws IOException {
+        byte[] current = new byte[64 * 1024];
+        new Random(1).nextBytes(current);
+        byte[] next = Arrays.copyOf(current, current.length + 100);
+        Files.write(dir.resolve("tmc"), current);
+        Files.write(dir.resolve("new"), next);
+        DeltaPatch.create(dir.resolve("tmc"), dir.resolve("new"), dir.resolve("patch"));
+        byte[] patchBytes = Files.readAllBytes(dir.resolve("patch"));
+
+        server.createContext(
+                "/tmc-0.1.0.patch",
+                exchange -> {
+                    exchange.sendResponseHeaders(200, patchBytes.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(patchBytes);
+                    }
+                });
+        server.start();
+
+        JsonObject release = new JsonParser().parse(latestJson).getAsJsonObject();
+        JsonObject patch = new JsonObject();
+        patch.addProperty("name", "tmc-0.1.0.patch");
+        patch.addProperty(
+                "browser_download_url",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/tmc-0.1.0.patch");
+        release.getAsJsonArray("assets").add(patch);
+        return release;
+    }
+
+    private HttpServer startReleaseServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(
+                "/latest",
+                exchange -> {
+                    lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                    if (ETAG.equals(lastIfNoneMatch)) {
+                        exchange.sendResponseHeaders(304, -1);
+                        exchange.close();
+                        return;
+                    }
+                    String json =
+                            latestJson.replaceFirst("\\{", "{\"body\": \"Release notes\",");
+                    byte[] body = json.getBytes("UTF-8");
+                    exchange.getResponseHeaders().set("ETag", ETAG);
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                });
+        server.start();
+        return server;
+    }
+
+    private static String releaseUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/latest";
+    }
+
     private static String readResource(String resourceName) throws IOException {
         InputStream inputStream =
                 AutoUpdaterTest.class.getClassLoader().getResourceAsStream(resourceName);
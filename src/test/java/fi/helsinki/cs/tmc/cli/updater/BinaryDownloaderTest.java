@@ -0,0 +1,190 @@
+package fi.helsinki.cs.tmc.cli.updater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import fi.helsinki.cs.tmc.cli.backend.CliHttpClient;
+
+import fi.helsinki.cs.tmc.core.domain.ProgressObserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class BinaryDownloaderTest {
+
+    private HttpServer server;
+    private CliHttpClient client;
+    private ProgressObserver observer;
+    private BinaryDownloader downloader;
+    private String url;
+    private Path tempDir;
+    private File destination;
+    private byte[] payload;
+    private String payloadSha256;
+    private volatile boolean supportRanges;
+    private volatile String lastRange;
+
+    @Before
+    public void setUp() throws IOException {
+        payload = new byte[300 * 1024];
+        new Random(42).nextBytes(payload);
+        tempDir = Files.createTempDirectory("tmc-download");
+        destination = tempDir.resolve("tmc.new").toFile();
+        Path reference = tempDir.resolve("reference");
+        Files.write(reference, payload);
+        payloadSha256 = BinaryDownloader.sha256(reference);
+        Files.delete(reference);
+
+        supportRanges = true;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/tmc", this::serve);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/tmc";
+
+        client = new CliHttpClient(2000, 2000);
+        observer = mock(ProgressObserver.class);
+        downloader = new BinaryDownloader(client, observer, "Downloading");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+        FileUtils.deleteQuietly(tempDir.toFile());
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        lastRange = range;
+        int start = 0;
+        int status = 200;
+        if (supportRanges && range != null) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (start >= payload.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            status = 206;
+            exchange.getResponseHeaders()
+                    .set(
+                            "Content-Range",
+                            "bytes " + start + "-" + (payload.length - 1) + "/" + payload.length);
+        }
+        exchange.sendResponseHeaders(status, payload.length - start);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(payload, start, payload.length - start);
+        }
+    }
+
+    private Path partFile() {
+        return BinaryDownloader.getPartFile(destination, payloadSha256);
+    }
+
+    private void writePartFile(byte[] content) throws IOException {
+        Files.write(partFile(), content);
+    }
+
+    private void assertDownloaded() throws IOException {
+        assertArrayEquals(payload, Files.readAllBytes(destination.toPath()));
+        assertFalse(Files.exists(partFile()));
+    }
+
+    @Test
+    public void downloadsWholeFile() throws IOException {
+        downloader.download(url, destination, payloadSha256);
+        assertDownloaded();
+        assertNull(lastRange);
+        verify(observer, atLeastOnce()).progress(anyLong(), anyDouble(), eq("Downloading"));
+        verify(observer).end(anyLong());
+    }
+
+    @Test
+    public void resumesPartialDownload() throws IOException {
+        writePartFile(Arrays.copyOf(payload, 1000));
+        downloader.download(url, destination, payloadSha256);
+        assertEquals("bytes=1000-", lastRange);
+        assertDownloaded();
+    }
+
+    @Test
+    public void startsOverIfServerIgnoresRange() throws IOException {
+        supportRanges = false;
+        writePartFile(new byte[] {1, 2, 3});
+        downloader.download(url, destination, payloadSha256);
+        assertDownloaded();
+    }
+
+    @Test
+    public void startsOverIfRangeIsNotSatisfiable() throws IOException {
+        writePartFile(new byte[payload.length + 10]);
+        downloader.download(url, destination, payloadSha256);
+        assertNull(lastRange);
+        assertDownloaded();
+    }
+
+    @Test
+    public void downloadsWithoutChecksum() throws IOException {
+        downloader.download(url, destination, null);
+        assertDownloaded();
+    }
+
+    @Test
+    public void partialFileIsNotResumedWithoutChecksum() throws IOException {
+        Path part = BinaryDownloader.getPartFile(destination, null);
+        Files.write(part, Arrays.copyOf(payload, 1000));
+
+        downloader.download(url, destination, null);
+        assertNull(lastRange);
+        assertDownloaded();
+        assertFalse(Files.exists(part));
+    }
+
+    @Test
+    public void partialFileOfAnotherVersionIsNotResumed() throws IOException {
+        byte[] older = new byte[1000];
+        new Random(7).nextBytes(older);
+        Path part = BinaryDownloader.getPartFile(destination, "00ff" + payloadSha256);
+        Files.write(part, older);
+
+        downloader.download(url, destination, payloadSha256);
+        assertNull(lastRange);
+        assertDownloaded();
+        assertFalse(Files.exists(part));
+    }
+
+    @Test
+    public void checksumMismatchRemovesTheDownload() throws IOException {
+        try {
+            downloader.download(url, destination, "0123456789abcdef");
+            fail("Expected an exception");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Checksum mismatch"));
+        }
+        assertFalse(destination.exists());
+        assertFalse(Files.exists(BinaryDownloader.getPartFile(destination, "0123456789abcdef")));
+    }
+}
@@ -0,0 +1,111 @@
+package fi.helsinki.cs.tmc.cli.updater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DeltaPatchTest {
+
+    private Path tempDir;
+    private Path oldFile;
+    private Path newFile;
+    private Path patch;
+    private Path result;
+    private Random random;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("tmc-delta");
+        oldFile = tempDir.resolve("old");
+        newFile = tempDir.resolve("new");
+        patch = tempDir.resolve("patch");
+        result = tempDir.resolve("result");
+        random = new Random(7);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private void assertRoundTrip(byte[] oldBytes, byte[] newBytes) throws IOException {
+        Files.write(oldFile, oldBytes);
+        Files.write(newFile, newBytes);
+        DeltaPatch.create(oldFile, newFile, patch);
+        DeltaPatch.apply(oldFile, patch, result);
+        assertArrayEquals(newBytes, Files.readAllBytes(result));
+    }
+
+    @Test
+    public void smallChangesMakeSmallPatch() throws IOException {
+        byte[] oldBytes = randomBytes(500 * 1024);
+        ByteArrayOutputStream changed = new ByteArrayOutputStream();
+        changed.write(oldBytes, 0, 100 * 1024);
+        changed.write(randomBytes(3000));
+        changed.write(oldBytes, 120 * 1024, 200 * 1024);
+        changed.write(oldBytes, 10 * 1024, 50 * 1024);
+        changed.write(oldBytes, 400 * 1024, 100 * 1024 - 1);
+        byte[] newBytes = changed.toByteArray();
+
+        assertRoundTrip(oldBytes, newBytes);
+        assertTrue(Files.size(patch) < newBytes.length / 50);
+    }
+
+    @Test
+    public void unrelatedFilesStillWork() throws IOException {
+        assertRoundTrip(randomBytes(10000), randomBytes(12345));
+    }
+
+    @Test
+    public void emptyFilesWork() throws IOException {
+        assertRoundTrip(new byte[0], randomBytes(100));
+        assertRoundTrip(randomBytes(100), new byte[0]);
+    }
+
+    @Test
+    public void patchIsNotAppliedOnWrongFile() throws IOException {
+        byte[] oldBytes = randomBytes(10000);
+        Files.write(oldFile, oldBytes);
+        Files.write(newFile, Arrays.copyOf(oldBytes, 9000));
+        DeltaPatch.create(oldFile, newFile, patch);
+
+        oldBytes[0]++;
+        Files.write(oldFile, oldBytes);
+        try {
+            DeltaPatch.apply(oldFile, patch, result);
+            fail("Expected an exception");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("another version"));
+        }
+    }
+
+    @Test
+    public void invalidPatchIsRejected() throws IOException {
+        Files.write(oldFile, randomBytes(100));
+        Files.write(patch, randomBytes(100));
+        try {
+            DeltaPatch.apply(oldFile, patch, result);
+            fail("Expected an exception");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
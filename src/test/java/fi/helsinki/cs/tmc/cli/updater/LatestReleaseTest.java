@@ -0,0 +1,39 @@
+package fi.helsinki.cs.tmc.cli.updater;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LatestReleaseTest {
+
+    @Test
+    public void nothingIsCachedInEmptyProperties() {
+        assertNull(LatestRelease.fromProperties(new HashMap<String, String>()));
+    }
+
+    @Test
+    public void releaseIsStoredInProperties() {
+        Map<String, String> properties = new HashMap<>();
+        new LatestRelease("\"etag\"", "{}").saveTo(properties);
+
+        LatestRelease release = LatestRelease.fromProperties(properties);
+        assertEquals("\"etag\"", release.getEtag());
+        assertEquals("{}", release.getJson());
+    }
+
+    @Test
+    public void releaseWithoutEtagRemovesOldEtag() {
+        Map<String, String> properties = new HashMap<>();
+        new LatestRelease("\"etag\"", "{}").saveTo(properties);
+        new LatestRelease(null, "[]").saveTo(properties);
+
+        assertFalse(properties.containsKey(LatestRelease.ETAG_KEY));
+        assertNull(LatestRelease.fromProperties(properties).getEtag());
+        assertEquals("[]", LatestRelease.fromProperties(properties).getJson());
+    }
+}